@@ -1,9 +1,11 @@
 package com.bernate.services_back.config;
 
+import com.bernate.services_back.security.BoundedPasswordEncoder;
 import com.bernate.services_back.security.jwt.JwtAuthEntryPoint;
 import com.bernate.services_back.security.jwt.JwtAuthenticationFilter;
 import com.bernate.services_back.service.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -13,11 +15,12 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
-import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -40,8 +43,16 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${app.security.bcrypt.strength:10}") int strength,
+            @Value("${app.security.bcrypt.calibrate:false}") boolean calibrate,
+            @Value("${app.security.bcrypt.target-ms:250}") long targetMillis,
+            @Value("${app.security.bcrypt.threads:0}") int threads,
+            @Value("${app.security.bcrypt.queue-capacity:16}") int queueCapacity,
+            @Value("${app.security.bcrypt.retry-after-seconds:2}") long retryAfterSeconds) {
+        int effectiveStrength = calibrate ? BoundedPasswordEncoder.calibrateStrength(targetMillis) : strength;
+        int effectiveThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(effectiveStrength, effectiveThreads, queueCapacity, retryAfterSeconds);
     }
 
     @Bean
@@ -68,7 +79,12 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
-            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            // Sin estado, pero sin SessionManagementFilter: con STATELESS se añade y consulta el
+            // contexto en cada petición, lo que resolvería el JWT diferido también en los endpoints
+            // públicos. El contexto vive solo en la petición y no se guardan peticiones en sesión.
+            .sessionManagement(AbstractHttpConfigurer::disable)
+            .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+            .requestCache(cache -> cache.requestCache(new NullRequestCache()))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -89,6 +105,9 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.PUT, "/api/v1/services/**").hasAnyRole("USER", "ADMIN", "PROVEEDOR")
                 .requestMatchers(HttpMethod.DELETE, "/api/v1/services/**").hasRole("ADMIN")
 
+                // Búsqueda unificada de productos y servicios
+                .requestMatchers(HttpMethod.GET, "/api/v1/search", "/api/v1/search/**").permitAll()
+
                 // Reglas para Calificaciones (Ratings)
                 .requestMatchers(HttpMethod.GET, "/api/v1/ratings/product/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/v1/ratings/service/**").permitAll()
@@ -117,8 +136,8 @@ public class SecurityConfig {
                 "https://tu-frontend-en-render.onrender.com" 
         ));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type", "X-Requested-With", "accept", "Origin", "Access-Control-Request-Method", "Access-Control-Request-Headers"));
-        configuration.setExposedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type", "X-Requested-With", "accept", "Origin", "Access-Control-Request-Method", "Access-Control-Request-Headers", "If-None-Match", "If-Modified-Since", "If-Match"));
+        configuration.setExposedHeaders(List.of("Authorization", "Content-Type", "ETag", "Last-Modified", "X-Count-Strategy"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -3,8 +3,12 @@ package com.bernate.services_back.controller;
 import com.bernate.services_back.dto.UpdateUserRolesRequest;
 import com.bernate.services_back.dto.UserResponseDTO;
 import com.bernate.services_back.exception.ResourceNotFoundException;
+import com.bernate.services_back.image.ImageServingService;
 import com.bernate.services_back.model.User;
+import com.bernate.services_back.search.SearchResultCache;
 import com.bernate.services_back.service.AuthService;
+import com.bernate.services_back.service.CatalogResponseCache;
+import com.bernate.services_back.service.UserDetailsServiceImpl;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -23,6 +27,18 @@ public class AdminController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private ImageServingService imageServingService;
+
     /**
      * Endpoint para actualizar los roles de un usuario específico.
      * Solo accesible por usuarios con ROLE_ADMIN.
@@ -65,4 +81,48 @@ public class AdminController {
         List<UserResponseDTO> users = authService.getAllUsers();
         return ResponseEntity.ok(users);
     }
-}
\ No newline at end of file
+
+    /**
+     * Endpoint para consultar las estadísticas de la caché de UserDetails
+     * (aciertos, fallos, desalojos), útil para dimensionarla.
+     * Solo accesible por usuarios con ROLE_ADMIN.
+     */
+    @GetMapping("/cache/user-details")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getUserDetailsCacheStats() {
+        return ResponseEntity.ok(userDetailsService.getCacheStats());
+    }
+
+    /**
+     * Estadísticas de la caché de respuestas JSON del catálogo: tasa de aciertos, bytes ocupados
+     * frente al máximo configurado, desalojos e invalidaciones.
+     * Solo accesible por usuarios con ROLE_ADMIN.
+     */
+    @GetMapping("/cache/responses")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getResponseCacheStats() {
+        return ResponseEntity.ok(catalogResponseCache.getStats());
+    }
+
+    /**
+     * Estadísticas de la caché de resultados de búsqueda: aciertos, consultas no admitidas
+     * por ser poco frecuentes y versión actual del catálogo.
+     * Solo accesible por usuarios con ROLE_ADMIN.
+     */
+    @GetMapping("/cache/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getSearchCacheStats() {
+        return ResponseEntity.ok(searchResultCache.getStats());
+    }
+
+    /**
+     * Estadísticas del servicio de imágenes: tasa de aciertos de cada nivel (memoria y disco),
+     * respuestas 304 y parciales, envíos con sendfile y bytes servidos desde cada nivel.
+     * Solo accesible por usuarios con ROLE_ADMIN.
+     */
+    @GetMapping("/cache/images")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getImageCacheStats() {
+        return ResponseEntity.ok(imageServingService.getStats());
+    }
+}
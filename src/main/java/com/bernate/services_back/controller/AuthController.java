@@ -2,11 +2,17 @@ package com.bernate.services_back.controller;
 
 import com.bernate.services_back.dto.AuthResponse;
 import com.bernate.services_back.dto.LoginRequest;
+import com.bernate.services_back.dto.RefreshTokenRequest;
 import com.bernate.services_back.dto.RegisterRequest;
+import com.bernate.services_back.exception.ServiceBusyException;
 import com.bernate.services_back.model.User;
+import com.bernate.services_back.security.AuthRateLimiter;
+import com.bernate.services_back.security.jwt.JwtAuthenticationFilter;
 import com.bernate.services_back.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -22,8 +28,16 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private AuthRateLimiter authRateLimiter;
+
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest registerRequest) {
+    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest registerRequest,
+                                          HttpServletRequest request) {
+        long retryAfter = authRateLimiter.checkRegistration(request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
         try {
             User user = authService.registerUser(registerRequest);
 
@@ -33,6 +47,8 @@ public class AuthController {
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
+        } catch (ServiceBusyException e) {
+            return serviceBusy(e);
         } catch (RuntimeException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", e.getMessage());
@@ -41,14 +57,69 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                              HttpServletRequest request) {
+        String clientIp = request.getRemoteAddr();
+        long retryAfter = authRateLimiter.checkLogin(clientIp, loginRequest.getUsername());
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
         try {
             AuthResponse authResponse = authService.authenticateUser(loginRequest);
+            authRateLimiter.recordLoginSuccess(clientIp, loginRequest.getUsername());
             return ResponseEntity.ok(authResponse);
         } catch (Exception e) {
+            ServiceBusyException busy = ServiceBusyException.findInCauses(e);
+            if (busy != null) {
+                return serviceBusy(busy);
+            }
+            authRateLimiter.recordLoginFailure(clientIp, loginRequest.getUsername());
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", "Error: Usuario o contraseña incorrectos.");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
         }
     }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest,
+                                          HttpServletRequest request) {
+        String clientIp = request.getRemoteAddr();
+        long retryAfter = authRateLimiter.checkRefresh(clientIp);
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
+        try {
+            AuthResponse authResponse = authService.refreshTokens(refreshTokenRequest.getRefreshToken());
+            return ResponseEntity.ok(authResponse);
+        } catch (Exception e) {
+            authRateLimiter.recordRefreshFailure(clientIp);
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Error: Token de refresco inválido o expirado.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody(required = false) RefreshTokenRequest refreshTokenRequest,
+                                       HttpServletRequest request) {
+        authService.logout(JwtAuthenticationFilter.getJwtFromRequest(request),
+                refreshTokenRequest != null ? refreshTokenRequest.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<?> tooManyRequests(long retryAfterSeconds) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Demasiados intentos. Intenta de nuevo en " + retryAfterSeconds + " segundos.");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(errorResponse);
+    }
+
+    private ResponseEntity<?> serviceBusy(ServiceBusyException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.bernate.services_back.controller;
 
 import com.bernate.services_back.dto.CategoryDTO;
 import com.bernate.services_back.model.CategoryType;
+import com.bernate.services_back.service.CatalogResponseCache;
+import com.bernate.services_back.service.CatalogResponseCache.CachedJson;
 import com.bernate.services_back.service.CategoryService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,8 +11,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @RestController
 @RequestMapping("/api/v1/categories")
@@ -18,10 +19,15 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogResponseCache responseCache;
+    private final ConditionalGetSupport conditionalGet;
 
     @Autowired
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, CatalogResponseCache responseCache,
+                              ConditionalGetSupport conditionalGet) {
         this.categoryService = categoryService;
+        this.responseCache = responseCache;
+        this.conditionalGet = conditionalGet;
     }
 
     @PostMapping
@@ -31,21 +37,26 @@ public class CategoryController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdCategory);
     }
 
+    /**
+     * Listado servido desde la caché de JSON serializado; se invalida con cualquier cambio de categoría.
+     */
     @GetMapping
-    public ResponseEntity<List<CategoryDTO>> getAllCategories(@RequestParam(required = false) CategoryType tipo) {
-        List<CategoryDTO> categories;
-        if (tipo != null) {
-            categories = categoryService.getCategoriesByType(tipo);
-        } else {
-            categories = categoryService.getAllCategories();
+    public ResponseEntity<byte[]> getAllCategories(@RequestParam(required = false) CategoryType tipo,
+                                                   ServletWebRequest request) {
+        CachedJson categories = responseCache.categories(tipo);
+        if (conditionalGet.isNotModified(request, categories)) {
+            return null;
         }
-        return ResponseEntity.ok(categories);
+        return conditionalGet.ok(categories);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryDTO> getCategoryById(@PathVariable Long id) {
-        CategoryDTO category = categoryService.getCategoryById(id);
-        return ResponseEntity.ok(category);
+    public ResponseEntity<byte[]> getCategoryById(@PathVariable Long id, ServletWebRequest request) {
+        CachedJson category = responseCache.category(id);
+        if (conditionalGet.isNotModified(request, category)) {
+            return null;
+        }
+        return conditionalGet.ok(category);
     }
 
     @PutMapping("/{id}")
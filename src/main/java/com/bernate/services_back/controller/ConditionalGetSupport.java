@@ -0,0 +1,73 @@
+package com.bernate.services_back.controller;
+
+import com.bernate.services_back.dto.EntityRevision;
+import com.bernate.services_back.service.CatalogResponseCache.CachedJson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+
+/**
+ * Cabeceras de caché y peticiones condicionales para las lecturas del catálogo. Solo se valida
+ * con el ETag: el detalle de un producto o servicio cambia también cuando se renombra su
+ * categoría o se generan las variantes de la imagen, sin que se actualice {@code updated_at}, así
+ * que no se envía {@code Last-Modified} ni se atiende {@code If-Modified-Since}.
+ */
+@Component
+public class ConditionalGetSupport {
+
+    private final CacheControl cacheControl;
+
+    public ConditionalGetSupport(@Value("${app.http.catalog.max-age-seconds:30}") long maxAgeSeconds,
+                                 @Value("${app.http.catalog.stale-while-revalidate-seconds:300}") long staleSeconds) {
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(staleSeconds));
+    }
+
+    /**
+     * Evalúa {@code If-None-Match}. Cuando devuelve {@code true} la respuesta 304 ya está preparada
+     * y el controlador debe devolver {@code null}.
+     */
+    public boolean isNotModified(ServletWebRequest request, CachedJson json) {
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+        return request.checkNotModified(json.etag());
+    }
+
+    /**
+     * Los bytes de la caché de respuestas se escriben tal cual, sin volver a pasar por Jackson.
+     */
+    public ResponseEntity<byte[]> ok(CachedJson json) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(json.etag())
+                .cacheControl(cacheControl)
+                .body(json.body());
+    }
+
+    /**
+     * {@code If-Match} en una modificación: si el cliente partió de una versión que ya no es la
+     * actual, la petición se rechaza con 412 en lugar de pisar los cambios de otro. Fuera de la
+     * transacción de escritura solo sirve para rechazar pronto; la comprobación que cuenta la hace
+     * el servicio sobre la entidad que va a guardar.
+     */
+    public boolean isPreconditionFailed(String ifMatch, EntityRevision revision) {
+        return !revision.matches(ifMatch);
+    }
+
+    public static <T> ResponseEntity<T> preconditionFailed() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+    }
+
+    public static <T> ResponseEntity<T> conflict() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+}
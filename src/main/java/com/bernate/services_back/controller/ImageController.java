@@ -0,0 +1,209 @@
+package com.bernate.services_back.controller;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.image.ImageServingService;
+import com.bernate.services_back.image.ImageServingService.ServedImage;
+import com.bernate.services_back.image.ImageVariant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sirve las imágenes subidas (originales y variantes) con {@code Cache-Control} inmutable para
+ * los nombres por contenido, ETag fuerte, peticiones condicionales y rangos de bytes. Las
+ * imágenes grandes se envían desde disco con sendfile cuando el conector lo admite, sin pasar
+ * por el heap.
+ */
+@RestController
+@RequestMapping(MvcConfig.BASE_URL_UPLOAD_PATH)
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final ImageServingService imageServingService;
+    private final long sendfileMinBytes;
+    private final String mutableCacheControl;
+
+    public ImageController(ImageServingService imageServingService,
+                           @Value("${app.images.serving.sendfile-min-bytes:49152}") long sendfileMinBytes,
+                           @Value("${app.images.serving.legacy-max-age-seconds:86400}") long legacyMaxAgeSeconds) {
+        this.imageServingService = imageServingService;
+        this.sendfileMinBytes = sendfileMinBytes;
+        this.mutableCacheControl = "public, max-age=" + legacyMaxAgeSeconds;
+    }
+
+    @GetMapping("/{directory}/{filename}")
+    public void getImage(@PathVariable String directory, @PathVariable String filename,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(directory, false, filename, request, response);
+    }
+
+    @GetMapping("/{directory}/" + ImageVariant.DIRECTORY + "/{filename}")
+    public void getImageVariant(@PathVariable String directory, @PathVariable String filename,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(directory, true, filename, request, response);
+    }
+
+    private void serve(String directory, boolean variant, String filename,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ServedImage image = imageServingService.find(directory, variant, filename).orElse(null);
+        if (image == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, image.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, image.immutable() ? IMMUTABLE_CACHE_CONTROL : mutableCacheControl);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, image.lastModified());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, image)) {
+            imageServingService.recordNotModified();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = image.length() - 1;
+        boolean isPartial = false;
+        HttpRange range = requestedRange(request, image);
+        if (range != null) {
+            if (image.length() == 0 || range.getRangeStart(image.length()) >= image.length()) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.length());
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = range.getRangeStart(image.length());
+            end = range.getRangeEnd(image.length());
+            isPartial = true;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + image.length());
+        }
+        long length = end - start + 1;
+        response.setContentType(image.contentType());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (image.inMemory()) {
+            response.getOutputStream().write(image.content(), (int) start, (int) length);
+            imageServingService.recordTransfer(image, length, isPartial, false);
+        } else if (length >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat envía el fichero directamente desde el kernel al socket tras volver del controlador.
+            request.setAttribute(SENDFILE_FILENAME, image.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            imageServingService.recordTransfer(image, length, isPartial, true);
+        } else {
+            transfer(image, start, length, response.getOutputStream());
+            imageServingService.recordTransfer(image, length, isPartial, false);
+        }
+    }
+
+    /**
+     * {@code If-None-Match} manda; solo sin él se mira {@code If-Modified-Since}, con la precisión
+     * de segundos de las fechas HTTP.
+     */
+    private static boolean notModified(HttpServletRequest request, ServedImage image) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, image.etag());
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && image.lastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Un único rango. Con varios, o con un {@code If-Range} que ya no coincide, se envía la imagen
+     * entera, como permite la especificación; un rango mal formado también se ignora. El
+     * {@code If-Range} puede ser el ETag o la fecha de {@code Last-Modified}, que debe coincidir
+     * exactamente.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, ServedImage image) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(request, ifRange.trim(), image)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String ifRange, ServedImage image) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(image.etag());
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && date / 1000 == image.lastModified() / 1000;
+    }
+
+    /**
+     * @return {@code -1} si la cabecera falta o no es una fecha HTTP válida.
+     */
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void transfer(ServedImage image, long start, long length, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+}
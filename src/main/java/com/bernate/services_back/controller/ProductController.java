@@ -1,17 +1,37 @@
 package com.bernate.services_back.controller;
 
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.dto.CursorPage;
+import com.bernate.services_back.dto.FacetedPage;
 import com.bernate.services_back.dto.ProductDTO;
+import com.bernate.services_back.dto.Revised;
+import com.bernate.services_back.exception.PreconditionFailedException;
 import com.bernate.services_back.exception.ResourceNotFoundException;
+import com.bernate.services_back.image.ImageStore;
+import com.bernate.services_back.image.ImageStore.ReceivedImage;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.pagination.CatalogSort;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.SearchResultCache;
+import com.bernate.services_back.service.CatalogResponseCache;
+import com.bernate.services_back.service.CatalogResponseCache.CachedJson;
 import com.bernate.services_back.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.MediaType;
 
+import java.io.IOException;
+
 
 
 
@@ -20,26 +40,73 @@ import org.springframework.http.MediaType;
 public class ProductController {
 
     private final ProductService productService;
+    private final ConditionalGetSupport conditionalGet;
+    private final CatalogResponseCache responseCache;
+    private final SearchResultCache searchResultCache;
+    private final ImageStore imageStore;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ConditionalGetSupport conditionalGet,
+                             CatalogResponseCache responseCache, SearchResultCache searchResultCache,
+                             ImageStore imageStore) {
         this.productService = productService;
+        this.conditionalGet = conditionalGet;
+        this.responseCache = responseCache;
+        this.searchResultCache = searchResultCache;
+        this.imageStore = imageStore;
     }
 
 
     @GetMapping
     public ResponseEntity<Page<ProductDTO>> getAllProducts(
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) EstadoOferta estado,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String seller,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(required = false) String count,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) { /* ... sin cambios ... */
-        Page<ProductDTO> productsPage = productService.getAllProducts(search, page, size);
-        return ResponseEntity.ok(productsPage);
+            @RequestParam(defaultValue = "10") int size) {
+        CatalogFilter filter = new CatalogFilter(category, estado, minPrice, maxPrice, seller, CatalogSort.parse(sort));
+        CountStrategy countStrategy = CountStrategy.parse(count);
+        Page<ProductDTO> productsPage = filter.hasFilters() || filter.getSort() != null
+                ? productService.getAllProducts(search, filter, page, size, countStrategy)
+                : searchResultCache.get(CatalogKind.PRODUCT, search, page, size, countStrategy, ProductDTO::copy,
+                        () -> productService.getAllProducts(search, filter, page, size, countStrategy));
+        CountStrategy usedStrategy = CountStrategy.of(productsPage);
+        if (facets) {
+            productsPage = new FacetedPage<>(productsPage, productService.getProductFacets(search, filter));
+        }
+        return ResponseEntity.ok()
+                .header(CountStrategy.HEADER, usedStrategy.headerValue())
+                .body(productsPage);
+    }
+
+    /**
+     * Listado por cursor: la primera página se pide sin cursor y las siguientes con el
+     * {@code nextCursor} de la respuesta anterior.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ProductDTO>> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(productService.scrollProducts(cursor, size));
     }
 
+    /**
+     * Detalle con ETag, servido desde la caché de JSON serializado. Si el cliente manda
+     * {@code If-None-Match} con el ETag actual se responde 304 sin cuerpo.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) { /* ... sin cambios ... */
-        ProductDTO product = productService.getProductById(id);
-        return ResponseEntity.ok(product);
+    public ResponseEntity<byte[]> getProductById(@PathVariable Long id, ServletWebRequest request) {
+        CachedJson json = responseCache.product(id);
+        if (conditionalGet.isNotModified(request, json)) {
+            return null;
+        }
+        return conditionalGet.ok(json);
     }
 
 
@@ -56,12 +123,51 @@ public class ProductController {
     public ResponseEntity<ProductDTO> updateProduct(
             @PathVariable Long id,
             @Valid @RequestPart("product") ProductDTO productDetailsDTO,
-            @RequestPart(value = "imageFile", required = false) MultipartFile imageFile) {
+            @RequestPart(value = "imageFile", required = false) MultipartFile imageFile,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            Revised<ProductDTO> updatedProduct = productService.updateProduct(id, productDetailsDTO, imageFile, ifMatch);
+            return ResponseEntity.ok().eTag(updatedProduct.revision().etag()).body(updatedProduct.body());
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (PreconditionFailedException e) {
+            return ConditionalGetSupport.preconditionFailed();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ConditionalGetSupport.conflict();
+        }
+    }
+
+    /**
+     * Sube o sustituye la imagen enviando sus bytes como cuerpo ({@code image/jpeg}, {@code image/png}
+     * o {@code image/gif}), sin multipart: se escriben una sola vez junto a su destino, calculando
+     * el hash y comprobando el tamaño máximo sobre la marcha.
+     */
+    @PutMapping(value = "/{id}/image",
+            consumes = { MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE })
+    public ResponseEntity<ProductDTO> uploadProductImage(
+            @PathVariable Long id,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            HttpServletRequest request) throws IOException {
+        ReceivedImage received = null;
         try {
-            ProductDTO updatedProduct = productService.updateProduct(id, productDetailsDTO, imageFile);
-            return ResponseEntity.ok(updatedProduct);
+            // Se comprueba antes de leer el cuerpo, para no recibir una subida que se va a rechazar; el
+            // servicio lo vuelve a comprobar dentro de la transacción que guarda la imagen.
+            if (ifMatch != null && conditionalGet.isPreconditionFailed(ifMatch, productService.getProductRevision(id))) {
+                return ConditionalGetSupport.preconditionFailed();
+            }
+            received = imageStore.receive(CatalogKind.PRODUCT, request.getInputStream(),
+                    ImageStore.extensionForContentType(contentType), request.getContentLengthLong());
+            Revised<ProductDTO> updated = productService.replaceProductImage(id, received, ifMatch);
+            return ResponseEntity.ok().eTag(updated.revision().etag()).body(updated.body());
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
+        } catch (PreconditionFailedException e) {
+            return ConditionalGetSupport.preconditionFailed();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ConditionalGetSupport.conflict();
+        } finally {
+            imageStore.discard(received);
         }
     }
 
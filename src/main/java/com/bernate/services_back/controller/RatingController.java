@@ -1,5 +1,6 @@
 package com.bernate.services_back.controller;
 
+import com.bernate.services_back.dto.CursorPage;
 import com.bernate.services_back.dto.RatingDTO;
 import com.bernate.services_back.service.RatingService;
 import jakarta.validation.Valid;
@@ -48,6 +49,18 @@ public class RatingController {
         return ResponseEntity.ok(ratings);
     }
 
+    /**
+     * Igual que el anterior, pero paginado por cursor ({@code nextCursor} de la respuesta previa).
+     * Público.
+     */
+    @GetMapping("/product/{productId}/scroll")
+    public ResponseEntity<CursorPage<RatingDTO>> scrollRatingsForProduct(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size) {
+        return ResponseEntity.ok(ratingService.scrollRatingsForProduct(productId, cursor, size));
+    }
+
     /**
      * Obtiene calificaciones paginadas para un servicio específico.
      * Público.
@@ -61,6 +74,18 @@ public class RatingController {
         return ResponseEntity.ok(ratings);
     }
 
+    /**
+     * Igual que el anterior, pero paginado por cursor ({@code nextCursor} de la respuesta previa).
+     * Público.
+     */
+    @GetMapping("/service/{serviceId}/scroll")
+    public ResponseEntity<CursorPage<RatingDTO>> scrollRatingsForService(
+            @PathVariable Long serviceId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size) {
+        return ResponseEntity.ok(ratingService.scrollRatingsForService(serviceId, cursor, size));
+    }
+
     /**
      * Obtiene calificaciones paginadas hechas por un usuario específico.
      * Podría ser público o protegido dependiendo de tus reglas de privacidad.
@@ -76,6 +101,18 @@ public class RatingController {
         return ResponseEntity.ok(ratings);
     }
 
+    /**
+     * Calificaciones de un usuario paginadas por cursor, con las mismas restricciones de acceso.
+     */
+    @GetMapping("/user/{raterId}/scroll")
+    @PreAuthorize("isAuthenticated() and (#raterId == principal.id or hasRole('ADMIN'))")
+    public ResponseEntity<CursorPage<RatingDTO>> scrollRatingsByRater(
+            @PathVariable Long raterId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(ratingService.scrollRatingsByRater(raterId, cursor, size));
+    }
+
     /**
      * Elimina una calificación.
      * Solo el creador de la calificación o un ADMIN pueden eliminarla.
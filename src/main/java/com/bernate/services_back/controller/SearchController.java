@@ -0,0 +1,51 @@
+package com.bernate.services_back.controller;
+
+import com.bernate.services_back.dto.SuggestionDTO;
+import com.bernate.services_back.dto.UnifiedSearchResponse;
+import com.bernate.services_back.search.SuggestionIndex;
+import com.bernate.services_back.service.MarketplaceSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/search")
+public class SearchController {
+
+    private final MarketplaceSearchService marketplaceSearchService;
+    private final SuggestionIndex suggestionIndex;
+
+    @Autowired
+    public SearchController(MarketplaceSearchService marketplaceSearchService, SuggestionIndex suggestionIndex) {
+        this.marketplaceSearchService = marketplaceSearchService;
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    /**
+     * Busca en productos y servicios con una sola petición y devuelve una lista mezclada por relevancia.
+     * Público.
+     */
+    @GetMapping
+    public ResponseEntity<UnifiedSearchResponse> search(
+            @RequestParam String search,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(marketplaceSearchService.search(search, page, size));
+    }
+
+    /**
+     * Sugerencias de autocompletado (productos, servicios y categorías) para lo que el usuario va escribiendo.
+     * Se resuelven en memoria, sin consultar la base de datos. Público.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(suggestionIndex.suggest(q, limit));
+    }
+}
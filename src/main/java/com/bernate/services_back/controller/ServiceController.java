@@ -1,43 +1,110 @@
 package com.bernate.services_back.controller;
 
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.dto.CursorPage;
+import com.bernate.services_back.dto.FacetedPage;
+import com.bernate.services_back.dto.Revised;
 import com.bernate.services_back.dto.ServiceDTO;
+import com.bernate.services_back.exception.PreconditionFailedException;
 import com.bernate.services_back.exception.ResourceNotFoundException;
+import com.bernate.services_back.image.ImageStore;
+import com.bernate.services_back.image.ImageStore.ReceivedImage;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.pagination.CatalogSort;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.SearchResultCache;
+import com.bernate.services_back.service.CatalogResponseCache;
+import com.bernate.services_back.service.CatalogResponseCache.CachedJson;
 import com.bernate.services_back.service.ServiceService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api/v1/services")
 @CrossOrigin(origins = "http://localhost:5173")
 public class ServiceController {
 
     private final ServiceService serviceService;
+    private final ConditionalGetSupport conditionalGet;
+    private final CatalogResponseCache responseCache;
+    private final SearchResultCache searchResultCache;
+    private final ImageStore imageStore;
 
     @Autowired
-    public ServiceController(ServiceService serviceService) {
+    public ServiceController(ServiceService serviceService, ConditionalGetSupport conditionalGet,
+                             CatalogResponseCache responseCache, SearchResultCache searchResultCache,
+                             ImageStore imageStore) {
         this.serviceService = serviceService;
+        this.conditionalGet = conditionalGet;
+        this.responseCache = responseCache;
+        this.searchResultCache = searchResultCache;
+        this.imageStore = imageStore;
     }
 
     @GetMapping
     public ResponseEntity<Page<ServiceDTO>> getAllServices(
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) EstadoOferta estado,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String seller,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(required = false) String count,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
-        Page<ServiceDTO> servicesPage = serviceService.getAllServices(search, page, size);
-        return ResponseEntity.ok(servicesPage);
+        CatalogFilter filter = new CatalogFilter(category, estado, minPrice, maxPrice, seller, CatalogSort.parse(sort));
+        CountStrategy countStrategy = CountStrategy.parse(count);
+        Page<ServiceDTO> servicesPage = filter.hasFilters() || filter.getSort() != null
+                ? serviceService.getAllServices(search, filter, page, size, countStrategy)
+                : searchResultCache.get(CatalogKind.SERVICE, search, page, size, countStrategy, ServiceDTO::copy,
+                        () -> serviceService.getAllServices(search, filter, page, size, countStrategy));
+        CountStrategy usedStrategy = CountStrategy.of(servicesPage);
+        if (facets) {
+            servicesPage = new FacetedPage<>(servicesPage, serviceService.getServiceFacets(search, filter));
+        }
+        return ResponseEntity.ok()
+                .header(CountStrategy.HEADER, usedStrategy.headerValue())
+                .body(servicesPage);
+    }
+
+    /**
+     * Listado por cursor: la primera página se pide sin cursor y las siguientes con el
+     * {@code nextCursor} de la respuesta anterior.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ServiceDTO>> scrollServices(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(serviceService.scrollServices(cursor, size));
     }
 
+    /**
+     * Detalle con ETag, servido desde la caché de JSON serializado. Si el cliente manda
+     * {@code If-None-Match} con el ETag actual se responde 304 sin cuerpo.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<ServiceDTO> getServiceById(@PathVariable Long id) {
-        ServiceDTO serviceDTO = serviceService.getServiceById(id);
-        return ResponseEntity.ok(serviceDTO);
+    public ResponseEntity<byte[]> getServiceById(@PathVariable Long id, ServletWebRequest request) {
+        CachedJson json = responseCache.service(id);
+        if (conditionalGet.isNotModified(request, json)) {
+            return null;
+        }
+        return conditionalGet.ok(json);
     }
 
 
@@ -57,13 +124,53 @@ public class ServiceController {
     public ResponseEntity<ServiceDTO> updateService(
             @PathVariable Long id,
             @Valid @RequestPart("service") ServiceDTO serviceDetailsDTO,
-            @RequestPart(value = "imageFile", required = false) MultipartFile imageFile
+            @RequestPart(value = "imageFile", required = false) MultipartFile imageFile,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
         try {
-            ServiceDTO updatedService = serviceService.updateService(id, serviceDetailsDTO, imageFile);
-            return ResponseEntity.ok(updatedService);
+            Revised<ServiceDTO> updatedService = serviceService.updateService(id, serviceDetailsDTO, imageFile, ifMatch);
+            return ResponseEntity.ok().eTag(updatedService.revision().etag()).body(updatedService.body());
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (PreconditionFailedException e) {
+            return ConditionalGetSupport.preconditionFailed();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ConditionalGetSupport.conflict();
+        }
+    }
+
+    /**
+     * Sube o sustituye la imagen enviando sus bytes como cuerpo ({@code image/jpeg}, {@code image/png}
+     * o {@code image/gif}), sin multipart: se escriben una sola vez junto a su destino, calculando
+     * el hash y comprobando el tamaño máximo sobre la marcha.
+     */
+    @PutMapping(value = "/{id}/image",
+            consumes = { MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE })
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'PROVEEDOR')")
+    public ResponseEntity<ServiceDTO> uploadServiceImage(
+            @PathVariable Long id,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            HttpServletRequest request) throws IOException {
+        ReceivedImage received = null;
+        try {
+            // Se comprueba antes de leer el cuerpo, para no recibir una subida que se va a rechazar; el
+            // servicio lo vuelve a comprobar dentro de la transacción que guarda la imagen.
+            if (ifMatch != null && conditionalGet.isPreconditionFailed(ifMatch, serviceService.getServiceRevision(id))) {
+                return ConditionalGetSupport.preconditionFailed();
+            }
+            received = imageStore.receive(CatalogKind.SERVICE, request.getInputStream(),
+                    ImageStore.extensionForContentType(contentType), request.getContentLengthLong());
+            Revised<ServiceDTO> updated = serviceService.replaceServiceImage(id, received, ifMatch);
+            return ResponseEntity.ok().eTag(updated.revision().etag()).body(updated.body());
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.notFound().build();
+        } catch (PreconditionFailedException e) {
+            return ConditionalGetSupport.preconditionFailed();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ConditionalGetSupport.conflict();
+        } finally {
+            imageStore.discard(received);
         }
     }
 
@@ -5,9 +5,15 @@ import lombok.Data;
 @Data
 public class AuthResponse {
     private String accessToken;
+    private String refreshToken;
     private String tokenType = "Bearer";
 
     public AuthResponse(String accessToken) {
         this.accessToken = accessToken;
     }
+
+    public AuthResponse(String accessToken, String refreshToken) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+    }
 }
\ No newline at end of file
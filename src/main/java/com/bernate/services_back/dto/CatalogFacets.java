@@ -0,0 +1,21 @@
+package com.bernate.services_back.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Recuentos por faceta para la barra lateral de un listado. Cada faceta se cuenta aplicando la
+ * búsqueda y el resto de filtros, pero no el suyo propio, para que sus demás opciones sigan visibles.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogFacets {
+    private long total;
+    private Map<String, Integer> categories;
+    private Map<String, Integer> estados;
+    private Map<String, Integer> priceRanges;
+}
@@ -0,0 +1,30 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.pagination.CatalogSort;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filtros y orden opcionales de los listados de productos y servicios.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogFilter {
+    private String categoryName;
+    private EstadoOferta estado;
+    private Double minPrice;
+    private Double maxPrice;
+    private String seller;
+    private CatalogSort sort;
+
+    public boolean hasFilters() {
+        return (categoryName != null && !categoryName.isBlank())
+                || estado != null
+                || minPrice != null
+                || maxPrice != null
+                || (seller != null && !seller.isBlank());
+    }
+}
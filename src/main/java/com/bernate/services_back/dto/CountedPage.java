@@ -0,0 +1,33 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.pagination.CountStrategy;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageImpl;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página que indica cómo se obtuvo su total. Con {@link CountStrategy#ESTIMATED} el total es
+ * aproximado y con {@link CountStrategy#NONE} es solo una cota inferior: lo fiable es
+ * {@code last} / {@code hasNext}.
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+    private final CountStrategy countStrategy;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, CountStrategy countStrategy) {
+        super(content, pageable, total);
+        this.countStrategy = countStrategy;
+    }
+
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    @Override
+    public <U> CountedPage<U> map(Function<? super T, ? extends U> converter) {
+        return new CountedPage<>(getContent().stream().<U>map(converter).toList(), getPageable(),
+                getTotalElements(), countStrategy);
+    }
+}
@@ -0,0 +1,37 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.pagination.KeysetCursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de un listado por cursor. Para pedir la siguiente se reenvía {@code nextCursor};
+ * es {@code null} cuando no quedan más elementos. No incluye el total, para no tener que contarlo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+
+    /**
+     * @param rows   resultado de la consulta pidiendo {@code size + 1} filas; la fila sobrante
+     *               solo indica que hay página siguiente.
+     * @param cursor cursor que corresponde a una fila (la última devuelta).
+     */
+    public static <E, T> CursorPage<T> of(List<E> rows, int size, Function<E, T> mapper,
+                                          Function<E, KeysetCursor> cursor) {
+        boolean hasNext = rows.size() > size;
+        List<E> pageRows = hasNext ? rows.subList(0, size) : rows;
+        List<T> content = pageRows.stream().map(mapper).toList();
+        String nextCursor = hasNext ? cursor.apply(pageRows.get(pageRows.size() - 1)).encode() : null;
+        return new CursorPage<>(content, size, nextCursor, hasNext);
+    }
+}
@@ -0,0 +1,36 @@
+package com.bernate.services_back.dto;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Lo mínimo para validar una petición condicional sobre un producto o servicio sin cargar la
+ * entidad ni construir el DTO. El DTO también muestra el nombre de la categoría y del vendedor,
+ * que pueden cambiar sin tocar la versión de la fila, así que entran en el ETag; lo mismo las
+ * variantes de la imagen, que se marcan como listas sin subir la versión. Por eso el detalle no
+ * se valida con {@code updatedAt}: cambiar esos datos no lo actualiza.
+ */
+public record EntityRevision(Long id, Long version, LocalDateTime updatedAt, String categoryName,
+                             String sellerUsername, boolean imageVariantsReady) {
+
+    public String etag() {
+        return "\"" + id + "-" + (version != null ? version : 0)
+                + "-" + Integer.toHexString(Objects.hash(categoryName, sellerUsername, imageVariantsReady)) + "\"";
+    }
+
+    /**
+     * {@code If-Match}: sin cabecera, con {@code *} o con alguno de los ETags iguales al actual.
+     */
+    public boolean matches(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return true;
+        }
+        String current = etag();
+        for (String candidate : ifMatch.split(",")) {
+            if (candidate.trim().equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
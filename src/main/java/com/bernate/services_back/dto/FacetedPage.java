@@ -0,0 +1,24 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.pagination.CountStrategy;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.data.domain.Page;
+
+/**
+ * La misma página de siempre, con su {@code countStrategy}, y un bloque {@code facets} adicional,
+ * de modo que los clientes que no lo piden siguen recibiendo exactamente la misma estructura.
+ */
+public class FacetedPage<T> extends CountedPage<T> {
+
+    private final CatalogFacets facets;
+
+    public FacetedPage(Page<T> page, CatalogFacets facets) {
+        super(page.getContent(), page.getPageable(), page.getTotalElements(), CountStrategy.of(page));
+        this.facets = facets;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public CatalogFacets getFacets() {
+        return facets;
+    }
+}
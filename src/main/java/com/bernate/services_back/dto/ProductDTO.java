@@ -9,6 +9,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +36,23 @@ public class ProductDTO {
     @Size(max = 255, message = "La URL de la imagen no puede exceder los 255 caracteres")
     private String imagenes;
 
+    /**
+     * URLs de las variantes ({@code thumb}, {@code card}, {@code full}). Mientras se generan,
+     * todas apuntan a la imagen original. Se ignora al crear o actualizar.
+     */
+    private Map<String, String> imageVariants;
+
+    /**
+     * Ancho y alto de la imagen, para reservar su espacio antes de cargarla.
+     */
+    private Integer imageWidth;
+    private Integer imageHeight;
+
+    /**
+     * Vista previa BlurHash; llega cuando se han generado las variantes.
+     */
+    private String imageBlurHash;
+
     private EstadoOferta estado;
 
 
@@ -63,6 +83,20 @@ public class ProductDTO {
 
     }
 
+    /**
+     * Copia independiente, para que lo que guarda una caché no cambie si alguien modifica lo que sirvió.
+     */
+    public ProductDTO copy() {
+        ProductDTO copy = new ProductDTO(id, name, description, price, stock, imagenes, estado, categoryName,
+                ofertadoPorUsername);
+        copy.setImageVariants(imageVariants != null ? new LinkedHashMap<>(imageVariants) : null);
+        copy.setImageWidth(imageWidth);
+        copy.setImageHeight(imageHeight);
+        copy.setImageBlurHash(imageBlurHash);
+        copy.setOfertadoPorId(ofertadoPorId);
+        return copy;
+    }
+
 
 
 
@@ -0,0 +1,8 @@
+package com.bernate.services_back.dto;
+
+/**
+ * Resultado de una modificación junto con la revisión que quedó guardada, para responder con su
+ * ETag sin volver a consultarla.
+ */
+public record Revised<T>(T body, EntityRevision revision) {
+}
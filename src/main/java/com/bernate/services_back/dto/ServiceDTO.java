@@ -8,6 +8,9 @@ import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 public class ServiceDTO {
@@ -28,6 +31,23 @@ public class ServiceDTO {
     @Size(max = 255)
     private String imagenes;
 
+    /**
+     * URLs de las variantes ({@code thumb}, {@code card}, {@code full}). Mientras se generan,
+     * todas apuntan a la imagen original. Se ignora al crear o actualizar.
+     */
+    private Map<String, String> imageVariants;
+
+    /**
+     * Ancho y alto de la imagen, para reservar su espacio antes de cargarla.
+     */
+    private Integer imageWidth;
+    private Integer imageHeight;
+
+    /**
+     * Vista previa BlurHash; llega cuando se han generado las variantes.
+     */
+    private String imageBlurHash;
+
     @NotNull(message = "El estado de la oferta es obligatorio")
     private EstadoOferta estado;
 
@@ -49,4 +69,17 @@ public class ServiceDTO {
         this.categoryName = categoryName;
         this.ofertadoPorUsername = ofertadoPorUsername;
     }
+
+    /**
+     * Copia independiente, para que lo que guarda una caché no cambie si alguien modifica lo que sirvió.
+     */
+    public ServiceDTO copy() {
+        ServiceDTO copy = new ServiceDTO(id, name, description, estimatedPrice, imagenes, estado, categoryName,
+                ofertadoPorUsername);
+        copy.setImageVariants(imageVariants != null ? new LinkedHashMap<>(imageVariants) : null);
+        copy.setImageWidth(imageWidth);
+        copy.setImageHeight(imageHeight);
+        copy.setImageBlurHash(imageBlurHash);
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.search.SuggestionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Una sugerencia de autocompletado: el nombre tal como se muestra y el id del producto,
+ * servicio o categoría al que corresponde.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    private String text;
+    private SuggestionType type;
+    private Long id;
+}
@@ -0,0 +1,29 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.search.CatalogKind;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Un resultado de la búsqueda unificada: según {@code type}, viene informado {@code product} o {@code service}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UnifiedSearchItem {
+    private CatalogKind type;
+    private double score;
+    private ProductDTO product;
+    private ServiceDTO service;
+
+    public static UnifiedSearchItem of(ProductDTO product, double score) {
+        return new UnifiedSearchItem(CatalogKind.PRODUCT, score, product, null);
+    }
+
+    public static UnifiedSearchItem of(ServiceDTO service, double score) {
+        return new UnifiedSearchItem(CatalogKind.SERVICE, score, null, service);
+    }
+}
@@ -0,0 +1,32 @@
+package com.bernate.services_back.dto;
+
+import com.bernate.services_back.search.CatalogKind;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de la búsqueda unificada. {@code partial} indica que alguna de las dos fuentes no
+ * respondió a tiempo (o falló) y sus resultados no están incluidos; cuáles, en {@code missing}.
+ * {@code didYouMean} trae la consulta corregida cuando alguna palabra no aparece en el catálogo.
+ * {@code totalProducts} y {@code totalServices} son las coincidencias reales de cada lado;
+ * {@code totalElements} no pasa de {@code MarketplaceSearchService.MAX_WINDOW}, lo que se puede paginar.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnifiedSearchResponse {
+    private List<UnifiedSearchItem> content;
+    private int page;
+    private int size;
+    private long totalProducts;
+    private long totalServices;
+    private long totalElements;
+    private boolean partial;
+    private List<CatalogKind> missing;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String didYouMean;
+}
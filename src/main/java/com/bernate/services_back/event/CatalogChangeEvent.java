@@ -0,0 +1,23 @@
+package com.bernate.services_back.event;
+
+import com.bernate.services_back.search.CatalogDocument;
+import com.bernate.services_back.search.CatalogKind;
+
+/**
+ * Se publica al crear, modificar o eliminar un producto o servicio.
+ * {@code document} es {@code null} cuando la entrada se ha eliminado.
+ */
+public record CatalogChangeEvent(CatalogKind kind, Long id, CatalogDocument document) {
+
+    public static CatalogChangeEvent upserted(CatalogDocument document) {
+        return new CatalogChangeEvent(document.kind(), document.id(), document);
+    }
+
+    public static CatalogChangeEvent deleted(CatalogKind kind, Long id) {
+        return new CatalogChangeEvent(kind, id, null);
+    }
+
+    public boolean isDeletion() {
+        return document == null;
+    }
+}
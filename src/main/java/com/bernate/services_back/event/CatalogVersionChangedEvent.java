@@ -0,0 +1,7 @@
+package com.bernate.services_back.event;
+
+/**
+ * Se publica cuando sube {@code CatalogVersion}, ya con los índices en memoria actualizados.
+ */
+public record CatalogVersionChangedEvent(long version) {
+}
@@ -0,0 +1,12 @@
+package com.bernate.services_back.event;
+
+/**
+ * Se publica al crear, renombrar o eliminar una categoría.
+ * {@code previousName} es {@code null} en las altas y {@code newName} es {@code null} en las bajas.
+ */
+public record CategoryChangeEvent(Long id, String previousName, String newName) {
+
+    public boolean isRename() {
+        return previousName != null && newName != null && !previousName.equals(newName);
+    }
+}
@@ -0,0 +1,11 @@
+package com.bernate.services_back.event;
+
+import com.bernate.services_back.search.CatalogKind;
+
+/**
+ * Se publica cuando un producto o servicio deja de usar una imagen. {@code tracked} es
+ * {@code false} para las imágenes anteriores al almacén por contenido, que no tienen cuenta
+ * de referencias y pertenecían a una única fila.
+ */
+public record ImageReleasedEvent(CatalogKind kind, String filename, boolean tracked) {
+}
@@ -0,0 +1,10 @@
+package com.bernate.services_back.event;
+
+import com.bernate.services_back.search.CatalogKind;
+
+/**
+ * Se publica al guardar la imagen original de un producto o servicio. Las variantes redimensionadas
+ * se generan cuando la transacción se confirma.
+ */
+public record ImageStoredEvent(CatalogKind kind, String filename) {
+}
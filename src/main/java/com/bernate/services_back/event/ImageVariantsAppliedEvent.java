@@ -0,0 +1,12 @@
+package com.bernate.services_back.event;
+
+import com.bernate.services_back.search.CatalogKind;
+
+import java.util.List;
+
+/**
+ * Se publica cuando las variantes de una imagen quedan marcadas como listas en los productos o
+ * servicios {@code ids}. No cambia su versión ni lo indexado, pero sí el JSON que se sirve de ellos.
+ */
+public record ImageVariantsAppliedEvent(CatalogKind kind, List<Long> ids) {
+}
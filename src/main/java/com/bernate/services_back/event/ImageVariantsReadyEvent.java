@@ -0,0 +1,10 @@
+package com.bernate.services_back.event;
+
+import com.bernate.services_back.search.CatalogKind;
+
+/**
+ * Se publica, desde el pool de imágenes, cuando todas las variantes de {@code filename} ya están
+ * escritas en disco. {@code blurHash} es la vista previa calculada a partir de la miniatura.
+ */
+public record ImageVariantsReadyEvent(CatalogKind kind, String filename, String blurHash) {
+}
@@ -0,0 +1,10 @@
+package com.bernate.services_back.event;
+
+import com.bernate.services_back.search.CatalogKind;
+
+/**
+ * Se publica al crear o eliminar una calificación. {@code scoreDelta} es la puntuación sumada
+ * (positiva) o retirada (negativa) del producto o servicio {@code targetId}.
+ */
+public record RatingChangedEvent(CatalogKind kind, Long targetId, int scoreDelta) {
+}
@@ -0,0 +1,12 @@
+package com.bernate.services_back.event;
+
+/**
+ * Se publica cuando se crea un usuario o cambian sus datos de autenticación (roles, contraseña).
+ * {@code tokenVersion} lleva la nueva versión de sus tokens cuando el cambio la incrementa.
+ */
+public record UserChangedEvent(String username, Integer tokenVersion) {
+
+    public UserChangedEvent(String username) {
+        this(username, null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.bernate.services_back.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Busca una ServiceBusyException en la cadena de causas; Spring Security envuelve
+     * algunas excepciones del PasswordEncoder en InternalAuthenticationServiceException.
+     */
+    public static ServiceBusyException findInCauses(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof ServiceBusyException busy) {
+                return busy;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+}
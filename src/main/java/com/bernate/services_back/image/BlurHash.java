@@ -0,0 +1,118 @@
+package com.bernate.services_back.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Codificador BlurHash: resume una imagen en unos 20-30 caracteres (un color medio y unos
+ * pocos coeficientes de coseno) que el cliente decodifica en una vista previa borrosa mientras
+ * llega la imagen real.
+ */
+public final class BlurHash {
+
+    private static final String BASE83 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private BlurHash() {
+    }
+
+    /**
+     * @param componentsX componentes horizontales (1-9).
+     * @param componentsY componentes verticales (1-9).
+     */
+    public static String encode(BufferedImage image, int componentsX, int componentsY) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        double[] linearR = new double[pixels.length];
+        double[] linearG = new double[pixels.length];
+        double[] linearB = new double[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            linearR[i] = srgbToLinear((pixels[i] >> 16) & 0xFF);
+            linearG[i] = srgbToLinear((pixels[i] >> 8) & 0xFF);
+            linearB[i] = srgbToLinear(pixels[i] & 0xFF);
+        }
+
+        double[][] factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            double[] cosY = cosines(j, height);
+            for (int i = 0; i < componentsX; i++) {
+                double[] cosX = cosines(i, width);
+                double r = 0;
+                double g = 0;
+                double b = 0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        double basis = cosX[x] * cosY[y];
+                        int p = y * width + x;
+                        r += basis * linearR[p];
+                        g += basis * linearG[p];
+                        b += basis * linearB[p];
+                    }
+                }
+                double scale = (i == 0 && j == 0 ? 1.0 : 2.0) / (width * height);
+                factors[j * componentsX + i] = new double[]{r * scale, g * scale, b * scale};
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        appendBase83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+        double maximumValue;
+        if (factors.length > 1) {
+            double actualMaximum = 0;
+            for (int f = 1; f < factors.length; f++) {
+                for (double component : factors[f]) {
+                    actualMaximum = Math.max(actualMaximum, Math.abs(component));
+                }
+            }
+            int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximumValue = (quantisedMaximum + 1) / 166.0;
+            appendBase83(hash, quantisedMaximum, 1);
+        } else {
+            maximumValue = 1;
+            appendBase83(hash, 0, 1);
+        }
+        double[] dc = factors[0];
+        appendBase83(hash, (linearToSrgb(dc[0]) << 16) | (linearToSrgb(dc[1]) << 8) | linearToSrgb(dc[2]), 4);
+        for (int f = 1; f < factors.length; f++) {
+            double[] ac = factors[f];
+            int value = quantiseAc(ac[0], maximumValue) * 19 * 19
+                    + quantiseAc(ac[1], maximumValue) * 19
+                    + quantiseAc(ac[2], maximumValue);
+            appendBase83(hash, value, 2);
+        }
+        return hash.toString();
+    }
+
+    private static double[] cosines(int component, int size) {
+        double[] values = new double[size];
+        for (int n = 0; n < size; n++) {
+            values[n] = Math.cos(Math.PI * component * n / size);
+        }
+        return values;
+    }
+
+    private static int quantiseAc(double value, double maximumValue) {
+        double normalised = value / maximumValue;
+        double signedRoot = Math.copySign(Math.sqrt(Math.abs(normalised)), normalised);
+        return (int) Math.max(0, Math.min(18, Math.floor(signedRoot * 9 + 9.5)));
+    }
+
+    private static double srgbToLinear(int value) {
+        double v = value / 255.0;
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static int linearToSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void appendBase83(StringBuilder hash, int value, int length) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / (int) Math.pow(83, length - i)) % 83;
+            hash.append(BASE83.charAt(digit));
+        }
+    }
+}
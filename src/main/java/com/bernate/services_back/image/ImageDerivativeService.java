@@ -0,0 +1,492 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.event.ImageStoredEvent;
+import com.bernate.services_back.event.ImageVariantsReadyEvent;
+import com.bernate.services_back.repository.ProductRepository;
+import com.bernate.services_back.repository.ServiceRepository;
+import com.bernate.services_back.search.CatalogKind;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Genera en segundo plano las variantes redimensionadas ({@link ImageVariant}) de cada imagen
+ * subida, en un pool acotado para que una ráfaga de subidas no compita con las peticiones de la
+ * API. Si la cola está llena la imagen se sirve de momento sin variantes: un barrido al arrancar y
+ * cada {@code app.images.derivatives.sweep-interval-seconds} vuelve a encolar las filas que siguen
+ * sin ellas, ya sea por la cola llena, por un fallo, por una parada con trabajos pendientes o por
+ * ser anteriores a las variantes.
+ * <p>
+ * El original se decodifica submuestreado al tamaño mínimo que necesita la variante mayor, así
+ * que una foto de 12 MP no ocupa 48 MB de memoria, y se gira según su orientación EXIF (las
+ * variantes no conservan los metadatos). Cada variante se escribe en un fichero temporal y se
+ * renombra, de modo que nunca se sirve a medio escribir; los renombrados se hacen con el cerrojo
+ * de {@link ImageLocks} y solo si el original sigue en disco, para no dejar variantes huérfanas de
+ * una imagen borrada mientras se generaban. De la miniatura sale también el {@link BlurHash} que
+ * se guarda con la fila.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private final Path uploadRoot;
+    private final float jpegQuality;
+    private final int blurHashComponents;
+    private final long sweepIntervalSeconds;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageLocks imageLocks;
+    private final ProductRepository productRepository;
+    private final ServiceRepository serviceRepository;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService sweeper;
+    /** Imágenes encoladas o en curso, para que el barrido no las repita. */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /** Imágenes que no se pueden procesar (sin original o en un formato desconocido) hasta reiniciar. */
+    private final Set<String> unprocessable = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong originalBytes = new AtomicLong();
+    private final AtomicLong variantBytes = new AtomicLong();
+
+    public ImageDerivativeService(ApplicationEventPublisher eventPublisher,
+                                  ImageLocks imageLocks,
+                                  ProductRepository productRepository,
+                                  ServiceRepository serviceRepository,
+                                  @Value("${app.upload.dir:./uploads_default}") String uploadDir,
+                                  @Value("${app.images.derivatives.threads:2}") int threads,
+                                  @Value("${app.images.derivatives.queue-capacity:100}") int queueCapacity,
+                                  @Value("${app.images.derivatives.jpeg-quality:0.8}") float jpegQuality,
+                                  @Value("${app.images.blurhash.components:4}") int blurHashComponents,
+                                  @Value("${app.images.derivatives.sweep-interval-seconds:300}") long sweepIntervalSeconds) {
+        this.eventPublisher = eventPublisher;
+        this.imageLocks = imageLocks;
+        this.productRepository = productRepository;
+        this.serviceRepository = serviceRepository;
+        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.jpegQuality = jpegQuality;
+        this.blurHashComponents = Math.max(1, Math.min(9, blurHashComponents));
+        this.sweepIntervalSeconds = sweepIntervalSeconds;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ImageThreadFactory("image-derivatives-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new ImageThreadFactory("image-derivatives-sweep-"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageStored(ImageStoredEvent event) {
+        if (!submit(event.kind(), event.filename())) {
+            logger.warn("Cola de imágenes llena: {} se servirá sin variantes hasta el próximo barrido", event.filename());
+        }
+    }
+
+    /**
+     * El primer barrido recoge lo que quedó pendiente en la ejecución anterior.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSweeping() {
+        if (sweepIntervalSeconds > 0) {
+            sweeper.scheduleWithFixedDelay(this::sweepSafely, 0, sweepIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Encola las imágenes de las filas que siguen sin variantes, sin pasar del hueco libre en la
+     * cola: lo que no quepa se recoge en el siguiente barrido.
+     *
+     * @return cuántas imágenes se han encolado.
+     */
+    public int sweep() {
+        int submitted = 0;
+        for (CatalogKind kind : CatalogKind.values()) {
+            int room = executor.getQueue().remainingCapacity();
+            if (room == 0) {
+                break;
+            }
+            // Se piden algunas de más por las que ya están en curso o no se pueden procesar.
+            Limit limit = Limit.of(room + pending.size() + unprocessable.size());
+            List<String> filenames = kind == CatalogKind.PRODUCT
+                    ? productRepository.findImagesAwaitingVariants(limit)
+                    : serviceRepository.findImagesAwaitingVariants(limit);
+            for (String filename : filenames) {
+                String key = key(kind, filename);
+                if (pending.contains(key) || unprocessable.contains(key)) {
+                    continue;
+                }
+                if (!submit(kind, filename)) {
+                    return submitted;
+                }
+                submitted++;
+                requeued.incrementAndGet();
+            }
+        }
+        return submitted;
+    }
+
+    /**
+     * Borra las variantes de una imagen. El original lo gestiona quien lo guardó.
+     */
+    public void deleteVariants(CatalogKind kind, String filename) {
+        Path directory = variantsDirectory(kind);
+        for (ImageVariant variant : ImageVariant.values()) {
+            try {
+                Files.deleteIfExists(directory.resolve(variant.filenameFor(filename)));
+            } catch (IOException e) {
+                logger.warn("No se pudo eliminar la variante {} de {}: {}", variant.key(), filename, e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queued", executor.getQueue().size());
+        result.put("active", executor.getActiveCount());
+        result.put("processed", processed.get());
+        result.put("failed", failed.get());
+        result.put("rejected", rejected.get());
+        result.put("reused", reused.get());
+        result.put("requeued", requeued.get());
+        result.put("unprocessable", unprocessable.size());
+        result.put("originalBytes", originalBytes.get());
+        result.put("variantBytes", variantBytes.get());
+        return result;
+    }
+
+    /**
+     * Los trabajos que sigan en la cola se pierden; el barrido del próximo arranque los recupera.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        executor.shutdown();
+    }
+
+    private void sweepSafely() {
+        try {
+            int submitted = sweep();
+            if (submitted > 0) {
+                logger.info("Barrido de variantes: {} imágenes encoladas de nuevo", submitted);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Error en el barrido de variantes pendientes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return {@code false} si la cola está llena.
+     */
+    private boolean submit(CatalogKind kind, String filename) {
+        String key = key(kind, filename);
+        if (!pending.add(key)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(kind, filename);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void generate(CatalogKind kind, String filename) {
+        Path images = imageDirectory(kind);
+        Path original = images.resolve(filename).normalize();
+        Path directory = variantsDirectory(kind);
+        Map<ImageVariant, Path> temporaries = new EnumMap<>(ImageVariant.class);
+        try {
+            if (!images.equals(original.getParent()) || !Files.isRegularFile(original)) {
+                unprocessable.add(key(kind, filename));
+                logger.warn("Imagen sin original en disco, sin variantes: {}", original);
+                return;
+            }
+            if (reuseExisting(kind, filename, directory)) {
+                return;
+            }
+            BufferedImage decoded = readSubsampled(original, ImageVariant.FULL.getMaxDimension());
+            if (decoded == null) {
+                failed.incrementAndGet();
+                unprocessable.add(key(kind, filename));
+                logger.warn("Formato de imagen no reconocido, sin variantes: {}", original);
+                return;
+            }
+            int orientation = ImageHeader.read(original).map(ImageHeader::orientation).orElse(1);
+            BufferedImage source = orient(decoded, orientation);
+            Files.createDirectories(directory);
+            long written = 0;
+            String blurHash = null;
+            for (ImageVariant variant : ImageVariant.values()) {
+                BufferedImage resized = resize(source, variant.getMaxDimension());
+                Path temporary = writeJpeg(resized, directory);
+                temporaries.put(variant, temporary);
+                written += Files.size(temporary);
+                if (variant == ImageVariant.THUMB) {
+                    blurHash = blurHash(resized);
+                }
+            }
+            synchronized (imageLocks.lockFor(filename)) {
+                // ImageStore borra el original y sus variantes con este mismo cerrojo.
+                if (!Files.exists(original)) {
+                    logger.info("La imagen {} se borró mientras se generaban sus variantes", filename);
+                    return;
+                }
+                for (Map.Entry<ImageVariant, Path> entry : temporaries.entrySet()) {
+                    Files.move(entry.getValue(), directory.resolve(entry.getKey().filenameFor(filename)),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            processed.incrementAndGet();
+            originalBytes.addAndGet(Files.size(original));
+            variantBytes.addAndGet(written);
+            eventPublisher.publishEvent(new ImageVariantsReadyEvent(kind, filename, blurHash));
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            logger.warn("Error al generar las variantes de {}: {}", original, e.getMessage());
+        } finally {
+            for (Path temporary : temporaries.values()) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    logger.warn("No se pudo eliminar el temporal {}: {}", temporary, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Con el almacén por contenido, una imagen ya subida antes tiene sus variantes en disco:
+     * basta con leer la miniatura para recuperar el BlurHash.
+     */
+    private boolean reuseExisting(CatalogKind kind, String filename, Path directory) throws IOException {
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (!Files.exists(directory.resolve(variant.filenameFor(filename)))) {
+                return false;
+            }
+        }
+        BufferedImage thumbnail = ImageIO.read(directory.resolve(ImageVariant.THUMB.filenameFor(filename)).toFile());
+        if (thumbnail == null) {
+            return false;
+        }
+        reused.incrementAndGet();
+        eventPublisher.publishEvent(new ImageVariantsReadyEvent(kind, filename, blurHash(thumbnail)));
+        return true;
+    }
+
+    /**
+     * Decodifica la imagen saltando filas y columnas de modo que su lado mayor quede por encima
+     * de {@code targetDimension} pero lo más cerca posible. Las dimensiones salen de la cabecera.
+     */
+    private static BufferedImage readSubsampled(Path file, int targetDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longest / targetDimension);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Más componentes en el lado largo, como recomienda BlurHash: 4x3 en horizontal y 3x4 en vertical.
+     */
+    private String blurHash(BufferedImage thumbnail) {
+        int shortSide = Math.max(1, blurHashComponents - 1);
+        return thumbnail.getWidth() >= thumbnail.getHeight()
+                ? BlurHash.encode(thumbnail, blurHashComponents, shortSide)
+                : BlurHash.encode(thumbnail, shortSide, blurHashComponents);
+    }
+
+    /**
+     * Aplica la orientación EXIF (1-8) para que las variantes se vean como el original en el navegador.
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean transposed = orientation >= 5;
+        int targetWidth = transposed ? height : width;
+        int targetHeight = transposed ? width : height;
+        int[] source = image.getRGB(0, 0, width, height, null, 0, width);
+        int[] target = new int[source.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int tx;
+                int ty;
+                switch (orientation) {
+                    case 2 -> { tx = width - 1 - x; ty = y; }
+                    case 3 -> { tx = width - 1 - x; ty = height - 1 - y; }
+                    case 4 -> { tx = x; ty = height - 1 - y; }
+                    case 5 -> { tx = y; ty = x; }
+                    case 6 -> { tx = height - 1 - y; ty = x; }
+                    case 7 -> { tx = height - 1 - y; ty = width - 1 - x; }
+                    default -> { tx = y; ty = width - 1 - x; }
+                }
+                target[ty * targetWidth + tx] = source[y * width + x];
+            }
+        }
+        BufferedImage oriented = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
+        oriented.setRGB(0, 0, targetWidth, targetHeight, target, 0, targetWidth);
+        return oriented;
+    }
+
+    /**
+     * Reduce a la mitad mientras sea posible y termina con un último paso bilineal: con un único
+     * salto grande la interpolación bilineal pierde detalle y produce dientes de sierra. El fondo
+     * transparente se rellena de blanco porque JPEG no tiene canal alfa.
+     */
+    private static BufferedImage resize(BufferedImage source, int maxDimension) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * @return el temporal escrito en {@code directory}, que el llamante renombra o borra.
+     */
+    private Path writeJpeg(BufferedImage image, Path directory) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Path temporary = Files.createTempFile(directory, ".variant-", ".tmp");
+        boolean written = false;
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temporary.toFile())) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            written = true;
+            return temporary;
+        } finally {
+            writer.dispose();
+            if (!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    private Path imageDirectory(CatalogKind kind) {
+        return uploadRoot.resolve(kind == CatalogKind.PRODUCT
+                ? MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY
+                : MvcConfig.SERVICE_IMAGE_SUBDIRECTORY);
+    }
+
+    private Path variantsDirectory(CatalogKind kind) {
+        return imageDirectory(kind).resolve(ImageVariant.DIRECTORY);
+    }
+
+    private static String key(CatalogKind kind, String filename) {
+        return kind + "/" + filename;
+    }
+
+    private static final class ImageThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private ImageThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.bernate.services_back.image;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Dimensiones de una imagen leídas solo de su cabecera (JPEG, PNG y GIF), sin decodificar el
+ * mapa de bits: en un JPEG se saltan los segmentos hasta el primer SOF, así que normalmente
+ * basta con leer unos pocos KB.
+ * <p>
+ * {@code width} y {@code height} son las de visualización: si la orientación EXIF indica una
+ * rotación de 90 o 270 grados, ya vienen intercambiadas.
+ *
+ * @param orientation valor EXIF (1-8); 1 cuando no hay o no es un JPEG.
+ */
+public record ImageHeader(int width, int height, int orientation) {
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    public static Optional<ImageHeader> read(Path file) {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file), 8192)) {
+            return read(input);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static Optional<ImageHeader> read(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        int first = input.readUnsignedByte();
+        int second = input.readUnsignedByte();
+        try {
+            if (first == 0xFF && second == 0xD8) {
+                return readJpeg(input);
+            }
+            if (first == 0x89 && second == 'P') {
+                return readPng(input);
+            }
+            if (first == 'G' && second == 'I') {
+                return readGif(input);
+            }
+        } catch (EOFException e) {
+            return Optional.empty();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Las rotaciones de 90 y 270 grados (orientaciones 5 a 8) intercambian ancho y alto.
+     */
+    public boolean isTransposed() {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    private static Optional<ImageHeader> readJpeg(DataInputStream input) throws IOException {
+        int orientation = 1;
+        while (true) {
+            int marker = input.readUnsignedByte();
+            if (marker != 0xFF) {
+                return Optional.empty();
+            }
+            while (marker == 0xFF) {
+                marker = input.readUnsignedByte();
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return Optional.empty();
+            }
+            int length = input.readUnsignedShort() - 2;
+            if (length < 0) {
+                return Optional.empty();
+            }
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                input.readUnsignedByte();
+                int height = input.readUnsignedShort();
+                int width = input.readUnsignedShort();
+                return of(width, height, orientation);
+            }
+            if (marker == 0xE1 && orientation == 1) {
+                byte[] segment = new byte[length];
+                input.readFully(segment);
+                orientation = exifOrientation(segment);
+            } else {
+                input.skipNBytes(length);
+            }
+        }
+    }
+
+    private static Optional<ImageHeader> readPng(DataInputStream input) throws IOException {
+        // Resto de la firma (6 bytes), longitud del bloque (4) y tipo "IHDR" (4).
+        input.skipNBytes(10);
+        if (input.readInt() != 0x49484452) {
+            return Optional.empty();
+        }
+        int width = input.readInt();
+        int height = input.readInt();
+        return of(width, height, 1);
+    }
+
+    private static Optional<ImageHeader> readGif(DataInputStream input) throws IOException {
+        input.skipNBytes(4);
+        int width = input.readUnsignedByte() | (input.readUnsignedByte() << 8);
+        int height = input.readUnsignedByte() | (input.readUnsignedByte() << 8);
+        return of(width, height, 1);
+    }
+
+    private static Optional<ImageHeader> of(int width, int height, int orientation) {
+        if (width <= 0 || height <= 0) {
+            return Optional.empty();
+        }
+        ImageHeader header = new ImageHeader(width, height, orientation);
+        return Optional.of(header.isTransposed() ? new ImageHeader(height, width, orientation) : header);
+    }
+
+    /**
+     * Busca la etiqueta de orientación en el IFD0 del bloque EXIF de un segmento APP1.
+     */
+    private static int exifOrientation(byte[] segment) {
+        if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i'
+                || segment[3] != 'f' || segment[4] != 0 || segment[5] != 0) {
+            return 1;
+        }
+        int tiff = 6;
+        boolean littleEndian = segment[tiff] == 'I';
+        int ifd = tiff + readInt(segment, tiff + 4, littleEndian);
+        if (ifd < tiff || ifd + 2 > segment.length) {
+            return 1;
+        }
+        int entries = readShort(segment, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                return 1;
+            }
+            if (readShort(segment, entry, littleEndian) == EXIF_ORIENTATION_TAG) {
+                int value = readShort(segment, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int a = data[offset] & 0xFF;
+        int b = data[offset + 1] & 0xFF;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean littleEndian) {
+        int high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        int low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+}
@@ -0,0 +1,31 @@
+package com.bernate.services_back.image;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Cerrojos por hash de imagen, compartidos por {@link ImageStore} al colocar y borrar el original
+ * y por {@link ImageDerivativeService} al colocar las variantes: así una variante no se renombra a
+ * su sitio después de que su original se haya borrado.
+ */
+@Component
+public class ImageLocks {
+
+    private static final int STRIPES = 64;
+
+    private final Object[] locks = new Object[STRIPES];
+
+    public ImageLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * El mismo cerrojo para el hash y para su nombre de fichero ({@code <hash>.<ext>}).
+     */
+    public Object lockFor(String hashOrFilename) {
+        int dot = hashOrFilename.indexOf('.');
+        String hash = dot >= 0 ? hashOrFilename.substring(0, dot) : hashOrFilename;
+        return locks[Math.floorMod(hash.hashCode(), STRIPES)];
+    }
+}
@@ -0,0 +1,196 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.search.CatalogKind;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Localiza las imágenes que sirve {@code ImageController} en dos niveles: una caché en memoria
+ * acotada por bytes para las más pedidas (Caffeine admite por frecuencia, así que una imagen vista
+ * una sola vez no desaloja a las populares) y el disco para el resto, que se envía sin copiarlo
+ * al heap. Solo entran en memoria los ficheros pequeños (miniaturas y tarjetas), que son los que
+ * más se repiten en los listados.
+ * <p>
+ * Los nombres por contenido ({@code <sha-256>.<ext>} y sus variantes) no cambian nunca de bytes,
+ * así que su ETag es el propio hash y se pueden cachear como inmutables. Las imágenes anteriores
+ * al almacén por contenido usan tamaño y fecha de modificación.
+ */
+@Service
+public class ImageServingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageServingService.class);
+
+    private static final Pattern SAFE_FILENAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,127}");
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("([0-9a-f]{64})(-[a-z]+)?(\\.[a-z0-9]{1,5})?");
+
+    /**
+     * Imagen lista para enviar. {@code content} es {@code null} cuando se sirve desde disco.
+     */
+    public record ServedImage(Path path, long length, String etag, long lastModified, boolean immutable,
+                              String contentType, byte[] content) {
+        public boolean inMemory() {
+            return content != null;
+        }
+    }
+
+    private final Path uploadRoot;
+    private final long memoryMaxFileBytes;
+    private final Cache<Path, ServedImage> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong sendfile = new AtomicLong();
+    private final AtomicLong bytesFromMemory = new AtomicLong();
+    private final AtomicLong bytesFromDisk = new AtomicLong();
+
+    public ImageServingService(@Value("${app.upload.dir:./uploads_default}") String uploadDir,
+                               @Value("${app.images.serving.memory-bytes:67108864}") long memoryBytes,
+                               @Value("${app.images.serving.memory-max-file-bytes:524288}") long memoryMaxFileBytes) {
+        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.memoryMaxFileBytes = memoryMaxFileBytes;
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(memoryBytes)
+                .weigher((Path path, ServedImage image) -> image.content().length)
+                .recordStats()
+                .build();
+        logger.info("Imágenes servidas desde {} con {} bytes en memoria (ficheros de hasta {} bytes)",
+                uploadRoot, memoryBytes, memoryMaxFileBytes);
+    }
+
+    /**
+     * @param subdirectory {@link MvcConfig#PRODUCT_IMAGE_SUBDIRECTORY} o {@link MvcConfig#SERVICE_IMAGE_SUBDIRECTORY}.
+     * @param variant      si se pide una variante del subdirectorio {@value ImageVariant#DIRECTORY}.
+     */
+    public Optional<ServedImage> find(String subdirectory, boolean variant, String filename) {
+        if (!isImageDirectory(subdirectory) || filename == null || !SAFE_FILENAME.matcher(filename).matches()) {
+            notFound.incrementAndGet();
+            return Optional.empty();
+        }
+        Path directory = uploadRoot.resolve(subdirectory);
+        Path path = (variant ? directory.resolve(ImageVariant.DIRECTORY) : directory).resolve(filename);
+
+        ServedImage cached = memory.getIfPresent(path);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return Optional.of(cached);
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                notFound.incrementAndGet();
+                return Optional.empty();
+            }
+            ServedImage image = describe(path, filename, attributes, null);
+            if (image.length() <= memoryMaxFileBytes) {
+                image = describe(path, filename, attributes, Files.readAllBytes(path));
+                memory.put(path, image);
+            }
+            diskHits.incrementAndGet();
+            return Optional.of(image);
+        } catch (NoSuchFileException e) {
+            notFound.incrementAndGet();
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("No se pudo leer la imagen {}: {}", path, e.getMessage());
+            notFound.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Quita de memoria una imagen borrada del disco, junto con sus variantes.
+     */
+    public void evict(CatalogKind kind, String filename) {
+        Path directory = uploadRoot.resolve(kind == CatalogKind.PRODUCT
+                ? MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY
+                : MvcConfig.SERVICE_IMAGE_SUBDIRECTORY);
+        memory.invalidate(directory.resolve(filename));
+        for (ImageVariant variant : ImageVariant.values()) {
+            memory.invalidate(directory.resolve(ImageVariant.DIRECTORY).resolve(variant.filenameFor(filename)));
+        }
+    }
+
+    public void recordNotModified() {
+        notModified.incrementAndGet();
+    }
+
+    public void recordTransfer(ServedImage image, long bytes, boolean isPartial, boolean usedSendfile) {
+        (image.inMemory() ? bytesFromMemory : bytesFromDisk).addAndGet(bytes);
+        if (isPartial) {
+            partial.incrementAndGet();
+        }
+        if (usedSendfile) {
+            sendfile.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long memoryCount = memoryHits.get();
+        long diskCount = diskHits.get();
+        long found = memoryCount + diskCount;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", found + notFound.get());
+        result.put("memoryHits", memoryCount);
+        result.put("memoryHitRate", found == 0 ? 0.0 : (double) memoryCount / found);
+        result.put("diskHits", diskCount);
+        result.put("diskHitRate", found == 0 ? 0.0 : (double) diskCount / found);
+        result.put("notFound", notFound.get());
+        result.put("notModified", notModified.get());
+        result.put("notModifiedRate", found == 0 ? 0.0 : (double) notModified.get() / found);
+        result.put("partial", partial.get());
+        result.put("sendfile", sendfile.get());
+        result.put("bytesFromMemory", bytesFromMemory.get());
+        result.put("bytesFromDisk", bytesFromDisk.get());
+        result.put("memoryEntries", memory.estimatedSize());
+        result.put("memoryBytes", memory.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        result.put("memoryEvictions", memory.stats().evictionCount());
+        return result;
+    }
+
+    private static boolean isImageDirectory(String subdirectory) {
+        return MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY.equals(subdirectory)
+                || MvcConfig.SERVICE_IMAGE_SUBDIRECTORY.equals(subdirectory);
+    }
+
+    private static ServedImage describe(Path path, String filename, BasicFileAttributes attributes, byte[] content) {
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        var contentAddressed = CONTENT_ADDRESSED.matcher(filename);
+        boolean immutable = contentAddressed.matches();
+        String etag = immutable
+                ? "\"" + contentAddressed.group(1) + (contentAddressed.group(2) == null ? "" : contentAddressed.group(2)) + "\""
+                : "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+        return new ServedImage(path, attributes.size(), etag, lastModified, immutable, contentTypeOf(filename), content);
+    }
+
+    private static String contentTypeOf(String filename) {
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return switch (extension) {
+            case "jpg", "jpeg" -> "image/jpeg";
+            case "png" -> "image/png";
+            case "gif" -> "image/gif";
+            case "webp" -> "image/webp";
+            default -> "application/octet-stream";
+        };
+    }
+}
@@ -0,0 +1,357 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.event.ImageReleasedEvent;
+import com.bernate.services_back.exception.BadRequestException;
+import com.bernate.services_back.repository.StoredImageRepository;
+import com.bernate.services_back.search.CatalogKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.io.OutputStream;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Almacén de imágenes por contenido: cada fichero se llama como el SHA-256 de sus bytes, calculado
+ * mientras se copia la subida, así que la misma foto subida para diez anuncios (o reenviada en
+ * cada actualización) ocupa un único fichero. {@link com.bernate.services_back.model.StoredImage}
+ * lleva la cuenta de referencias y el fichero, con sus variantes, se borra cuando llega a cero.
+ * <p>
+ * Las subidas se reciben en una sola pasada ({@link #receive}): los bytes van directamente a un
+ * temporal del directorio definitivo mientras se calcula el hash y se comprueba el tamaño, y
+ * {@link #commit} solo renombra. Recibir no necesita transacción, así que una subida lenta no
+ * retiene una conexión a la base de datos.
+ * <p>
+ * La cuenta se actualiza en la transacción del llamante; el borrado se hace tras la confirmación
+ * y solo si la fila sigue a cero. Guardar y borrar el mismo contenido se serializan con un cerrojo
+ * por hash ({@link ImageLocks}), de modo que una subida nunca encuentra el fichero a punto de
+ * desaparecer. Un fichero colocado por una transacción que acaba deshaciéndose se borra al
+ * terminar esta, salvo que otra subida del mismo contenido lo haya reutilizado entretanto:
+ * entonces pasa a ser suyo.
+ */
+@Service
+public class ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStore.class);
+
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,5})?");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,5}");
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Imagen ya escrita en un temporal junto a su destino, pendiente de {@link #commit}.
+     */
+    public record ReceivedImage(CatalogKind kind, Path temporary, String hash, String extension, long size) {
+    }
+
+    private final StoredImageRepository storedImageRepository;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ImageLocks imageLocks;
+    private final ImageServingService imageServingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate cleanupTransaction;
+    private final Path uploadRoot;
+    private final long maxUploadBytes;
+    /**
+     * Ficheros colocados por transacciones aún abiertas, con la sincronización de la que lo borra
+     * si se deshace.
+     */
+    private final Map<Path, TransactionSynchronization> provisional = new ConcurrentHashMap<>();
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+
+    public ImageStore(StoredImageRepository storedImageRepository,
+                      ImageDerivativeService imageDerivativeService,
+                      ImageLocks imageLocks,
+                      ImageServingService imageServingService,
+                      ApplicationEventPublisher eventPublisher,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${app.upload.dir:./uploads_default}") String uploadDir,
+                      @Value("${app.images.max-upload-bytes:10485760}") long maxUploadBytes) {
+        this.storedImageRepository = storedImageRepository;
+        this.imageDerivativeService = imageDerivativeService;
+        this.imageLocks = imageLocks;
+        this.imageServingService = imageServingService;
+        this.eventPublisher = eventPublisher;
+        this.cleanupTransaction = new TransactionTemplate(transactionManager);
+        this.cleanupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    /**
+     * Guarda la imagen de una subida multipart (o reutiliza la idéntica ya guardada) y suma una referencia.
+     *
+     * @return el nombre del fichero, relativo al directorio de imágenes de {@code kind}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String store(CatalogKind kind, MultipartFile file) {
+        ReceivedImage received = null;
+        try (InputStream input = file.getInputStream()) {
+            received = receive(kind, input, extensionOf(file.getOriginalFilename()), file.getSize());
+            return commit(received);
+        } catch (IOException e) {
+            throw new RuntimeException("Falló al guardar la imagen " + file.getOriginalFilename(), e);
+        } finally {
+            discard(received);
+        }
+    }
+
+    /**
+     * Copia {@code input} a un temporal del directorio de destino calculando el SHA-256 a la vez.
+     * Se corta en cuanto se supera {@code app.images.max-upload-bytes}, sin esperar al final.
+     *
+     * @param declaredLength longitud anunciada (Content-Length), o -1 si no se conoce.
+     */
+    public ReceivedImage receive(CatalogKind kind, InputStream input, String extension, long declaredLength)
+            throws IOException {
+        if (declaredLength > maxUploadBytes) {
+            throw new MaxUploadSizeExceededException(maxUploadBytes);
+        }
+        Path directory = directoryFor(kind);
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, ".upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            long size = 0;
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxUploadBytes) {
+                        throw new MaxUploadSizeExceededException(maxUploadBytes);
+                    }
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new BadRequestException("La imagen está vacía.");
+            }
+            return new ReceivedImage(kind, temporary, HexFormat.of().formatHex(digest.digest()), extension, size);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Coloca la imagen recibida con su nombre definitivo (o la descarta si ya existía) y suma una referencia.
+     *
+     * @return el nombre del fichero, relativo al directorio de imágenes.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String commit(ReceivedImage received) {
+        try {
+            return place(received.kind(), received.hash(), received.extension(), received.size(), received.temporary());
+        } catch (IOException e) {
+            throw new RuntimeException("Falló al guardar la imagen " + received.hash(), e);
+        }
+    }
+
+    /**
+     * Borra el temporal si no llegó a colocarse. Se puede llamar siempre, también tras {@link #commit}.
+     */
+    public void discard(ReceivedImage received) {
+        if (received != null) {
+            deleteQuietly(received.temporary());
+        }
+    }
+
+    /**
+     * Extensión para una subida directa según su Content-Type: solo los formatos que el resto
+     * del proceso (cabecera, variantes) sabe leer.
+     */
+    public static String extensionForContentType(String contentType) {
+        String type = contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case "image/jpeg" -> ".jpg";
+            case "image/png" -> ".png";
+            case "image/gif" -> ".gif";
+            default -> throw new BadRequestException("Tipo de imagen no admitido: '" + contentType
+                    + "'. Tipos admitidos: image/jpeg, image/png, image/gif.");
+        };
+    }
+
+    /**
+     * Resta una referencia a la imagen. El fichero se borra tras confirmar la transacción si ya
+     * no la usa nadie.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(CatalogKind kind, String filename) {
+        if (!StringUtils.hasText(filename)) {
+            return;
+        }
+        boolean tracked = storedImageRepository.release(kind, filename) > 0;
+        eventPublisher.publishEvent(new ImageReleasedEvent(kind, filename, tracked));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageReleased(ImageReleasedEvent event) {
+        if (!event.tracked()) {
+            // Una imagen con nombre de hash sin fila a la que restar no se toca: otra subida
+            // puede estar registrándola ahora mismo.
+            if (!CONTENT_ADDRESSED.matcher(event.filename()).matches()) {
+                synchronized (lockFor(event.filename())) {
+                    deleteFiles(event.kind(), event.filename());
+                }
+            }
+            return;
+        }
+        synchronized (lockFor(event.filename())) {
+            Integer removed = cleanupTransaction.execute(status ->
+                    storedImageRepository.deleteUnreferenced(event.kind(), event.filename()));
+            if (removed != null && removed > 0) {
+                deleteFiles(event.kind(), event.filename());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stored", stored.get());
+        result.put("deduplicated", deduplicated.get());
+        result.put("deduplicatedBytes", deduplicatedBytes.get());
+        result.put("deleted", deleted.get());
+        return result;
+    }
+
+    /**
+     * Registra la referencia antes de colocar el fichero: si un borrado concurrente llega
+     * después, la fila ya no está a cero y no borra nada; si llegó antes, el fichero se vuelve a
+     * colocar aquí.
+     */
+    private String place(CatalogKind kind, String hash, String extension, long size, Path temporary)
+            throws IOException {
+        synchronized (lockFor(hash)) {
+            storedImageRepository.acquire(kind.name(), hash, hash + extension, size);
+            String filename = storedImageRepository.findFilename(kind, hash).orElse(hash + extension);
+            Path target = directoryFor(kind).resolve(filename);
+            if (Files.exists(target)) {
+                deduplicated.incrementAndGet();
+                deduplicatedBytes.addAndGet(size);
+                if (provisional.remove(target) != null) {
+                    // Lo colocó otra transacción sin confirmar: si ella se deshace, el fichero sigue
+                    // haciendo falta para esta.
+                    deleteOnRollback(kind, filename, target);
+                }
+            } else {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+                stored.incrementAndGet();
+                deleteOnRollback(kind, filename, target);
+            }
+            return filename;
+        }
+    }
+
+    /**
+     * Al deshacerse la transacción, la referencia registrada en {@link #place} desaparece con ella;
+     * sin esto el fichero recién colocado quedaría en disco sin fila que lo cuente. Con un
+     * resultado desconocido no se borra nada: la transacción pudo haberse confirmado.
+     */
+    private void deleteOnRollback(CatalogKind kind, String filename, Path target) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronization cleanup = new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (lockFor(filename)) {
+                    if (provisional.remove(target, this) && status == STATUS_ROLLED_BACK) {
+                        logger.info("Se elimina la imagen {} colocada por una transacción deshecha", filename);
+                        deleteFiles(kind, filename);
+                    }
+                }
+            }
+        };
+        provisional.put(target, cleanup);
+        TransactionSynchronizationManager.registerSynchronization(cleanup);
+    }
+
+    private void deleteFiles(CatalogKind kind, String filename) {
+        Path directory = directoryFor(kind);
+        Path file = directory.resolve(filename).normalize();
+        if (!directory.equals(file.getParent())) {
+            logger.warn("Se ignora el borrado de una imagen fuera de su directorio: {}", filename);
+            return;
+        }
+        try {
+            if (Files.deleteIfExists(file)) {
+                deleted.incrementAndGet();
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudo eliminar la imagen {}: {}", file, e.getMessage());
+        }
+        imageDerivativeService.deleteVariants(kind, filename);
+        imageServingService.evict(kind, filename);
+    }
+
+    private Path directoryFor(CatalogKind kind) {
+        return uploadRoot.resolve(kind == CatalogKind.PRODUCT
+                ? MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY
+                : MvcConfig.SERVICE_IMAGE_SUBDIRECTORY);
+    }
+
+    private Object lockFor(String hashOrFilename) {
+        return imageLocks.lockFor(hashOrFilename);
+    }
+
+    private static String extensionOf(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("No se pudo eliminar el temporal {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tamaños que se generan para cada imagen subida, por su lado mayor en píxeles. Las variantes se
+ * guardan en JPEG progresivo junto al original, en el subdirectorio {@value #DIRECTORY}.
+ */
+public enum ImageVariant {
+    THUMB(160),
+    CARD(480),
+    FULL(1280);
+
+    public static final String DIRECTORY = "variants";
+
+    private final int maxDimension;
+
+    ImageVariant(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Nombre del fichero de la variante: {@code <original sin extensión>-<variante>.jpg}.
+     */
+    public String filenameFor(String original) {
+        int dot = original.lastIndexOf('.');
+        String base = dot > 0 ? original.substring(0, dot) : original;
+        return base + "-" + key() + ".jpg";
+    }
+
+    /**
+     * URLs públicas de todas las variantes. Mientras no estén listas, todas apuntan al original.
+     *
+     * @param subdirectory {@link MvcConfig#PRODUCT_IMAGE_SUBDIRECTORY} o {@link MvcConfig#SERVICE_IMAGE_SUBDIRECTORY}.
+     */
+    public static Map<String, String> urlsFor(String subdirectory, String original, boolean ready) {
+        String base = MvcConfig.BASE_URL_UPLOAD_PATH + "/" + subdirectory + "/";
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (ImageVariant variant : values()) {
+            urls.put(variant.key(), ready
+                    ? base + DIRECTORY + "/" + variant.filenameFor(original)
+                    : base + original);
+        }
+        return urls;
+    }
+}
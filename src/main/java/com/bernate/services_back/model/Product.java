@@ -7,6 +7,9 @@ import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDateTime;
 
 
 
@@ -20,7 +23,13 @@ import lombok.NoArgsConstructor;
 
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_estado_categoria_price", columnList = "estado, categoria_id, price"),
+        @Index(name = "idx_products_categoria_price", columnList = "categoria_id, price"),
+        @Index(name = "idx_products_ofertado_por", columnList = "ofertado_por_id, id"),
+        @Index(name = "idx_products_price", columnList = "price, id")
+})
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 
@@ -53,6 +62,27 @@ public class Product {
     @Column(length = 255)
     private String imagenes;
 
+    /**
+     * Si las variantes redimensionadas de {@code imagenes} ya están generadas. Hasta entonces
+     * el DTO apunta al original. Junto con {@code imageBlurHash} lo marca una actualización
+     * masiva sin subir la versión; con {@code @DynamicUpdate}, una edición concurrente que no
+     * cambia la imagen no lo vuelve a escribir con el valor que había cargado.
+     */
+    @Column(name = "image_variants_ready", nullable = false, columnDefinition = "boolean default false")
+    private boolean imageVariantsReady;
+
+    /**
+     * Dimensiones de visualización de la imagen, leídas de su cabecera al subirla.
+     */
+    @Column(name = "image_width")
+    private Integer imageWidth;
+
+    @Column(name = "image_height")
+    private Integer imageHeight;
+
+    @Column(name = "image_blur_hash", length = 64)
+    private String imageBlurHash;
+
 
     @Enumerated(EnumType.STRING)
     @Column(length = 20, nullable = true)
@@ -70,6 +100,23 @@ public class Product {
     @JoinColumn(name = "ofertado_por_id", referencedColumnName = "id", nullable = false)
     private User ofertadoPor;
 
+    /**
+     * Versión para el bloqueo optimista y el ETag. El valor por defecto cubre las filas
+     * existentes cuando {@code ddl-auto=update} añade la columna.
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
 
     public Product(String name, String description, Double price, Integer stock, String imagenes, EstadoOferta estado, Category categoria, User ofertadoPor) {
         this.name = name;
@@ -10,7 +10,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "ratings")
+@Table(name = "ratings", indexes = {
+        @Index(name = "idx_ratings_product_created", columnList = "product_id, created_at DESC, id DESC"),
+        @Index(name = "idx_ratings_service_created", columnList = "service_id, created_at DESC, id DESC"),
+        @Index(name = "idx_ratings_rater_created", columnList = "rater_user_id, created_at DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 public class Rating {
@@ -7,9 +7,18 @@ import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "services")
+@Table(name = "services", indexes = {
+        @Index(name = "idx_services_estado_category_price", columnList = "estado, category_id, estimated_price"),
+        @Index(name = "idx_services_category_price", columnList = "category_id, estimated_price"),
+        @Index(name = "idx_services_offered_by", columnList = "offered_by_user_id, id"),
+        @Index(name = "idx_services_price", columnList = "estimated_price, id")
+})
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 public class ServiceEntity {
@@ -36,6 +45,27 @@ public class ServiceEntity {
     @Column(length = 255, nullable = true)
     private String imagenes;
 
+    /**
+     * Si las variantes redimensionadas de {@code imagenes} ya están generadas. Hasta entonces
+     * el DTO apunta al original. Junto con {@code imageBlurHash} lo marca una actualización
+     * masiva sin subir la versión; con {@code @DynamicUpdate}, una edición concurrente que no
+     * cambia la imagen no lo vuelve a escribir con el valor que había cargado.
+     */
+    @Column(name = "image_variants_ready", nullable = false, columnDefinition = "boolean default false")
+    private boolean imageVariantsReady;
+
+    /**
+     * Dimensiones de visualización de la imagen, leídas de su cabecera al subirla.
+     */
+    @Column(name = "image_width")
+    private Integer imageWidth;
+
+    @Column(name = "image_height")
+    private Integer imageHeight;
+
+    @Column(name = "image_blur_hash", length = 64)
+    private String imageBlurHash;
+
     @NotNull(message = "El estado de la oferta es obligatorio")
     @Enumerated(EnumType.STRING)
     @Column(length = 20, nullable = false)
@@ -51,6 +81,23 @@ public class ServiceEntity {
     @JoinColumn(name = "offered_by_user_id", referencedColumnName = "id", nullable = false)
     private User ofertadoPor;
 
+    /**
+     * Versión para el bloqueo optimista y el ETag. El valor por defecto cubre las filas
+     * existentes cuando {@code ddl-auto=update} añade la columna.
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
 
     public ServiceEntity(String name, String description, Double estimatedPrice, String imagenes, EstadoOferta estado, Category categoria, User ofertadoPor) {
         this.name = name;
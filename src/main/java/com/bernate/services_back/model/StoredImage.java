@@ -0,0 +1,46 @@
+package com.bernate.services_back.model;
+
+import com.bernate.services_back.search.CatalogKind;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fichero de imagen guardado por su contenido: {@code filename} es el SHA-256 del fichero más su
+ * extensión, y {@code referenceCount} cuenta los productos o servicios que lo usan. El fichero se
+ * borra cuando la cuenta llega a cero.
+ */
+@Entity
+@Table(name = "stored_images", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stored_images_kind_hash", columnNames = {"kind", "hash"}),
+        @UniqueConstraint(name = "uk_stored_images_kind_filename", columnNames = {"kind", "filename"})
+})
+@Data
+@NoArgsConstructor
+public class StoredImage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private CatalogKind kind;
+
+    @Column(length = 64, nullable = false)
+    private String hash;
+
+    @Column(length = 80, nullable = false)
+    private String filename;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "reference_count", nullable = false)
+    private int referenceCount;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
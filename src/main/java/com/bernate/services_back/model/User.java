@@ -61,6 +61,9 @@ public class User {
     @Column(length = 100)
     private String roles;
 
+    @Column(name = "token_version")
+    private Integer tokenVersion;
+
 
 
 
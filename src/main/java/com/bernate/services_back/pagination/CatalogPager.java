@@ -0,0 +1,154 @@
+package com.bernate.services_back.pagination;
+
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.dto.CountedPage;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.CatalogVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
+
+/**
+ * Listados paginados de productos y servicios con el total según la {@link CountStrategy} pedida.
+ * La página se lee siempre sin COUNT (una fila de más indica si hay siguiente) y el total sale
+ * después de la estrategia. Cuando la página no está llena el total exacto ya se conoce y no se
+ * consulta nada más, sea cual sea la estrategia.
+ */
+@Component
+public class CatalogPager {
+
+    private record CountKey(CatalogKind kind, String query, long catalogVersion) {
+    }
+
+    private static final String FETCH_GRAPH_HINT = "jakarta.persistence.fetchgraph";
+
+    private final EntityManager entityManager;
+    private final CatalogVersion catalogVersion;
+    private final CountStrategy defaultStrategy;
+    private final Cache<CountKey, Long> counts;
+
+    public CatalogPager(EntityManager entityManager,
+                        CatalogVersion catalogVersion,
+                        @Value("${app.pagination.count-strategy:cached}") String defaultStrategy,
+                        @Value("${app.pagination.count-cache.max-entries:10000}") long maxCachedCounts) {
+        this.entityManager = entityManager;
+        this.catalogVersion = catalogVersion;
+        CountStrategy configured = CountStrategy.parse(defaultStrategy);
+        this.defaultStrategy = configured != null ? configured : CountStrategy.EXACT;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxCachedCounts)
+                .build();
+    }
+
+    /**
+     * @param countQuery identifica el filtro para la caché de recuentos (misma cadena, mismo total).
+     * @param estimate   estimación del planificador, si la hay para este filtro.
+     */
+    public <T> CountedPage<T> page(JpaSpecificationExecutor<T> repository, Class<T> entityType,
+                                   List<String> fetchedAssociations, CatalogKind kind, Specification<T> spec,
+                                   Pageable pageable, CountStrategy requested, String countQuery,
+                                   Supplier<OptionalLong> estimate) {
+        CountStrategy strategy = requested != null ? requested : defaultStrategy;
+        List<T> rows = fetchRows(entityType, fetchedAssociations, spec, pageable);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<T> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        long seen = pageable.getOffset() + content.size();
+
+        if (!hasNext && (!content.isEmpty() || pageable.getOffset() == 0)) {
+            return new CountedPage<>(content, pageable, seen, CountStrategy.EXACT);
+        }
+        long lowerBound = seen + (hasNext ? 1 : 0);
+        return switch (strategy) {
+            case EXACT -> new CountedPage<>(content, pageable, repository.count(spec), CountStrategy.EXACT);
+            case CACHED -> new CountedPage<>(content, pageable, cachedCount(repository, kind, spec, countQuery),
+                    CountStrategy.CACHED);
+            case ESTIMATED -> {
+                OptionalLong estimated = estimate.get();
+                yield estimated.isPresent()
+                        ? new CountedPage<>(content, pageable, Math.max(estimated.getAsLong(), lowerBound),
+                        CountStrategy.ESTIMATED)
+                        : new CountedPage<>(content, pageable, cachedCount(repository, kind, spec, countQuery),
+                        CountStrategy.CACHED);
+            }
+            case NONE -> new CountedPage<>(content, pageable, lowerBound, CountStrategy.NONE);
+        };
+    }
+
+    private <T> long cachedCount(JpaSpecificationExecutor<T> repository, CatalogKind kind, Specification<T> spec,
+                                 String countQuery) {
+        CountKey key = new CountKey(kind, countQuery, catalogVersion.current());
+        return counts.get(key, k -> repository.count(spec));
+    }
+
+    /**
+     * Todos los ids que cumplen el filtro, sin paginar ni cargar entidades, para calcular las
+     * facetas sobre el mismo conjunto que el listado.
+     */
+    public <T> List<Long> ids(Class<T> entityType, Specification<T> spec) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root.get("id"));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    /**
+     * Clave de recuento de una búsqueda de texto: la misma que usa la consulta LIKE, sin
+     * plegar acentos.
+     */
+    public static String textKey(String searchTerm) {
+        return "q:" + searchTerm.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static String filterKey(String searchTerm, CatalogFilter filter) {
+        return (searchTerm != null ? textKey(searchTerm) : "") + "|c:" + filter.getCategoryName()
+                + "|s:" + filter.getSeller() + "|e:" + filter.getEstado()
+                + "|p:" + filter.getMinPrice() + "-" + filter.getMaxPrice();
+    }
+
+    /**
+     * La página más una fila, con las asociaciones indicadas cargadas en la misma sentencia
+     * (lo mismo que hace {@code @EntityGraph} en los métodos del repositorio).
+     */
+    private <T> List<T> fetchRows(Class<T> entityType, List<String> fetchedAssociations, Specification<T> spec,
+                                  Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = builder.createQuery(entityType);
+        Root<T> root = query.from(entityType);
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root);
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+        }
+        EntityGraph<T> graph = entityManager.createEntityGraph(entityType);
+        graph.addAttributeNodes(fetchedAssociations.toArray(String[]::new));
+        return entityManager.createQuery(query)
+                .setHint(FETCH_GRAPH_HINT, graph)
+                .setFirstResult(Math.toIntExact(pageable.getOffset()))
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+    }
+}
@@ -0,0 +1,39 @@
+package com.bernate.services_back.pagination;
+
+import com.bernate.services_back.exception.BadRequestException;
+import org.springframework.data.domain.Sort;
+
+import java.util.Locale;
+
+/**
+ * Órdenes admitidos en los listados de productos y servicios ({@code ?sort=price_asc}, ...).
+ * Todos desempatan por id descendente para que la paginación sea estable.
+ */
+public enum CatalogSort {
+    PRICE_ASC,
+    PRICE_DESC,
+    RECENT;
+
+    /**
+     * @return {@code null} si no se pidió ningún orden.
+     */
+    public static CatalogSort parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Orden no válido: '" + value + "'. Valores admitidos: price_asc, price_desc, recent.");
+        }
+    }
+
+    public Sort toSort(String priceProperty) {
+        Sort byId = Sort.by(Sort.Direction.DESC, "id");
+        return switch (this) {
+            case PRICE_ASC -> Sort.by(Sort.Direction.ASC, priceProperty).and(byId);
+            case PRICE_DESC -> Sort.by(Sort.Direction.DESC, priceProperty).and(byId);
+            case RECENT -> byId;
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.bernate.services_back.pagination;
+
+import com.bernate.services_back.dto.CountedPage;
+import com.bernate.services_back.exception.BadRequestException;
+import org.springframework.data.domain.Page;
+
+import java.util.Locale;
+
+/**
+ * Cómo se obtiene el total de un listado paginado ({@code ?count=cached}, ...):
+ * <ul>
+ *     <li>{@code EXACT}: un COUNT con el mismo filtro en cada petición.</li>
+ *     <li>{@code CACHED}: el COUNT exacto, guardado por consulta hasta el siguiente cambio del catálogo.</li>
+ *     <li>{@code ESTIMATED}: la estimación del planificador de PostgreSQL, sin recorrer filas.</li>
+ *     <li>{@code NONE}: sin total; solo se sabe si hay página siguiente.</li>
+ * </ul>
+ */
+public enum CountStrategy {
+    EXACT,
+    CACHED,
+    ESTIMATED,
+    NONE;
+
+    /**
+     * Cabecera de respuesta con la estrategia que produjo el total.
+     */
+    public static final String HEADER = "X-Count-Strategy";
+
+    /**
+     * @return {@code null} si no se pidió ninguna estrategia.
+     */
+    public static CountStrategy parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Estrategia de recuento no válida: '" + value
+                    + "'. Valores admitidos: exact, cached, estimated, none.");
+        }
+    }
+
+    public String headerValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Las páginas que no pasan por {@code CatalogPager} (índice en memoria, texto completo de
+     * PostgreSQL) traen siempre su total exacto.
+     */
+    public static CountStrategy of(Page<?> page) {
+        return page instanceof CountedPage<?> counted ? counted.getCountStrategy() : EXACT;
+    }
+}
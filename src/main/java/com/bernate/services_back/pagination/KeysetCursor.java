@@ -0,0 +1,57 @@
+package com.bernate.services_back.pagination;
+
+import com.bernate.services_back.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición de un listado paginado por clave: el último valor de la clave de orden (si la hay
+ * además del id) y el último id devuelto. Se envía al cliente como una cadena base64url opaca.
+ */
+public record KeysetCursor(LocalDateTime sortKey, long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static KeysetCursor ofId(long id) {
+        return new KeysetCursor(null, id);
+    }
+
+    public String encode() {
+        String raw = (sortKey != null ? sortKey.toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return {@code null} si no se envió cursor (primera página).
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Cursor de paginación inválido.");
+            }
+            String key = raw.substring(0, separator);
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new KeysetCursor(key.isEmpty() ? null : LocalDateTime.parse(key), id);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Cursor de paginación inválido.", e);
+        }
+    }
+
+    /**
+     * Los listados ordenados por fecha necesitan las dos partes del cursor.
+     */
+    public LocalDateTime requireSortKey() {
+        if (sortKey == null) {
+            throw new BadRequestException("Cursor de paginación inválido.");
+        }
+        return sortKey;
+    }
+}
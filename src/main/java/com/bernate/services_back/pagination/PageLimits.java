@@ -0,0 +1,20 @@
+package com.bernate.services_back.pagination;
+
+/**
+ * Límites de paginación aplicados en el servidor, sea cual sea el tamaño que pida el cliente.
+ */
+public final class PageLimits {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private PageLimits() {
+    }
+
+    public static int clampSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    }
+
+    public static int clampPage(int page) {
+        return Math.max(page, 0);
+    }
+}
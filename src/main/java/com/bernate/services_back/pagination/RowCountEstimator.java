@@ -0,0 +1,70 @@
+package com.bernate.services_back.pagination;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Totales aproximados a partir de las estadísticas de PostgreSQL: {@code pg_class.reltuples} para
+ * una tabla completa y las filas previstas por {@code EXPLAIN} para una búsqueda. Ninguna de las
+ * dos recorre la tabla. Con otra base de datos, o sin estadísticas, no hay estimación y el
+ * llamante recurre al recuento exacto.
+ */
+@Component
+public class RowCountEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowCountEstimator.class);
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*(\\d+)");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RowCountEstimator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public OptionalLong estimateTable(String table) {
+        try {
+            Long rows = jdbcTemplate.queryForObject(
+                    "SELECT reltuples::bigint FROM pg_class WHERE relname = ?", Long.class, table);
+            // reltuples es -1 hasta el primer ANALYZE.
+            return rows != null && rows >= 0 ? OptionalLong.of(rows) : OptionalLong.empty();
+        } catch (DataAccessException e) {
+            logger.debug("Sin estimación de filas para la tabla {}: {}", table, e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Filas previstas para la búsqueda de texto de los listados (nombre, descripción o nombre de
+     * categoría contienen el término).
+     *
+     * @param categoryColumn columna de la tabla que referencia a {@code categories}.
+     */
+    public OptionalLong estimateTextSearch(String table, String categoryColumn, String searchTerm) {
+        String pattern = "%" + escapeLike(searchTerm.trim().toLowerCase(Locale.ROOT)) + "%";
+        String sql = "EXPLAIN (FORMAT JSON) SELECT 1 FROM " + table + " t "
+                + "LEFT JOIN categories c ON c.id_categoria = t." + categoryColumn + " "
+                + "WHERE lower(t.name) LIKE ? ESCAPE '\\' OR lower(t.description) LIKE ? ESCAPE '\\' "
+                + "OR lower(c.nombre) LIKE ? ESCAPE '\\'";
+        try {
+            String plan = String.join("\n", jdbcTemplate.queryForList(sql, String.class, pattern, pattern, pattern));
+            Matcher matcher = PLAN_ROWS.matcher(plan);
+            return matcher.find() ? OptionalLong.of(Long.parseLong(matcher.group(1))) : OptionalLong.empty();
+        } catch (DataAccessException e) {
+            logger.debug("Sin estimación de filas para la búsqueda en {}: {}", table, e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
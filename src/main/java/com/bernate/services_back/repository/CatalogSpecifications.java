@@ -0,0 +1,66 @@
+package com.bernate.services_back.repository;
+
+import com.bernate.services_back.model.EstadoOferta;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Locale;
+
+/**
+ * Filtros comunes a {@link com.bernate.services_back.model.Product} y
+ * {@link com.bernate.services_back.model.ServiceEntity}, que comparten los nombres de
+ * {@code name}, {@code description}, {@code estado}, {@code categoria} y {@code ofertadoPor}.
+ * Categoría y ofertante se filtran por id para que la condición caiga sobre la clave foránea
+ * (y sus índices) sin añadir joins.
+ */
+public final class CatalogSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private CatalogSpecifications() {
+    }
+
+    public static <T> Specification<T> inCategory(Long categoryId) {
+        return (root, query, cb) -> cb.equal(root.get("categoria").get("id"), categoryId);
+    }
+
+    public static <T> Specification<T> hasEstado(EstadoOferta estado) {
+        return (root, query, cb) -> cb.equal(root.get("estado"), estado);
+    }
+
+    public static <T> Specification<T> offeredBy(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("ofertadoPor").get("id"), userId);
+    }
+
+    public static <T> Specification<T> priceAtLeast(String priceProperty, Double minPrice) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get(priceProperty), minPrice);
+    }
+
+    public static <T> Specification<T> priceAtMost(String priceProperty, Double maxPrice) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get(priceProperty), maxPrice);
+    }
+
+    /**
+     * Mismo criterio que las consultas derivadas {@code ...ContainingIgnoreCase}: el texto en el
+     * nombre, la descripción o el nombre de la categoría.
+     */
+    public static <T> Specification<T> containsText(String text) {
+        String pattern = "%" + escapeLike(text.trim().toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("name")), pattern, LIKE_ESCAPE),
+                cb.like(cb.lower(root.get("description")), pattern, LIKE_ESCAPE),
+                cb.like(cb.lower(root.join("categoria", JoinType.LEFT).get("nombre")), pattern, LIKE_ESCAPE));
+    }
+
+    private static String escapeLike(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -3,22 +3,64 @@ package com.bernate.services_back.repository;
 import com.bernate.services_back.model.Rating;
 import com.bernate.services_back.model.User;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface RatingRepository extends JpaRepository<Rating, Long> {
 
+    // convertToDTO recorre calificador, producto/servicio y su ofertante: se cargan en la misma consulta.
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
     Page<Rating> findByProductId(Long productId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
     Page<Rating> findByServiceId(Long serviceId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
     Page<Rating> findByRaterId(Long raterId, Pageable pageable);
 
+    // Listados por cursor (createdAt, id), de más reciente a más antigua.
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
+    List<Rating> findByProductIdOrderByCreatedAtDescIdDesc(Long productId, Limit limit);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
+    @Query("SELECT r FROM Rating r WHERE r.product.id = :productId "
+            + "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) "
+            + "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Rating> findByProductIdAfter(@Param("productId") Long productId, @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id, Limit limit);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
+    List<Rating> findByServiceIdOrderByCreatedAtDescIdDesc(Long serviceId, Limit limit);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
+    @Query("SELECT r FROM Rating r WHERE r.service.id = :serviceId "
+            + "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) "
+            + "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Rating> findByServiceIdAfter(@Param("serviceId") Long serviceId, @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id, Limit limit);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
+    List<Rating> findByRaterIdOrderByCreatedAtDescIdDesc(Long raterId, Limit limit);
+
+    @EntityGraph(attributePaths = {"rater", "product", "product.ofertadoPor", "service", "service.ofertadoPor"})
+    @Query("SELECT r FROM Rating r WHERE r.rater.id = :raterId "
+            + "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) "
+            + "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Rating> findByRaterIdAfter(@Param("raterId") Long raterId, @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id, Limit limit);
+
 
 
 
@@ -39,6 +81,14 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     @Query("SELECT COUNT(r) FROM Rating r WHERE r.service.ofertadoPor = :provider")
     Long countRatingsForProviderServices(@Param("provider") User provider);
 
+    /** Pares (id de producto, suma de puntuaciones) para ponderar las sugerencias. */
+    @Query("SELECT r.product.id, SUM(r.score) FROM Rating r WHERE r.product IS NOT NULL GROUP BY r.product.id")
+    List<Object[]> sumScoresByProduct();
+
+    /** Pares (id de servicio, suma de puntuaciones) para ponderar las sugerencias. */
+    @Query("SELECT r.service.id, SUM(r.score) FROM Rating r WHERE r.service IS NOT NULL GROUP BY r.service.id")
+    List<Object[]> sumScoresByService();
+
     List<Rating> findByProductOfertadoPor(User provider);
     List<Rating> findByServiceOfertadoPor(User provider);
 }
\ No newline at end of file
@@ -1,17 +1,72 @@
 package com.bernate.services_back.repository;
 
+import com.bernate.services_back.dto.EntityRevision;
 import com.bernate.services_back.model.Category;
 import com.bernate.services_back.model.ServiceEntity;
 import com.bernate.services_back.model.User;
+import com.bernate.services_back.search.CatalogDocument;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface ServiceRepository extends JpaRepository<ServiceEntity, Long> {
+public interface ServiceRepository extends JpaRepository<ServiceEntity, Long>, JpaSpecificationExecutor<ServiceEntity> {
+
+    /**
+     * Ids con el texto en {@code search_vector} o en el nombre de su categoría, con su relevancia.
+     * Cada rama llega a services por su propio índice (GIN del texto, o la categoría); el
+     * {@code UNION} quita los repetidos, que tienen la misma relevancia en ambas.
+     */
+    String FULL_TEXT_MATCHES = "SELECT m.id, ts_rank(m.search_vector || setweight(to_tsvector('spanish', mc.nombre), 'B'), "
+            + "websearch_to_tsquery('spanish', :query)) AS rank "
+            + "FROM services m JOIN categories mc ON mc.id_categoria = m.category_id "
+            + "WHERE m.search_vector @@ websearch_to_tsquery('spanish', :query) "
+            + "UNION SELECT m.id, ts_rank(m.search_vector || setweight(to_tsvector('spanish', mc.nombre), 'B'), "
+            + "websearch_to_tsquery('spanish', :query)) "
+            + "FROM services m JOIN categories mc ON mc.id_categoria = m.category_id "
+            + "WHERE to_tsvector('spanish', mc.nombre) @@ websearch_to_tsquery('spanish', :query)";
+
+    /**
+     * Los mismos ids que {@link #FULL_TEXT_MATCHES}, sin calcular la relevancia, para el COUNT.
+     */
+    String FULL_TEXT_MATCH_IDS = "SELECT m.id FROM services m WHERE m.search_vector @@ websearch_to_tsquery('spanish', :query) "
+            + "UNION SELECT m.id FROM services m JOIN categories mc ON mc.id_categoria = m.category_id "
+            + "WHERE to_tsvector('spanish', mc.nombre) @@ websearch_to_tsquery('spanish', :query)";
+
+    // Listados y lecturas por id cargan categoría y ofertante en la misma consulta
+    // (convertToDTO los usa siempre), en lugar de una consulta extra por fila.
+
+    @EntityGraph(attributePaths = {"categoria", "ofertadoPor"})
+    @Override
+    Page<ServiceEntity> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"categoria", "ofertadoPor"})
+    @Override
+    Optional<ServiceEntity> findById(Long id);
+
+    @EntityGraph(attributePaths = {"categoria", "ofertadoPor"})
+    @Override
+    List<ServiceEntity> findAllById(Iterable<Long> ids);
+
+    /**
+     * Listado con filtros ({@link CatalogSpecifications}); el COUNT se genera aparte, sin el grafo.
+     */
+    @EntityGraph(attributePaths = {"categoria", "ofertadoPor"})
+    @Override
+    Page<ServiceEntity> findAll(Specification<ServiceEntity> spec, Pageable pageable);
 
 
     Page<ServiceEntity> findByCategoria(Category categoria, Pageable pageable);
@@ -19,15 +74,69 @@ public interface ServiceRepository extends JpaRepository<ServiceEntity, Long> {
 
     Page<ServiceEntity> findByOfertadoPor(User ofertadoPor, Pageable pageable);
 
-
-
-
-    Page<ServiceEntity> findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCaseOrCategoriaNombreContainingIgnoreCase(
-        String nameTerm,
-        String descriptionTerm,
-        String categoriaNombreTerm,
-        Pageable pageable
-    );
+    @Query("SELECT new com.bernate.services_back.search.CatalogDocument("
+            + "com.bernate.services_back.search.CatalogKind.SERVICE, s.id, s.name, s.description, c.nombre, "
+            + "s.estado, s.estimatedPrice, u.username) "
+            + "FROM ServiceEntity s LEFT JOIN s.categoria c LEFT JOIN s.ofertadoPor u")
+    List<CatalogDocument> findAllCatalogDocuments();
+
+    @Query("SELECT s.id FROM ServiceEntity s WHERE s.imagenes = :filename AND s.imageVariantsReady = false")
+    List<Long> findIdsAwaitingImageVariants(@Param("filename") String filename);
+
+    /**
+     * Imágenes cuyas variantes no llegaron a generarse (cola llena, fallo, parada o subidas
+     * anteriores a las variantes), para volver a encolarlas.
+     */
+    @Query("SELECT DISTINCT s.imagenes FROM ServiceEntity s WHERE s.imageVariantsReady = false "
+            + "AND s.imagenes IS NOT NULL AND s.imagenes <> ''")
+    List<String> findImagesAwaitingVariants(Limit limit);
+
+    /**
+     * Actualización masiva: no pasa por la entidad, así que no sube {@code @Version} ni
+     * {@code updated_at} y no choca con una edición concurrente. Solo toca las filas que siguen
+     * usando la imagen.
+     */
+    @Modifying
+    @Query("UPDATE ServiceEntity s SET s.imageVariantsReady = true, s.imageBlurHash = :blurHash "
+            + "WHERE s.id IN :ids AND s.imagenes = :filename")
+    int markImageVariantsReady(@Param("ids") List<Long> ids, @Param("filename") String filename,
+                               @Param("blurHash") String blurHash);
+
+    @Query("SELECT new com.bernate.services_back.dto.EntityRevision(s.id, s.version, s.updatedAt, c.nombre, u.username, "
+            + "s.imageVariantsReady) "
+            + "FROM ServiceEntity s LEFT JOIN s.categoria c LEFT JOIN s.ofertadoPor u WHERE s.id = :id")
+    Optional<EntityRevision> findRevisionById(@Param("id") Long id);
+
+    /**
+     * Listado por cursor: los más recientes primero, sin OFFSET ni COUNT.
+     */
+    @EntityGraph(attributePaths = {"categoria", "ofertadoPor"})
+    List<ServiceEntity> findAllByOrderByIdDesc(Limit limit);
+
+    @EntityGraph(attributePaths = {"categoria", "ofertadoPor"})
+    List<ServiceEntity> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
+
+    /**
+     * Búsqueda de texto completo ({@code app.search.backend=postgres}); requiere la columna
+     * {@code search_vector} que crea {@link com.bernate.services_back.search.PostgresFullTextSchema}.
+     * Devuelve solo los ids en orden de relevancia; las entidades se cargan después con
+     * {@link #findAllById(Iterable)}, que sí aplica el grafo de carga.
+     * <p>
+     * Las coincidencias por texto y por categoría se buscan por separado ({@link #FULL_TEXT_MATCHES})
+     * para que cada una use su índice: con un {@code OR} sobre la tabla unida PostgreSQL recorre
+     * la tabla entera.
+     */
+    @Query(value = "SELECT matches.id FROM (" + FULL_TEXT_MATCHES + ") matches "
+            + "ORDER BY matches.rank DESC, matches.id DESC",
+            countQuery = "SELECT count(*) FROM (" + FULL_TEXT_MATCH_IDS + ") matches",
+            nativeQuery = true)
+    Page<Long> searchFullTextIds(@Param("query") String query, Pageable pageable);
+
+    /**
+     * Todos los ids de {@link #searchFullTextIds}, sin orden, para las facetas.
+     */
+    @Query(value = FULL_TEXT_MATCH_IDS, nativeQuery = true)
+    List<Long> findFullTextIds(@Param("query") String query);
 
 
 
@@ -0,0 +1,42 @@
+package com.bernate.services_back.repository;
+
+import com.bernate.services_back.model.StoredImage;
+import com.bernate.services_back.search.CatalogKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, Long> {
+
+    /**
+     * Registra una referencia más al contenido, creando la fila si es la primera. Dos subidas
+     * simultáneas del mismo contenido se serializan en el índice único en lugar de fallar.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stored_images (kind, hash, filename, size_bytes, reference_count, created_at) "
+            + "VALUES (:kind, :hash, :filename, :sizeBytes, 1, now()) "
+            + "ON CONFLICT (kind, hash) DO UPDATE SET reference_count = stored_images.reference_count + 1",
+            nativeQuery = true)
+    int acquire(@Param("kind") String kind, @Param("hash") String hash, @Param("filename") String filename,
+                @Param("sizeBytes") long sizeBytes);
+
+    @Query("SELECT s.filename FROM StoredImage s WHERE s.kind = :kind AND s.hash = :hash")
+    Optional<String> findFilename(@Param("kind") CatalogKind kind, @Param("hash") String hash);
+
+    /**
+     * @return 0 si el fichero no está registrado (imágenes anteriores al almacén por contenido).
+     */
+    @Modifying
+    @Query("UPDATE StoredImage s SET s.referenceCount = s.referenceCount - 1 "
+            + "WHERE s.kind = :kind AND s.filename = :filename AND s.referenceCount > 0")
+    int release(@Param("kind") CatalogKind kind, @Param("filename") String filename);
+
+    @Modifying
+    @Query("DELETE FROM StoredImage s WHERE s.kind = :kind AND s.filename = :filename AND s.referenceCount <= 0")
+    int deleteUnreferenced(@Param("kind") CatalogKind kind, @Param("filename") String filename);
+}
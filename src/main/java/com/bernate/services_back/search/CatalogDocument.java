@@ -0,0 +1,31 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.model.Product;
+import com.bernate.services_back.model.ServiceEntity;
+
+/**
+ * Vista mínima de un producto o servicio con los campos que necesitan los índices en memoria.
+ * {@code price} es el precio del producto o el precio estimado del servicio.
+ */
+public record CatalogDocument(CatalogKind kind, Long id, String name, String description, String categoryName,
+                              EstadoOferta estado, Double price, String seller) {
+
+    public static CatalogDocument of(Product product) {
+        return new CatalogDocument(CatalogKind.PRODUCT, product.getId(), product.getName(), product.getDescription(),
+                product.getCategoria() != null ? product.getCategoria().getNombre() : null,
+                product.getEstado(), product.getPrice(),
+                product.getOfertadoPor() != null ? product.getOfertadoPor().getUsername() : null);
+    }
+
+    public static CatalogDocument of(ServiceEntity service) {
+        return new CatalogDocument(CatalogKind.SERVICE, service.getId(), service.getName(), service.getDescription(),
+                service.getCategoria() != null ? service.getCategoria().getNombre() : null,
+                service.getEstado(), service.getEstimatedPrice(),
+                service.getOfertadoPor() != null ? service.getOfertadoPor().getUsername() : null);
+    }
+
+    public CatalogDocument withCategoryName(String newCategoryName) {
+        return new CatalogDocument(kind, id, name, description, newCategoryName, estado, price, seller);
+    }
+}
@@ -0,0 +1,305 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.dto.CatalogFacets;
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.model.EstadoOferta;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Motor de facetas en memoria: un bitmap comprimido (Roaring) de ids por categoría, estado,
+ * vendedor y tramo de precio. Los recuentos de una búsqueda son intersecciones del conjunto de
+ * resultados con cada bitmap ({@code andCardinality}), sin materializar ni recorrer documentos.
+ * Los ids se guardan como {@code int}; las entradas con id mayor que {@link Integer#MAX_VALUE}
+ * no se facetan.
+ */
+@Component
+public class CatalogFacetIndex implements CatalogIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogFacetIndex.class);
+
+    private final double[] priceBoundaries;
+    private final String[] priceLabels;
+    private final Map<CatalogKind, Facets> facetsByKind = new EnumMap<>(CatalogKind.class);
+
+    public CatalogFacetIndex(@Value("${app.search.facets.price-buckets:10000,50000,100000,500000}") double[] priceBoundaries) {
+        this.priceBoundaries = priceBoundaries.clone();
+        Arrays.sort(this.priceBoundaries);
+        this.priceLabels = buildPriceLabels(this.priceBoundaries);
+        for (CatalogKind kind : CatalogKind.values()) {
+            facetsByKind.put(kind, new Facets(priceLabels.length));
+        }
+    }
+
+    @Override
+    public void rebuild(CatalogKind kind, Collection<CatalogDocument> documents) {
+        Facets facets = facetsByKind.get(kind);
+        facets.lock.writeLock().lock();
+        try {
+            facets.clear();
+            for (CatalogDocument document : documents) {
+                add(facets, document);
+            }
+            for (RoaringBitmap bitmap : facets.allBitmaps()) {
+                bitmap.runOptimize();
+            }
+            facets.ready = true;
+        } finally {
+            facets.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(CatalogDocument document) {
+        Facets facets = facetsByKind.get(document.kind());
+        facets.lock.writeLock().lock();
+        try {
+            remove(facets, document.id());
+            add(facets, document);
+        } finally {
+            facets.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(CatalogKind kind, Long id) {
+        Facets facets = facetsByKind.get(kind);
+        facets.lock.writeLock().lock();
+        try {
+            remove(facets, id);
+        } finally {
+            facets.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recuentos para el listado con estos filtros.
+     *
+     * @param matchingIds ids que coinciden con la búsqueda de texto, calculados con el mismo motor
+     *                    que produjo la página (índice, texto completo, LIKE o aproximada), o
+     *                    {@code null} si no hay búsqueda.
+     * @return vacío mientras los índices no han terminado de cargarse.
+     */
+    public Optional<CatalogFacets> facets(CatalogKind kind, Collection<Long> matchingIds, CatalogFilter filter) {
+        RoaringBitmap searchHits = matchingIds != null ? toBitmap(matchingIds) : null;
+
+        Facets facets = facetsByKind.get(kind);
+        facets.lock.readLock().lock();
+        try {
+            if (!facets.ready) {
+                return Optional.empty();
+            }
+            RoaringBitmap base = searchHits != null ? searchHits : facets.all;
+            RoaringBitmap byCategory = StringUtils.hasText(filter.getCategoryName())
+                    ? facets.byCategory.getOrDefault(filter.getCategoryName().trim(), new RoaringBitmap()) : null;
+            RoaringBitmap byEstado = filter.getEstado() != null
+                    ? facets.byEstado.getOrDefault(filter.getEstado(), new RoaringBitmap()) : null;
+            RoaringBitmap bySeller = StringUtils.hasText(filter.getSeller())
+                    ? facets.bySeller.getOrDefault(filter.getSeller().trim(), new RoaringBitmap()) : null;
+            RoaringBitmap byPrice = priceRange(facets, filter.getMinPrice(), filter.getMaxPrice());
+
+            RoaringBitmap forCategories = intersect(base, byEstado, bySeller, byPrice);
+            Map<String, Integer> categories = new TreeMap<>();
+            for (Map.Entry<String, RoaringBitmap> entry : facets.byCategory.entrySet()) {
+                int count = RoaringBitmap.andCardinality(forCategories, entry.getValue());
+                if (count > 0) {
+                    categories.put(entry.getKey(), count);
+                }
+            }
+
+            RoaringBitmap forEstados = intersect(base, byCategory, bySeller, byPrice);
+            Map<String, Integer> estados = new LinkedHashMap<>();
+            for (Map.Entry<EstadoOferta, RoaringBitmap> entry : facets.byEstado.entrySet()) {
+                int count = RoaringBitmap.andCardinality(forEstados, entry.getValue());
+                if (count > 0) {
+                    estados.put(entry.getKey().name(), count);
+                }
+            }
+
+            RoaringBitmap forPrices = intersect(base, byCategory, byEstado, bySeller);
+            Map<String, Integer> priceRanges = new LinkedHashMap<>();
+            for (int i = 0; i < priceLabels.length; i++) {
+                priceRanges.put(priceLabels[i], RoaringBitmap.andCardinality(forPrices, facets.byPriceBucket[i]));
+            }
+
+            long total = intersect(base, byCategory, byEstado, bySeller, byPrice).getLongCardinality();
+            return Optional.of(new CatalogFacets(total, categories, estados, priceRanges));
+        } finally {
+            facets.lock.readLock().unlock();
+        }
+    }
+
+    private static RoaringBitmap intersect(RoaringBitmap base, RoaringBitmap... filters) {
+        RoaringBitmap result = base;
+        for (RoaringBitmap filter : filters) {
+            if (filter != null) {
+                result = RoaringBitmap.and(result, filter);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unión de los bitmaps de los precios dentro del rango; {@code null} si no se filtra por precio.
+     */
+    private static RoaringBitmap priceRange(Facets facets, Double minPrice, Double maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        double from = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double to = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+        if (from > to) {
+            return new RoaringBitmap();
+        }
+        Collection<RoaringBitmap> inRange = facets.byPrice.subMap(from, true, to, true).values();
+        return inRange.isEmpty() ? new RoaringBitmap() : FastAggregation.or(inRange.iterator());
+    }
+
+    private static RoaringBitmap toBitmap(Collection<Long> ids) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Long id : ids) {
+            if (id <= Integer.MAX_VALUE) {
+                bitmap.add(id.intValue());
+            }
+        }
+        return bitmap;
+    }
+
+    private void add(Facets facets, CatalogDocument document) {
+        if (document.id() > Integer.MAX_VALUE) {
+            logger.warn("Id {} fuera del rango de las facetas, se omite", document.id());
+            return;
+        }
+        int id = document.id().intValue();
+        facets.documents.put(id, document);
+        facets.all.add(id);
+        if (document.categoryName() != null) {
+            facets.byCategory.computeIfAbsent(document.categoryName(), k -> new RoaringBitmap()).add(id);
+        }
+        if (document.estado() != null) {
+            facets.byEstado.computeIfAbsent(document.estado(), k -> new RoaringBitmap()).add(id);
+        }
+        if (document.seller() != null) {
+            facets.bySeller.computeIfAbsent(document.seller(), k -> new RoaringBitmap()).add(id);
+        }
+        if (document.price() != null) {
+            facets.byPrice.computeIfAbsent(document.price(), k -> new RoaringBitmap()).add(id);
+            facets.byPriceBucket[priceBucket(document.price())].add(id);
+        }
+    }
+
+    private void remove(Facets facets, Long documentId) {
+        if (documentId > Integer.MAX_VALUE) {
+            return;
+        }
+        int id = documentId.intValue();
+        CatalogDocument previous = facets.documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        facets.all.remove(id);
+        removeFrom(facets.byCategory, previous.categoryName(), id);
+        removeFrom(facets.byEstado, previous.estado(), id);
+        removeFrom(facets.bySeller, previous.seller(), id);
+        if (previous.price() != null) {
+            removeFrom(facets.byPrice, previous.price(), id);
+            facets.byPriceBucket[priceBucket(previous.price())].remove(id);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K key, int id) {
+        if (key == null) {
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket < priceBoundaries.length && price >= priceBoundaries[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static String[] buildPriceLabels(double[] boundaries) {
+        String[] labels = new String[boundaries.length + 1];
+        double lower = 0;
+        for (int i = 0; i < boundaries.length; i++) {
+            labels[i] = format(lower) + "-" + format(boundaries[i]);
+            lower = boundaries[i];
+        }
+        labels[boundaries.length] = format(lower) + "+";
+        return labels;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static final class Facets {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Integer, CatalogDocument> documents = new HashMap<>();
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final Map<String, RoaringBitmap> byCategory = new HashMap<>();
+        private final Map<EstadoOferta, RoaringBitmap> byEstado = new EnumMap<>(EstadoOferta.class);
+        private final Map<String, RoaringBitmap> bySeller = new HashMap<>();
+        private final TreeMap<Double, RoaringBitmap> byPrice = new TreeMap<>();
+        private final RoaringBitmap[] byPriceBucket;
+        private boolean ready;
+
+        private Facets(int priceBuckets) {
+            this.byPriceBucket = new RoaringBitmap[priceBuckets];
+            for (int i = 0; i < priceBuckets; i++) {
+                byPriceBucket[i] = new RoaringBitmap();
+            }
+        }
+
+        private void clear() {
+            documents.clear();
+            all.clear();
+            byCategory.clear();
+            byEstado.clear();
+            bySeller.clear();
+            byPrice.clear();
+            for (RoaringBitmap bucket : byPriceBucket) {
+                bucket.clear();
+            }
+        }
+
+        private Iterable<RoaringBitmap> allBitmaps() {
+            List<RoaringBitmap> bitmaps = new ArrayList<>();
+            bitmaps.add(all);
+            bitmaps.addAll(byCategory.values());
+            bitmaps.addAll(byEstado.values());
+            bitmaps.addAll(bySeller.values());
+            bitmaps.addAll(byPrice.values());
+            bitmaps.addAll(Arrays.asList(byPriceBucket));
+            return bitmaps;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.event.CatalogChangeEvent;
+import com.bernate.services_back.event.CategoryChangeEvent;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.repository.ProductRepository;
+import com.bernate.services_back.repository.ServiceRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantiene los índices en memoria del catálogo ({@link CatalogIndexer}). Al arrancar los carga
+ * primero desde la instantánea en disco, para poder responder búsquedas enseguida, y a
+ * continuación siempre desde una única proyección por tipo en base de datos, que sustituye a la
+ * instantánea: contar filas no basta para saber si sigue vigente (una edición o un renombrado de
+ * categoría no cambian el número de entradas). Después aplica cada cambio una vez confirmada la
+ * transacción que lo produjo. Tras cada carga y cada cambio sube {@link CatalogVersion}, siempre
+ * con los índices ya actualizados, para que las cachés no guarden resultados del índice anterior
+ * con la versión nueva. La instantánea se reescribe tras cada carga y al parar la aplicación.
+ */
+@Service
+public class CatalogIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexService.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x43415458;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final String SNAPSHOT_FILE = "catalog.idx";
+
+    private final ProductRepository productRepository;
+    private final ServiceRepository serviceRepository;
+    private final CatalogSearchIndex searchIndex;
+    private final FuzzySearchIndex fuzzyIndex;
+    private final List<CatalogIndexer> indexers;
+    private final SearchBackend backend;
+    private final CatalogVersion catalogVersion;
+    private final Path snapshotFile;
+
+    private final Map<CatalogKind, Map<Long, CatalogDocument>> documents = new EnumMap<>(CatalogKind.class);
+
+    public CatalogIndexService(ProductRepository productRepository,
+                               ServiceRepository serviceRepository,
+                               CatalogSearchIndex searchIndex,
+                               FuzzySearchIndex fuzzyIndex,
+                               List<CatalogIndexer> indexers,
+                               @Value("${app.search.backend:index}") SearchBackend backend,
+                               CatalogVersion catalogVersion,
+                               @Value("${app.search.snapshot-dir:${app.upload.dir:./storage}/search-index}") String snapshotDir) {
+        this.productRepository = productRepository;
+        this.serviceRepository = serviceRepository;
+        this.searchIndex = searchIndex;
+        this.fuzzyIndex = fuzzyIndex;
+        this.indexers = indexers;
+        this.backend = backend;
+        this.catalogVersion = catalogVersion;
+        this.snapshotFile = Paths.get(snapshotDir, SNAPSHOT_FILE).toAbsolutePath().normalize();
+        for (CatalogKind kind : CatalogKind.values()) {
+            documents.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    public SearchBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * @return los resultados del índice, o vacío si la búsqueda debe resolverse en base de datos
+     * (backend distinto o índice aún no cargado). Si no hay coincidencias exactas se devuelven
+     * las aproximadas por nombre.
+     */
+    public Optional<List<SearchHit>> search(CatalogKind kind, String query) {
+        if (backend != SearchBackend.INDEX) {
+            return Optional.empty();
+        }
+        Optional<List<SearchHit>> hits = searchIndex.search(kind, query);
+        if (hits.isPresent() && hits.get().isEmpty()) {
+            return fuzzyIndex.search(kind, query).or(() -> hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Coincidencias aproximadas por nombre, con cualquier backend. Los servicios recurren a ellas
+     * cuando la búsqueda en base de datos no devuelve nada.
+     */
+    public Optional<List<SearchHit>> fuzzySearch(CatalogKind kind, String query) {
+        return fuzzyIndex.search(kind, query);
+    }
+
+    public Optional<String> didYouMean(String query) {
+        return fuzzyIndex.didYouMean(query);
+    }
+
+    /**
+     * Ids de la página pedida dentro de una lista de resultados ya ordenada.
+     */
+    public static List<Long> pageIds(List<SearchHit> hits, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + pageable.getPageSize(), hits.size());
+        List<Long> ids = new ArrayList<>(to - from);
+        for (SearchHit hit : hits.subList(from, to)) {
+            ids.add(hit.id());
+        }
+        return ids;
+    }
+
+    /**
+     * Los cambios confirmados mientras se lee la proyección esperan al cerrojo y se aplican
+     * después, así que ninguno se pierde al sustituir la instantánea.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void bootstrap() {
+        long start = System.nanoTime();
+        Map<CatalogKind, List<CatalogDocument>> snapshot = readSnapshot();
+        if (snapshot != null) {
+            rebuildAll(snapshot);
+            logger.info("Índice del catálogo servido desde la instantánea en {} ms mientras se recarga de base de datos",
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        rebuildAll(loadFromDatabase());
+        writeSnapshot();
+        logger.info("Índice del catálogo cargado desde base de datos en {} ms ({} productos, {} servicios)",
+                (System.nanoTime() - start) / 1_000_000,
+                documents.get(CatalogKind.PRODUCT).size(), documents.get(CatalogKind.SERVICE).size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCatalogChanged(CatalogChangeEvent event) {
+        if (event.isDeletion()) {
+            documents.get(event.kind()).remove(event.id());
+            for (CatalogIndexer indexer : indexers) {
+                indexer.remove(event.kind(), event.id());
+            }
+        } else {
+            upsert(event.document());
+        }
+        catalogVersion.advance();
+    }
+
+    /**
+     * Renombrar una categoría cambia el texto indexado de todas sus entradas.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCategoryChanged(CategoryChangeEvent event) {
+        if (event.isRename()) {
+            for (Map<Long, CatalogDocument> byId : documents.values()) {
+                for (CatalogDocument document : new ArrayList<>(byId.values())) {
+                    if (event.previousName().equals(document.categoryName())) {
+                        upsert(document.withCategoryName(event.newName()));
+                    }
+                }
+            }
+        }
+        catalogVersion.advance();
+    }
+
+    @PreDestroy
+    public synchronized void saveSnapshot() {
+        writeSnapshot();
+    }
+
+    private void upsert(CatalogDocument document) {
+        documents.get(document.kind()).put(document.id(), document);
+        for (CatalogIndexer indexer : indexers) {
+            indexer.upsert(document);
+        }
+    }
+
+    private void rebuildAll(Map<CatalogKind, List<CatalogDocument>> loaded) {
+        for (Map.Entry<CatalogKind, List<CatalogDocument>> entry : loaded.entrySet()) {
+            rebuild(entry.getKey(), entry.getValue());
+        }
+        catalogVersion.advance();
+    }
+
+    private void rebuild(CatalogKind kind, List<CatalogDocument> loaded) {
+        Map<Long, CatalogDocument> byId = documents.get(kind);
+        byId.clear();
+        for (CatalogDocument document : loaded) {
+            byId.put(document.id(), document);
+        }
+        for (CatalogIndexer indexer : indexers) {
+            indexer.rebuild(kind, loaded);
+        }
+    }
+
+    private Map<CatalogKind, List<CatalogDocument>> loadFromDatabase() {
+        Map<CatalogKind, List<CatalogDocument>> loaded = new EnumMap<>(CatalogKind.class);
+        loaded.put(CatalogKind.PRODUCT, productRepository.findAllCatalogDocuments());
+        loaded.put(CatalogKind.SERVICE, serviceRepository.findAllCatalogDocuments());
+        return loaded;
+    }
+
+    private Map<CatalogKind, List<CatalogDocument>> readSnapshot() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                logger.info("Instantánea del índice con formato antiguo, se ignora: {}", snapshotFile);
+                return null;
+            }
+            Map<CatalogKind, List<CatalogDocument>> loaded = new EnumMap<>(CatalogKind.class);
+            for (int k = 0; k < CatalogKind.values().length; k++) {
+                CatalogKind kind = CatalogKind.valueOf(in.readUTF());
+                int count = in.readInt();
+                List<CatalogDocument> kindDocuments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long id = in.readLong();
+                    String name = readString(in);
+                    String description = readString(in);
+                    String categoryName = readString(in);
+                    String estado = readString(in);
+                    Double price = in.readBoolean() ? in.readDouble() : null;
+                    String seller = readString(in);
+                    kindDocuments.add(new CatalogDocument(kind, id, name, description, categoryName,
+                            estado != null ? EstadoOferta.valueOf(estado) : null, price, seller));
+                }
+                loaded.put(kind, kindDocuments);
+            }
+            return loaded;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("No se pudo leer la instantánea del índice {}: {}", snapshotFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Se escribe en un fichero temporal y se renombra, para no dejar nunca una instantánea a medias.
+     */
+    private void writeSnapshot() {
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tmp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                for (CatalogKind kind : CatalogKind.values()) {
+                    List<CatalogDocument> kindDocuments = new ArrayList<>(documents.get(kind).values());
+                    out.writeUTF(kind.name());
+                    out.writeInt(kindDocuments.size());
+                    for (CatalogDocument document : kindDocuments) {
+                        out.writeLong(document.id());
+                        writeString(out, document.name());
+                        writeString(out, document.description());
+                        writeString(out, document.categoryName());
+                        writeString(out, document.estado() != null ? document.estado().name() : null);
+                        out.writeBoolean(document.price() != null);
+                        if (document.price() != null) {
+                            out.writeDouble(document.price());
+                        }
+                        writeString(out, document.seller());
+                    }
+                }
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("No se pudo guardar la instantánea del índice {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("Instantánea truncada");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,16 @@
+package com.bernate.services_back.search;
+
+import java.util.Collection;
+
+/**
+ * Estructura en memoria derivada del catálogo. {@link CatalogIndexService} la reconstruye al arrancar
+ * y le aplica cada alta, modificación o baja una vez confirmada la transacción.
+ */
+public interface CatalogIndexer {
+
+    void rebuild(CatalogKind kind, Collection<CatalogDocument> documents);
+
+    void upsert(CatalogDocument document);
+
+    void remove(CatalogKind kind, Long id);
+}
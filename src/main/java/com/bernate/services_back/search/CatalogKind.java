@@ -0,0 +1,6 @@
+package com.bernate.services_back.search;
+
+public enum CatalogKind {
+    PRODUCT,
+    SERVICE
+}
@@ -0,0 +1,59 @@
+package com.bernate.services_back.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índices invertidos de productos y servicios. Hasta que {@link CatalogIndexService} termina la
+ * carga inicial no responde, y el llamante recurre a la búsqueda en base de datos.
+ */
+@Component
+public class CatalogSearchIndex implements CatalogIndexer {
+
+    private final Map<CatalogKind, InvertedIndex> indexes = new EnumMap<>(CatalogKind.class);
+    private final Set<CatalogKind> ready = ConcurrentHashMap.newKeySet();
+
+    public CatalogSearchIndex() {
+        for (CatalogKind kind : CatalogKind.values()) {
+            indexes.put(kind, new InvertedIndex());
+        }
+    }
+
+    @Override
+    public void rebuild(CatalogKind kind, Collection<CatalogDocument> documents) {
+        indexes.get(kind).rebuild(documents);
+        ready.add(kind);
+    }
+
+    @Override
+    public void upsert(CatalogDocument document) {
+        indexes.get(document.kind()).upsert(document);
+    }
+
+    @Override
+    public void remove(CatalogKind kind, Long id) {
+        indexes.get(kind).remove(id);
+    }
+
+    public boolean isReady(CatalogKind kind) {
+        return ready.contains(kind);
+    }
+
+    public int size(CatalogKind kind) {
+        return indexes.get(kind).size();
+    }
+
+    public Optional<List<SearchHit>> search(CatalogKind kind, String query) {
+        if (!isReady(kind)) {
+            return Optional.empty();
+        }
+        return Optional.of(indexes.get(kind).search(query));
+    }
+}
@@ -0,0 +1,45 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.event.CatalogVersionChangedEvent;
+import com.bernate.services_back.event.ImageVariantsAppliedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contador global que sube con cada alta, cambio o baja confirmada de productos, servicios o
+ * categorías. Las cachés lo incluyen en la clave: un resultado calculado mientras se confirmaba
+ * una escritura queda con la versión anterior y ya no se vuelve a leer.
+ * <p>
+ * Los cambios indexados los sube {@link CatalogIndexService}, después de aplicarlos a los índices
+ * en memoria. Si subiera antes (o en otro oyente del mismo evento, sin orden definido), una
+ * búsqueda podría leer el índice aún sin actualizar y guardar ese resultado con la versión nueva.
+ * Las variantes de imagen no se indexan, así que esas suben aquí directamente.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CatalogVersion(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageVariantsApplied(ImageVariantsAppliedEvent event) {
+        advance();
+    }
+
+    public long advance() {
+        long advanced = version.incrementAndGet();
+        eventPublisher.publishEvent(new CatalogVersionChangedEvent(advanced));
+        return advanced;
+    }
+}
@@ -0,0 +1,66 @@
+package com.bernate.services_back.search;
+
+/**
+ * Estimador de frecuencia Count-Min con contadores de 4 bits y envejecimiento, como el de
+ * TinyLFU: cada clave ocupa cuatro contadores repartidos por la tabla, la estimación es el menor
+ * de ellos, y cada {@code 10 × tamaño} incrementos todos los contadores se dividen a la mitad
+ * para que lo que fue popular hace horas deje de contar. Memoria fija: 8 bytes por cada 16 contadores.
+ */
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(int expectedKeys) {
+        int size = Integer.highestOneBit(Math.max(expectedKeys, 64) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    /**
+     * Cuenta una aparición de la clave.
+     *
+     * @return la frecuencia estimada tras contarla (como mucho 15).
+     */
+    public synchronized int increment(Object key) {
+        int hash = spread(key.hashCode());
+        int estimate = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            int index = (int) h & tableMask;
+            int shift = (int) ((h >>> 40) & 15) << 2;
+            int count = (int) ((table[index] >>> shift) & 0xfL);
+            if (count < MAX_COUNT) {
+                table[index] += 1L << shift;
+                count++;
+            }
+            estimate = Math.min(estimate, count);
+        }
+        if (++additions >= sampleSize) {
+            reset();
+        }
+        return estimate;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
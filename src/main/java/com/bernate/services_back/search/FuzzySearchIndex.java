@@ -0,0 +1,100 @@
+package com.bernate.services_back.search;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Búsqueda aproximada por nombre ({@link TrigramIndex}) para productos y servicios. Se usa cuando
+ * la búsqueda exacta no encuentra nada, y para proponer la consulta corregida.
+ */
+@Component
+public class FuzzySearchIndex implements CatalogIndexer {
+
+    /** Palabras más cortas no se corrigen: con tan pocos trigramas casi todo se parece. */
+    private static final int MIN_CORRECTABLE_LENGTH = 4;
+
+    private final Map<CatalogKind, TrigramIndex> indexes = new EnumMap<>(CatalogKind.class);
+    private final Set<CatalogKind> ready = ConcurrentHashMap.newKeySet();
+    private final double minSimilarity;
+
+    public FuzzySearchIndex(@Value("${app.search.fuzzy.min-similarity:0.5}") double minSimilarity) {
+        this.minSimilarity = minSimilarity;
+        for (CatalogKind kind : CatalogKind.values()) {
+            indexes.put(kind, new TrigramIndex());
+        }
+    }
+
+    @Override
+    public void rebuild(CatalogKind kind, Collection<CatalogDocument> documents) {
+        indexes.get(kind).rebuild(documents);
+        ready.add(kind);
+    }
+
+    @Override
+    public void upsert(CatalogDocument document) {
+        indexes.get(document.kind()).upsert(document);
+    }
+
+    @Override
+    public void remove(CatalogKind kind, Long id) {
+        indexes.get(kind).remove(id);
+    }
+
+    /**
+     * @return los nombres parecidos a la consulta, o vacío si el índice aún no está cargado.
+     */
+    public Optional<List<SearchHit>> search(CatalogKind kind, String query) {
+        if (!ready.contains(kind)) {
+            return Optional.empty();
+        }
+        List<TrigramIndex.Match> matches = indexes.get(kind).search(query, minSimilarity);
+        List<SearchHit> hits = new ArrayList<>(matches.size());
+        for (TrigramIndex.Match match : matches) {
+            hits.add(new SearchHit(match.id(), match.score()));
+        }
+        return Optional.of(hits);
+    }
+
+    /**
+     * La consulta con cada palabra desconocida sustituida por la más cercana del catálogo
+     * (productos y servicios), en forma normalizada: sin tildes y en minúsculas.
+     *
+     * @return vacío si no hay nada que corregir.
+     */
+    public Optional<String> didYouMean(String query) {
+        String phrase = TextNormalizer.normalizePhrase(query);
+        if (phrase.isEmpty() || ready.size() < CatalogKind.values().length) {
+            return Optional.empty();
+        }
+        String[] words = phrase.split(" ");
+        boolean corrected = false;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].length() < MIN_CORRECTABLE_LENGTH) {
+                continue;
+            }
+            int maxDistance = words[i].length() <= 5 ? 1 : 2;
+            TrigramIndex.Correction best = null;
+            for (TrigramIndex index : indexes.values()) {
+                TrigramIndex.Correction candidate = index.closestWord(words[i], maxDistance);
+                if (candidate != null && (best == null || candidate.distance() < best.distance()
+                        || candidate.distance() == best.distance() && candidate.frequency() > best.frequency())) {
+                    best = candidate;
+                }
+            }
+            if (best != null && best.distance() > 0) {
+                words[i] = best.word();
+                corrected = true;
+            }
+        }
+        return corrected ? Optional.of(String.join(" ", words)) : Optional.empty();
+    }
+}
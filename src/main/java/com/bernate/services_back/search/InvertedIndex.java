@@ -0,0 +1,182 @@
+package com.bernate.services_back.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido término → documentos para una clase de entrada del catálogo. Cada término de la
+ * consulta debe aparecer en el documento (AND); el último se trata además como prefijo para que
+ * "fonta" encuentre "fontanería". La puntuación es la suma, por término, del peso del campo donde
+ * aparece (nombre &gt; categoría &gt; descripción) por su idf. El coste de una búsqueda depende del
+ * tamaño de las listas de los términos consultados, no del número total de documentos.
+ */
+public class InvertedIndex {
+
+    static final float NAME_WEIGHT = 3.0f;
+    static final float CATEGORY_WEIGHT = 2.0f;
+    static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    /** Límite de términos en que se expande el prefijo del último término de la consulta. */
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, String[]> documentTerms = new HashMap<>();
+
+    public void rebuild(Collection<CatalogDocument> documents) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentTerms.clear();
+            for (CatalogDocument document : documents) {
+                addLocked(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void upsert(CatalogDocument document) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(document.id());
+            addLocked(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return los documentos que contienen todos los términos de la consulta, ordenados por
+     * relevancia descendente y, a igualdad, por id descendente (los más recientes primero).
+     */
+    public List<SearchHit> search(String query) {
+        List<String> terms = TextNormalizer.tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int documentCount = documentTerms.size();
+            Map<Long, Double> scores = null;
+            for (int i = 0; i < terms.size(); i++) {
+                boolean prefix = i == terms.size() - 1;
+                Map<Long, Double> termScores = scoreTerm(terms.get(i), prefix, documentCount);
+                scores = scores == null ? termScores : intersect(scores, termScores);
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                hits.add(new SearchHit(entry.getKey(), entry.getValue()));
+            }
+            hits.sort((a, b) -> {
+                int byScore = Double.compare(b.score(), a.score());
+                return byScore != 0 ? byScore : Long.compare(b.id(), a.id());
+            });
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreTerm(String term, boolean prefix, int documentCount) {
+        Map<Long, Double> scores = new HashMap<>();
+        if (!prefix) {
+            accumulate(scores, postings.get(term), documentCount);
+            return scores;
+        }
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Float>> entry : postings.tailMap(term, true).entrySet()) {
+            if (!entry.getKey().startsWith(term) || expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            accumulate(scores, entry.getValue(), documentCount);
+        }
+        return scores;
+    }
+
+    private static void accumulate(Map<Long, Double> scores, Map<Long, Float> posting, int documentCount) {
+        if (posting == null || posting.isEmpty()) {
+            return;
+        }
+        double idf = Math.log(1.0 + (double) documentCount / posting.size());
+        for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+            // Con expansión de prefijo un documento puede coincidir con varios términos; se queda el mejor.
+            scores.merge(entry.getKey(), entry.getValue() * idf, Math::max);
+        }
+    }
+
+    private static Map<Long, Double> intersect(Map<Long, Double> accumulated, Map<Long, Double> termScores) {
+        Map<Long, Double> smaller = accumulated.size() <= termScores.size() ? accumulated : termScores;
+        Map<Long, Double> larger = smaller == accumulated ? termScores : accumulated;
+        Map<Long, Double> result = new HashMap<>();
+        for (Map.Entry<Long, Double> entry : smaller.entrySet()) {
+            Double other = larger.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue() + other);
+            }
+        }
+        return result;
+    }
+
+    private void addLocked(CatalogDocument document) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, document.name(), NAME_WEIGHT);
+        addField(weights, document.categoryName(), CATEGORY_WEIGHT);
+        addField(weights, document.description(), DESCRIPTION_WEIGHT);
+        for (Map.Entry<String, Float> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(document.id(), entry.getValue());
+        }
+        documentTerms.put(document.id(), weights.keySet().toArray(new String[0]));
+    }
+
+    private static void addField(Map<String, Float> weights, String text, float fieldWeight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            // Repeticiones dentro del documento suman con rendimiento decreciente.
+            weights.merge(token, fieldWeight, (current, added) -> current + added * 0.5f);
+        }
+    }
+
+    private void removeLocked(Long id) {
+        String[] terms = documentTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.bernate.services_back.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Con {@code app.search.backend=postgres} añade a {@code products} y {@code services} una columna
+ * {@code search_vector} generada (configuración {@code spanish}, nombre con peso A y descripción
+ * con peso C) con su índice GIN, y un índice GIN de expresión sobre el nombre de las categorías.
+ * Hibernate ({@code ddl-auto=update}) no gestiona estas columnas, así que se crean aquí, después
+ * de que él haya creado las tablas; todas las sentencias son idempotentes.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "app.search.backend", havingValue = "postgres")
+public class PostgresFullTextSchema {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresFullTextSchema.class);
+
+    static final String[] STATEMENTS = {
+            "ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                    + "setweight(to_tsvector('spanish', coalesce(name, '')), 'A') || "
+                    + "setweight(to_tsvector('spanish', coalesce(description, '')), 'C')) STORED",
+            "CREATE INDEX IF NOT EXISTS idx_products_search_vector ON products USING GIN (search_vector)",
+            "ALTER TABLE services ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                    + "setweight(to_tsvector('spanish', coalesce(name, '')), 'A') || "
+                    + "setweight(to_tsvector('spanish', coalesce(description, '')), 'C')) STORED",
+            "CREATE INDEX IF NOT EXISTS idx_services_search_vector ON services USING GIN (search_vector)",
+            "CREATE INDEX IF NOT EXISTS idx_categories_nombre_fts ON categories USING GIN (to_tsvector('spanish', nombre))"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostgresFullTextSchema(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void createSearchColumns() {
+        for (String statement : STATEMENTS) {
+            jdbcTemplate.execute(statement);
+        }
+        logger.info("Columnas tsvector e índices GIN de búsqueda verificados en products, services y categories");
+    }
+}
@@ -0,0 +1,9 @@
+package com.bernate.services_back.search;
+
+import java.util.List;
+
+/**
+ * Los mejores resultados de una búsqueda, ordenados por puntuación, junto con el total de coincidencias.
+ */
+public record RankedResults<T>(List<ScoredItem<T>> items, long total) {
+}
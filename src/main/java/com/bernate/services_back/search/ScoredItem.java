@@ -0,0 +1,4 @@
+package com.bernate.services_back.search;
+
+public record ScoredItem<T>(T item, double score) {
+}
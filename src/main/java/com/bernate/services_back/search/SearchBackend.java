@@ -0,0 +1,13 @@
+package com.bernate.services_back.search;
+
+/**
+ * Motor usado para el parámetro {@code search} de los listados, configurable con {@code app.search.backend}.
+ */
+public enum SearchBackend {
+    /** Consultas derivadas de JPA con {@code LIKE '%term%'}. */
+    LIKE,
+    /** Índice invertido en memoria ({@link CatalogSearchIndex}). */
+    INDEX,
+    /** Búsqueda de texto completo de PostgreSQL sobre columnas {@code tsvector} con índice GIN. */
+    POSTGRES
+}
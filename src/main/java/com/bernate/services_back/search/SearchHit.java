@@ -0,0 +1,15 @@
+package com.bernate.services_back.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record SearchHit(Long id, double score) {
+
+    public static List<Long> ids(List<SearchHit> hits) {
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.id());
+        }
+        return ids;
+    }
+}
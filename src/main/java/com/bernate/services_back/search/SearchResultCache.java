@@ -0,0 +1,142 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.dto.CountedPage;
+import com.bernate.services_back.event.CatalogVersionChangedEvent;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.bernate.services_back.pagination.PageLimits;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caché de las primeras páginas de búsqueda de productos y servicios, por término normalizado
+ * ("Huevos " y "huevos" comparten entrada), página, tamaño y estrategia de recuento. Los acentos
+ * no se pliegan: la búsqueda LIKE distingue "café" de "cafe". Una consulta solo se guarda cuando
+ * un {@link FrequencySketch} indica que se ha repetido, para que las búsquedas de una sola vez no
+ * desplacen a las populares.
+ * <p>
+ * La clave incluye la versión global del catálogo ({@link CatalogVersion}), que sube con cada alta,
+ * cambio o baja confirmada, una vez actualizados los índices en memoria.
+ * Un resultado calculado mientras se confirmaba una escritura queda guardado con la versión anterior
+ * y ya no se vuelve a leer, así que nunca se sirve una página desactualizada.
+ * <p>
+ * Los DTOs son mutables, así que no se comparten: se guarda una copia de la página y cada acierto
+ * devuelve otra copia nueva.
+ */
+@Component
+public class SearchResultCache {
+
+    private record QueryKey(CatalogKind kind, String term, int page, int size, CountStrategy count) {
+    }
+
+    private record Key(QueryKey query, long catalogVersion) {
+    }
+
+    /**
+     * Lo que se guarda de una página: su contenido copiado e inmutable.
+     */
+    private record CachedPage(List<?> content, Pageable pageable, long total, CountStrategy countStrategy) {
+    }
+
+    private final boolean enabled;
+    private final int maxPage;
+    private final int minFrequency;
+    private final Cache<Key, CachedPage> cache;
+    private final FrequencySketch sketch;
+    private final CatalogVersion catalogVersion;
+    private final AtomicLong rejections = new AtomicLong();
+
+    public SearchResultCache(CatalogVersion catalogVersion,
+                             @Value("${app.search.cache.enabled:true}") boolean enabled,
+                             @Value("${app.search.cache.max-entries:2000}") int maxEntries,
+                             @Value("${app.search.cache.ttl-seconds:600}") long ttlSeconds,
+                             @Value("${app.search.cache.max-page:2}") int maxPage,
+                             @Value("${app.search.cache.min-frequency:2}") int minFrequency) {
+        this.catalogVersion = catalogVersion;
+        this.enabled = enabled;
+        this.maxPage = maxPage;
+        this.minFrequency = minFrequency;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.sketch = new FrequencySketch(maxEntries * 10);
+    }
+
+    /**
+     * La página de resultados para la búsqueda, desde la caché o desde {@code loader}. Los listados
+     * sin término de búsqueda y las páginas más allá de {@code max-page} no se cachean. {@code copy}
+     * duplica un elemento de la página.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Page<T> get(CatalogKind kind, String searchTerm, int page, int size, CountStrategy count,
+                           UnaryOperator<T> copy, Supplier<Page<T>> loader) {
+        int pageNumber = PageLimits.clampPage(page);
+        if (!enabled || !StringUtils.hasText(searchTerm) || pageNumber > maxPage) {
+            return loader.get();
+        }
+        String term = searchTerm.trim().toLowerCase(Locale.ROOT);
+        QueryKey query = new QueryKey(kind, term, pageNumber, PageLimits.clampSize(size), count);
+        Key key = new Key(query, catalogVersion.current());
+        CachedPage cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return new CountedPage<>(copyAll((List<T>) cached.content(), copy), cached.pageable(), cached.total(),
+                    cached.countStrategy());
+        }
+        Page<T> result = loader.get();
+        if (sketch.increment(query) >= minFrequency) {
+            cache.put(key, new CachedPage(List.copyOf(copyAll(result.getContent(), copy)), result.getPageable(),
+                    result.getTotalElements(), CountStrategy.of(result)));
+        } else {
+            rejections.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Las entradas anteriores ya no son alcanzables con la nueva versión; se vacían solo para
+     * liberar memoria.
+     */
+    @EventListener
+    public void onCatalogVersionChanged(CatalogVersionChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    private static <T> List<T> copyAll(List<T> content, UnaryOperator<T> copy) {
+        List<T> copies = new ArrayList<>(content.size());
+        for (T item : content) {
+            copies.add(copy.apply(item));
+        }
+        return copies;
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("catalogVersion", catalogVersion.current());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("admissionRejections", rejections.get());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+}
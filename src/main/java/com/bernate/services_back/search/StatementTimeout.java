@@ -0,0 +1,43 @@
+package com.bernate.services_back.search;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plazo de las sentencias de la transacción en curso, con precisión de milisegundos: en PostgreSQL
+ * {@code statement_timeout} local a la transacción, de modo que es el servidor quien cancela la
+ * consulta y la conexión vuelve al pool en buen estado (interrumpir el hilo que espera al JDBC, en
+ * cambio, cierra el socket). Con otra base de datos no hace nada.
+ */
+@Component
+public class StatementTimeout {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public StatementTimeout(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Debe llamarse dentro de una transacción; el plazo termina con ella.
+     */
+    public void applyToCurrentTransaction(long timeoutMillis) {
+        if (!isPostgres()) {
+            return;
+        }
+        jdbcTemplate.queryForObject("SELECT set_config('statement_timeout', ?, true)", String.class,
+                Math.max(timeoutMillis, 1) + "ms");
+    }
+
+    private boolean isPostgres() {
+        Boolean known = postgres;
+        if (known == null) {
+            known = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())));
+            postgres = known;
+        }
+        return known;
+    }
+}
@@ -0,0 +1,286 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.dto.SuggestionDTO;
+import com.bernate.services_back.event.CategoryChangeEvent;
+import com.bernate.services_back.event.RatingChangedEvent;
+import com.bernate.services_back.model.Category;
+import com.bernate.services_back.repository.CategoryRepository;
+import com.bernate.services_back.repository.RatingRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Autocompletado sobre los nombres de productos, servicios y categorías. Los productos y servicios
+ * pesan 1 más la suma de las puntuaciones recibidas, y las categorías 1 más el número de entradas
+ * del catálogo que contienen; cada alta, cambio, baja o calificación actualiza solo las entradas
+ * afectadas.
+ */
+@Component
+public class SuggestionIndex implements CatalogIndexer {
+
+    /** Entradas guardadas por nodo; algo más que el máximo servido para poder descartar duplicados. */
+    private static final int NODE_CAPACITY = 16;
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final CategoryRepository categoryRepository;
+    private final RatingRepository ratingRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SuggestionTrie trie = new SuggestionTrie(NODE_CAPACITY);
+
+    private final Map<CatalogKind, Map<Long, SuggestionTrie.Entry>> catalogEntries = new EnumMap<>(CatalogKind.class);
+    private final Map<CatalogKind, Map<Long, String>> categoryOf = new EnumMap<>(CatalogKind.class);
+    private final Map<CatalogKind, Map<Long, Long>> scoreSums = new EnumMap<>(CatalogKind.class);
+    private final Map<Long, SuggestionTrie.Entry> categoryEntries = new HashMap<>();
+    private final Map<String, Integer> categoryUsage = new HashMap<>();
+    private boolean categoriesLoaded;
+
+    public SuggestionIndex(CategoryRepository categoryRepository, RatingRepository ratingRepository) {
+        this.categoryRepository = categoryRepository;
+        this.ratingRepository = ratingRepository;
+        for (CatalogKind kind : CatalogKind.values()) {
+            catalogEntries.put(kind, new HashMap<>());
+            categoryOf.put(kind, new HashMap<>());
+            scoreSums.put(kind, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void rebuild(CatalogKind kind, Collection<CatalogDocument> documents) {
+        List<Object[]> sums = kind == CatalogKind.PRODUCT
+                ? ratingRepository.sumScoresByProduct()
+                : ratingRepository.sumScoresByService();
+        List<Category> categories = categoriesLoaded ? null : categoryRepository.findAll();
+
+        lock.writeLock().lock();
+        try {
+            Map<Long, SuggestionTrie.Entry> entries = catalogEntries.get(kind);
+            for (SuggestionTrie.Entry entry : entries.values()) {
+                trie.remove(entry);
+            }
+            entries.clear();
+            for (String categoryName : categoryOf.get(kind).values()) {
+                categoryUsage.merge(categoryName, -1, Integer::sum);
+            }
+            categoryOf.get(kind).clear();
+
+            Map<Long, Long> kindSums = scoreSums.get(kind);
+            kindSums.clear();
+            for (Object[] row : sums) {
+                kindSums.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+            if (categories != null) {
+                for (Category category : categories) {
+                    putCategory(category.getId(), category.getNombre());
+                }
+                categoriesLoaded = true;
+            }
+            for (CatalogDocument document : documents) {
+                putDocument(document);
+            }
+            categoryUsage.values().removeIf(count -> count <= 0);
+            reweightCategories(categoryEntries.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(CatalogDocument document) {
+        lock.writeLock().lock();
+        try {
+            String previousCategory = removeDocument(document.kind(), document.id());
+            putDocument(document);
+            reweightCategoriesNamed(previousCategory, document.categoryName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(CatalogKind kind, Long id) {
+        lock.writeLock().lock();
+        try {
+            String previousCategory = removeDocument(kind, id);
+            scoreSums.get(kind).remove(id);
+            reweightCategoriesNamed(previousCategory, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            scoreSums.get(event.kind()).merge(event.targetId(), (long) event.scoreDelta(), Long::sum);
+            SuggestionTrie.Entry current = catalogEntries.get(event.kind()).get(event.targetId());
+            if (current != null) {
+                replaceCatalogEntry(event.kind(), current, weightOf(event.kind(), event.targetId()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangeEvent event) {
+        lock.writeLock().lock();
+        try {
+            removeCategory(event.id());
+            if (event.newName() != null) {
+                putCategory(event.id(), event.newName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hasta {@code limit} sugerencias para lo escrito por el usuario, de mayor a menor peso.
+     * Las entradas con el mismo nombre y tipo se devuelven una sola vez.
+     */
+    public List<SuggestionDTO> suggest(String query, int limit) {
+        String prefix = TextNormalizer.normalizePhrase(query);
+        int max = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        List<SuggestionTrie.Entry> candidates;
+        lock.readLock().lock();
+        try {
+            candidates = trie.complete(prefix, NODE_CAPACITY);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<SuggestionDTO> suggestions = new ArrayList<>(max);
+        for (SuggestionTrie.Entry entry : candidates) {
+            if (suggestions.size() == max) {
+                break;
+            }
+            if (!isDuplicate(candidates, entry)) {
+                suggestions.add(new SuggestionDTO(entry.text(), entry.type(), entry.id()));
+            }
+        }
+        return suggestions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return catalogEntries.get(CatalogKind.PRODUCT).size() + catalogEntries.get(CatalogKind.SERVICE).size()
+                    + categoryEntries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Solo se descarta una entrada si otra anterior de la lista (más pesada) tiene el mismo nombre y tipo. */
+    private static boolean isDuplicate(List<SuggestionTrie.Entry> candidates, SuggestionTrie.Entry entry) {
+        for (SuggestionTrie.Entry previous : candidates) {
+            if (previous == entry) {
+                return false;
+            }
+            if (previous.type() == entry.type() && previous.key().equals(entry.key())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putDocument(CatalogDocument document) {
+        String key = TextNormalizer.normalizePhrase(document.name());
+        if (key.isEmpty()) {
+            return;
+        }
+        SuggestionTrie.Entry entry = new SuggestionTrie.Entry(typeOf(document.kind()), document.id(),
+                document.name(), key, weightOf(document.kind(), document.id()));
+        catalogEntries.get(document.kind()).put(document.id(), entry);
+        trie.insert(entry);
+        if (document.categoryName() != null) {
+            categoryOf.get(document.kind()).put(document.id(), document.categoryName());
+            categoryUsage.merge(document.categoryName(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * @return la categoría que tenía la entrada eliminada, para recalcular su peso.
+     */
+    private String removeDocument(CatalogKind kind, Long id) {
+        SuggestionTrie.Entry entry = catalogEntries.get(kind).remove(id);
+        if (entry != null) {
+            trie.remove(entry);
+        }
+        String categoryName = categoryOf.get(kind).remove(id);
+        if (categoryName != null) {
+            categoryUsage.computeIfPresent(categoryName, (name, count) -> count > 1 ? count - 1 : null);
+        }
+        return categoryName;
+    }
+
+    private void removeCategory(Long id) {
+        SuggestionTrie.Entry current = categoryEntries.remove(id);
+        if (current != null) {
+            trie.remove(current);
+        }
+    }
+
+    private void putCategory(Long id, String name) {
+        removeCategory(id);
+        String key = TextNormalizer.normalizePhrase(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        SuggestionTrie.Entry entry = new SuggestionTrie.Entry(SuggestionType.CATEGORY, id, name, key,
+                1L + categoryUsage.getOrDefault(name, 0));
+        categoryEntries.put(id, entry);
+        trie.insert(entry);
+    }
+
+    private void reweightCategoriesNamed(String previousName, String newName) {
+        if (previousName == null && newName == null || previousName != null && previousName.equals(newName)) {
+            return;
+        }
+        List<Long> affected = new ArrayList<>();
+        for (SuggestionTrie.Entry entry : categoryEntries.values()) {
+            if (entry.text().equals(previousName) || entry.text().equals(newName)) {
+                affected.add(entry.id());
+            }
+        }
+        reweightCategories(affected);
+    }
+
+    private void reweightCategories(Collection<Long> categoryIds) {
+        for (Long id : new ArrayList<>(categoryIds)) {
+            SuggestionTrie.Entry current = categoryEntries.get(id);
+            long weight = 1L + categoryUsage.getOrDefault(current.text(), 0);
+            if (weight != current.weight()) {
+                putCategory(id, current.text());
+            }
+        }
+    }
+
+    private void replaceCatalogEntry(CatalogKind kind, SuggestionTrie.Entry current, long weight) {
+        if (weight == current.weight()) {
+            return;
+        }
+        trie.remove(current);
+        SuggestionTrie.Entry replacement = new SuggestionTrie.Entry(current.type(), current.id(), current.text(),
+                current.key(), weight);
+        catalogEntries.get(kind).put(current.id(), replacement);
+        trie.insert(replacement);
+    }
+
+    private long weightOf(CatalogKind kind, Long id) {
+        return 1L + Math.max(0L, scoreSums.get(kind).getOrDefault(id, 0L));
+    }
+
+    private static SuggestionType typeOf(CatalogKind kind) {
+        return kind == CatalogKind.PRODUCT ? SuggestionType.PRODUCT : SuggestionType.SERVICE;
+    }
+}
@@ -0,0 +1,238 @@
+package com.bernate.services_back.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Trie de autocompletado. Cada entrada se inserta por el comienzo de cada una de sus palabras
+ * ("mesa de madera" responde a "mes" y a "mad"), y cada nodo guarda ya ordenadas las {@code k}
+ * entradas de más peso de su subárbol, de modo que una consulta es un recorrido de tantos nodos
+ * como caracteres tenga el prefijo y no reserva nada más que la lista de salida.
+ * Los hijos se guardan en arrays ordenados por carácter en lugar de mapas.
+ * No es seguro para uso concurrente; {@link SuggestionIndex} lo protege con un cerrojo.
+ */
+public class SuggestionTrie {
+
+    /** Profundidad máxima indexada; los prefijos más largos se filtran sobre los candidatos. */
+    static final int MAX_DEPTH = 24;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    static final Comparator<Entry> BY_WEIGHT = Comparator
+            .comparingLong(Entry::weight).reversed()
+            .thenComparingInt(entry -> entry.text().length())
+            .thenComparing(Entry::key);
+
+    /**
+     * @param key clave normalizada ({@link TextNormalizer#normalizePhrase(String)}).
+     */
+    public record Entry(SuggestionType type, Long id, String text, String key, long weight) {
+    }
+
+    private final int k;
+    private final Node root = new Node();
+
+    public SuggestionTrie(int k) {
+        this.k = k;
+    }
+
+    public void insert(Entry entry) {
+        for (int start : wordStarts(entry.key())) {
+            Node node = root;
+            int end = Math.min(entry.key().length(), start + MAX_DEPTH);
+            for (int i = start; i < end; i++) {
+                node = node.childOrCreate(entry.key().charAt(i));
+                node.offer(entry, k);
+            }
+            node.terminals = append(node.terminals, entry);
+        }
+    }
+
+    public void remove(Entry entry) {
+        for (int start : wordStarts(entry.key())) {
+            int end = Math.min(entry.key().length(), start + MAX_DEPTH);
+            Node[] path = new Node[end - start + 1];
+            path[0] = root;
+            for (int i = start; i < end; i++) {
+                Node next = path[i - start].child(entry.key().charAt(i));
+                if (next == null) {
+                    return;
+                }
+                path[i - start + 1] = next;
+            }
+            Node last = path[path.length - 1];
+            last.terminals = without(last.terminals, entry);
+            for (int depth = path.length - 1; depth > 0; depth--) {
+                Node node = path[depth];
+                if (node.terminals.length == 0 && node.children.length == 0) {
+                    path[depth - 1].removeChild(entry.key().charAt(start + depth - 1));
+                } else if (contains(node.top, entry)) {
+                    node.recomputeTop(k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Las mejores entradas que empiezan por {@code prefix} (o alguna de cuyas palabras lo hace).
+     */
+    public List<Entry> complete(String prefix, int limit) {
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        Node node = root;
+        int depth = Math.min(prefix.length(), MAX_DEPTH);
+        for (int i = 0; i < depth && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+        boolean truncated = prefix.length() > MAX_DEPTH;
+        List<Entry> result = new ArrayList<>(Math.min(limit, node.top.length));
+        for (Entry entry : node.top) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (!truncated || entry.key().startsWith(prefix) || entry.key().contains(" " + prefix)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private static int[] wordStarts(String key) {
+        int count = key.isEmpty() ? 0 : 1;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == ' ') {
+                count++;
+            }
+        }
+        int[] starts = new int[count];
+        int n = 0;
+        if (!key.isEmpty()) {
+            starts[n++] = 0;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == ' ') {
+                starts[n++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
+    private static boolean contains(Entry[] entries, Entry entry) {
+        for (Entry candidate : entries) {
+            if (candidate == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                Entry[] result = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, result, 0, i);
+                System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                return result.length == 0 ? NO_ENTRIES : result;
+            }
+        }
+        return entries;
+    }
+
+    private static final class Node {
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private Entry[] top = NO_ENTRIES;
+        private Entry[] terminals = NO_ENTRIES;
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            Node child = new Node();
+            newChildren[insertAt] = child;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        private void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            keys = newKeys.length == 0 ? NO_KEYS : newKeys;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+
+        /**
+         * Inserta la entrada en el top del nodo si le corresponde, manteniéndolo ordenado.
+         */
+        private void offer(Entry entry, int k) {
+            if (contains(top, entry)) {
+                return;
+            }
+            if (top.length == k && BY_WEIGHT.compare(entry, top[k - 1]) >= 0) {
+                return;
+            }
+            int position = 0;
+            while (position < top.length && BY_WEIGHT.compare(top[position], entry) <= 0) {
+                position++;
+            }
+            int newLength = Math.min(top.length + 1, k);
+            Entry[] newTop = new Entry[newLength];
+            System.arraycopy(top, 0, newTop, 0, position);
+            newTop[position] = entry;
+            System.arraycopy(top, position, newTop, position + 1, newLength - position - 1);
+            top = newTop;
+        }
+
+        /**
+         * El top de un nodo sale de sus propias entradas y de los tops de sus hijos.
+         */
+        private void recomputeTop(int k) {
+            top = NO_ENTRIES;
+            for (Entry entry : terminals) {
+                offer(entry, k);
+            }
+            for (Node child : children) {
+                for (Entry entry : child.top) {
+                    offer(entry, k);
+                }
+            }
+        }
+    }
+}
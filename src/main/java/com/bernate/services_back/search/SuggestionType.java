@@ -0,0 +1,7 @@
+package com.bernate.services_back.search;
+
+public enum SuggestionType {
+    PRODUCT,
+    SERVICE,
+    CATEGORY
+}
@@ -0,0 +1,91 @@
+package com.bernate.services_back.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normaliza texto en español para los índices de búsqueda: minúsculas, sin tildes ni diéresis
+ * ("Fontanería" y "fontaneria" producen el mismo término) y sin palabras vacías.
+ */
+public final class TextNormalizer {
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "al", "ante", "con", "de", "del", "desde", "e", "el", "en", "entre", "es", "hasta",
+            "la", "las", "lo", "los", "o", "para", "por", "que", "se", "sin", "sobre", "su", "sus",
+            "u", "un", "una", "unas", "unos", "y");
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Minúsculas y sin marcas diacríticas, conservando la ñ.
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                // La tilde de la ñ forma parte de la letra: "año" no debe coincidir con "ano".
+                if (c == '\u0303' && folded.length() > 0 && folded.charAt(folded.length() - 1) == 'n') {
+                    folded.setCharAt(folded.length() - 1, 'ñ');
+                }
+                continue;
+            }
+            folded.append(c);
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Texto plegado con los separadores reducidos a un único espacio, conservando todas las
+     * palabras: es la forma que se compara con lo que el usuario va escribiendo.
+     */
+    public static String normalizePhrase(String text) {
+        String folded = fold(text);
+        StringBuilder phrase = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && phrase.length() > 0) {
+                    phrase.append(' ');
+                }
+                phrase.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return phrase.toString();
+    }
+
+    /**
+     * Divide el texto en términos normalizados, descartando palabras vacías.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = folded.substring(start, i);
+                if (!STOPWORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,348 @@
+package com.bernate.services_back.search;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de trigramas sobre los nombres de una clase de entrada del catálogo, para búsquedas
+ * tolerantes a errores ("bisicleta" → "bicicleta"). Cada palabra plegada se rellena como en
+ * pg_trgm ({@code "  bici "}) y se parte en trigramas; cada trigrama tiene un bitmap Roaring
+ * con los documentos que lo contienen.
+ * <p>
+ * Un documento con al menos {@code T} de los {@code Q} trigramas de la consulta aparece
+ * forzosamente en alguna de las {@code Q - T + 1} listas más cortas, así que los candidatos salen
+ * de la unión de esas listas y solo ellos se verifican contra las demás. Nunca se recorren todos
+ * los documentos. El mismo mecanismo sobre el vocabulario de palabras da las sugerencias de
+ * "quizás quisiste decir".
+ */
+public class TrigramIndex {
+
+    /** Los ids se guardan como {@code int}; los mayores no se indexan, igual que en las facetas. */
+    private static final long MAX_ID = Integer.MAX_VALUE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, RoaringBitmap> documentPostings = new HashMap<>();
+    private final Map<Integer, String[]> documentTrigrams = new HashMap<>();
+    private final Map<Integer, String[]> documentWords = new HashMap<>();
+
+    private final Map<String, RoaringBitmap> wordPostings = new HashMap<>();
+    private final Map<String, Word> vocabulary = new HashMap<>();
+    private final List<Word> wordsByOrdinal = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    /** Un documento similar y la fracción de trigramas de la consulta que contiene. */
+    public record Match(long id, double score, double similarity) {
+    }
+
+    /** Palabra del vocabulario propuesta como corrección. */
+    public record Correction(String word, int distance, int frequency) {
+    }
+
+    private static final class Word {
+        private final String text;
+        private final int ordinal;
+        private int frequency;
+
+        private Word(String text, int ordinal) {
+            this.text = text;
+            this.ordinal = ordinal;
+        }
+    }
+
+    public void rebuild(Collection<CatalogDocument> documents) {
+        lock.writeLock().lock();
+        try {
+            documentPostings.clear();
+            documentTrigrams.clear();
+            documentWords.clear();
+            wordPostings.clear();
+            vocabulary.clear();
+            wordsByOrdinal.clear();
+            freeOrdinals.clear();
+            for (CatalogDocument document : documents) {
+                addLocked(document);
+            }
+            for (RoaringBitmap bitmap : documentPostings.values()) {
+                bitmap.runOptimize();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void upsert(CatalogDocument document) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(document.id());
+            addLocked(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentTrigrams.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Documentos cuyo nombre contiene al menos {@code minSimilarity} de los trigramas de la consulta,
+     * ordenados por esa fracción, después por similitud de Jaccard (penaliza nombres largos) y por id.
+     */
+    public List<Match> search(String query, double minSimilarity) {
+        String[] queryTrigrams = trigrams(TextNormalizer.normalizePhrase(query));
+        if (queryTrigrams.length == 0) {
+            return List.of();
+        }
+        int minShared = Math.max(1, (int) Math.ceil(minSimilarity * queryTrigrams.length));
+        lock.readLock().lock();
+        try {
+            List<int[]> candidates = candidates(documentPostings, queryTrigrams, minShared);
+            List<Match> matches = new ArrayList<>(candidates.size());
+            for (int[] candidate : candidates) {
+                int shared = candidate[1];
+                int documentSize = documentTrigrams.get(candidate[0]).length;
+                matches.add(new Match(candidate[0], (double) shared / queryTrigrams.length,
+                        (double) shared / (queryTrigrams.length + documentSize - shared)));
+            }
+            matches.sort(Comparator.comparingDouble(Match::score).reversed()
+                    .thenComparing(Comparator.comparingDouble(Match::similarity).reversed())
+                    .thenComparing(Comparator.comparingLong(Match::id).reversed()));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * La palabra del vocabulario más parecida a {@code word} (ya normalizada), a una distancia de
+     * edición de como mucho {@code maxDistance}; a igualdad, la más frecuente en el catálogo.
+     *
+     * @return {@code null} si la palabra ya existe en el vocabulario o no hay ninguna lo bastante cercana.
+     */
+    public Correction closestWord(String word, int maxDistance) {
+        lock.readLock().lock();
+        try {
+            Word known = vocabulary.get(word);
+            if (known != null) {
+                return new Correction(word, 0, known.frequency);
+            }
+            String[] wordTrigrams = trigrams(word);
+            // Cada edición altera como mucho tres trigramas.
+            int minShared = Math.max(1, wordTrigrams.length - 3 * maxDistance);
+            Correction best = null;
+            for (int[] candidate : candidates(wordPostings, wordTrigrams, minShared)) {
+                Word vocabularyWord = wordsByOrdinal.get(candidate[0]);
+                if (Math.abs(vocabularyWord.text.length() - word.length()) > maxDistance) {
+                    continue;
+                }
+                int distance = editDistance(word, vocabularyWord.text, maxDistance);
+                if (distance > maxDistance) {
+                    continue;
+                }
+                if (best == null || distance < best.distance()
+                        || distance == best.distance() && vocabularyWord.frequency > best.frequency()) {
+                    best = new Correction(vocabularyWord.text, distance, vocabularyWord.frequency);
+                }
+            }
+            return best;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Trigramas distintos de un texto ya normalizado, palabra a palabra.
+     */
+    static String[] trigrams(String phrase) {
+        if (phrase.isEmpty()) {
+            return new String[0];
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : phrase.split(" ")) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams.toArray(new String[0]);
+    }
+
+    /**
+     * Pares {id, trigramas compartidos} de los elementos que comparten al menos {@code minShared}
+     * trigramas con la consulta.
+     */
+    private static List<int[]> candidates(Map<String, RoaringBitmap> postings, String[] queryTrigrams, int minShared) {
+        RoaringBitmap[] lists = new RoaringBitmap[queryTrigrams.length];
+        int present = 0;
+        for (String trigram : queryTrigrams) {
+            RoaringBitmap posting = postings.get(trigram);
+            if (posting != null) {
+                lists[present++] = posting;
+            }
+        }
+        if (present < minShared) {
+            return List.of();
+        }
+        RoaringBitmap[] sorted = Arrays.copyOf(lists, present);
+        Arrays.sort(sorted, Comparator.comparingInt(RoaringBitmap::getCardinality));
+
+        int prefixLength = present - minShared + 1;
+        RoaringBitmap candidates = FastAggregation.or(Arrays.copyOf(sorted, prefixLength));
+        List<int[]> result = new ArrayList<>();
+        IntIterator iterator = candidates.getIntIterator();
+        while (iterator.hasNext()) {
+            int id = iterator.next();
+            int shared = 0;
+            for (int i = 0; i < present; i++) {
+                if (sorted[i].contains(id)) {
+                    shared++;
+                } else if (shared + present - i - 1 < minShared) {
+                    break;
+                }
+            }
+            if (shared >= minShared) {
+                result.add(new int[]{id, shared});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Distancia de Levenshtein con corte: devuelve {@code max + 1} en cuanto se sabe que la supera.
+     */
+    static int editDistance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j] + 1, current[j - 1] + 1));
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private void addLocked(CatalogDocument document) {
+        if (document.id() == null || document.id() > MAX_ID) {
+            return;
+        }
+        int id = document.id().intValue();
+        String phrase = TextNormalizer.normalizePhrase(document.name());
+        String[] grams = trigrams(phrase);
+        if (grams.length == 0) {
+            return;
+        }
+        for (String trigram : grams) {
+            documentPostings.computeIfAbsent(trigram, k -> new RoaringBitmap()).add(id);
+        }
+        documentTrigrams.put(id, grams);
+        String[] words = Arrays.stream(phrase.split(" ")).distinct().toArray(String[]::new);
+        documentWords.put(id, words);
+        for (String word : words) {
+            addWord(word);
+        }
+    }
+
+    private void removeLocked(Long id) {
+        if (id == null || id > MAX_ID) {
+            return;
+        }
+        int key = id.intValue();
+        String[] grams = documentTrigrams.remove(key);
+        if (grams == null) {
+            return;
+        }
+        for (String trigram : grams) {
+            RoaringBitmap posting = documentPostings.get(trigram);
+            if (posting != null) {
+                posting.remove(key);
+                if (posting.isEmpty()) {
+                    documentPostings.remove(trigram);
+                }
+            }
+        }
+        for (String word : documentWords.remove(key)) {
+            removeWord(word);
+        }
+    }
+
+    private void addWord(String text) {
+        Word word = vocabulary.get(text);
+        if (word == null) {
+            Integer reused = freeOrdinals.poll();
+            int ordinal = reused != null ? reused : wordsByOrdinal.size();
+            word = new Word(text, ordinal);
+            if (reused != null) {
+                wordsByOrdinal.set(ordinal, word);
+            } else {
+                wordsByOrdinal.add(word);
+            }
+            vocabulary.put(text, word);
+            for (String trigram : trigrams(text)) {
+                wordPostings.computeIfAbsent(trigram, k -> new RoaringBitmap()).add(ordinal);
+            }
+        }
+        word.frequency++;
+    }
+
+    private void removeWord(String text) {
+        Word word = vocabulary.get(text);
+        if (word == null || --word.frequency > 0) {
+            return;
+        }
+        vocabulary.remove(text);
+        wordsByOrdinal.set(word.ordinal, null);
+        freeOrdinals.push(word.ordinal);
+        for (String trigram : trigrams(text)) {
+            RoaringBitmap posting = wordPostings.get(trigram);
+            if (posting != null) {
+                posting.remove(word.ordinal);
+                if (posting.isEmpty()) {
+                    wordPostings.remove(trigram);
+                }
+            }
+        }
+    }
+}
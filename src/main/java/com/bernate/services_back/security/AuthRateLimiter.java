@@ -0,0 +1,130 @@
+package com.bernate.services_back.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limita los intentos de login por IP y por usuario, y los registros y renovaciones de token por IP,
+ * antes de que lleguen a BCrypt o a la base de datos. Los fallos repetidos activan un bloqueo progresivo.
+ */
+@Component
+public class AuthRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthRateLimiter.class);
+
+    private final boolean enabled;
+    private final TokenBucketRateLimiter loginByIp;
+    private final TokenBucketRateLimiter loginByUsername;
+    private final TokenBucketRateLimiter registerByIp;
+    private final TokenBucketRateLimiter refreshByIp;
+
+    public AuthRateLimiter(
+            @Value("${app.security.rate-limit.enabled:true}") boolean enabled,
+            @Value("${app.security.rate-limit.login.ip.capacity:20}") int loginIpCapacity,
+            @Value("${app.security.rate-limit.login.ip.refill-per-minute:20}") int loginIpRefill,
+            @Value("${app.security.rate-limit.login.username.capacity:5}") int loginUserCapacity,
+            @Value("${app.security.rate-limit.login.username.refill-per-minute:5}") int loginUserRefill,
+            @Value("${app.security.rate-limit.register.ip.capacity:5}") int registerIpCapacity,
+            @Value("${app.security.rate-limit.register.ip.refill-per-minute:5}") int registerIpRefill,
+            @Value("${app.security.rate-limit.refresh.ip.capacity:30}") int refreshIpCapacity,
+            @Value("${app.security.rate-limit.refresh.ip.refill-per-minute:30}") int refreshIpRefill,
+            @Value("${app.security.rate-limit.lockout.threshold:5}") int lockoutThreshold,
+            @Value("${app.security.rate-limit.lockout.ip-threshold:20}") int ipLockoutThreshold,
+            @Value("${app.security.rate-limit.lockout.base-seconds:30}") long lockoutBaseSeconds,
+            @Value("${app.security.rate-limit.lockout.max-seconds:900}") long lockoutMaxSeconds,
+            @Value("${app.security.rate-limit.max-keys:100000}") int maxKeys,
+            @Value("${app.security.rate-limit.idle-seconds:900}") long idleSeconds) {
+        this.enabled = enabled;
+        this.loginByIp = new TokenBucketRateLimiter(loginIpCapacity, loginIpRefill,
+                ipLockoutThreshold, lockoutBaseSeconds, lockoutMaxSeconds, maxKeys, idleSeconds);
+        this.loginByUsername = new TokenBucketRateLimiter(loginUserCapacity, loginUserRefill,
+                lockoutThreshold, lockoutBaseSeconds, lockoutMaxSeconds, maxKeys, idleSeconds);
+        this.registerByIp = new TokenBucketRateLimiter(registerIpCapacity, registerIpRefill,
+                Integer.MAX_VALUE, lockoutBaseSeconds, lockoutMaxSeconds, maxKeys, idleSeconds);
+        this.refreshByIp = new TokenBucketRateLimiter(refreshIpCapacity, refreshIpRefill,
+                ipLockoutThreshold, lockoutBaseSeconds, lockoutMaxSeconds, maxKeys, idleSeconds);
+    }
+
+    /**
+     * @return 0 si el intento se admite, o los segundos que el cliente debe esperar.
+     */
+    public long checkLogin(String clientIp, String username) {
+        if (!enabled) {
+            return 0;
+        }
+        long wait = loginByIp.tryAcquire(clientIp);
+        if (wait == 0 && username != null) {
+            wait = loginByUsername.tryAcquire(usernameKey(username));
+        }
+        if (wait > 0) {
+            logger.warn("Intento de login limitado para IP {} y usuario {}", clientIp, username);
+        }
+        return toRetryAfterSeconds(wait);
+    }
+
+    public void recordLoginFailure(String clientIp, String username) {
+        if (!enabled) {
+            return;
+        }
+        loginByIp.recordFailure(clientIp);
+        if (username != null) {
+            loginByUsername.recordFailure(usernameKey(username));
+        }
+    }
+
+    /**
+     * Solo se perdona al usuario: el bloqueo de la IP se mantiene, para que quien tenga una
+     * cuenta válida no pueda usarla para reiniciar su bloqueo mientras prueba contraseñas ajenas.
+     */
+    public void recordLoginSuccess(String clientIp, String username) {
+        if (!enabled) {
+            return;
+        }
+        if (username != null) {
+            loginByUsername.recordSuccess(usernameKey(username));
+        }
+    }
+
+    public long checkRegistration(String clientIp) {
+        if (!enabled) {
+            return 0;
+        }
+        return toRetryAfterSeconds(registerByIp.tryAcquire(clientIp));
+    }
+
+    public long checkRefresh(String clientIp) {
+        if (!enabled) {
+            return 0;
+        }
+        long wait = refreshByIp.tryAcquire(clientIp);
+        if (wait > 0) {
+            logger.warn("Renovación de token limitada para IP {}", clientIp);
+        }
+        return toRetryAfterSeconds(wait);
+    }
+
+    /**
+     * Tokens de refresco inválidos o reutilizados: cuentan para el bloqueo de la IP.
+     */
+    public void recordRefreshFailure(String clientIp) {
+        if (enabled) {
+            refreshByIp.recordFailure(clientIp);
+        }
+    }
+
+    private static String usernameKey(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        if (waitNanos <= 0) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
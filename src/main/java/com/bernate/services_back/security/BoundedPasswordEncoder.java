@@ -0,0 +1,142 @@
+package com.bernate.services_back.security;
+
+import com.bernate.services_back.exception.ServiceBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordEncoder que ejecuta BCrypt en un pool dedicado y acotado. Cuando el pool y su cola
+ * están llenos la petición se rechaza de inmediato con {@link ServiceBusyException} (503),
+ * en lugar de ocupar los hilos de Tomcat que atienden el resto de la API.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private static final String CALIBRATION_PASSWORD = "calibracion-bcrypt";
+    private static final int CALIBRATION_WARMUP_RUNS = 200;
+    private static final int CALIBRATION_RUNS = 5;
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    public BoundedPasswordEncoder(int strength, int threads, int queueCapacity, long retryAfterSeconds) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new PasswordHashingThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("BCrypt con coste {} en un pool de {} hilos (cola de {})", strength, threads, queueCapacity);
+    }
+
+    /**
+     * Elige el mayor coste de BCrypt cuyo tiempo de verificación no supera el objetivo en esta máquina.
+     * Se calienta antes el JIT y se toma la mediana de varias verificaciones por coste: una sola
+     * medida en frío puede desviarse lo bastante como para elegir un coste de más o de menos.
+     */
+    public static int calibrateStrength(long targetMillis) {
+        BCryptPasswordEncoder warmup = new BCryptPasswordEncoder(4);
+        String warmupHash = warmup.encode(CALIBRATION_PASSWORD);
+        for (int i = 0; i < CALIBRATION_WARMUP_RUNS; i++) {
+            warmup.matches(CALIBRATION_PASSWORD, warmupHash);
+        }
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        int chosen = 4;
+        for (int strength = 4; strength <= 16; strength++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+            String hash = encoder.encode(CALIBRATION_PASSWORD);
+            long[] samples = new long[CALIBRATION_RUNS];
+            for (int run = 0; run < CALIBRATION_RUNS; run++) {
+                long start = System.nanoTime();
+                encoder.matches(CALIBRATION_PASSWORD, hash);
+                samples[run] = System.nanoTime() - start;
+            }
+            if (median(samples) > targetNanos) {
+                break;
+            }
+            chosen = strength;
+        }
+        logger.info("Calibración de BCrypt: coste {} para un objetivo de {} ms", chosen, targetMillis);
+        return chosen;
+    }
+
+    static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Solo se pide el rehash al coste actual cuando el pool tiene holgura, para que la
+     * migración de contraseñas no compita con los logins en un pico de carga.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return executor.getQueue().isEmpty() && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException("Demasiadas solicitudes de autenticación, intenta de nuevo en unos segundos.",
+                    retryAfterSeconds);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se procesaba la contraseña", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error al procesar la contraseña", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static final class PasswordHashingThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bcrypt-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -5,43 +5,54 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.List;
 
 public class CustomUserDetails implements UserDetails {
 
-    private Long id;
-    private String username;
-    private String password;
-    private Collection<? extends GrantedAuthority> authorities;
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
 
     public CustomUserDetails(Long id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
         this.username = username;
         this.password = password;
-        this.authorities = authorities;
+        this.authorities = authorities == null ? List.of() : List.copyOf(authorities);
     }
 
     public static CustomUserDetails build(User user) {
-        Collection<? extends GrantedAuthority> authorities =
-            (user.getRoles() == null || user.getRoles().trim().isEmpty()) ?
-            Collections.emptyList() :
-            Arrays.stream(user.getRoles().split(","))
-                    .map(String::trim)
-                    .filter(role -> !role.isEmpty())
-                    .map(SimpleGrantedAuthority::new)
-                    .collect(Collectors.toList());
-
         return new CustomUserDetails(
                 user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                authorities
+                parseAuthorities(user.getRoles())
         );
     }
 
+    /**
+     * Reconstruye el principal a partir de los claims firmados del token, sin consultar la base de datos.
+     */
+    public static CustomUserDetails fromClaims(Long id, String username, String roles) {
+        return new CustomUserDetails(id, username, null, parseAuthorities(roles));
+    }
+
+    public static List<GrantedAuthority> parseAuthorities(String roles) {
+        if (roles == null || roles.isBlank()) {
+            return List.of();
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String role : roles.split(",")) {
+            String trimmed = role.trim();
+            if (!trimmed.isEmpty()) {
+                authorities.add(new SimpleGrantedAuthority(trimmed));
+            }
+        }
+        return List.copyOf(authorities);
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,145 @@
+package com.bernate.services_back.security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket por clave, sin bloqueos: cada cubeta se representa con un único instante teórico
+ * de llegada (GCRA) que se actualiza con CAS, de modo que peticiones de claves distintas nunca
+ * compiten entre sí. Incluye bloqueo progresivo tras fallos repetidos y un límite de claves
+ * en memoria que desaloja las inactivas. Si aun así no cabe una clave nueva, comparte una cubeta
+ * de desbordamiento con el resto de claves sin sitio: llenar el mapa con claves distintas no
+ * desactiva el límite.
+ */
+public class TokenBucketRateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int lockoutThreshold;
+    private final long lockoutBaseNanos;
+    private final long lockoutMaxNanos;
+    private final int maxKeys;
+    private final long idleNanos;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final Bucket overflow = new Bucket(System.nanoTime());
+
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+
+    public TokenBucketRateLimiter(int capacity, int refillPerMinute,
+                                  int lockoutThreshold, long lockoutBaseSeconds, long lockoutMaxSeconds,
+                                  int maxKeys, long idleSeconds) {
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(refillPerMinute, 1);
+        this.burstToleranceNanos = emissionIntervalNanos * (Math.max(capacity, 1) - 1);
+        this.lockoutThreshold = lockoutThreshold;
+        this.lockoutBaseNanos = TimeUnit.SECONDS.toNanos(lockoutBaseSeconds);
+        this.lockoutMaxNanos = TimeUnit.SECONDS.toNanos(lockoutMaxSeconds);
+        this.maxKeys = maxKeys;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+    }
+
+    /**
+     * Consume un token para la clave.
+     *
+     * @return 0 si la petición se admite, o los nanosegundos que hay que esperar en caso contrario.
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        Bucket bucket = bucketFor(key, now);
+        bucket.lastAccess = now;
+
+        long lockedFor = bucket.lockedUntil - now;
+        if (bucket.lockedUntil != 0 && lockedFor > 0) {
+            return lockedFor;
+        }
+
+        while (true) {
+            long current = bucket.theoreticalArrival.get();
+            long arrival = Math.max(current, now);
+            long wait = arrival - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.theoreticalArrival.compareAndSet(current, arrival + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    public void recordFailure(String key) {
+        long now = System.nanoTime();
+        Bucket bucket = bucketFor(key, now);
+        if (bucket == overflow) {
+            // Un bloqueo de la cubeta compartida castigaría a claves que no han fallado nunca.
+            return;
+        }
+        int failures = bucket.failures.incrementAndGet();
+        if (failures >= lockoutThreshold) {
+            int exponent = Math.min(failures - lockoutThreshold, 20);
+            long lockout = Math.min(lockoutBaseNanos << exponent, lockoutMaxNanos);
+            bucket.lockedUntil = now + lockout;
+        }
+    }
+
+    public void recordSuccess(String key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.failures.set(0);
+            bucket.lockedUntil = 0;
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private Bucket bucketFor(String key, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            evictIdle(now);
+            if (buckets.size() >= maxKeys) {
+                return overflow;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(now));
+    }
+
+    /**
+     * Como mucho un barrido por segundo, para que una avalancha de claves nuevas no convierta
+     * cada petición en un recorrido completo del mapa.
+     */
+    private void evictIdle(long now) {
+        long last = lastEviction.get();
+        if (now - last < TimeUnit.SECONDS.toNanos(1) || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        Iterator<Bucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            boolean locked = bucket.lockedUntil != 0 && bucket.lockedUntil - now > 0;
+            if (!locked && now - bucket.lastAccess > idleNanos) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private final AtomicLong theoreticalArrival;
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long lastAccess;
+        private volatile long lockedUntil;
+
+        private Bucket(long now) {
+            this.theoreticalArrival = new AtomicLong(now);
+            this.lastAccess = now;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bernate.services_back.security;
+
+import com.bernate.services_back.event.UserChangedEvent;
+import com.bernate.services_back.model.User;
+import com.bernate.services_back.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versión vigente de los tokens de cada usuario. Se incrementa cuando cambian sus roles,
+ * de modo que los tokens emitidos antes del cambio dejan de aceptarse inmediatamente.
+ * La versión persistida en {@code users.token_version} se carga una sola vez por usuario.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    private final UserRepository userRepository;
+
+    private final Map<String, Integer> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TokenVersionRegistry(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public int currentVersion(String username) {
+        Integer version = versions.get(username);
+        if (version != null) {
+            return version;
+        }
+        return versions.computeIfAbsent(username, key -> userRepository.findByUsername(key)
+                .map(User::getTokenVersion)
+                .map(v -> v == null ? 0 : v)
+                .orElse(0));
+    }
+
+    public void update(String username, int version) {
+        versions.put(username, version);
+    }
+
+    /**
+     * Solo tras confirmar la transacción que incrementó la versión en la base de datos.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.tokenVersion() != null) {
+            update(event.username(), event.tokenVersion());
+        }
+    }
+
+    public static int nextVersion(User user) {
+        return user.getTokenVersion() == null ? 1 : user.getTokenVersion() + 1;
+    }
+}
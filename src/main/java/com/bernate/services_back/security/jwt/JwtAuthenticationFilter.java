@@ -1,6 +1,9 @@
 package com.bernate.services_back.security.jwt;
 
+import com.bernate.services_back.security.CustomUserDetails;
+import com.bernate.services_back.security.TokenVersionRegistry;
 import com.bernate.services_back.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,8 +11,13 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -17,6 +25,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -27,49 +36,127 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Value("${jwt.stateless-principal.enabled:false}")
+    private boolean statelessPrincipal;
+
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    /**
+     * No verifica el token aquí: registra un contexto de seguridad diferido que solo se resuelve
+     * (firma, claims y carga del usuario) cuando una regla de autorización, {@code @PreAuthorize}
+     * o un controlador consultan realmente el principal. Las peticiones a endpoints públicos
+     * que envían su token igualmente no pagan ni la criptografía ni la consulta a la base de datos.
+     */
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        try {
-            String jwt = getJwtFromRequest(request);
-            logger.info("JWT extraído de la petición: {}", jwt);
+        String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt)) {
-                boolean isValidToken = tokenProvider.validateToken(jwt);
-                logger.info("El token es válido?: {}", isValidToken);
-
-                if (isValidToken) {
-                    String username = tokenProvider.getUsernameFromJWT(jwt);
-                    logger.info("Username obtenido del token: {}", username);
+        if (StringUtils.hasText(jwt)) {
+            SecurityContextHolderStrategy strategy = SecurityContextHolder.getContextHolderStrategy();
+            strategy.setDeferredContext(new JwtDeferredSecurityContext(jwt, request, strategy));
+        } else {
+            logger.debug("No se encontró JWT en la cabecera 'Authorization' o el texto estaba vacío.");
+        }
 
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    logger.info("UserDetails cargados para el username: {}", userDetails != null ? userDetails.getUsername() : "null");
+        filterChain.doFilter(request, response);
+    }
 
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+    private Authentication authenticate(String jwt, HttpServletRequest request) {
+        try {
+            Claims claims = tokenProvider.verifyAccessToken(jwt);
+            logger.debug("El token es válido?: {}", claims != null);
+            if (claims == null) {
+                return null;
+            }
 
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                    logger.info("Autenticación establecida en SecurityContext para el usuario: {}", username);
-                }
-            } else {
-                logger.info("No se encontró JWT en la cabecera 'Authorization' o el texto estaba vacío.");
+            UserDetails userDetails = resolveUserDetails(claims);
+            if (userDetails == null) {
+                return null;
             }
+
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            logger.debug("Autenticación establecida en SecurityContext para el usuario: {}", userDetails.getUsername());
+            return authentication;
         } catch (Exception ex) {
             logger.error("No se pudo establecer la autenticación del usuario en el contexto de seguridad", ex);
+            return null;
         }
+    }
 
-        filterChain.doFilter(request, response);
+    /**
+     * En modo sin estado el principal se reconstruye desde los claims firmados (id, roles y versión),
+     * comprobando solo que la versión del token siga vigente. Los tokens antiguos sin esos claims,
+     * o el modo por defecto, siguen cargando el usuario desde la base de datos.
+     */
+    private UserDetails resolveUserDetails(Claims claims) {
+        String username = claims.getSubject();
+        Number userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Number.class);
+        Number tokenVersion = claims.get(JwtTokenProvider.CLAIM_TOKEN_VERSION, Number.class);
+
+        if (statelessPrincipal && userId != null && tokenVersion != null) {
+            if (tokenVersion.intValue() != tokenVersionRegistry.currentVersion(username)) {
+                logger.warn("Token con versión obsoleta para el usuario: {}", username);
+                return null;
+            }
+            return CustomUserDetails.fromClaims(userId.longValue(), username,
+                    claims.get(JwtTokenProvider.CLAIM_ROLES, String.class));
+        }
+        return userDetailsService.loadUserByUsername(username);
     }
 
-    private String getJwtFromRequest(HttpServletRequest request) {
+    public static String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
             return bearerToken.substring(7);
         }
         return null;
     }
+
+    /**
+     * Contexto que se calcula una sola vez por petición, la primera vez que alguien lo consulta.
+     */
+    private final class JwtDeferredSecurityContext implements DeferredSecurityContext {
+
+        private final String jwt;
+        private final HttpServletRequest request;
+        private final SecurityContextHolderStrategy strategy;
+        private final Supplier<SecurityContext> previous;
+        private SecurityContext context;
+        private boolean generated;
+
+        private JwtDeferredSecurityContext(String jwt, HttpServletRequest request, SecurityContextHolderStrategy strategy) {
+            this.jwt = jwt;
+            this.request = request;
+            this.strategy = strategy;
+            this.previous = strategy.getDeferredContext();
+        }
+
+        @Override
+        public SecurityContext get() {
+            if (context == null) {
+                Authentication authentication = authenticate(jwt, request);
+                if (authentication != null) {
+                    context = strategy.createEmptyContext();
+                    context.setAuthentication(authentication);
+                } else {
+                    context = previous.get();
+                    generated = previous instanceof DeferredSecurityContext deferred && deferred.isGenerated();
+                }
+            }
+            return context;
+        }
+
+        @Override
+        public boolean isGenerated() {
+            get();
+            return generated;
+        }
+    }
 }
\ No newline at end of file
@@ -1,10 +1,17 @@
 package com.bernate.services_back.security.jwt;
 
+import com.bernate.services_back.security.CustomUserDetails;
+import com.bernate.services_back.security.TokenVersionRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -12,7 +19,10 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
@@ -20,21 +30,85 @@ public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    public static final String CLAIM_TOKEN_TYPE = "typ";
+    public static final String TOKEN_TYPE_ACCESS = "access";
+    public static final String TOKEN_TYPE_REFRESH = "refresh";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration.ms}")
     private int jwtExpirationInMs;
 
+    @Value("${jwt.refresh-expiration.ms:1209600000}")
+    private long jwtRefreshExpirationInMs;
+
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    private final TokenRevocationList revocationList;
+
+    private SecretKey signingKey;
+
+    private JwtParser jwtParser;
+
+    /**
+     * Tokens ya verificados, indexados por el token compacto. Cada entrada caduca
+     * cuando caduca el propio token, así que un acierto nunca devuelve claims vencidos.
+     */
+    private Cache<String, Claims> verifiedClaimsCache;
+
+    @Autowired
+    public JwtTokenProvider(TokenVersionRegistry tokenVersionRegistry, TokenRevocationList revocationList) {
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.revocationList = revocationList;
+    }
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.verifiedClaimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        if (expiration == null) {
+                            return TimeUnit.MILLISECONDS.toNanos(jwtExpirationInMs);
+                        }
+                        long remainingMs = expiration.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        return signingKey;
     }
 
 
     public String generateToken(Authentication authentication) {
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-
+        return generateToken((UserDetails) authentication.getPrincipal());
+    }
 
+    public String generateToken(UserDetails userPrincipal) {
         String roles = userPrincipal.getAuthorities().stream()
                            .map(GrantedAuthority::getAuthority)
                            .collect(Collectors.joining(","));
@@ -42,56 +116,62 @@ public class JwtTokenProvider {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userPrincipal.getUsername())
-                .claim("roles", roles)
-                .setIssuedAt(new Date())
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_ACCESS)
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TOKEN_VERSION, tokenVersionRegistry.currentVersion(userPrincipal.getUsername()));
+        if (userPrincipal instanceof CustomUserDetails customUserDetails) {
+            builder.claim(CLAIM_USER_ID, customUserDetails.getId());
+        }
+
+        return builder
+                .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(getSigningKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
-
-
-
-    public String generateTokenFromUsername(String username) {
-
-
-
+    /**
+     * Token de refresco de larga duración. Solo sirve para obtener un nuevo par de tokens en
+     * /api/auth/refresh; el filtro JWT lo rechaza como token de acceso.
+     */
+    public String generateRefreshToken(String username) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
+        Date expiryDate = new Date(now.getTime() + jwtRefreshExpirationInMs);
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
-                .setIssuedAt(new Date())
+                .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH)
+                .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(getSigningKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
-    public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                            .setSigningKey(getSigningKey())
-                            .build()
-                            .parseClaimsJws(token)
-                            .getBody();
-        return claims.getSubject();
-    }
 
-
-    public String getRolesFromJWT(String token) {
-         Claims claims = Jwts.parserBuilder()
-                            .setSigningKey(getSigningKey())
-                            .build()
-                            .parseClaimsJws(token)
-                            .getBody();
-        return claims.get("roles", String.class);
-    }
-
-    public boolean validateToken(String authToken) {
+    /**
+     * Verifica la firma y la expiración del token una sola vez y devuelve sus claims.
+     * Los tokens verificados recientemente se sirven desde caché sin recalcular el HMAC.
+     *
+     * @param authToken token JWT compacto.
+     * @return los claims del token, o {@code null} si el token no es válido.
+     */
+    public Claims verifyToken(String authToken) {
+        if (authToken == null || authToken.isBlank()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+        Claims cached = verifiedClaimsCache.getIfPresent(authToken);
+        if (cached != null) {
+            return revocationList.isRevoked(cached.getId()) ? null : cached;
+        }
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(authToken).getBody();
+            verifiedClaimsCache.put(authToken, claims);
+            return revocationList.isRevoked(claims.getId()) ? null : claims;
         } catch (SignatureException ex) {
             logger.error("Invalid JWT signature: {}", ex.getMessage());
         } catch (MalformedJwtException ex) {
@@ -103,6 +183,54 @@ public class JwtTokenProvider {
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty: {}", ex.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Verifica un token de acceso. Solo se aceptan los emitidos por {@link #generateToken}: los de
+     * refresco y los que no llevan {@code typ=access} (sin jti no se podrían revocar) se rechazan.
+     */
+    public Claims verifyAccessToken(String authToken) {
+        Claims claims = verifyToken(authToken);
+        if (claims != null && !TOKEN_TYPE_ACCESS.equals(claims.get(CLAIM_TOKEN_TYPE, String.class))) {
+            logger.error("El token recibido no es un token de acceso");
+            return null;
+        }
+        return claims;
+    }
+
+    public Claims verifyRefreshToken(String refreshToken) {
+        Claims claims = verifyToken(refreshToken);
+        if (claims != null && !TOKEN_TYPE_REFRESH.equals(claims.get(CLAIM_TOKEN_TYPE, String.class))) {
+            logger.error("El token recibido no es un token de refresco");
+            return null;
+        }
+        return claims;
+    }
+
+    /**
+     * Revoca el token hasta su expiración.
+     *
+     * @return {@code true} si el token no estaba revocado ya (permite detectar reutilización).
+     */
+    public boolean revoke(Claims claims) {
+        Date expiration = claims.getExpiration();
+        long expiresAt = expiration != null ? expiration.getTime() : System.currentTimeMillis() + jwtExpirationInMs;
+        return revocationList.revoke(claims.getId(), expiresAt);
+    }
+
+    public String getUsernameFromJWT(String token) {
+        Claims claims = verifyToken(token);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+
+    public String getRolesFromJWT(String token) {
+        Claims claims = verifyToken(token);
+        return claims != null ? claims.get(CLAIM_ROLES, String.class) : null;
+    }
+
+    public boolean validateToken(String authToken) {
+        return verifyToken(authToken) != null;
     }
-}
\ No newline at end of file
+}
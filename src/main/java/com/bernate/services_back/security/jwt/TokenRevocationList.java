@@ -0,0 +1,158 @@
+package com.bernate.services_back.security.jwt;
+
+import com.bernate.services_back.model.RevokedToken;
+import com.bernate.services_back.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tokens revocados (por jti). Cada revocación se guarda en {@code revoked_tokens} y la tabla se
+ * carga al arrancar, así que un reinicio no resucita tokens de refresco ya usados ni sesiones
+ * cerradas; la inserción en la base de datos decide además qué presentación llegó primero, también
+ * entre instancias. La consulta de cada petición no toca la base de datos: un filtro de Bloom
+ * responde la inmensa mayoría (tokens no revocados) sin reservar memoria ni tocar el mapa, y solo
+ * los posibles positivos se confirman contra el conjunto exacto. Las entradas caducan con el
+ * propio token y el filtro se reconstruye periódicamente a partir de las que siguen vigentes.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final int bitCount;
+    private final int hashCount;
+    private final int pruneEvery;
+    private final AtomicInteger revocationsSincePrune = new AtomicInteger();
+
+    private volatile AtomicLongArray bloomBits;
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository,
+                               @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries,
+                               @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        int entries = Math.max(expectedEntries, 1000);
+        long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / LN2_SQUARED);
+        this.bitCount = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+        this.pruneEvery = Math.max(entries / 10, 100);
+        this.bloomBits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    @PostConstruct
+    void load() {
+        int loaded = 0;
+        for (RevokedToken token : revokedTokenRepository.findAllByExpiresAtAfter(Instant.now())) {
+            remember(token.getJti(), token.getExpiresAt().toEpochMilli());
+            loaded++;
+        }
+        logger.info("Cargados {} tokens revocados vigentes", loaded);
+    }
+
+    /**
+     * Revoca el token hasta su expiración.
+     *
+     * @return {@code true} si el token no estaba revocado todavía.
+     */
+    public boolean revoke(String jti, long expiresAtMillis) {
+        if (jti == null || revoked.containsKey(jti)) {
+            return false;
+        }
+        boolean added = revokedTokenRepository.insertIfAbsent(jti, Instant.ofEpochMilli(expiresAtMillis)) > 0;
+        remember(jti, expiresAtMillis);
+        if (added && revocationsSincePrune.incrementAndGet() >= pruneEvery) {
+            prune();
+        }
+        return added;
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null || !mightContain(bloomBits, jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void remember(String jti, long expiresAtMillis) {
+        if (revoked.putIfAbsent(jti, expiresAtMillis) == null) {
+            addToBloom(bloomBits, jti);
+        }
+    }
+
+    /**
+     * Elimina las entradas ya caducadas (también de la tabla) y reconstruye el filtro de Bloom con
+     * las restantes, para que la tasa de falsos positivos no crezca indefinidamente.
+     */
+    synchronized void prune() {
+        revocationsSincePrune.set(0);
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+        AtomicLongArray rebuilt = new AtomicLongArray(bloomBits.length());
+        for (String jti : revoked.keySet()) {
+            addToBloom(rebuilt, jti);
+        }
+        bloomBits = rebuilt;
+        // Las revocaciones concurrentes con la reconstrucción se vuelven a marcar en el filtro nuevo.
+        for (String jti : revoked.keySet()) {
+            addToBloom(rebuilt, jti);
+        }
+    }
+
+    private void addToBloom(AtomicLongArray bits, String jti) {
+        int h1 = jti.hashCode();
+        int h2 = secondaryHash(jti);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(index);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(index, current, current | mask));
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray bits, String jti) {
+        int h1 = jti.hashCode();
+        int h2 = secondaryHash(jti);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int secondaryHash(String value) {
+        int hash = 0x9747b28c;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x5bd1e995;
+            hash ^= hash >>> 15;
+        }
+        return hash | 1;
+    }
+}
@@ -5,15 +5,21 @@ import com.bernate.services_back.dto.LoginRequest;
 import com.bernate.services_back.dto.RegisterRequest;
 import com.bernate.services_back.dto.UpdateUserRolesRequest;
 import com.bernate.services_back.dto.UserResponseDTO;
+import com.bernate.services_back.event.UserChangedEvent;
 import com.bernate.services_back.exception.ResourceNotFoundException;
 import com.bernate.services_back.model.User;
 import com.bernate.services_back.repository.UserRepository;
+import com.bernate.services_back.security.TokenVersionRegistry;
 import com.bernate.services_back.security.jwt.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -40,17 +46,25 @@ public class AuthService {
 
     private final RatingRepository ratingRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final UserDetailsServiceImpl userDetailsService;
+
     @Autowired
     public AuthService(UserRepository userRepository,
             PasswordEncoder passwordEncoder,
             AuthenticationManager authenticationManager,
             JwtTokenProvider tokenProvider,
-            RatingRepository ratingRepository) {
+            RatingRepository ratingRepository,
+            ApplicationEventPublisher eventPublisher,
+            UserDetailsServiceImpl userDetailsService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.tokenProvider = tokenProvider;
         this.ratingRepository = ratingRepository;
+        this.eventPublisher = eventPublisher;
+        this.userDetailsService = userDetailsService;
     }
 
     @Transactional
@@ -75,7 +89,9 @@ public class AuthService {
 
         user.setRoles("ROLE_USER");
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getUsername()));
+        return savedUser;
     }
 
 
@@ -86,7 +102,41 @@ public class AuthService {
                         loginRequest.getPassword()));
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = tokenProvider.generateToken(authentication);
-        return new AuthResponse(jwt);
+        String refreshToken = tokenProvider.generateRefreshToken(authentication.getName());
+        return new AuthResponse(jwt, refreshToken);
+    }
+
+    /**
+     * Emite un nuevo par de tokens a partir de un token de refresco válido. El token de refresco
+     * se revoca al usarse (rotación), así que una segunda presentación del mismo token falla.
+     */
+    public AuthResponse refreshTokens(String refreshToken) {
+        Claims claims = tokenProvider.verifyRefreshToken(refreshToken);
+        if (claims == null || !tokenProvider.revoke(claims)) {
+            throw new BadCredentialsException("Token de refresco inválido o ya utilizado.");
+        }
+        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        return new AuthResponse(
+                tokenProvider.generateToken(userDetails),
+                tokenProvider.generateRefreshToken(userDetails.getUsername()));
+    }
+
+    /**
+     * Revoca el token de acceso y, si se envía, el de refresco, hasta su expiración.
+     */
+    public void logout(String accessToken, String refreshToken) {
+        if (accessToken != null) {
+            Claims accessClaims = tokenProvider.verifyAccessToken(accessToken);
+            if (accessClaims != null) {
+                tokenProvider.revoke(accessClaims);
+            }
+        }
+        if (refreshToken != null) {
+            Claims refreshClaims = tokenProvider.verifyRefreshToken(refreshToken);
+            if (refreshClaims != null) {
+                tokenProvider.revoke(refreshClaims);
+            }
+        }
     }
 
     @Transactional
@@ -104,7 +154,13 @@ public class AuthService {
                 .distinct()
                 .collect(Collectors.joining(","));
         user.setRoles(rolesAsString);
-        return userRepository.save(user);
+        int tokenVersion = TokenVersionRegistry.nextVersion(user);
+        user.setTokenVersion(tokenVersion);
+        User savedUser = userRepository.save(user);
+        // La versión en memoria se actualiza tras el commit: si la transacción se revierte,
+        // los tokens vigentes siguen siéndolo.
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getUsername(), tokenVersion));
+        return savedUser;
     }
 
     @Transactional(readOnly = true)
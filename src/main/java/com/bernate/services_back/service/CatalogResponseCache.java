@@ -0,0 +1,176 @@
+package com.bernate.services_back.service;
+
+import com.bernate.services_back.dto.Revised;
+import com.bernate.services_back.event.CatalogChangeEvent;
+import com.bernate.services_back.event.CategoryChangeEvent;
+import com.bernate.services_back.event.ImageVariantsAppliedEvent;
+import com.bernate.services_back.model.CategoryType;
+import com.bernate.services_back.search.CatalogKind;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché de respuestas ya serializadas a JSON para el detalle de productos, servicios y categorías
+ * y para el listado de categorías. Un acierto no pasa ni por Hibernate ni por Jackson: se
+ * devuelven los bytes tal cual, con su ETag. Caffeine (W-TinyLFU) decide qué conservar dentro
+ * de un presupuesto en bytes.
+ * <p>
+ * Cada entrada guarda la versión con la que se generó (en el ETag) y se descarta cuando la
+ * transacción que modifica la entidad se confirma. La carga se hace dentro de la propia caché,
+ * de modo que una invalidación que llegue durante una carga espera a que termine y la elimina:
+ * nunca queda guardada una versión anterior a la confirmada.
+ */
+@Service
+public class CatalogResponseCache {
+
+    /** Coste aproximado de la clave, el registro y el nodo de Caffeine, además del cuerpo. */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    /** Clave del listado completo de categorías (sin filtro de tipo). */
+    private static final long ALL_TYPES = -1;
+
+    public enum Kind {
+        PRODUCT,
+        SERVICE,
+        CATEGORY,
+        CATEGORY_LIST
+    }
+
+    private record Key(Kind kind, long id) {
+    }
+
+    /**
+     * Cuerpo JSON listo para escribir, con el ETag que lo valida.
+     */
+    public record CachedJson(byte[] body, String etag) {
+    }
+
+    private final ProductService productService;
+    private final ServiceService serviceService;
+    private final CategoryService categoryService;
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final Cache<Key, CachedJson> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CatalogResponseCache(ProductService productService,
+                                ServiceService serviceService,
+                                CategoryService categoryService,
+                                ObjectMapper objectMapper,
+                                @Value("${app.cache.responses.max-bytes:33554432}") long maxBytes) {
+        this.productService = productService;
+        this.serviceService = serviceService;
+        this.categoryService = categoryService;
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, CachedJson value) -> value.body().length + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+    }
+
+    public CachedJson product(Long id) {
+        return cache.get(new Key(Kind.PRODUCT, id), key -> serialize(productService.getProductById(id)));
+    }
+
+    public CachedJson service(Long id) {
+        return cache.get(new Key(Kind.SERVICE, id), key -> serialize(serviceService.getServiceById(id)));
+    }
+
+    public CachedJson category(Long id) {
+        return cache.get(new Key(Kind.CATEGORY, id), key -> serialize(() -> categoryService.getCategoryById(id)));
+    }
+
+    public CachedJson categories(CategoryType tipo) {
+        long id = tipo != null ? tipo.ordinal() : ALL_TYPES;
+        return cache.get(new Key(Kind.CATEGORY_LIST, id), key -> serialize(() -> tipo != null
+                ? categoryService.getCategoriesByType(tipo)
+                : categoryService.getAllCategories()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangeEvent event) {
+        invalidate(new Key(event.kind() == CatalogKind.PRODUCT ? Kind.PRODUCT : Kind.SERVICE, event.id()));
+    }
+
+    /**
+     * Las variantes de la imagen cambian el JSON sin cambiar la versión de la entidad.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageVariantsApplied(ImageVariantsAppliedEvent event) {
+        Kind kind = event.kind() == CatalogKind.PRODUCT ? Kind.PRODUCT : Kind.SERVICE;
+        for (Long id : event.ids()) {
+            invalidate(new Key(kind, id));
+        }
+    }
+
+    /**
+     * Cualquier cambio de categoría invalida su detalle y los listados; renombrarla o borrarla
+     * cambia además el {@code categoryName} de los productos y servicios, que se descartan todos.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangeEvent event) {
+        boolean affectsCatalog = event.isRename() || event.newName() == null;
+        cache.asMap().keySet().removeIf(key -> {
+            boolean stale = key.kind() == Kind.CATEGORY_LIST
+                    || key.kind() == Kind.CATEGORY && key.id() == event.id()
+                    || affectsCatalog && (key.kind() == Kind.PRODUCT || key.kind() == Kind.SERVICE);
+            if (stale) {
+                invalidations.incrementAndGet();
+            }
+            return stale;
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("weightedSizeBytes", cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("invalidationCount", invalidations.get());
+        return result;
+    }
+
+    private void invalidate(Key key) {
+        cache.invalidate(key);
+        invalidations.incrementAndGet();
+    }
+
+    private CachedJson serialize(Revised<?> revised) {
+        return new CachedJson(toBytes(revised.body()), revised.revision().etag());
+    }
+
+    /**
+     * Para las categorías, que no tienen versión, el ETag es el hash del propio cuerpo.
+     */
+    private CachedJson serialize(Supplier<?> dto) {
+        byte[] body = toBytes(dto.get());
+        return new CachedJson(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    }
+
+    private byte[] toBytes(Object dto) {
+        try {
+            return objectMapper.writeValueAsBytes(dto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+    }
+}
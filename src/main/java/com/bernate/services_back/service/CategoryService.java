@@ -1,11 +1,13 @@
 package com.bernate.services_back.service;
 
 import com.bernate.services_back.dto.CategoryDTO;
+import com.bernate.services_back.event.CategoryChangeEvent;
 import com.bernate.services_back.model.Category;
 import com.bernate.services_back.model.CategoryType;
 import com.bernate.services_back.repository.CategoryRepository;
 import com.bernate.services_back.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,10 +18,12 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, ApplicationEventPublisher eventPublisher) {
         this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
     }
 
 
@@ -52,6 +56,7 @@ public class CategoryService {
 
         Category category = convertToEntity(categoryDTO);
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangeEvent(savedCategory.getId(), null, savedCategory.getNombre()));
         return convertToDTO(savedCategory);
     }
 
@@ -83,19 +88,20 @@ public class CategoryService {
         Category existingCategory = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Categoría no encontrada para actualizar con id: " + id));
 
+        String previousName = existingCategory.getNombre();
         existingCategory.setNombre(categoryDTO.getNombre());
         existingCategory.setTipo(categoryDTO.getTipo());
 
 
         Category updatedCategory = categoryRepository.save(existingCategory);
+        eventPublisher.publishEvent(new CategoryChangeEvent(updatedCategory.getId(), previousName, updatedCategory.getNombre()));
         return convertToDTO(updatedCategory);
     }
 
     @Transactional
     public void deleteCategory(Long id) {
-        if (!categoryRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Categoría no encontrada para eliminar con id: " + id);
-        }
+        Category category = categoryRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Categoría no encontrada para eliminar con id: " + id));
 
 
 
@@ -104,5 +110,6 @@ public class CategoryService {
 
 
         categoryRepository.deleteById(id);
+        eventPublisher.publishEvent(new CategoryChangeEvent(id, category.getNombre(), null));
     }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.bernate.services_back.service;
+
+import com.bernate.services_back.dto.ProductDTO;
+import com.bernate.services_back.dto.ServiceDTO;
+import com.bernate.services_back.dto.UnifiedSearchItem;
+import com.bernate.services_back.dto.UnifiedSearchResponse;
+import com.bernate.services_back.exception.BadRequestException;
+import com.bernate.services_back.pagination.PageLimits;
+import com.bernate.services_back.search.CatalogIndexService;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.RankedResults;
+import com.bernate.services_back.search.ScoredItem;
+import com.bernate.services_back.search.StatementTimeout;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Búsqueda sobre productos y servicios a la vez. Cada lado se consulta en su propio hilo virtual
+ * y ambos comparten un mismo plazo; si uno no responde a tiempo se devuelve lo que haya del otro,
+ * marcado como parcial. El plazo se impone también a sus consultas ({@link StatementTimeout}),
+ * así que la base de datos cancela la que se quede atrás sin que haya que interrumpir el hilo.
+ * <p>
+ * Cada fuente puntúa en su propia escala (relevancia por idf del índice, similitud 0..1 de la
+ * búsqueda aproximada, posición en los motores de base de datos), así que antes de mezclar se
+ * normalizan dividiendo por la mejor puntuación de la fuente; después se paginan sobre la mezcla.
+ */
+@Service
+public class MarketplaceSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarketplaceSearchService.class);
+
+    /**
+     * Cada página necesita los {@code (page + 1) * size} mejores de cada lado; más allá de esta
+     * ventana la búsqueda unificada deja de paginar: {@code totalElements} no pasa de aquí y las
+     * páginas que empiezan después se rechazan.
+     */
+    public static final int MAX_WINDOW = 500;
+
+    private final ProductService productService;
+    private final ServiceService serviceService;
+    private final CatalogIndexService catalogIndexService;
+    private final StatementTimeout statementTimeout;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long timeoutMillis;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MarketplaceSearchService(ProductService productService,
+                                    ServiceService serviceService,
+                                    CatalogIndexService catalogIndexService,
+                                    StatementTimeout statementTimeout,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.search.unified.timeout-ms:800}") long timeoutMillis) {
+        this.productService = productService;
+        this.serviceService = serviceService;
+        this.catalogIndexService = catalogIndexService;
+        this.statementTimeout = statementTimeout;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public UnifiedSearchResponse search(String searchTerm, int page, int size) {
+        if (!StringUtils.hasText(searchTerm)) {
+            throw new BadRequestException("El término de búsqueda es obligatorio.");
+        }
+        int pageNumber = PageLimits.clampPage(page);
+        int pageSize = PageLimits.clampSize(size);
+        if ((long) pageNumber * pageSize >= MAX_WINDOW) {
+            throw new BadRequestException("La búsqueda unificada solo pagina los " + MAX_WINDOW
+                    + " primeros resultados; afina la búsqueda para ver otros.");
+        }
+        int window = (int) Math.min((long) (pageNumber + 1) * pageSize, MAX_WINDOW);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Future<RankedResults<ProductDTO>> products = executor.submit(
+                () -> withinDeadline(() -> productService.searchRanked(searchTerm, window)));
+        Future<RankedResults<ServiceDTO>> services = executor.submit(
+                () -> withinDeadline(() -> serviceService.searchRanked(searchTerm, window)));
+
+        List<CatalogKind> missing = new ArrayList<>();
+        RankedResults<ProductDTO> productResults = await(products, deadline, CatalogKind.PRODUCT, missing);
+        RankedResults<ServiceDTO> serviceResults = await(services, deadline, CatalogKind.SERVICE, missing);
+
+        List<UnifiedSearchItem> merged = new ArrayList<>();
+        double productScale = scale(productResults);
+        for (ScoredItem<ProductDTO> item : productResults.items()) {
+            merged.add(UnifiedSearchItem.of(item.item(), item.score() / productScale));
+        }
+        double serviceScale = scale(serviceResults);
+        for (ScoredItem<ServiceDTO> item : serviceResults.items()) {
+            merged.add(UnifiedSearchItem.of(item.item(), item.score() / serviceScale));
+        }
+        merged.sort(Comparator.comparingDouble(UnifiedSearchItem::getScore).reversed());
+
+        int from = Math.min(pageNumber * pageSize, merged.size());
+        int to = Math.min(from + pageSize, merged.size());
+        long total = productResults.total() + serviceResults.total();
+        return new UnifiedSearchResponse(new ArrayList<>(merged.subList(from, to)), pageNumber, pageSize,
+                productResults.total(), serviceResults.total(), Math.min(total, MAX_WINDOW),
+                !missing.isEmpty(), missing, catalogIndexService.didYouMean(searchTerm).orElse(null));
+    }
+
+    /**
+     * La búsqueda de un lado en su propia transacción de solo lectura, con el plazo aplicado a sus sentencias.
+     */
+    private <T> RankedResults<T> withinDeadline(Supplier<RankedResults<T>> search) {
+        return readOnlyTransaction.execute(status -> {
+            statementTimeout.applyToCurrentTransaction(timeoutMillis);
+            return search.get();
+        });
+    }
+
+    /**
+     * Mejor puntuación de la fuente, para llevar sus resultados a la escala 0..1.
+     */
+    private static double scale(RankedResults<?> results) {
+        double max = 0;
+        for (ScoredItem<?> item : results.items()) {
+            max = Math.max(max, item.score());
+        }
+        return max > 0 ? max : 1;
+    }
+
+    /**
+     * Si el plazo vence no se cancela la tarea: su consulta la corta el {@code statement_timeout}
+     * y el hilo virtual termina solo.
+     */
+    private <T> RankedResults<T> await(Future<RankedResults<T>> future, long deadline, CatalogKind kind,
+                                       List<CatalogKind> missing) {
+        try {
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Búsqueda unificada: {} superó el plazo de {} ms, se devuelven resultados parciales", kind, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryTimeoutException) {
+                logger.warn("Búsqueda unificada: la consulta de {} superó el plazo de {} ms, se devuelven resultados parciales",
+                        kind, timeoutMillis);
+            } else {
+                logger.error("Búsqueda unificada: error al buscar en {}", kind, e.getCause());
+            }
+        }
+        missing.add(kind);
+        return new RankedResults<>(List.of(), 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,31 +1,72 @@
 package com.bernate.services_back.service;
 
+import com.bernate.services_back.dto.CatalogFacets;
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.dto.CursorPage;
+import com.bernate.services_back.dto.EntityRevision;
 import com.bernate.services_back.dto.ProductDTO;
+import com.bernate.services_back.dto.Revised;
+import com.bernate.services_back.event.CatalogChangeEvent;
+import com.bernate.services_back.event.ImageStoredEvent;
+import com.bernate.services_back.event.ImageVariantsAppliedEvent;
+import com.bernate.services_back.event.ImageVariantsReadyEvent;
+import com.bernate.services_back.exception.BadRequestException;
+import com.bernate.services_back.exception.PreconditionFailedException;
 import com.bernate.services_back.exception.ResourceNotFoundException;
+import com.bernate.services_back.image.ImageHeader;
+import com.bernate.services_back.image.ImageStore;
+import com.bernate.services_back.image.ImageStore.ReceivedImage;
+import com.bernate.services_back.image.ImageVariant;
 import com.bernate.services_back.model.Category;
 import com.bernate.services_back.model.Product;
 import com.bernate.services_back.model.User;
+import com.bernate.services_back.pagination.CatalogPager;
+import com.bernate.services_back.pagination.CatalogSort;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.bernate.services_back.pagination.KeysetCursor;
+import com.bernate.services_back.pagination.PageLimits;
+import com.bernate.services_back.pagination.RowCountEstimator;
+import com.bernate.services_back.repository.CatalogSpecifications;
 import com.bernate.services_back.repository.CategoryRepository;
 import com.bernate.services_back.repository.ProductRepository;
 import com.bernate.services_back.repository.UserRepository;
+import com.bernate.services_back.search.CatalogDocument;
+import com.bernate.services_back.search.CatalogFacetIndex;
+import com.bernate.services_back.search.CatalogIndexService;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.RankedResults;
+import com.bernate.services_back.search.SearchBackend;
+import com.bernate.services_back.search.ScoredItem;
+import com.bernate.services_back.search.SearchHit;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 @Service
 public class ProductService {
@@ -33,20 +74,40 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
+    private final CatalogIndexService catalogIndexService;
+    private final CatalogFacetIndex catalogFacetIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogPager catalogPager;
+    private final RowCountEstimator rowCountEstimator;
+    private final ImageStore imageStore;
     private final Path rootLocation;
     @Value("${app.upload.dir:${user.home}/services_back_uploads}")
     private String baseUploadDir;
 
     public static final String PRODUCT_IMAGE_SUBPATH = "product-images";
 
+    private static final List<String> FETCHED_ASSOCIATIONS = List.of("categoria", "ofertadoPor");
+
     @Autowired
     public ProductService(ProductRepository productRepository,
             CategoryRepository categoryRepository,
             UserRepository userRepository,
+            CatalogIndexService catalogIndexService,
+            CatalogFacetIndex catalogFacetIndex,
+            ApplicationEventPublisher eventPublisher,
+            CatalogPager catalogPager,
+            RowCountEstimator rowCountEstimator,
+            ImageStore imageStore,
             @Value("${app.upload.dir:${user.home}/services_back_uploads}") String uploadDir) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
         this.userRepository = userRepository;
+        this.catalogIndexService = catalogIndexService;
+        this.catalogFacetIndex = catalogFacetIndex;
+        this.eventPublisher = eventPublisher;
+        this.catalogPager = catalogPager;
+        this.rowCountEstimator = rowCountEstimator;
+        this.imageStore = imageStore;
 
         this.rootLocation = Paths.get(uploadDir, PRODUCT_IMAGE_SUBPATH);
         try {
@@ -58,67 +119,232 @@ public class ProductService {
     }
 
 
-private String storeFile(MultipartFile file) {
-    if (file == null || file.isEmpty()) {
-        return null; 
+    private String storeFile(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        return imageStore.store(CatalogKind.PRODUCT, file);
     }
-    String originalFilename = file.getOriginalFilename();
-
 
+    @Transactional(readOnly = true)
+    public Page<ProductDTO> getAllProducts(String searchTerm, CatalogFilter filter, int page, int size,
+                                           CountStrategy count) {
+        if (filter.hasFilters() || filter.getSort() != null) {
+            boolean hasSearch = searchTerm != null && !searchTerm.trim().isEmpty();
+            return getProductsFiltered(hasSearch ? searchTerm : null, filter, page, size, count);
+        }
+        return findProductsPage(searchTerm, PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size)), count);
+    }
 
+    private Page<ProductDTO> findProductsPage(String searchTerm, Pageable pageable, CountStrategy count) {
+        Page<Product> productsPage;
 
-    String extension = "";
-    if (originalFilename != null && originalFilename.contains(".")) {
-        extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            Optional<List<SearchHit>> hits = catalogIndexService.search(CatalogKind.PRODUCT, searchTerm);
+            if (hits.isPresent()) {
+                return toSearchPage(hits.get(), pageable);
+            }
+            if (catalogIndexService.getBackend() == SearchBackend.POSTGRES) {
+                Page<Long> idsPage = productRepository.searchFullTextIds(searchTerm, pageable);
+                if (idsPage.getTotalElements() == 0) {
+                    return fuzzyPage(searchTerm, pageable);
+                }
+                return new PageImpl<>(findDTOsInOrder(idsPage.getContent()), pageable, idsPage.getTotalElements());
+            } else {
+                productsPage = catalogPager.page(productRepository, Product.class, FETCHED_ASSOCIATIONS,
+                        CatalogKind.PRODUCT, CatalogSpecifications.containsText(searchTerm), pageable, count,
+                        CatalogPager.textKey(searchTerm),
+                        () -> rowCountEstimator.estimateTextSearch("products", "categoria_id", searchTerm));
+                if (productsPage.getTotalElements() == 0) {
+                    return fuzzyPage(searchTerm, pageable);
+                }
+            }
+        } else {
+            productsPage = catalogPager.page(productRepository, Product.class, FETCHED_ASSOCIATIONS,
+                    CatalogKind.PRODUCT, Specification.where(null), pageable, count, "",
+                    () -> rowCountEstimator.estimateTable("products"));
+        }
+        return productsPage.map(this::convertToDTO);
     }
-    String uniqueFilename = UUID.randomUUID().toString() + extension;
 
-    try {
-        Path destinationFile = this.rootLocation.resolve(uniqueFilename).normalize().toAbsolutePath();
-        Path rootLocationAbsolute = this.rootLocation.toAbsolutePath().normalize();
+    /**
+     * Sin coincidencias en base de datos: nombres parecidos según el índice de trigramas, si ya está cargado.
+     */
+    private Page<ProductDTO> fuzzyPage(String searchTerm, Pageable pageable) {
+        return catalogIndexService.fuzzySearch(CatalogKind.PRODUCT, searchTerm)
+                .map(hits -> toSearchPage(hits, pageable))
+                .orElseGet(() -> Page.empty(pageable));
+    }
 
+    /**
+     * Los {@code limit} mejores resultados con su puntuación, para la búsqueda unificada. Con el
+     * índice en memoria la puntuación es la de relevancia; con los otros motores, que no la
+     * exponen, se usa el inverso de la posición.
+     */
+    @Transactional(readOnly = true)
+    public RankedResults<ProductDTO> searchRanked(String searchTerm, int limit) {
+        Optional<List<SearchHit>> hits = catalogIndexService.search(CatalogKind.PRODUCT, searchTerm);
+        if (hits.isPresent()) {
+            List<SearchHit> top = hits.get().subList(0, Math.min(limit, hits.get().size()));
+            List<Long> ids = new ArrayList<>(top.size());
+            for (SearchHit hit : top) {
+                ids.add(hit.id());
+            }
+            Map<Long, Product> byId = new HashMap<>();
+            for (Product product : productRepository.findAllById(ids)) {
+                byId.put(product.getId(), product);
+            }
+            List<ScoredItem<ProductDTO>> items = new ArrayList<>(top.size());
+            for (SearchHit hit : top) {
+                Product product = byId.get(hit.id());
+                if (product != null) {
+                    items.add(new ScoredItem<>(convertToDTO(product), hit.score()));
+                }
+            }
+            return new RankedResults<>(items, hits.get().size());
+        }
+        Page<ProductDTO> page = findProductsPage(searchTerm, PageRequest.of(0, limit), CountStrategy.EXACT);
+        List<ScoredItem<ProductDTO>> items = new ArrayList<>(page.getNumberOfElements());
+        for (int i = 0; i < page.getNumberOfElements(); i++) {
+            items.add(new ScoredItem<>(page.getContent().get(i), 1.0 / (i + 1)));
+        }
+        return new RankedResults<>(items, page.getTotalElements());
+    }
 
-        System.out.println("Root Location (absolute, normalized): " + rootLocationAbsolute);
-        System.out.println("Destination File (absolute, normalized): " + destinationFile);
-        System.out.println("Parent of Destination File: " + destinationFile.getParent());
+    /**
+     * Filtros y orden resueltos en SQL. Categoría y vendedor se traducen antes a su id para que la
+     * condición use directamente la clave foránea; si no existen, ninguna entrada puede coincidir.
+     */
+    private Page<ProductDTO> getProductsFiltered(String searchTerm, CatalogFilter filter, int page, int size,
+                                                 CountStrategy count) {
+        // Sin orden explícito, los más recientes: un orden total para que las páginas no se solapen.
+        CatalogSort catalogSort = filter.getSort() != null ? filter.getSort() : CatalogSort.RECENT;
+        Sort sort = catalogSort.toSort("price");
+        Pageable pageable = PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size), sort);
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new BadRequestException("El precio mínimo no puede ser mayor que el precio máximo.");
+        }
 
+        List<Specification<Product>> specifications = new ArrayList<>();
+        if (searchTerm != null) {
+            specifications.add(CatalogSpecifications.containsText(searchTerm));
+        }
+        if (StringUtils.hasText(filter.getCategoryName())) {
+            Optional<Category> category = categoryRepository.findByNombre(filter.getCategoryName().trim());
+            if (category.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            specifications.add(CatalogSpecifications.inCategory(category.get().getId()));
+        }
+        if (StringUtils.hasText(filter.getSeller())) {
+            Optional<User> seller = userRepository.findByUsername(filter.getSeller().trim());
+            if (seller.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            specifications.add(CatalogSpecifications.offeredBy(seller.get().getId()));
+        }
+        if (filter.getEstado() != null) {
+            specifications.add(CatalogSpecifications.hasEstado(filter.getEstado()));
+        }
+        if (filter.getMinPrice() != null) {
+            specifications.add(CatalogSpecifications.priceAtLeast("price", filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            specifications.add(CatalogSpecifications.priceAtMost("price", filter.getMaxPrice()));
+        }
+        // Los filtros no tienen estimación propia: ESTIMATED recurre al recuento en caché.
+        return catalogPager.page(productRepository, Product.class, FETCHED_ASSOCIATIONS,
+                CatalogKind.PRODUCT, Specification.allOf(specifications), pageable, count,
+                CatalogPager.filterKey(searchTerm, filter), OptionalLong::empty).map(this::convertToDTO);
+    }
 
-        if (!destinationFile.getParent().equals(rootLocationAbsolute)) {
-            System.err.println("ALERTA DE SEGURIDAD: Intento de guardar archivo fuera del directorio raíz.");
-            System.err.println("Parent de Destino: " + destinationFile.getParent());
-            System.err.println("Root Location Esperada: " + rootLocationAbsolute);
-            throw new RuntimeException("No se puede guardar el archivo fuera del directorio raíz especificado. Destino: " + destinationFile.toString());
+    /**
+     * Recuentos por categoría, estado y tramo de precio del mismo listado, calculados en memoria
+     * sobre los ids que coinciden con la búsqueda según el mismo motor que usa el listado.
+     *
+     * @return {@code null} mientras los índices se están cargando.
+     */
+    @Transactional(readOnly = true)
+    public CatalogFacets getProductFacets(String searchTerm, CatalogFilter filter) {
+        boolean hasSearch = searchTerm != null && !searchTerm.trim().isEmpty();
+        Collection<Long> matchingIds = null;
+        if (hasSearch) {
+            matchingIds = filter.hasFilters() || filter.getSort() != null
+                    ? catalogPager.ids(Product.class, CatalogSpecifications.containsText(searchTerm))
+                    : searchMatchIds(searchTerm);
         }
+        return catalogFacetIndex.facets(CatalogKind.PRODUCT, matchingIds, filter).orElse(null);
+    }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Los ids de todas las coincidencias, con las mismas ramas que {@link #findProductsPage}.
+     */
+    private Collection<Long> searchMatchIds(String searchTerm) {
+        Optional<List<SearchHit>> hits = catalogIndexService.search(CatalogKind.PRODUCT, searchTerm);
+        if (hits.isPresent()) {
+            return SearchHit.ids(hits.get());
         }
-        return uniqueFilename;
-    } catch (IOException e) {
-        throw new RuntimeException("Falló al guardar el archivo " + uniqueFilename, e);
+        List<Long> ids = catalogIndexService.getBackend() == SearchBackend.POSTGRES
+                ? productRepository.findFullTextIds(searchTerm)
+                : catalogPager.ids(Product.class, CatalogSpecifications.containsText(searchTerm));
+        if (!ids.isEmpty()) {
+            return ids;
+        }
+        return catalogIndexService.fuzzySearch(CatalogKind.PRODUCT, searchTerm).map(SearchHit::ids).orElse(List.of());
     }
-}
 
+    /**
+     * Listado por cursor, del más reciente al más antiguo: cada página cuesta lo mismo
+     * independientemente de su profundidad y no se ejecuta ningún COUNT.
+     */
     @Transactional(readOnly = true)
-    public Page<ProductDTO> getAllProducts(String searchTerm, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Product> productsPage;
+    public CursorPage<ProductDTO> scrollProducts(String cursor, int size) {
+        int pageSize = PageLimits.clampSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Product> rows = after == null
+                ? productRepository.findAllByOrderByIdDesc(limit)
+                : productRepository.findByIdLessThanOrderByIdDesc(after.id(), limit);
+        return CursorPage.of(rows, pageSize, this::convertToDTO, product -> KeysetCursor.ofId(product.getId()));
+    }
 
-        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            productsPage = productRepository
-                    .findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCaseOrCategoriaNombreContainingIgnoreCase(
-                            searchTerm, searchTerm, searchTerm, pageable);
-        } else {
-            productsPage = productRepository.findAll(pageable);
+    /**
+     * Carga solo los productos de la página pedida y respeta el orden de relevancia del índice.
+     */
+    private Page<ProductDTO> toSearchPage(List<SearchHit> hits, Pageable pageable) {
+        List<Long> ids = CatalogIndexService.pageIds(hits, pageable);
+        return new PageImpl<>(findDTOsInOrder(ids), pageable, hits.size());
+    }
+
+    private List<ProductDTO> findDTOsInOrder(List<Long> ids) {
+        Map<Long, Product> productsById = new HashMap<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            productsById.put(product.getId(), product);
         }
-        return productsPage.map(this::convertToDTO);
+        List<ProductDTO> content = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = productsById.get(id);
+            if (product != null) {
+                content.add(convertToDTO(product));
+            }
+        }
+        return content;
     }
 
     @Transactional(readOnly = true)
-    public ProductDTO getProductById(Long id) {
+    public EntityRevision getProductRevision(Long id) {
+        return productRepository.findRevisionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado con id: " + id));
+    }
+
+    /**
+     * El DTO y su revisión salen de la misma entidad, así que el ETag siempre corresponde al cuerpo.
+     */
+    @Transactional(readOnly = true)
+    public Revised<ProductDTO> getProductById(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado con id: " + id));
-        return convertToDTO(product);
+        return new Revised<>(convertToDTO(product), revisionOf(product));
     }
 
     @Transactional
@@ -135,53 +361,49 @@ private String storeFile(MultipartFile file) {
         if (imageFile != null && !imageFile.isEmpty()) {
             String filename = storeFile(imageFile);
             product.setImagenes(filename);
+            applyImageHeader(product, filename);
+            eventPublisher.publishEvent(new ImageStoredEvent(CatalogKind.PRODUCT, filename));
         }
 
         product.setId(null); 
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(CatalogChangeEvent.upserted(CatalogDocument.of(savedProduct)));
         return convertToDTO(savedProduct);
     }
 
 
+    /**
+     * {@code ifMatch} se compara con la versión cargada en esta misma transacción; si otra
+     * escritura se cuela entre la lectura y el guardado, el {@code @Version} hace fallar el UPDATE.
+     */
     @Transactional
-
-    public ProductDTO updateProduct(Long id, ProductDTO productDetailsDTO, MultipartFile imageFile) {
+    public Revised<ProductDTO> updateProduct(Long id, ProductDTO productDetailsDTO, MultipartFile imageFile,
+                                             String ifMatch) {
         Product existingProduct = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado para actualizar con id: " + id));
+        requireRevision(existingProduct, ifMatch);
 
         convertToEntity(productDetailsDTO, existingProduct);
 
         if (imageFile != null && !imageFile.isEmpty()) {
 
-            if (existingProduct.getImagenes() != null && !existingProduct.getImagenes().isEmpty()) {
-                try {
-                    Path oldFilePath = rootLocation.resolve(existingProduct.getImagenes());
-                    Files.deleteIfExists(oldFilePath);
-                } catch (IOException e) {
-
-                    System.err.println("Error al eliminar imagen antigua: " + e.getMessage());
-                }
-            }
-            String filename = storeFile(imageFile);
-            existingProduct.setImagenes(filename);
+            replaceImage(existingProduct, storeFile(imageFile));
         } else if (productDetailsDTO.getImagenes() == null || productDetailsDTO.getImagenes().isEmpty()) {
 
             if (existingProduct.getImagenes() != null && !existingProduct.getImagenes().isEmpty()) {
-                 try {
-                    Path oldFilePath = rootLocation.resolve(existingProduct.getImagenes());
-                    Files.deleteIfExists(oldFilePath);
-                    existingProduct.setImagenes(null);
-                } catch (IOException e) {
-                    System.err.println("Error al eliminar imagen antigua: " + e.getMessage());
-                }
+                imageStore.release(CatalogKind.PRODUCT, existingProduct.getImagenes());
+                existingProduct.setImagenes(null);
+                applyImageHeader(existingProduct, null);
+                existingProduct.setImageVariantsReady(false);
             }
         }
 
 
 
 
-        Product updatedProduct = productRepository.save(existingProduct);
-        return convertToDTO(updatedProduct);
+        Product updatedProduct = productRepository.saveAndFlush(existingProduct);
+        eventPublisher.publishEvent(CatalogChangeEvent.upserted(CatalogDocument.of(updatedProduct)));
+        return new Revised<>(convertToDTO(updatedProduct), revisionOf(updatedProduct));
     }
 
     @Transactional
@@ -190,16 +412,87 @@ private String storeFile(MultipartFile file) {
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado para eliminar con id: " + id));
 
 
-        if (product.getImagenes() != null && !product.getImagenes().isEmpty()) {
-            try {
-                Path filePath = rootLocation.resolve(product.getImagenes());
-                Files.deleteIfExists(filePath);
-            } catch (IOException e) {
+        imageStore.release(CatalogKind.PRODUCT, product.getImagenes());
+        productRepository.deleteById(id);
+        eventPublisher.publishEvent(CatalogChangeEvent.deleted(CatalogKind.PRODUCT, id));
+    }
 
-                System.err.println("Error al eliminar archivo de imagen: " + e.getMessage());
-            }
+    /**
+     * Sustituye la imagen por una ya recibida con {@link ImageStore#receive}, sin tocar el resto
+     * del producto. {@code ifMatch} se valida como en {@link #updateProduct}.
+     */
+    @Transactional
+    public Revised<ProductDTO> replaceProductImage(Long id, ReceivedImage received, String ifMatch) {
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado para actualizar con id: " + id));
+        requireRevision(product, ifMatch);
+        replaceImage(product, imageStore.commit(received));
+        Product updated = productRepository.saveAndFlush(product);
+        eventPublisher.publishEvent(CatalogChangeEvent.upserted(CatalogDocument.of(updated)));
+        return new Revised<>(convertToDTO(updated), revisionOf(updated));
+    }
+
+    private static void requireRevision(Product product, String ifMatch) {
+        if (!revisionOf(product).matches(ifMatch)) {
+            throw new PreconditionFailedException("El producto " + product.getId() + " ha cambiado desde la versión indicada en If-Match");
         }
-        productRepository.deleteById(id);
+    }
+
+    /**
+     * La misma revisión que {@code findRevisionById}, pero de la entidad ya cargada (tras el
+     * {@code flush}, con la versión nueva).
+     */
+    private static EntityRevision revisionOf(Product product) {
+        return new EntityRevision(product.getId(), product.getVersion(), product.getUpdatedAt(),
+                product.getCategoria() != null ? product.getCategoria().getNombre() : null,
+                product.getOfertadoPor() != null ? product.getOfertadoPor().getUsername() : null,
+                product.isImageVariantsReady());
+    }
+
+    /**
+     * Reenviar la misma imagen suma y resta una referencia al mismo fichero: no cambia nada.
+     */
+    private void replaceImage(Product product, String filename) {
+        String previous = product.getImagenes();
+        imageStore.release(CatalogKind.PRODUCT, previous);
+        if (!filename.equals(previous)) {
+            product.setImagenes(filename);
+            applyImageHeader(product, filename);
+            product.setImageVariantsReady(false);
+            eventPublisher.publishEvent(new ImageStoredEvent(CatalogKind.PRODUCT, filename));
+        }
+    }
+
+    /**
+     * Dimensiones de la imagen nueva (o ninguna, si se quitó). La vista previa anterior deja de
+     * valer y llega de nuevo con las variantes.
+     */
+    private void applyImageHeader(Product product, String filename) {
+        Optional<ImageHeader> header = filename == null
+                ? Optional.empty()
+                : ImageHeader.read(rootLocation.resolve(filename));
+        product.setImageWidth(header.map(ImageHeader::width).orElse(null));
+        product.setImageHeight(header.map(ImageHeader::height).orElse(null));
+        product.setImageBlurHash(null);
+    }
+
+    /**
+     * Marca como listas las variantes en todos los productos que usan la imagen, con una
+     * actualización masiva que no sube la versión: una edición en curso no falla por ello. Como
+     * el JSON servido sí cambia, se avisa a las cachés de respuestas y de búsqueda.
+     */
+    @EventListener
+    @Transactional
+    public void onImageVariantsReady(ImageVariantsReadyEvent event) {
+        if (event.kind() != CatalogKind.PRODUCT) {
+            return;
+        }
+        List<Long> ids = productRepository.findIdsAwaitingImageVariants(event.filename());
+        if (ids.isEmpty()) {
+            return;
+        }
+        productRepository.markImageVariantsReady(ids, event.filename(), event.blurHash());
+        eventPublisher.publishEvent(new ImageVariantsAppliedEvent(CatalogKind.PRODUCT, ids));
     }
 
 
@@ -211,7 +504,7 @@ private String storeFile(MultipartFile file) {
             imageUrl = "/uploads/" + PRODUCT_IMAGE_SUBPATH + "/" + product.getImagenes();
         }
 
-        return new ProductDTO(
+        ProductDTO dto = new ProductDTO(
                 product.getId(),
                 product.getName(),
                 product.getDescription(),
@@ -222,6 +515,14 @@ private String storeFile(MultipartFile file) {
                 product.getCategoria() != null ? product.getCategoria().getNombre() : null,
                 product.getOfertadoPor() != null ? product.getOfertadoPor().getUsername() : null
         );
+        if (imageUrl != null) {
+            dto.setImageVariants(ImageVariant.urlsFor(PRODUCT_IMAGE_SUBPATH, product.getImagenes(),
+                    product.isImageVariantsReady()));
+            dto.setImageWidth(product.getImageWidth());
+            dto.setImageHeight(product.getImageHeight());
+            dto.setImageBlurHash(product.getImageBlurHash());
+        }
+        return dto;
     }
 
 
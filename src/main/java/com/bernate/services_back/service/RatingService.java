@@ -1,14 +1,21 @@
 package com.bernate.services_back.service;
 
+import com.bernate.services_back.dto.CursorPage;
 import com.bernate.services_back.dto.RatingDTO;
+import com.bernate.services_back.event.RatingChangedEvent;
 import com.bernate.services_back.exception.BadRequestException;
 import com.bernate.services_back.exception.ResourceNotFoundException;
 import com.bernate.services_back.model.*;
+import com.bernate.services_back.pagination.KeysetCursor;
+import com.bernate.services_back.pagination.PageLimits;
 import com.bernate.services_back.repository.ProductRepository;
 import com.bernate.services_back.repository.RatingRepository;
 import com.bernate.services_back.repository.ServiceRepository;
 import com.bernate.services_back.repository.UserRepository;
+import com.bernate.services_back.search.CatalogKind;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -19,6 +26,8 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 public class RatingService {
 
@@ -26,16 +35,19 @@ public class RatingService {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final ServiceRepository serviceRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public RatingService(RatingRepository ratingRepository,
             UserRepository userRepository,
             ProductRepository productRepository,
-            ServiceRepository serviceRepository) {
+            ServiceRepository serviceRepository,
+            ApplicationEventPublisher eventPublisher) {
         this.ratingRepository = ratingRepository;
         this.userRepository = userRepository;
         this.productRepository = productRepository;
         this.serviceRepository = serviceRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     private RatingDTO convertToDTO(Rating rating) {
@@ -113,6 +125,7 @@ public class RatingService {
                 service);
 
         Rating savedRating = ratingRepository.save(rating);
+        publishRatingChange(savedRating, savedRating.getScore());
         return convertToDTO(savedRating);
     }
 
@@ -122,7 +135,7 @@ public class RatingService {
         if (!productRepository.existsById(productId)) {
             throw new ResourceNotFoundException("Producto no encontrado con id: " + productId);
         }
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
+        Pageable pageable = PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size), Sort.by("createdAt").descending());
         Page<Rating> ratingsPage = ratingRepository.findByProductId(productId, pageable);
         return ratingsPage.map(this::convertToDTO);
     }
@@ -133,7 +146,7 @@ public class RatingService {
         if (!serviceRepository.existsById(serviceId)) {
             throw new ResourceNotFoundException("Servicio no encontrado con id: " + serviceId);
         }
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
+        Pageable pageable = PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size), Sort.by("createdAt").descending());
         Page<Rating> ratingsPage = ratingRepository.findByServiceId(serviceId, pageable);
         return ratingsPage.map(this::convertToDTO);
     }
@@ -143,11 +156,59 @@ public class RatingService {
         if (!userRepository.existsById(raterId)) {
             throw new ResourceNotFoundException("Usuario calificador no encontrado con id: " + raterId);
         }
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
+        Pageable pageable = PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size), Sort.by("createdAt").descending());
         Page<Rating> ratingsPage = ratingRepository.findByRaterId(raterId, pageable);
         return ratingsPage.map(this::convertToDTO);
     }
 
+    // Listados por cursor (createdAt, id): sin OFFSET ni COUNT, coste constante en páginas profundas.
+
+    @Transactional(readOnly = true)
+    public CursorPage<RatingDTO> scrollRatingsForProduct(Long productId, String cursor, int size) {
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Producto no encontrado con id: " + productId);
+        }
+        int pageSize = PageLimits.clampSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Rating> rows = after == null
+                ? ratingRepository.findByProductIdOrderByCreatedAtDescIdDesc(productId, limit)
+                : ratingRepository.findByProductIdAfter(productId, after.requireSortKey(), after.id(), limit);
+        return CursorPage.of(rows, pageSize, this::convertToDTO, RatingService::cursorOf);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<RatingDTO> scrollRatingsForService(Long serviceId, String cursor, int size) {
+        if (!serviceRepository.existsById(serviceId)) {
+            throw new ResourceNotFoundException("Servicio no encontrado con id: " + serviceId);
+        }
+        int pageSize = PageLimits.clampSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Rating> rows = after == null
+                ? ratingRepository.findByServiceIdOrderByCreatedAtDescIdDesc(serviceId, limit)
+                : ratingRepository.findByServiceIdAfter(serviceId, after.requireSortKey(), after.id(), limit);
+        return CursorPage.of(rows, pageSize, this::convertToDTO, RatingService::cursorOf);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<RatingDTO> scrollRatingsByRater(Long raterId, String cursor, int size) {
+        if (!userRepository.existsById(raterId)) {
+            throw new ResourceNotFoundException("Usuario calificador no encontrado con id: " + raterId);
+        }
+        int pageSize = PageLimits.clampSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Rating> rows = after == null
+                ? ratingRepository.findByRaterIdOrderByCreatedAtDescIdDesc(raterId, limit)
+                : ratingRepository.findByRaterIdAfter(raterId, after.requireSortKey(), after.id(), limit);
+        return CursorPage.of(rows, pageSize, this::convertToDTO, RatingService::cursorOf);
+    }
+
+    private static KeysetCursor cursorOf(Rating rating) {
+        return new KeysetCursor(rating.getCreatedAt(), rating.getId());
+    }
+
     @Transactional
     public void deleteRating(Long ratingId) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -167,5 +228,14 @@ public class RatingService {
             throw new BadRequestException("No tienes permiso para eliminar esta calificación.");
         }
         ratingRepository.delete(rating);
+        publishRatingChange(rating, -rating.getScore());
+    }
+
+    private void publishRatingChange(Rating rating, int scoreDelta) {
+        if (rating.getProduct() != null) {
+            eventPublisher.publishEvent(new RatingChangedEvent(CatalogKind.PRODUCT, rating.getProduct().getId(), scoreDelta));
+        } else if (rating.getService() != null) {
+            eventPublisher.publishEvent(new RatingChangedEvent(CatalogKind.SERVICE, rating.getService().getId(), scoreDelta));
+        }
     }
 }
\ No newline at end of file
@@ -1,19 +1,55 @@
 package com.bernate.services_back.service;
 
+import com.bernate.services_back.dto.CatalogFacets;
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.dto.CursorPage;
+import com.bernate.services_back.dto.EntityRevision;
+import com.bernate.services_back.dto.Revised;
 import com.bernate.services_back.dto.ServiceDTO;
+import com.bernate.services_back.event.CatalogChangeEvent;
+import com.bernate.services_back.event.ImageStoredEvent;
+import com.bernate.services_back.event.ImageVariantsAppliedEvent;
+import com.bernate.services_back.event.ImageVariantsReadyEvent;
+import com.bernate.services_back.exception.BadRequestException;
+import com.bernate.services_back.exception.PreconditionFailedException;
 import com.bernate.services_back.exception.ResourceNotFoundException;
+import com.bernate.services_back.image.ImageHeader;
+import com.bernate.services_back.image.ImageStore;
+import com.bernate.services_back.image.ImageStore.ReceivedImage;
+import com.bernate.services_back.image.ImageVariant;
 import com.bernate.services_back.model.Category;
 import com.bernate.services_back.model.CategoryType;
 import com.bernate.services_back.model.ServiceEntity;
 import com.bernate.services_back.model.User;
+import com.bernate.services_back.pagination.CatalogPager;
+import com.bernate.services_back.pagination.CatalogSort;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.bernate.services_back.pagination.KeysetCursor;
+import com.bernate.services_back.pagination.PageLimits;
+import com.bernate.services_back.pagination.RowCountEstimator;
+import com.bernate.services_back.repository.CatalogSpecifications;
 import com.bernate.services_back.repository.CategoryRepository;
 import com.bernate.services_back.repository.ServiceRepository;
 import com.bernate.services_back.repository.UserRepository;
+import com.bernate.services_back.search.CatalogDocument;
+import com.bernate.services_back.search.CatalogFacetIndex;
+import com.bernate.services_back.search.CatalogIndexService;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.RankedResults;
+import com.bernate.services_back.search.SearchBackend;
+import com.bernate.services_back.search.ScoredItem;
+import com.bernate.services_back.search.SearchHit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -23,12 +59,15 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -38,19 +77,39 @@ public class ServiceService {
     private final ServiceRepository serviceRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
+    private final CatalogIndexService catalogIndexService;
+    private final CatalogFacetIndex catalogFacetIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogPager catalogPager;
+    private final RowCountEstimator rowCountEstimator;
+    private final ImageStore imageStore;
     private final Path serviceImageRootLocation;
 
     private final String baseUploadURLPath = "/uploads";
     public static final String SERVICE_IMAGE_SUBDIRECTORY = "service-images";
 
+    private static final List<String> FETCHED_ASSOCIATIONS = List.of("categoria", "ofertadoPor");
+
     @Autowired
     public ServiceService(ServiceRepository serviceRepository,
                           CategoryRepository categoryRepository,
                           UserRepository userRepository,
+                          CatalogIndexService catalogIndexService,
+                          CatalogFacetIndex catalogFacetIndex,
+                          ApplicationEventPublisher eventPublisher,
+                          CatalogPager catalogPager,
+                          RowCountEstimator rowCountEstimator,
+                          ImageStore imageStore,
                           @Value("${app.upload.dir:./uploads_default}") String uploadDir) {
         this.serviceRepository = serviceRepository;
         this.categoryRepository = categoryRepository;
         this.userRepository = userRepository;
+        this.catalogIndexService = catalogIndexService;
+        this.catalogFacetIndex = catalogFacetIndex;
+        this.eventPublisher = eventPublisher;
+        this.catalogPager = catalogPager;
+        this.rowCountEstimator = rowCountEstimator;
+        this.imageStore = imageStore;
 
 
         this.serviceImageRootLocation = Paths.get(uploadDir, SERVICE_IMAGE_SUBDIRECTORY).toAbsolutePath().normalize();
@@ -78,20 +137,7 @@ public class ServiceService {
              throw new RuntimeException("Formato de archivo no permitido para la imagen del servicio.");
         }
 
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
-
-        try {
-            Path destinationFile = this.serviceImageRootLocation.resolve(uniqueFilename).normalize();
-            if (!destinationFile.getParent().equals(this.serviceImageRootLocation)) {
-                throw new RuntimeException("No se puede guardar el archivo fuera del directorio raíz de servicios.");
-            }
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-            }
-            return uniqueFilename;
-        } catch (IOException e) {
-            throw new RuntimeException("Falló al guardar el archivo de imagen del servicio " + uniqueFilename, e);
-        }
+        return imageStore.store(CatalogKind.SERVICE, file);
     }
 
     private ServiceDTO convertToDTO(ServiceEntity serviceEntity) {
@@ -99,12 +145,20 @@ public class ServiceService {
         if (serviceEntity.getImagenes() != null && !serviceEntity.getImagenes().isEmpty()) {
             imageUrl = baseUploadURLPath + "/" + SERVICE_IMAGE_SUBDIRECTORY + "/" + serviceEntity.getImagenes();
         }
-        return new ServiceDTO(
+        ServiceDTO dto = new ServiceDTO(
                 serviceEntity.getId(), serviceEntity.getName(), serviceEntity.getDescription(),
                 serviceEntity.getEstimatedPrice(), imageUrl, serviceEntity.getEstado(),
                 serviceEntity.getCategoria() != null ? serviceEntity.getCategoria().getNombre() : null,
                 serviceEntity.getOfertadoPor() != null ? serviceEntity.getOfertadoPor().getUsername() : null
         );
+        if (imageUrl != null) {
+            dto.setImageVariants(ImageVariant.urlsFor(SERVICE_IMAGE_SUBDIRECTORY, serviceEntity.getImagenes(),
+                    serviceEntity.isImageVariantsReady()));
+            dto.setImageWidth(serviceEntity.getImageWidth());
+            dto.setImageHeight(serviceEntity.getImageHeight());
+            dto.setImageBlurHash(serviceEntity.getImageBlurHash());
+        }
+        return dto;
     }
 
     private ServiceEntity convertToEntity(ServiceDTO serviceDTO, ServiceEntity serviceToUpdate) {
@@ -128,23 +182,223 @@ public class ServiceService {
     }
 
     @Transactional(readOnly = true)
-    public Page<ServiceDTO> getAllServices(String searchTerm, int page, int size) {
-         Pageable pageable = PageRequest.of(page, size);
+    public Page<ServiceDTO> getAllServices(String searchTerm, CatalogFilter filter, int page, int size,
+                                           CountStrategy count) {
+        if (filter.hasFilters() || filter.getSort() != null) {
+            boolean hasSearch = searchTerm != null && !searchTerm.trim().isEmpty();
+            return getServicesFiltered(hasSearch ? searchTerm : null, filter, page, size, count);
+        }
+        return findServicesPage(searchTerm, PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size)), count);
+    }
+
+    private Page<ServiceDTO> findServicesPage(String searchTerm, Pageable pageable, CountStrategy count) {
         Page<ServiceEntity> servicesPage;
         if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            servicesPage = serviceRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCaseOrCategoriaNombreContainingIgnoreCase(
-                    searchTerm, searchTerm, searchTerm, pageable);
+            Optional<List<SearchHit>> hits = catalogIndexService.search(CatalogKind.SERVICE, searchTerm);
+            if (hits.isPresent()) {
+                return toSearchPage(hits.get(), pageable);
+            }
+            if (catalogIndexService.getBackend() == SearchBackend.POSTGRES) {
+                Page<Long> idsPage = serviceRepository.searchFullTextIds(searchTerm, pageable);
+                if (idsPage.getTotalElements() == 0) {
+                    return fuzzyPage(searchTerm, pageable);
+                }
+                return new PageImpl<>(findDTOsInOrder(idsPage.getContent()), pageable, idsPage.getTotalElements());
+            } else {
+                servicesPage = catalogPager.page(serviceRepository, ServiceEntity.class, FETCHED_ASSOCIATIONS,
+                        CatalogKind.SERVICE, CatalogSpecifications.containsText(searchTerm), pageable, count,
+                        CatalogPager.textKey(searchTerm),
+                        () -> rowCountEstimator.estimateTextSearch("services", "category_id", searchTerm));
+                if (servicesPage.getTotalElements() == 0) {
+                    return fuzzyPage(searchTerm, pageable);
+                }
+            }
         } else {
-            servicesPage = serviceRepository.findAll(pageable);
+            servicesPage = catalogPager.page(serviceRepository, ServiceEntity.class, FETCHED_ASSOCIATIONS,
+                    CatalogKind.SERVICE, Specification.where(null), pageable, count, "",
+                    () -> rowCountEstimator.estimateTable("services"));
         }
         return servicesPage.map(this::convertToDTO);
     }
 
+    /**
+     * Sin coincidencias en base de datos: nombres parecidos según el índice de trigramas, si ya está cargado.
+     */
+    private Page<ServiceDTO> fuzzyPage(String searchTerm, Pageable pageable) {
+        return catalogIndexService.fuzzySearch(CatalogKind.SERVICE, searchTerm)
+                .map(hits -> toSearchPage(hits, pageable))
+                .orElseGet(() -> Page.empty(pageable));
+    }
+
+    /**
+     * Los {@code limit} mejores resultados con su puntuación, para la búsqueda unificada. Con el
+     * índice en memoria la puntuación es la de relevancia; con los otros motores, que no la
+     * exponen, se usa el inverso de la posición.
+     */
+    @Transactional(readOnly = true)
+    public RankedResults<ServiceDTO> searchRanked(String searchTerm, int limit) {
+        Optional<List<SearchHit>> hits = catalogIndexService.search(CatalogKind.SERVICE, searchTerm);
+        if (hits.isPresent()) {
+            List<SearchHit> top = hits.get().subList(0, Math.min(limit, hits.get().size()));
+            List<Long> ids = new ArrayList<>(top.size());
+            for (SearchHit hit : top) {
+                ids.add(hit.id());
+            }
+            Map<Long, ServiceEntity> byId = new HashMap<>();
+            for (ServiceEntity serviceEntity : serviceRepository.findAllById(ids)) {
+                byId.put(serviceEntity.getId(), serviceEntity);
+            }
+            List<ScoredItem<ServiceDTO>> items = new ArrayList<>(top.size());
+            for (SearchHit hit : top) {
+                ServiceEntity serviceEntity = byId.get(hit.id());
+                if (serviceEntity != null) {
+                    items.add(new ScoredItem<>(convertToDTO(serviceEntity), hit.score()));
+                }
+            }
+            return new RankedResults<>(items, hits.get().size());
+        }
+        Page<ServiceDTO> page = findServicesPage(searchTerm, PageRequest.of(0, limit), CountStrategy.EXACT);
+        List<ScoredItem<ServiceDTO>> items = new ArrayList<>(page.getNumberOfElements());
+        for (int i = 0; i < page.getNumberOfElements(); i++) {
+            items.add(new ScoredItem<>(page.getContent().get(i), 1.0 / (i + 1)));
+        }
+        return new RankedResults<>(items, page.getTotalElements());
+    }
+
+    /**
+     * Filtros y orden resueltos en SQL. Categoría y vendedor se traducen antes a su id para que la
+     * condición use directamente la clave foránea; si no existen, ninguna entrada puede coincidir.
+     */
+    private Page<ServiceDTO> getServicesFiltered(String searchTerm, CatalogFilter filter, int page, int size,
+                                                 CountStrategy count) {
+        // Sin orden explícito, los más recientes: un orden total para que las páginas no se solapen.
+        CatalogSort catalogSort = filter.getSort() != null ? filter.getSort() : CatalogSort.RECENT;
+        Sort sort = catalogSort.toSort("estimatedPrice");
+        Pageable pageable = PageRequest.of(PageLimits.clampPage(page), PageLimits.clampSize(size), sort);
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new BadRequestException("El precio mínimo no puede ser mayor que el precio máximo.");
+        }
+
+        List<Specification<ServiceEntity>> specifications = new ArrayList<>();
+        if (searchTerm != null) {
+            specifications.add(CatalogSpecifications.containsText(searchTerm));
+        }
+        if (StringUtils.hasText(filter.getCategoryName())) {
+            Optional<Category> category = categoryRepository.findByNombre(filter.getCategoryName().trim());
+            if (category.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            specifications.add(CatalogSpecifications.inCategory(category.get().getId()));
+        }
+        if (StringUtils.hasText(filter.getSeller())) {
+            Optional<User> seller = userRepository.findByUsername(filter.getSeller().trim());
+            if (seller.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            specifications.add(CatalogSpecifications.offeredBy(seller.get().getId()));
+        }
+        if (filter.getEstado() != null) {
+            specifications.add(CatalogSpecifications.hasEstado(filter.getEstado()));
+        }
+        if (filter.getMinPrice() != null) {
+            specifications.add(CatalogSpecifications.priceAtLeast("estimatedPrice", filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            specifications.add(CatalogSpecifications.priceAtMost("estimatedPrice", filter.getMaxPrice()));
+        }
+        // Los filtros no tienen estimación propia: ESTIMATED recurre al recuento en caché.
+        return catalogPager.page(serviceRepository, ServiceEntity.class, FETCHED_ASSOCIATIONS,
+                CatalogKind.SERVICE, Specification.allOf(specifications), pageable, count,
+                CatalogPager.filterKey(searchTerm, filter), OptionalLong::empty).map(this::convertToDTO);
+    }
+
+    /**
+     * Recuentos por categoría, estado y tramo de precio del mismo listado, calculados en memoria
+     * sobre los ids que coinciden con la búsqueda según el mismo motor que usa el listado.
+     *
+     * @return {@code null} mientras los índices se están cargando.
+     */
     @Transactional(readOnly = true)
-    public ServiceDTO getServiceById(Long id) {
+    public CatalogFacets getServiceFacets(String searchTerm, CatalogFilter filter) {
+        boolean hasSearch = searchTerm != null && !searchTerm.trim().isEmpty();
+        Collection<Long> matchingIds = null;
+        if (hasSearch) {
+            matchingIds = filter.hasFilters() || filter.getSort() != null
+                    ? catalogPager.ids(ServiceEntity.class, CatalogSpecifications.containsText(searchTerm))
+                    : searchMatchIds(searchTerm);
+        }
+        return catalogFacetIndex.facets(CatalogKind.SERVICE, matchingIds, filter).orElse(null);
+    }
+
+    /**
+     * Los ids de todas las coincidencias, con las mismas ramas que {@link #findServicesPage}.
+     */
+    private Collection<Long> searchMatchIds(String searchTerm) {
+        Optional<List<SearchHit>> hits = catalogIndexService.search(CatalogKind.SERVICE, searchTerm);
+        if (hits.isPresent()) {
+            return SearchHit.ids(hits.get());
+        }
+        List<Long> ids = catalogIndexService.getBackend() == SearchBackend.POSTGRES
+                ? serviceRepository.findFullTextIds(searchTerm)
+                : catalogPager.ids(ServiceEntity.class, CatalogSpecifications.containsText(searchTerm));
+        if (!ids.isEmpty()) {
+            return ids;
+        }
+        return catalogIndexService.fuzzySearch(CatalogKind.SERVICE, searchTerm).map(SearchHit::ids).orElse(List.of());
+    }
+
+    /**
+     * Listado por cursor, del más reciente al más antiguo: cada página cuesta lo mismo
+     * independientemente de su profundidad y no se ejecuta ningún COUNT.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ServiceDTO> scrollServices(String cursor, int size) {
+        int pageSize = PageLimits.clampSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<ServiceEntity> rows = after == null
+                ? serviceRepository.findAllByOrderByIdDesc(limit)
+                : serviceRepository.findByIdLessThanOrderByIdDesc(after.id(), limit);
+        return CursorPage.of(rows, pageSize, this::convertToDTO, serviceEntity -> KeysetCursor.ofId(serviceEntity.getId()));
+    }
+
+    /**
+     * Carga solo los servicios de la página pedida y respeta el orden de relevancia del índice.
+     */
+    private Page<ServiceDTO> toSearchPage(List<SearchHit> hits, Pageable pageable) {
+        List<Long> ids = CatalogIndexService.pageIds(hits, pageable);
+        return new PageImpl<>(findDTOsInOrder(ids), pageable, hits.size());
+    }
+
+    private List<ServiceDTO> findDTOsInOrder(List<Long> ids) {
+        Map<Long, ServiceEntity> servicesById = new HashMap<>();
+        for (ServiceEntity serviceEntity : serviceRepository.findAllById(ids)) {
+            servicesById.put(serviceEntity.getId(), serviceEntity);
+        }
+        List<ServiceDTO> content = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ServiceEntity serviceEntity = servicesById.get(id);
+            if (serviceEntity != null) {
+                content.add(convertToDTO(serviceEntity));
+            }
+        }
+        return content;
+    }
+
+    @Transactional(readOnly = true)
+    public EntityRevision getServiceRevision(Long id) {
+        return serviceRepository.findRevisionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Servicio no encontrado con id: " + id));
+    }
+
+    /**
+     * El DTO y su revisión salen de la misma entidad, así que el ETag siempre corresponde al cuerpo.
+     */
+    @Transactional(readOnly = true)
+    public Revised<ServiceDTO> getServiceById(Long id) {
         ServiceEntity serviceEntity = serviceRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Servicio no encontrado con id: " + id));
-        return convertToDTO(serviceEntity);
+        return new Revised<>(convertToDTO(serviceEntity), revisionOf(serviceEntity));
     }
 
 
@@ -160,35 +414,38 @@ public class ServiceService {
         String filename = storeServiceImage(imageFile);
         if (filename != null) {
             serviceEntity.setImagenes(filename);
+            applyImageHeader(serviceEntity, filename);
+            eventPublisher.publishEvent(new ImageStoredEvent(CatalogKind.SERVICE, filename));
         }
 
         serviceEntity.setId(null);
         ServiceEntity savedService = serviceRepository.save(serviceEntity);
+        eventPublisher.publishEvent(CatalogChangeEvent.upserted(CatalogDocument.of(savedService)));
         return convertToDTO(savedService);
     }
 
 
+    /**
+     * {@code ifMatch} se compara con la versión cargada en esta misma transacción; si otra
+     * escritura se cuela entre la lectura y el guardado, el {@code @Version} hace fallar el UPDATE.
+     */
     @Transactional
-    public ServiceDTO updateService(Long id, ServiceDTO serviceDetailsDTO, MultipartFile imageFile) {
+    public Revised<ServiceDTO> updateService(Long id, ServiceDTO serviceDetailsDTO, MultipartFile imageFile,
+                                             String ifMatch) {
         ServiceEntity existingService = serviceRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Servicio no encontrado para actualizar con id: " + id));
+        requireRevision(existingService, ifMatch);
 
         convertToEntity(serviceDetailsDTO, existingService);
 
         if (imageFile != null && !imageFile.isEmpty()) {
-            if (existingService.getImagenes() != null && !existingService.getImagenes().isEmpty()) {
-                try {
-                    Files.deleteIfExists(this.serviceImageRootLocation.resolve(existingService.getImagenes()));
-                } catch (IOException e) { System.err.println("Error al eliminar imagen antigua del servicio: " + e.getMessage()); }
-            }
-            String filename = storeServiceImage(imageFile);
-            existingService.setImagenes(filename);
+            replaceImage(existingService, storeServiceImage(imageFile));
         } else if (serviceDetailsDTO.getImagenes() == null || serviceDetailsDTO.getImagenes().isEmpty()) {
             if (existingService.getImagenes() != null && !existingService.getImagenes().isEmpty()) {
-                 try {
-                    Files.deleteIfExists(this.serviceImageRootLocation.resolve(existingService.getImagenes()));
-                    existingService.setImagenes(null); 
-                } catch (IOException e) { System.err.println("Error al eliminar imagen antigua del servicio: " + e.getMessage()); }
+                imageStore.release(CatalogKind.SERVICE, existingService.getImagenes());
+                existingService.setImagenes(null);
+                applyImageHeader(existingService, null);
+                existingService.setImageVariantsReady(false);
             }
         }
 
@@ -196,8 +453,9 @@ public class ServiceService {
 
 
 
-        ServiceEntity updatedService = serviceRepository.save(existingService);
-        return convertToDTO(updatedService);
+        ServiceEntity updatedService = serviceRepository.saveAndFlush(existingService);
+        eventPublisher.publishEvent(CatalogChangeEvent.upserted(CatalogDocument.of(updatedService)));
+        return new Revised<>(convertToDTO(updatedService), revisionOf(updatedService));
     }
 
     @Transactional
@@ -205,11 +463,86 @@ public class ServiceService {
         ServiceEntity serviceEntity = serviceRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Servicio no encontrado para eliminar con id: " + id));
 
-        if (serviceEntity.getImagenes() != null && !serviceEntity.getImagenes().isEmpty()) {
-            try {
-                Files.deleteIfExists(this.serviceImageRootLocation.resolve(serviceEntity.getImagenes()));
-            } catch (IOException e) { System.err.println("Error al eliminar archivo de imagen del servicio: " + e.getMessage()); }
-        }
+        imageStore.release(CatalogKind.SERVICE, serviceEntity.getImagenes());
         serviceRepository.deleteById(id);
+        eventPublisher.publishEvent(CatalogChangeEvent.deleted(CatalogKind.SERVICE, id));
+    }
+
+    /**
+     * Sustituye la imagen por una ya recibida con {@link ImageStore#receive}, sin tocar el resto
+     * del servicio. {@code ifMatch} se valida como en {@link #updateService}.
+     */
+    @Transactional
+    public Revised<ServiceDTO> replaceServiceImage(Long id, ReceivedImage received, String ifMatch) {
+        ServiceEntity serviceEntity = serviceRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Servicio no encontrado para actualizar con id: " + id));
+        requireRevision(serviceEntity, ifMatch);
+        replaceImage(serviceEntity, imageStore.commit(received));
+        ServiceEntity updated = serviceRepository.saveAndFlush(serviceEntity);
+        eventPublisher.publishEvent(CatalogChangeEvent.upserted(CatalogDocument.of(updated)));
+        return new Revised<>(convertToDTO(updated), revisionOf(updated));
+    }
+
+    private static void requireRevision(ServiceEntity serviceEntity, String ifMatch) {
+        if (!revisionOf(serviceEntity).matches(ifMatch)) {
+            throw new PreconditionFailedException("El servicio " + serviceEntity.getId() + " ha cambiado desde la versión indicada en If-Match");
+        }
+    }
+
+    /**
+     * La misma revisión que {@code findRevisionById}, pero de la entidad ya cargada (tras el
+     * {@code flush}, con la versión nueva).
+     */
+    private static EntityRevision revisionOf(ServiceEntity serviceEntity) {
+        return new EntityRevision(serviceEntity.getId(), serviceEntity.getVersion(), serviceEntity.getUpdatedAt(),
+                serviceEntity.getCategoria() != null ? serviceEntity.getCategoria().getNombre() : null,
+                serviceEntity.getOfertadoPor() != null ? serviceEntity.getOfertadoPor().getUsername() : null,
+                serviceEntity.isImageVariantsReady());
+    }
+
+    /**
+     * Reenviar la misma imagen suma y resta una referencia al mismo fichero: no cambia nada.
+     */
+    private void replaceImage(ServiceEntity serviceEntity, String filename) {
+        String previous = serviceEntity.getImagenes();
+        imageStore.release(CatalogKind.SERVICE, previous);
+        if (!filename.equals(previous)) {
+            serviceEntity.setImagenes(filename);
+            applyImageHeader(serviceEntity, filename);
+            serviceEntity.setImageVariantsReady(false);
+            eventPublisher.publishEvent(new ImageStoredEvent(CatalogKind.SERVICE, filename));
+        }
+    }
+
+    /**
+     * Dimensiones de la imagen nueva (o ninguna, si se quitó). La vista previa anterior deja de
+     * valer y llega de nuevo con las variantes.
+     */
+    private void applyImageHeader(ServiceEntity serviceEntity, String filename) {
+        Optional<ImageHeader> header = filename == null
+                ? Optional.empty()
+                : ImageHeader.read(serviceImageRootLocation.resolve(filename));
+        serviceEntity.setImageWidth(header.map(ImageHeader::width).orElse(null));
+        serviceEntity.setImageHeight(header.map(ImageHeader::height).orElse(null));
+        serviceEntity.setImageBlurHash(null);
+    }
+
+    /**
+     * Marca como listas las variantes en todos los servicios que usan la imagen, con una
+     * actualización masiva que no sube la versión: una edición en curso no falla por ello. Como
+     * el JSON servido sí cambia, se avisa a las cachés de respuestas y de búsqueda.
+     */
+    @EventListener
+    @Transactional
+    public void onImageVariantsReady(ImageVariantsReadyEvent event) {
+        if (event.kind() != CatalogKind.SERVICE) {
+            return;
+        }
+        List<Long> ids = serviceRepository.findIdsAwaitingImageVariants(event.filename());
+        if (ids.isEmpty()) {
+            return;
+        }
+        serviceRepository.markImageVariantsReady(ids, event.filename(), event.blurHash());
+        eventPublisher.publishEvent(new ImageVariantsAppliedEvent(CatalogKind.SERVICE, ids));
     }
 }
\ No newline at end of file
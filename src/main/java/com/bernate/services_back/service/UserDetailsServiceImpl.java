@@ -1,30 +1,63 @@
 package com.bernate.services_back.service;
 
+import com.bernate.services_back.event.UserChangedEvent;
 import com.bernate.services_back.model.User;
 import com.bernate.services_back.repository.UserRepository;
 import com.bernate.services_back.security.CustomUserDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
 
+    private final UserRepository userRepository;
+
+    /**
+     * Instantáneas inmutables de {@link CustomUserDetails}, con las authorities ya separadas.
+     */
+    private final Cache<String, CustomUserDetails> userDetailsCache;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
     @Autowired
-    UserRepository userRepository;
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  @Value("${app.security.user-details-cache.max-size:1000}") long maxSize,
+                                  @Value("${app.security.user-details-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.userDetailsCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
 
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return userDetailsCache.get(username, this::loadFromRepository);
+    }
+
+    private CustomUserDetails loadFromRepository(String username) {
         logger.debug("Intentando cargar usuario por username: {}", username);
 
         User user = userRepository.findByUsername(username)
@@ -33,14 +66,44 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                     return new UsernameNotFoundException("Usuario no encontrado con nombre de usuario: " + username);
                 });
 
+        return CustomUserDetails.build(user);
+    }
 
+    /**
+     * Spring Security lo invoca tras un login correcto cuando el hash almacenado usa un coste
+     * de BCrypt inferior al configurado, de modo que la contraseña se rehace de forma transparente.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado con nombre de usuario: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        evict(user.getUsername());
+        logger.debug("Contraseña rehecha con el coste actual para el usuario: {}", user.getUsername());
+        return CustomUserDetails.build(user);
+    }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evict(event.username());
+    }
 
+    public void evict(String username) {
+        userDetailsCache.invalidate(username);
+        invalidations.incrementAndGet();
+    }
 
-        CustomUserDetails userDetails = CustomUserDetails.build(user);
-
-
-
-        return userDetails;
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = userDetailsCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", userDetailsCache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("invalidationCount", invalidations.get());
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package com.bernate.services_back.controller;
+
+import com.bernate.services_back.exception.ServiceBusyException;
+import com.bernate.services_back.security.AuthRateLimiter;
+import com.bernate.services_back.service.AuthService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthControllerTest {
+
+    private AuthService authService;
+    private AuthRateLimiter authRateLimiter;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        authService = mock(AuthService.class);
+        authRateLimiter = mock(AuthRateLimiter.class);
+        AuthController controller = new AuthController();
+        ReflectionTestUtils.setField(controller, "authService", authService);
+        ReflectionTestUtils.setField(controller, "authRateLimiter", authRateLimiter);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void aBusyPasswordPoolAnswersLoginWith503AndRetryAfter() throws Exception {
+        // Spring Security envuelve la excepción del PasswordEncoder.
+        when(authService.authenticateUser(any())).thenThrow(new InternalAuthenticationServiceException("ocupado",
+                new ServiceBusyException("Demasiadas solicitudes de autenticación", 3)));
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"ana\",\"password\":\"secreto\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.error").value("Demasiadas solicitudes de autenticación"));
+
+        // Estar ocupados no es un fallo de credenciales: no cuenta para el bloqueo.
+        verify(authRateLimiter, never()).recordLoginFailure(anyString(), anyString());
+    }
+
+    @Test
+    void aBusyPasswordPoolAnswersRegisterWith503AndRetryAfter() throws Exception {
+        when(authService.registerUser(any())).thenThrow(new ServiceBusyException("Demasiadas solicitudes", 2));
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"ana\",\"password\":\"secreto\",\"nombre\":\"Ana\","
+                                + "\"apellido\":\"Pérez\",\"correo\":\"ana@correo.com\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    void wrongCredentialsAreStill401() throws Exception {
+        when(authService.authenticateUser(any())).thenThrow(new BadCredentialsException("mal"));
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"ana\",\"password\":\"otra\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().doesNotExist("Retry-After"));
+
+        verify(authRateLimiter).recordLoginFailure(anyString(), anyString());
+    }
+}
@@ -0,0 +1,309 @@
+package com.bernate.services_back.controller;
+
+import com.bernate.services_back.image.ImageServingService;
+import com.bernate.services_back.image.ImageServingService.ServedImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageControllerTest {
+
+    private static final String HASH = "a".repeat(64);
+    private static final String ETAG = "\"" + HASH + "\"";
+    /** {@code Last-Modified} de la imagen de prueba (1_700_000_000_000 ms). */
+    private static final String LAST_MODIFIED = "Tue, 14 Nov 2023 22:13:20 GMT";
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    private ImageServingService imageServingService;
+    private ImageController controller;
+    private ServedImage image;
+
+    @BeforeEach
+    void setUp() {
+        imageServingService = mock(ImageServingService.class);
+        when(imageServingService.find(anyString(), anyBoolean(), anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(image));
+        controller = new ImageController(imageServingService, 8, 3600);
+        image = new ServedImage(directory.resolve(HASH + ".jpg"), CONTENT.length, ETAG, 1_700_000_000_000L, true,
+                "image/jpeg", CONTENT);
+    }
+
+    @Test
+    void theWholeImageIsSentWithCacheHeaders() throws IOException {
+        MockHttpServletResponse response = get(request());
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("public, max-age=31536000, immutable", response.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("image/jpeg", response.getContentType());
+        verify(imageServingService).recordTransfer(image, CONTENT.length, false, false);
+    }
+
+    @Test
+    void namesThatAreNotContentAddressedGetTheShortMaxAge() throws IOException {
+        image = new ServedImage(null, CONTENT.length, ETAG, 0L, false, "image/png", CONTENT);
+
+        assertEquals("public, max-age=3600", get(request()).getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void aMatchingIfNoneMatchAnswersNotModifiedWithoutBody() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"otro\", W/" + ETAG);
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        // La respuesta 304 repite los validadores y la política de caché.
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("public, max-age=31536000, immutable", response.getHeader(HttpHeaders.CACHE_CONTROL));
+        verify(imageServingService).recordNotModified();
+        verify(imageServingService, never()).recordTransfer(any(), anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void aWildcardIfNoneMatchAlsoMatches() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "*");
+
+        assertEquals(304, get(request).getStatus());
+    }
+
+    @Test
+    void aDifferentIfNoneMatchSendsTheImage() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + "b".repeat(64) + "\"");
+
+        assertEquals(200, get(request).getStatus());
+    }
+
+    @Test
+    void ifModifiedSinceAtOrAfterLastModifiedAnswersNotModified() throws IOException {
+        for (String ifModifiedSince : new String[]{LAST_MODIFIED, "Wed, 15 Nov 2023 08:00:00 GMT"}) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+
+            MockHttpServletResponse response = get(request);
+
+            assertEquals(304, response.getStatus(), ifModifiedSince);
+            assertEquals(0, response.getContentAsByteArray().length, ifModifiedSince);
+        }
+    }
+
+    @Test
+    void anOlderOrInvalidIfModifiedSinceSendsTheImage() throws IOException {
+        for (String ifModifiedSince : new String[]{"Mon, 13 Nov 2023 22:13:20 GMT", "ayer"}) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+
+            assertEquals(200, get(request).getStatus(), ifModifiedSince);
+        }
+    }
+
+    @Test
+    void ifNoneMatchTakesPrecedenceOverIfModifiedSince() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + "b".repeat(64) + "\"");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED);
+
+        assertEquals(200, get(request).getStatus());
+    }
+
+    @Test
+    void aSingleRangeAnswersPartialContent() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 5-9/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(5, response.getContentLengthLong());
+        assertArrayEquals("56789".getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+        verify(imageServingService).recordTransfer(image, 5, true, false);
+    }
+
+    @Test
+    void openAndSuffixRangesAreClampedToTheImage() throws IOException {
+        MockHttpServletRequest open = request();
+        open.addHeader(HttpHeaders.RANGE, "bytes=15-");
+        MockHttpServletResponse openResponse = get(open);
+        assertEquals("bytes 15-19/20", openResponse.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals("fghij".getBytes(StandardCharsets.US_ASCII), openResponse.getContentAsByteArray());
+
+        MockHttpServletRequest suffix = request();
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        assertEquals("bytes 17-19/20", get(suffix).getHeader(HttpHeaders.CONTENT_RANGE));
+
+        MockHttpServletRequest beyondTheEnd = request();
+        beyondTheEnd.addHeader(HttpHeaders.RANGE, "bytes=10-500");
+        assertEquals("bytes 10-19/20", get(beyondTheEnd).getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void aRangePastTheEndIsNotSatisfiable() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(imageServingService, never()).recordTransfer(any(), anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void anyRangeOfAnEmptyImageIsNotSatisfiable() throws IOException {
+        image = new ServedImage(null, 0, ETAG, 0L, true, "image/jpeg", new byte[0]);
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-");
+
+        assertEquals(416, get(request).getStatus());
+    }
+
+    @Test
+    void malformedOrMultipleRangesSendTheWholeImage() throws IOException {
+        for (String range : new String[]{"bytes=9-5", "bytes=abc", "items=0-5", "bytes=0-1,4-5"}) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.RANGE, range);
+
+            MockHttpServletResponse response = get(request);
+
+            assertEquals(200, response.getStatus(), range);
+            assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE), range);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), range);
+        }
+    }
+
+    @Test
+    void ifRangeWithTheCurrentETagKeepsTheRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals("0123".getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeWithTheLastModifiedDateKeepsTheRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-5");
+        request.addHeader(HttpHeaders.IF_RANGE, LAST_MODIFIED);
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals("45".getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeWithAnotherValidatorSendsTheWholeImage() throws IOException {
+        // Otro ETag, el mismo como débil (If-Range exige comparación fuerte), otra fecha o algo que no es fecha.
+        for (String ifRange : new String[]{"\"" + "b".repeat(64) + "\"", "W/" + ETAG,
+                "Mon, 13 Nov 2023 22:13:20 GMT", "ayer"}) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+            request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+
+            MockHttpServletResponse response = get(request);
+
+            assertEquals(200, response.getStatus(), ifRange);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), ifRange);
+        }
+    }
+
+    @Test
+    void headSendsTheHeadersOnly() throws IOException {
+        MockHttpServletRequest request = request();
+        request.setMethod("HEAD");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void rangesFromDiskAreCopiedFromTheFile() throws IOException {
+        Files.write(image.path(), CONTENT);
+        image = new ServedImage(image.path(), CONTENT.length, ETAG, 0L, true, "image/jpeg", null);
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 2, 5), response.getContentAsByteArray());
+        verify(imageServingService).recordTransfer(image, 3, true, false);
+    }
+
+    @Test
+    void largeRangesFromDiskAreHandedToSendfile() throws IOException {
+        image = new ServedImage(image.path(), CONTENT.length, ETAG, 0L, true, "image/jpeg", null);
+        MockHttpServletRequest request = request();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-15");
+
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(image.path().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(4L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        // El final de sendfile es exclusivo.
+        assertEquals(16L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        verify(imageServingService).recordTransfer(image, 12, true, true);
+    }
+
+    @Test
+    void missingImagesAreNotFound() throws IOException {
+        image = null;
+
+        assertEquals(404, get(request()).getStatus());
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/uploads/products/" + HASH + ".jpg");
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImage("products", HASH + ".jpg", request, response);
+        return response;
+    }
+}
@@ -0,0 +1,92 @@
+package com.bernate.services_back.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlurHashTest {
+
+    private static final String BASE83 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    @Test
+    void solidColorKeepsItsAverageAndNoChromaInTheComponents() {
+        String hash = BlurHash.encode(solid(32, 24, 0xFF0000), 4, 3);
+
+        // 1 de tamaño + 1 de máximo + 4 de color medio + 2 por cada uno de los 11 componentes AC.
+        assertEquals(28, hash.length());
+        assertEquals('L', hash.charAt(0), "(4 - 1) + (3 - 1) * 9 = 21");
+        assertEquals(0xFF0000, decode(hash, 2, 4));
+        // Sin verde ni azul, esos canales de cada AC se cuantizan al valor central (9).
+        for (int component = 0; component < 11; component++) {
+            int ac = decode(hash, 6 + component * 2, 2);
+            assertEquals(9, ac / 19 % 19);
+            assertEquals(9, ac % 19);
+        }
+    }
+
+    @Test
+    void averageColorRoundTripsThroughLinearSpace() {
+        String hash = BlurHash.encode(solid(8, 8, 0x3366CC), 1, 1);
+
+        assertEquals(6, hash.length());
+        assertEquals(0x3366CC, decode(hash, 2, 4));
+    }
+
+    @Test
+    void mirroringTheImageFlipsTheSignOfOddHorizontalComponents() {
+        BufferedImage gradient = new BufferedImage(40, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage mirrored = new BufferedImage(40, 10, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 40; x++) {
+            int grey = x * 255 / 39;
+            for (int y = 0; y < 10; y++) {
+                gradient.setRGB(x, y, grey << 16 | grey << 8 | grey);
+                mirrored.setRGB(39 - x, y, grey << 16 | grey << 8 | grey);
+            }
+        }
+
+        String hash = BlurHash.encode(gradient, 2, 1);
+        String mirroredHash = BlurHash.encode(mirrored, 2, 1);
+
+        int ac = decode(hash, 6, 2);
+        int mirroredAc = decode(mirroredHash, 6, 2);
+        int red = ac / (19 * 19);
+        assertTrue(red < 9, "de oscuro a claro el primer coseno resta");
+        assertEquals(18 - red, mirroredAc / (19 * 19));
+        assertEquals(hash.substring(2, 6), mirroredHash.substring(2, 6));
+    }
+
+    @Test
+    void onlyUsesBase83Characters() {
+        BufferedImage noise = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < 256; i++) {
+            noise.setRGB(i % 16, i / 16, i * 0x010203 * 31);
+        }
+
+        String hash = BlurHash.encode(noise, 9, 9);
+
+        assertEquals(2 + 4 + 2 * 80, hash.length());
+        assertTrue(hash.chars().allMatch(c -> BASE83.indexOf(c) >= 0));
+    }
+
+    private static BufferedImage solid(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    private static int decode(String hash, int from, int length) {
+        int value = 0;
+        for (int i = from; i < from + length; i++) {
+            value = value * 83 + BASE83.indexOf(hash.charAt(i));
+        }
+        return value;
+    }
+}
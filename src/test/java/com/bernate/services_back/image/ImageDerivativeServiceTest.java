@@ -0,0 +1,143 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.event.ImageVariantsReadyEvent;
+import com.bernate.services_back.repository.ProductRepository;
+import com.bernate.services_back.repository.ServiceRepository;
+import com.bernate.services_back.search.CatalogKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageDerivativeServiceTest {
+
+    private static final String FILENAME = "b".repeat(64) + ".jpg";
+
+    @TempDir
+    Path uploadRoot;
+
+    private ApplicationEventPublisher eventPublisher;
+    private ImageLocks imageLocks;
+    private ProductRepository productRepository;
+    private ImageDerivativeService service;
+
+    @BeforeEach
+    void setUp() {
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        imageLocks = new ImageLocks();
+        productRepository = mock(ProductRepository.class);
+        ServiceRepository serviceRepository = mock(ServiceRepository.class);
+        when(productRepository.findImagesAwaitingVariants(any())).thenReturn(List.of(FILENAME));
+        when(serviceRepository.findImagesAwaitingVariants(any())).thenReturn(List.of());
+        // Sin barrido periódico: el test lo lanza a mano.
+        service = new ImageDerivativeService(eventPublisher, imageLocks, productRepository, serviceRepository,
+                uploadRoot.toString(), 1, 10, 0.8f, 4, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void theSweepRequeuesImagesThatStillHaveNoVariants() throws Exception {
+        writeOriginal();
+
+        assertEquals(1, service.sweep());
+        waitUntil(() -> (long) service.getStats().get("processed") == 1);
+
+        for (ImageVariant variant : ImageVariant.values()) {
+            assertTrue(Files.exists(variantsDirectory().resolve(variant.filenameFor(FILENAME))), variant.key());
+        }
+        verify(eventPublisher, timeout(5000)).publishEvent(argThat((Object event) ->
+                event instanceof ImageVariantsReadyEvent ready && ready.kind() == CatalogKind.PRODUCT
+                        && ready.filename().equals(FILENAME) && ready.blurHash() != null));
+        assertEquals(1L, service.getStats().get("requeued"));
+    }
+
+    @Test
+    void anImageWithoutOriginalIsNotRequeuedAgain() throws Exception {
+        assertEquals(1, service.sweep());
+        waitUntil(() -> (int) service.getStats().get("unprocessable") == 1);
+
+        assertEquals(0, service.sweep());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void variantsAreNotPlacedWhenTheOriginalIsDeletedMeanwhile() throws Exception {
+        Path original = writeOriginal();
+
+        synchronized (imageLocks.lockFor(FILENAME)) {
+            service.sweep();
+            // Las tres variantes ya están en temporales, esperando al cerrojo para renombrarse.
+            waitUntil(() -> temporaries() == ImageVariant.values().length);
+            // Lo que hace ImageStore al quitar la última referencia.
+            Files.delete(original);
+        }
+        waitUntil(() -> temporaries() == 0);
+
+        assertFalse(Files.exists(variantsDirectory().resolve(ImageVariant.THUMB.filenameFor(FILENAME))));
+        assertEquals(0L, service.getStats().get("processed"));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    private Path writeOriginal() throws IOException {
+        Path directory = Files.createDirectories(uploadRoot.resolve(MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY));
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 4) << 16 | (y * 5) << 8 | 0x40);
+            }
+        }
+        Path original = directory.resolve(FILENAME);
+        ImageIO.write(image, "jpeg", original.toFile());
+        return original;
+    }
+
+    private Path variantsDirectory() {
+        return uploadRoot.resolve(MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY).resolve(ImageVariant.DIRECTORY);
+    }
+
+    private long temporaries() {
+        if (!Files.isDirectory(variantsDirectory())) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(variantsDirectory())) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Tiempo de espera agotado");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.bernate.services_back.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageHeaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsPngGifAndJpegDimensions() throws IOException {
+        assertEquals(new ImageHeader(320, 200, 1), read(encode("png", 320, 200)).orElseThrow());
+        assertEquals(new ImageHeader(64, 48, 1), read(encode("gif", 64, 48)).orElseThrow());
+        assertEquals(new ImageHeader(120, 90, 1), read(encode("jpg", 120, 90)).orElseThrow());
+    }
+
+    @Test
+    void exifRotationSwapsTheDisplayDimensions() throws IOException {
+        byte[] jpeg = encode("jpg", 120, 90);
+
+        ImageHeader littleEndian = read(withExifOrientation(jpeg, 6, true)).orElseThrow();
+        ImageHeader bigEndian = read(withExifOrientation(jpeg, 8, false)).orElseThrow();
+        ImageHeader mirrored = read(withExifOrientation(jpeg, 2, true)).orElseThrow();
+
+        assertEquals(new ImageHeader(90, 120, 6), littleEndian);
+        assertTrue(littleEndian.isTransposed());
+        assertEquals(new ImageHeader(90, 120, 8), bigEndian);
+        assertEquals(new ImageHeader(120, 90, 2), mirrored);
+        assertFalse(mirrored.isTransposed());
+    }
+
+    @Test
+    void invalidOrientationIsIgnored() throws IOException {
+        byte[] jpeg = withExifOrientation(encode("jpg", 120, 90), 42, true);
+
+        assertEquals(new ImageHeader(120, 90, 1), read(jpeg).orElseThrow());
+    }
+
+    @Test
+    void stopsAtTheFrameHeaderWithoutReadingTheRest() throws IOException {
+        byte[] jpeg = encode("jpg", 800, 600);
+        int frame = indexOfMarker(jpeg, 0xC0);
+
+        // Basta con la cabecera hasta el SOF: el resto del fichero ni se lee.
+        byte[] headerOnly = Arrays.copyOf(jpeg, frame + 9);
+
+        assertEquals(new ImageHeader(800, 600, 1), read(headerOnly).orElseThrow());
+    }
+
+    @Test
+    void truncatedOrUnknownFilesHaveNoHeader() throws IOException {
+        byte[] jpeg = encode("jpg", 120, 90);
+
+        assertTrue(read(Arrays.copyOf(jpeg, 30)).isEmpty());
+        assertTrue(read("no es una imagen".getBytes()).isEmpty());
+        assertTrue(read(new byte[]{(byte) 0xFF, (byte) 0xD8, 0x00}).isEmpty());
+    }
+
+    @Test
+    void readsFromFilesAndToleratesMissingOnes() throws IOException {
+        Path file = directory.resolve("imagen.png");
+        Files.write(file, encode("png", 10, 20));
+
+        assertEquals(new ImageHeader(10, 20, 1), ImageHeader.read(file).orElseThrow());
+        assertTrue(ImageHeader.read(directory.resolve("no-existe.png")).isEmpty());
+    }
+
+    private static Optional<ImageHeader> read(byte[] data) throws IOException {
+        return ImageHeader.read(new ByteArrayInputStream(data));
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Inserta tras el SOI un segmento APP1 con un IFD0 que solo lleva la etiqueta de orientación.
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation, boolean littleEndian) {
+        byte[] tiff = littleEndian
+                ? new byte[]{'I', 'I', 0x2A, 0, 8, 0, 0, 0,
+                        1, 0,
+                        0x12, 0x01, 3, 0, 1, 0, 0, 0, (byte) orientation, 0, 0, 0,
+                        0, 0, 0, 0}
+                : new byte[]{'M', 'M', 0, 0x2A, 0, 0, 0, 8,
+                        0, 1,
+                        0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                        0, 0, 0, 0};
+        byte[] exif = {'E', 'x', 'i', 'f', 0, 0};
+        int length = 2 + exif.length + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.writeBytes(exif);
+        out.writeBytes(tiff);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private static int indexOfMarker(byte[] data, int marker) {
+        for (int i = 0; i + 1 < data.length; i++) {
+            if ((data[i] & 0xFF) == 0xFF && (data[i + 1] & 0xFF) == marker) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Marcador no encontrado");
+    }
+}
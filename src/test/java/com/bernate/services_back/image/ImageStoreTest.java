@@ -0,0 +1,233 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.event.ImageReleasedEvent;
+import com.bernate.services_back.exception.BadRequestException;
+import com.bernate.services_back.repository.StoredImageRepository;
+import com.bernate.services_back.search.CatalogKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageStoreTest {
+
+    private static final byte[] PHOTO = "foto de una lámpara".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path uploadRoot;
+
+    /** Cuenta de referencias por fichero, como la guarda la tabla stored_images. */
+    private final Map<String, Integer> references = new HashMap<>();
+    private ApplicationEventPublisher eventPublisher;
+    private ImageDerivativeService imageDerivativeService;
+    private ImageStore imageStore;
+
+    @BeforeEach
+    void setUp() {
+        StoredImageRepository repository = mock(StoredImageRepository.class);
+        when(repository.acquire(anyString(), anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+            references.merge(invocation.getArgument(2), 1, Integer::sum);
+            return 1;
+        });
+        when(repository.findFilename(any(), anyString())).thenAnswer(invocation -> references.keySet().stream()
+                .filter(filename -> filename.startsWith(invocation.<String>getArgument(1)))
+                .findFirst());
+        when(repository.release(any(), anyString())).thenAnswer(invocation -> {
+            String filename = invocation.getArgument(1);
+            if (references.getOrDefault(filename, 0) <= 0) {
+                return 0;
+            }
+            references.merge(filename, -1, Integer::sum);
+            return 1;
+        });
+        when(repository.deleteUnreferenced(any(), anyString())).thenAnswer(invocation ->
+                references.remove(invocation.<String>getArgument(1), 0) ? 1 : 0);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        imageDerivativeService = mock(ImageDerivativeService.class);
+        imageStore = new ImageStore(repository, imageDerivativeService, new ImageLocks(), mock(ImageServingService.class),
+                eventPublisher, mock(PlatformTransactionManager.class), uploadRoot.toString(), 1024);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void theSameContentIsStoredOnceAndCountedTwice() throws IOException {
+        String first = imageStore.store(CatalogKind.PRODUCT, upload("lampara.JPG"));
+        String second = imageStore.store(CatalogKind.PRODUCT, upload("otra.jpg"));
+
+        assertEquals(first, second);
+        assertTrue(first.matches("[0-9a-f]{64}\\.jpg"));
+        assertEquals(2, references.get(first));
+        assertEquals(1, filesIn(CatalogKind.PRODUCT));
+        assertEquals(1L, imageStore.getStats().get("stored"));
+        assertEquals(1L, imageStore.getStats().get("deduplicated"));
+        assertEquals((long) PHOTO.length, imageStore.getStats().get("deduplicatedBytes"));
+    }
+
+    @Test
+    void theFileIsDeletedOnlyWhenTheLastReferenceGoes() throws IOException {
+        String filename = imageStore.store(CatalogKind.SERVICE, upload("a.png"));
+        imageStore.store(CatalogKind.SERVICE, upload("b.png"));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        Path file = directory(CatalogKind.SERVICE).resolve(filename);
+
+        releaseAndComplete(CatalogKind.SERVICE, filename);
+        assertTrue(Files.exists(file));
+
+        releaseAndComplete(CatalogKind.SERVICE, filename);
+        assertFalse(Files.exists(file));
+        assertFalse(references.containsKey(filename));
+        verify(imageDerivativeService).deleteVariants(CatalogKind.SERVICE, filename);
+        assertEquals(1L, imageStore.getStats().get("deleted"));
+    }
+
+    @Test
+    void untrackedFilesAreOnlyDeletedWhenTheyAreNotContentAddressed() throws IOException {
+        Path directory = Files.createDirectories(directory(CatalogKind.PRODUCT));
+        Path legacy = Files.write(directory.resolve("antigua.jpg"), PHOTO);
+        Path hashed = Files.write(directory.resolve("a".repeat(64) + ".jpg"), PHOTO);
+
+        imageStore.onImageReleased(new ImageReleasedEvent(CatalogKind.PRODUCT, "antigua.jpg", false));
+        imageStore.onImageReleased(new ImageReleasedEvent(CatalogKind.PRODUCT, hashed.getFileName().toString(), false));
+        imageStore.onImageReleased(new ImageReleasedEvent(CatalogKind.PRODUCT, "../fuera.jpg", false));
+
+        assertFalse(Files.exists(legacy));
+        // Otra subida del mismo contenido puede estar registrándolo ahora mismo.
+        assertTrue(Files.exists(hashed));
+    }
+
+    @Test
+    void aRolledBackUploadRemovesTheFileItPlaced() throws IOException {
+        String filename = imageStore.store(CatalogKind.PRODUCT, upload("a.jpg"));
+        assertTrue(Files.exists(directory(CatalogKind.PRODUCT).resolve(filename)));
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(0, filesIn(CatalogKind.PRODUCT));
+        verify(imageDerivativeService).deleteVariants(CatalogKind.PRODUCT, filename);
+    }
+
+    @Test
+    void aCommittedOrUnknownOutcomeKeepsTheFile() throws IOException {
+        imageStore.store(CatalogKind.PRODUCT, upload("a.jpg"));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.initSynchronization();
+        imageStore.store(CatalogKind.SERVICE, upload("a.jpg"));
+        complete(TransactionSynchronization.STATUS_UNKNOWN);
+
+        assertEquals(1, filesIn(CatalogKind.PRODUCT));
+        assertEquals(1, filesIn(CatalogKind.SERVICE));
+    }
+
+    @Test
+    void rollingBackADeduplicatedUploadLeavesTheExistingFile() throws IOException {
+        String filename = imageStore.store(CatalogKind.PRODUCT, upload("a.jpg"));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        TransactionSynchronizationManager.initSynchronization();
+        imageStore.store(CatalogKind.PRODUCT, upload("b.jpg"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(Files.exists(directory(CatalogKind.PRODUCT).resolve(filename)));
+    }
+
+    @Test
+    void aConcurrentUploadTakesOverAFileWhoseTransactionRollsBack() throws IOException {
+        String filename = imageStore.store(CatalogKind.PRODUCT, upload("a.jpg"));
+        var placing = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // Otra transacción reutiliza el fichero antes de que la primera termine.
+        TransactionSynchronizationManager.initSynchronization();
+        imageStore.store(CatalogKind.PRODUCT, upload("b.jpg"));
+        var reusing = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        placing.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertTrue(Files.exists(directory(CatalogKind.PRODUCT).resolve(filename)));
+
+        // Si la segunda también se deshace, ya nadie lo necesita.
+        reusing.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertEquals(0, filesIn(CatalogKind.PRODUCT));
+    }
+
+    @Test
+    void oversizedOrEmptyUploadsLeaveNoTemporaryBehind() throws IOException {
+        assertThrows(MaxUploadSizeExceededException.class, () ->
+                imageStore.receive(CatalogKind.PRODUCT, new ByteArrayInputStream(new byte[2048]), ".jpg", -1));
+        assertThrows(BadRequestException.class, () ->
+                imageStore.receive(CatalogKind.PRODUCT, new ByteArrayInputStream(new byte[0]), ".jpg", 0));
+        assertThrows(MaxUploadSizeExceededException.class, () ->
+                imageStore.receive(CatalogKind.PRODUCT, new ByteArrayInputStream(PHOTO), ".jpg", 4096));
+
+        assertEquals(0, filesIn(CatalogKind.PRODUCT));
+    }
+
+    private void releaseAndComplete(CatalogKind kind, String filename) {
+        imageStore.release(kind, filename);
+        ArgumentCaptor<ImageReleasedEvent> captor = ArgumentCaptor.forClass(ImageReleasedEvent.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(captor.capture());
+        imageStore.onImageReleased(captor.getValue());
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static MockMultipartFile upload(String originalFilename) {
+        return new MockMultipartFile("file", originalFilename, "image/jpeg", PHOTO);
+    }
+
+    private Path directory(CatalogKind kind) {
+        return uploadRoot.resolve(kind == CatalogKind.PRODUCT
+                ? MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY
+                : MvcConfig.SERVICE_IMAGE_SUBDIRECTORY);
+    }
+
+    private long filesIn(CatalogKind kind) throws IOException {
+        Path directory = directory(kind);
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
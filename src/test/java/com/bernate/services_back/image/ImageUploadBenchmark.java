@@ -0,0 +1,159 @@
+package com.bernate.services_back.image;
+
+import com.bernate.services_back.config.MvcConfig;
+import com.bernate.services_back.repository.StoredImageRepository;
+import com.bernate.services_back.search.CatalogKind;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Rendimiento de una subida de {@code size} bytes hasta quedar con su nombre definitivo, sin base de
+ * datos. {@code spoolAndCopy} es el camino anterior: el contenedor vuelca la parte multipart a un
+ * temporal y luego se copia a otro temporal del directorio de imágenes calculando el SHA-256 (dos
+ * escrituras y una lectura del disco). {@code singlePass} es {@link ImageStore#receive}: el cuerpo
+ * de la petición va directo al temporal del directorio de destino. Ambos terminan con el mismo
+ * renombrado atómico.
+ * <p>
+ * Los contadores auxiliares suman, por iteración, los bytes subidos y los que cada camino escribe y
+ * lee en disco; divididos por {@code uploaded} dan el tráfico de disco por byte subido. Los ficheros van bajo {@code java.io.tmpdir}: para medir el disco real, que apunte al
+ * mismo sistema de ficheros que {@code app.upload.dir} y no a un tmpfs.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ImageUploadBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageUploadBenchmark {
+
+    @Param({"65536", "2097152", "8388608"})
+    public int size;
+
+    private Path root;
+    private Path spoolDirectory;
+    private Path imageDirectory;
+    private ImageStore imageStore;
+    private byte[] body;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class DiskBytes {
+        public long uploaded;
+        public long written;
+        public long read;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uploaded = 0;
+            written = 0;
+            read = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("upload-benchmark-");
+        spoolDirectory = Files.createDirectories(root.resolve("spool"));
+        imageStore = new ImageStore(mock(StoredImageRepository.class), mock(ImageDerivativeService.class),
+                new ImageLocks(), mock(ImageServingService.class), mock(ApplicationEventPublisher.class),
+                mock(PlatformTransactionManager.class), root.toString(), Long.MAX_VALUE);
+        imageDirectory = Files.createDirectories(root.resolve(MvcConfig.PRODUCT_IMAGE_SUBDIRECTORY));
+        body = new byte[size];
+        new SplittableRandom(42).nextBytes(body);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public String spoolAndCopy(DiskBytes disk) throws IOException {
+        // Lo que hace el contenedor con la parte multipart antes de llegar al controlador.
+        Path spool = Files.createTempFile(spoolDirectory, "upload_", ".tmp");
+        Files.copy(request(), spool, StandardCopyOption.REPLACE_EXISTING);
+        Path temporary = Files.createTempFile(imageDirectory, ".upload-", ".tmp");
+        MessageDigest digest = sha256();
+        long copied;
+        try (InputStream input = new DigestInputStream(Files.newInputStream(spool), digest)) {
+            copied = Files.copy(input, temporary, StandardCopyOption.REPLACE_EXISTING);
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        place(temporary, hash);
+        Files.delete(spool);
+        disk.uploaded += size;
+        disk.written += size + copied;
+        disk.read += copied;
+        return hash;
+    }
+
+    @Benchmark
+    public String singlePass(DiskBytes disk) throws IOException {
+        ImageStore.ReceivedImage received = imageStore.receive(CatalogKind.PRODUCT,
+                request(), ".jpg", body.length);
+        place(received.temporary(), received.hash());
+        disk.uploaded += size;
+        disk.written += received.size();
+        return received.hash();
+    }
+
+    /**
+     * El cuerpo de la petición tal como lo entrega el contenedor: a trozos, sin el atajo de
+     * {@link ByteArrayInputStream#transferTo} que escribiría el array entero de una vez.
+     */
+    private InputStream request() {
+        return new FilterInputStream(new ByteArrayInputStream(body)) {
+        };
+    }
+
+    /**
+     * El renombrado de {@code ImageStore.place}; el fichero se borra para que la siguiente
+     * operación no lo encuentre ya colocado.
+     */
+    private void place(Path temporary, String hash) throws IOException {
+        Path target = imageDirectory.resolve(hash + ".jpg");
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(target);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.bernate.services_back.pagination;
+
+import com.bernate.services_back.dto.CursorPage;
+import com.bernate.services_back.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetCursorTest {
+
+    @Test
+    void roundTripsIdOnlyAndDatedCursors() {
+        KeysetCursor byId = KeysetCursor.ofId(42L);
+        KeysetCursor dated = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000), 7L);
+
+        assertEquals(byId, KeysetCursor.decode(byId.encode()));
+        assertEquals(dated, KeysetCursor.decode(dated.encode()));
+        // base64url sin relleno: se puede poner tal cual en la query string.
+        assertTrue(dated.encode().matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void missingCursorMeansFirstPage() {
+        assertNull(KeysetCursor.decode(null));
+        assertNull(KeysetCursor.decode("  "));
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode("no es base64!"));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(encode("sin-separador")));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(encode("|abc")));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(encode("ayer|5")));
+    }
+
+    @Test
+    void datedListingsRequireTheSortKey() {
+        KeysetCursor byId = KeysetCursor.decode(KeysetCursor.ofId(3L).encode());
+
+        assertThrows(BadRequestException.class, byId::requireSortKey);
+    }
+
+    @Test
+    void extraRowOnlySignalsTheNextPage() {
+        CursorPage<String> page = CursorPage.of(List.of(30L, 20L, 10L), 2, id -> "#" + id, KeysetCursor::ofId);
+
+        assertEquals(List.of("#30", "#20"), page.getContent());
+        assertTrue(page.isHasNext());
+        assertEquals(20L, KeysetCursor.decode(page.getNextCursor()).id());
+
+        CursorPage<String> last = CursorPage.of(List.of(10L), 2, id -> "#" + id, KeysetCursor::ofId);
+        assertFalse(last.isHasNext());
+        assertNull(last.getNextCursor());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
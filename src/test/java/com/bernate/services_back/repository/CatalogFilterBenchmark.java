@@ -0,0 +1,113 @@
+package com.bernate.services_back.repository;
+
+import com.bernate.services_back.search.CatalogBenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia (p50/p99) de la primera página de los listados filtrados de productos sobre un catálogo
+ * de millones de filas en PostgreSQL, con el SQL que generan {@link CatalogSpecifications} y
+ * {@code CatalogSort} y los índices compuestos de {@code Product}. Como en {@code CatalogPager}, se
+ * leen {@code size + 1} filas y el COUNT solo se lanza si la página está llena. Antes de medir se
+ * imprime el plan real de la página y del COUNT de cada escenario.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=CatalogFilterBenchmark
+ * -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/bench -Dbenchmark.rows=3000000}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CatalogFilterBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Filtros y órdenes de {@code GET /api/v1/products}. La categoría 1 es la más poblada del
+     * catálogo generado y la 30 una de las pequeñas.
+     */
+    public enum Scenario {
+        ESTADO_CATEGORIA_PRECIO_ASC("p.estado = ? AND p.categoria_id = ? AND p.price >= ? AND p.price <= ?",
+                "p.price ASC, p.id DESC", "ACTIVO", 1L, 100.0, 200.0),
+        CATEGORIA_PEQUENA_PRECIO_DESC("p.categoria_id = ?", "p.price DESC, p.id DESC", 30L),
+        CATEGORIA_GRANDE_PRECIO_DESC("p.categoria_id = ?", "p.price DESC, p.id DESC", 1L),
+        VENDEDOR_RECIENTES("p.ofertado_por_id = ?", "p.id DESC", 4711L),
+        ESTADO_RECIENTES("p.estado = ?", "p.id DESC", "VENDIDO"),
+        PRECIO_ASC("p.price >= ? AND p.price <= ?", "p.price ASC, p.id DESC", 10.0, 20.0);
+
+        private final String where;
+        private final String orderBy;
+        private final Object[] parameters;
+
+        Scenario(String where, String orderBy, Object... parameters) {
+            this.where = where;
+            this.orderBy = orderBy;
+            this.parameters = parameters;
+        }
+    }
+
+    @Param
+    public Scenario scenario;
+
+    private Connection connection;
+    private String pageSql;
+    private String countSql;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = CatalogBenchmarkDatabase.open();
+        CatalogBenchmarkDatabase.ensureSeeded(connection, CatalogBenchmarkDatabase.rows());
+        pageSql = "SELECT p.id, p.name, p.price FROM products p WHERE " + scenario.where
+                + " ORDER BY " + scenario.orderBy + " LIMIT " + (PAGE_SIZE + 1);
+        countSql = "SELECT count(p.id) FROM products p WHERE " + scenario.where;
+        CatalogBenchmarkDatabase.printPlan(connection, scenario + ", página", pageSql, scenario.parameters);
+        CatalogBenchmarkDatabase.printPlan(connection, scenario + ", COUNT", countSql, scenario.parameters);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long firstPage() throws SQLException {
+        int rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(pageSql)) {
+            CatalogBenchmarkDatabase.bind(statement, scenario.parameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+        }
+        if (rows <= PAGE_SIZE) {
+            return rows;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(countSql)) {
+            CatalogBenchmarkDatabase.bind(statement, scenario.parameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.bernate.services_back.repository;
+
+import com.bernate.services_back.dto.CountedPage;
+import com.bernate.services_back.model.Category;
+import com.bernate.services_back.model.CategoryType;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.model.Product;
+import com.bernate.services_back.model.ServiceEntity;
+import com.bernate.services_back.model.User;
+import com.bernate.services_back.pagination.CatalogPager;
+import com.bernate.services_back.pagination.CatalogSort;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.CatalogVersion;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Los listados del catálogo deben cargar categoría y ofertante en la misma consulta que las filas:
+ * una sentencia por página (más el COUNT en los listados con total), sin importar cuántas filas haya.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import({CatalogPager.class, CatalogVersion.class})
+class CatalogQueryCountTest {
+
+    private static final int ROWS = 12;
+    private static final int PAGE_SIZE = 10;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ServiceRepository serviceRepository;
+
+    @Autowired
+    private CatalogPager catalogPager;
+
+    private final List<Long> productIds = new ArrayList<>();
+    private final List<Long> serviceIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Category productCategory = entityManager.persist(new Category(null, "Hogar", CategoryType.PRODUCTO));
+        Category serviceCategory = entityManager.persist(new Category(null, "Fontanería", CategoryType.SERVICIO));
+        for (int i = 0; i < ROWS; i++) {
+            // Un ofertante distinto por fila: sin grafo de carga cada uno sería una consulta más.
+            User seller = new User("vendedor" + i, "Nombre", "Apellido", "vendedor" + i + "@correo.com",
+                    null, "secreto", "ROLE_USER", null);
+            entityManager.persist(seller);
+            Product product = new Product("Producto " + i, "Descripción", 10.0 + i, 1, null,
+                    EstadoOferta.ACTIVO, productCategory, seller);
+            productIds.add(entityManager.persist(product).getId());
+            ServiceEntity service = new ServiceEntity("Servicio " + i, "Descripción", 20.0 + i, null,
+                    EstadoOferta.ACTIVO, serviceCategory, seller);
+            serviceIds.add(entityManager.persist(service).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics().clear();
+    }
+
+    @Test
+    void productPageLoadsAssociationsWithRows() {
+        Page<Product> page = productRepository.findAll(PageRequest.of(0, PAGE_SIZE));
+        page.forEach(this::touchAssociations);
+
+        assertEquals(PAGE_SIZE, page.getNumberOfElements());
+        assertEquals(2, statistics().getPrepareStatementCount(), "SELECT de la página + COUNT");
+    }
+
+    @Test
+    void servicePageLoadsAssociationsWithRows() {
+        Page<ServiceEntity> page = serviceRepository.findAll(PageRequest.of(0, PAGE_SIZE));
+        page.forEach(this::touchAssociations);
+
+        assertEquals(PAGE_SIZE, page.getNumberOfElements());
+        assertEquals(2, statistics().getPrepareStatementCount(), "SELECT de la página + COUNT");
+    }
+
+    @Test
+    void searchPageLoadsAssociationsWithRows() {
+        // El camino de ProductService/ServiceService cuando la búsqueda va a la base de datos.
+        CountedPage<Product> products = catalogPager.page(productRepository, Product.class,
+                List.of("categoria", "ofertadoPor"), CatalogKind.PRODUCT, CatalogSpecifications.containsText("producto"),
+                PageRequest.of(0, PAGE_SIZE), CountStrategy.EXACT, CatalogPager.textKey("producto"), OptionalLong::empty);
+        products.forEach(this::touchAssociations);
+        CountedPage<ServiceEntity> services = catalogPager.page(serviceRepository, ServiceEntity.class,
+                List.of("categoria", "ofertadoPor"), CatalogKind.SERVICE, CatalogSpecifications.containsText("servicio"),
+                PageRequest.of(0, PAGE_SIZE), CountStrategy.EXACT, CatalogPager.textKey("servicio"), OptionalLong::empty);
+        services.forEach(this::touchAssociations);
+
+        assertEquals(PAGE_SIZE, products.getNumberOfElements());
+        assertEquals(ROWS, products.getTotalElements());
+        assertEquals(PAGE_SIZE, services.getNumberOfElements());
+        assertEquals(4, statistics().getPrepareStatementCount(), "SELECT de la página + COUNT en cada listado");
+    }
+
+    @Test
+    void filteredPageLoadsAssociationsWithRows() {
+        Specification<Product> spec = Specification.allOf(
+                CatalogSpecifications.hasEstado(EstadoOferta.ACTIVO),
+                CatalogSpecifications.priceAtLeast("price", 12.0),
+                CatalogSpecifications.containsText("producto"));
+        Page<Product> page = productRepository.findAll(spec,
+                PageRequest.of(0, 5, CatalogSort.PRICE_DESC.toSort("price")));
+        page.forEach(this::touchAssociations);
+
+        assertEquals(5, page.getNumberOfElements());
+        assertEquals(ROWS - 2, page.getTotalElements());
+        assertEquals(10.0 + ROWS - 1, page.getContent().get(0).getPrice());
+        assertEquals(2, statistics().getPrepareStatementCount(), "SELECT de la página + COUNT");
+    }
+
+    @Test
+    void cursorPageIsASingleStatement() {
+        List<Product> products = productRepository.findAllByOrderByIdDesc(Limit.of(PAGE_SIZE + 1));
+        products.forEach(this::touchAssociations);
+        List<ServiceEntity> services = serviceRepository.findByIdLessThanOrderByIdDesc(
+                serviceIds.get(ROWS - 1), Limit.of(PAGE_SIZE + 1));
+        services.forEach(this::touchAssociations);
+
+        assertEquals(PAGE_SIZE + 1, products.size());
+        assertEquals(ROWS - 1, services.size());
+        assertEquals(2, statistics().getPrepareStatementCount(), "una sentencia por listado");
+    }
+
+    @Test
+    void pagerWithoutCountIsASingleStatement() {
+        CountedPage<Product> first = pagerPage(PageRequest.of(0, PAGE_SIZE), CountStrategy.NONE);
+        first.forEach(this::touchAssociations);
+        CountedPage<Product> last = pagerPage(PageRequest.of(1, PAGE_SIZE), CountStrategy.NONE);
+        last.forEach(this::touchAssociations);
+
+        assertEquals(PAGE_SIZE, first.getNumberOfElements());
+        assertTrue(first.hasNext());
+        assertEquals(PAGE_SIZE + 1, first.getTotalElements(), "cota inferior: hay al menos una fila más");
+        assertEquals(ROWS - PAGE_SIZE, last.getNumberOfElements());
+        assertEquals(productIds.get(PAGE_SIZE), last.getContent().get(0).getId());
+        assertFalse(last.hasNext());
+        assertEquals(ROWS, last.getTotalElements());
+        assertEquals(CountStrategy.EXACT, last.getCountStrategy(), "la última página conoce su total");
+        assertEquals(2, statistics().getPrepareStatementCount(), "una sentencia por página, sin COUNT");
+    }
+
+    @Test
+    void pagerReusesCachedCount() {
+        CountedPage<Product> first = pagerPage(PageRequest.of(0, 5), CountStrategy.CACHED);
+        CountedPage<Product> second = pagerPage(PageRequest.of(1, 5), CountStrategy.CACHED);
+
+        assertEquals(ROWS, first.getTotalElements());
+        assertEquals(ROWS, second.getTotalElements());
+        assertEquals(CountStrategy.CACHED, second.getCountStrategy());
+        assertEquals(3, statistics().getPrepareStatementCount(), "dos páginas + un único COUNT");
+    }
+
+    @Test
+    void lookupsByIdLoadAssociationsWithRows() {
+        touchAssociations(productRepository.findById(productIds.get(0)).orElseThrow());
+        serviceRepository.findAllById(serviceIds.subList(0, PAGE_SIZE)).forEach(this::touchAssociations);
+
+        assertEquals(2, statistics().getPrepareStatementCount(), "una sentencia por lectura");
+    }
+
+    private CountedPage<Product> pagerPage(PageRequest pageable, CountStrategy strategy) {
+        return catalogPager.page(productRepository, Product.class, List.of("categoria", "ofertadoPor"), CatalogKind.PRODUCT,
+                CatalogSpecifications.containsText("producto"), pageable.withSort(Sort.by("id")),
+                strategy, CatalogPager.textKey("producto"), OptionalLong::empty);
+    }
+
+    private void touchAssociations(Product product) {
+        product.getCategoria().getNombre();
+        product.getOfertadoPor().getUsername();
+    }
+
+    private void touchAssociations(ServiceEntity service) {
+        service.getCategoria().getNombre();
+        service.getOfertadoPor().getUsername();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
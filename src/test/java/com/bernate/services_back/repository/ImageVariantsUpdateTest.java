@@ -0,0 +1,110 @@
+package com.bernate.services_back.repository;
+
+import com.bernate.services_back.dto.EntityRevision;
+import com.bernate.services_back.model.Category;
+import com.bernate.services_back.model.CategoryType;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.model.Product;
+import com.bernate.services_back.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Marcar las variantes de una imagen como listas no debe subir la versión de las filas ni
+ * perderse si a la vez se guarda una edición que cargó la fila antes.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+class ImageVariantsUpdateTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Long withImage;
+    private Long otherImage;
+
+    @BeforeEach
+    void setUp() {
+        Category category = entityManager.persist(new Category(null, "Hogar", CategoryType.PRODUCTO));
+        User seller = entityManager.persist(new User("ana", "Ana", "Pérez", "ana@correo.com",
+                null, "secreto", "ROLE_USER", null));
+        withImage = entityManager.persist(new Product("Lámpara", "Descripción", 30.0, 1, "a.jpg",
+                EstadoOferta.ACTIVO, category, seller)).getId();
+        otherImage = entityManager.persist(new Product("Mesa", "Descripción", 90.0, 1, "b.jpg",
+                EstadoOferta.ACTIVO, category, seller)).getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void markingVariantsKeepsTheVersionButChangesTheETag() {
+        EntityRevision before = productRepository.findRevisionById(withImage).orElseThrow();
+
+        List<Long> ids = productRepository.findIdsAwaitingImageVariants("a.jpg");
+        int updated = productRepository.markImageVariantsReady(ids, "a.jpg", "LEHV6nWB2yk8");
+        entityManager.clear();
+
+        assertEquals(List.of(withImage), ids);
+        assertEquals(1, updated);
+        Product product = productRepository.findById(withImage).orElseThrow();
+        assertTrue(product.isImageVariantsReady());
+        assertEquals("LEHV6nWB2yk8", product.getImageBlurHash());
+        EntityRevision after = productRepository.findRevisionById(withImage).orElseThrow();
+        assertEquals(before.version(), after.version());
+        assertEquals(before.updatedAt(), after.updatedAt());
+        // El JSON cambia (URLs de las variantes), así que el ETag también.
+        assertNotEquals(before.etag(), after.etag());
+        assertTrue(productRepository.findIdsAwaitingImageVariants("a.jpg").isEmpty());
+        assertEquals(List.of(otherImage), productRepository.findIdsAwaitingImageVariants("b.jpg"));
+    }
+
+    @Test
+    void theSweepFindsEachImageStillWithoutVariantsOnce() {
+        Product other = entityManager.find(Product.class, otherImage);
+        entityManager.persist(new Product("Silla", "Descripción", 20.0, 1, "b.jpg", EstadoOferta.ACTIVO,
+                other.getCategoria(), other.getOfertadoPor()));
+        entityManager.persist(new Product("Sin foto", "Descripción", 5.0, 1, null, EstadoOferta.ACTIVO,
+                other.getCategoria(), other.getOfertadoPor()));
+        productRepository.markImageVariantsReady(List.of(withImage), "a.jpg", null);
+        entityManager.flush();
+
+        assertEquals(List.of("b.jpg"), productRepository.findImagesAwaitingVariants(Limit.of(10)));
+    }
+
+    @Test
+    void rowsThatChangedImageAreNotMarked() {
+        List<Long> ids = productRepository.findIdsAwaitingImageVariants("a.jpg");
+
+        assertEquals(0, productRepository.markImageVariantsReady(ids, "c.jpg", null));
+    }
+
+    @Test
+    void concurrentEditDoesNotUndoTheFlag() {
+        Product editing = productRepository.findById(withImage).orElseThrow();
+
+        productRepository.markImageVariantsReady(List.of(withImage), "a.jpg", "LEHV6nWB2yk8");
+        editing.setPrice(35.0);
+        productRepository.saveAndFlush(editing);
+        entityManager.clear();
+
+        Product product = productRepository.findById(withImage).orElseThrow();
+        assertEquals(35.0, product.getPrice());
+        assertTrue(product.isImageVariantsReady());
+        assertEquals("LEHV6nWB2yk8", product.getImageBlurHash());
+    }
+}
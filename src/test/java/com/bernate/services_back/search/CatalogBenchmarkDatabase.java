@@ -0,0 +1,149 @@
+package com.bernate.services_back.search;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Catálogo generado en PostgreSQL para los benchmarks de base de datos. Crea en el esquema
+ * {@value #SCHEMA} las columnas de {@code products}, {@code categories} y {@code users} que usan
+ * las consultas, con los mismos índices que declaran las entidades y los de
+ * {@link PostgresFullTextSchema}, y lo rellena una sola vez: si ya tiene las filas pedidas se
+ * reutiliza entre ejecuciones.
+ * <p>
+ * Propiedades del sistema: {@code benchmark.jdbc.url} (obligatoria, p. ej.
+ * {@code jdbc:postgresql://localhost:5432/bench}), {@code benchmark.jdbc.user},
+ * {@code benchmark.jdbc.password} y {@code benchmark.rows} (1.000.000 por defecto).
+ */
+public final class CatalogBenchmarkDatabase {
+
+    public static final String SCHEMA = "catalog_benchmark";
+    public static final int CATEGORIES = 40;
+    public static final int USERS = 20_000;
+    public static final int DISTINCT_WORDS = 20_000;
+
+    private static final String CATEGORY_NAMES = "ARRAY['Fontanería','Electricidad','Jardinería','Música','Informática',"
+            + "'Carpintería','Pintura','Limpieza','Mudanzas','Cocina','Fotografía','Idiomas','Mecánica','Costura',"
+            + "'Peluquería','Deportes','Mascotas','Reformas','Cerrajería','Climatización']";
+    private static final String VOCABULARY = "ARRAY['reparación','urgente','grifo','tubería','cocina','baño','guitarra',"
+            + "'española','clases','principiantes','ordenador','portátil','pantalla','jardín','césped','poda','pintura',"
+            + "'interior','exterior','mueble','madera','roble','lámpara','enchufe','instalación','revisión','caldera',"
+            + "'radiador','bicicleta','cadena','perro','paseo','mudanza','caja','armario','puerta','ventana','cristal',"
+            + "'usado','nuevo','barato','garantía','rápido','domicilio','fin','semana','profesional','experiencia']";
+
+    private CatalogBenchmarkDatabase() {
+    }
+
+    public static int rows() {
+        return Integer.getInteger("benchmark.rows", 1_000_000);
+    }
+
+    /**
+     * Conexión en autocommit con {@code search_path} en {@value #SCHEMA}, así que las consultas
+     * del repositorio se ejecutan sin cambios.
+     */
+    public static Connection open() throws SQLException {
+        String url = System.getProperty("benchmark.jdbc.url");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("Falta -Dbenchmark.jdbc.url con una base de datos PostgreSQL de pruebas");
+        }
+        Connection connection = DriverManager.getConnection(url,
+                System.getProperty("benchmark.jdbc.user", "postgres"), System.getProperty("benchmark.jdbc.password", ""));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA);
+            statement.execute("SET search_path TO " + SCHEMA);
+        }
+        return connection;
+    }
+
+    public static void ensureSeeded(Connection connection, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS categories (id_categoria bigserial PRIMARY KEY, "
+                    + "nombre varchar(45) NOT NULL UNIQUE, tipo varchar(20) NOT NULL)");
+            statement.execute("CREATE TABLE IF NOT EXISTS users (id bigserial PRIMARY KEY, "
+                    + "username varchar(50) NOT NULL UNIQUE)");
+            statement.execute("CREATE TABLE IF NOT EXISTS products (id bigserial PRIMARY KEY, name varchar(100) NOT NULL, "
+                    + "description varchar(500), price float8 NOT NULL, estado varchar(20), "
+                    + "categoria_id bigint NOT NULL REFERENCES categories, ofertado_por_id bigint NOT NULL REFERENCES users)");
+            if (count(connection, "products") == rows) {
+                createIndexes(statement);
+                return;
+            }
+            long start = System.nanoTime();
+            statement.execute("TRUNCATE products, categories, users RESTART IDENTITY");
+            statement.execute("SELECT setseed(0.42)");
+            statement.execute("INSERT INTO categories (nombre, tipo) SELECT n[1 + (g - 1) % array_length(n, 1)] "
+                    + "|| CASE WHEN g > array_length(n, 1) THEN ' ' || g ELSE '' END, 'PRODUCTO' "
+                    + "FROM generate_series(1, " + CATEGORIES + ") g, (SELECT " + CATEGORY_NAMES + " n) v");
+            statement.execute("INSERT INTO users (username) SELECT 'usuario' || g FROM generate_series(1, " + USERS + ") g");
+            // Estados y categorías sesgados como en un catálogo real: la mayoría activos y unas
+            // pocas categorías con casi todo el volumen.
+            statement.execute("INSERT INTO products (name, description, price, estado, categoria_id, ofertado_por_id) "
+                    + "SELECT initcap(w[1 + (g * 7) % array_length(w, 1)]) || ' ' || w[1 + (g * 13) % array_length(w, 1)] "
+                    + "|| ' ' || g, "
+                    // Descripciones con una distribución de palabras de cola larga: las del vocabulario
+                    // son las frecuentes y el resto son términos sintéticos raros ("voz1234").
+                    + "(SELECT string_agg(coalesce(w[z.r], 'voz' || z.r), ' ') "
+                    + "FROM generate_series(1, 12 + g % 2) k, "
+                    + "LATERAL (SELECT 1 + floor(" + DISTINCT_WORDS + " * power(random(), 3))::int + k * 0 AS r) z), "
+                    + "round((random() * 1000)::numeric, 2), "
+                    + "CASE WHEN random() < 0.7 THEN 'ACTIVO' ELSE (ARRAY['INACTIVO','PENDIENTE','VENDIDO','BORRADOR'])"
+                    + "[1 + floor(random() * 4)::int] END, "
+                    + "1 + floor(" + CATEGORIES + " * power(random(), 2))::int, "
+                    + "1 + floor(random() * " + USERS + ")::int "
+                    + "FROM generate_series(1, " + rows + ") g, (SELECT " + VOCABULARY + " w) v");
+            createIndexes(statement);
+            statement.execute("VACUUM ANALYZE products");
+            statement.execute("ANALYZE categories");
+            System.out.printf("Catálogo de %d productos generado en %d s%n", rows, (System.nanoTime() - start) / 1_000_000_000L);
+        }
+    }
+
+    /**
+     * Los de {@code Product} y los de búsqueda de texto; se crean después de insertar las filas.
+     */
+    private static void createIndexes(Statement statement) throws SQLException {
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_products_estado_categoria_price ON products (estado, categoria_id, price)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_products_categoria_price ON products (categoria_id, price)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_products_ofertado_por ON products (ofertado_por_id, id)");
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_products_price ON products (price, id)");
+        for (String ddl : PostgresFullTextSchema.STATEMENTS) {
+            if (ddl.contains(" products ") || ddl.contains(" categories ")) {
+                statement.execute(ddl);
+            }
+        }
+    }
+
+    /**
+     * Imprime el plan real ({@code EXPLAIN (ANALYZE, BUFFERS)}) de la consulta.
+     */
+    public static void printPlan(Connection connection, String title, String sql, Object... parameters) throws SQLException {
+        StringBuilder plan = new StringBuilder("\n-- ").append(title).append('\n');
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+            bind(statement, parameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+        System.out.print(plan);
+    }
+
+    public static void bind(PreparedStatement statement, Object... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    private static long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
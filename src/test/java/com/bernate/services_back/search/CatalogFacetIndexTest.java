@@ -0,0 +1,84 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.dto.CatalogFacets;
+import com.bernate.services_back.dto.CatalogFilter;
+import com.bernate.services_back.dto.CountedPage;
+import com.bernate.services_back.dto.FacetedPage;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.pagination.CountStrategy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogFacetIndexTest {
+
+    private final CatalogFacetIndex facetIndex = new CatalogFacetIndex(new double[]{100});
+
+    @BeforeEach
+    void setUp() {
+        facetIndex.rebuild(CatalogKind.PRODUCT, List.of(
+                document(1L, "Hogar", EstadoOferta.ACTIVO, 50.0, "ana"),
+                document(2L, "Hogar", EstadoOferta.VENDIDO, 150.0, "ana"),
+                document(3L, "Música", EstadoOferta.ACTIVO, 80.0, "luis"),
+                document(4L, "Música", EstadoOferta.ACTIVO, 300.0, "eva")));
+    }
+
+    @Test
+    void countsComeFromTheGivenIdSet() {
+        // Los ids que produjo la página (p. ej. LIKE o texto completo), no los del índice invertido.
+        CatalogFacets facets = facetIndex.facets(CatalogKind.PRODUCT, List.of(1L, 2L, 4L), new CatalogFilter()).orElseThrow();
+
+        assertEquals(3, facets.getTotal());
+        assertEquals(Map.of("Hogar", 2, "Música", 1), facets.getCategories());
+        assertEquals(Map.of("ACTIVO", 2, "VENDIDO", 1), facets.getEstados());
+        assertEquals(Map.of("0-100", 1, "100+", 2), facets.getPriceRanges());
+    }
+
+    @Test
+    void eachFacetIgnoresItsOwnFilter() {
+        CatalogFilter filter = new CatalogFilter("Música", EstadoOferta.ACTIVO, null, null, null, null);
+
+        CatalogFacets facets = facetIndex.facets(CatalogKind.PRODUCT, null, filter).orElseThrow();
+
+        assertEquals(2, facets.getTotal());
+        assertEquals(Map.of("Hogar", 1, "Música", 2), facets.getCategories());
+        assertEquals(Map.of("ACTIVO", 2), facets.getEstados());
+    }
+
+    @Test
+    void noMatchesGiveEmptyCounts() {
+        CatalogFacets facets = facetIndex.facets(CatalogKind.PRODUCT, List.of(), new CatalogFilter()).orElseThrow();
+
+        assertEquals(0, facets.getTotal());
+        assertTrue(facets.getCategories().isEmpty());
+    }
+
+    @Test
+    void notReadyUntilRebuilt() {
+        assertTrue(facetIndex.facets(CatalogKind.SERVICE, null, new CatalogFilter()).isEmpty());
+    }
+
+    @Test
+    void facetedPageKeepsTheCountStrategy() {
+        CountedPage<String> page = new CountedPage<>(List.of("a"), PageRequest.of(0, 1), 40, CountStrategy.ESTIMATED);
+        CatalogFacets facets = facetIndex.facets(CatalogKind.PRODUCT, null, new CatalogFilter()).orElseThrow();
+
+        JsonNode json = new ObjectMapper().valueToTree(new FacetedPage<>(page, facets));
+
+        assertEquals("ESTIMATED", json.get("countStrategy").asText());
+        assertEquals(40, json.get("totalElements").asInt());
+        assertEquals(4, json.get("facets").get("total").asInt());
+    }
+
+    private static CatalogDocument document(Long id, String category, EstadoOferta estado, Double price, String seller) {
+        return new CatalogDocument(CatalogKind.PRODUCT, id, "Artículo " + id, null, category, estado, price, seller);
+    }
+}
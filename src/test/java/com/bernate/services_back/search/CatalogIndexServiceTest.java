@@ -0,0 +1,100 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.event.CatalogChangeEvent;
+import com.bernate.services_back.event.CatalogVersionChangedEvent;
+import com.bernate.services_back.event.CategoryChangeEvent;
+import com.bernate.services_back.model.EstadoOferta;
+import com.bernate.services_back.repository.ProductRepository;
+import com.bernate.services_back.repository.ServiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogIndexServiceTest {
+
+    @TempDir
+    Path snapshotDir;
+
+    private CatalogIndexService indexService;
+    private CatalogVersion catalogVersion;
+    /** Lo que devuelve el índice en el momento en que sube la versión. */
+    private final List<List<Long>> seenAtAdvance = new ArrayList<>();
+    private Supplier<List<Long>> probe = List::of;
+
+    @BeforeEach
+    void setUp() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        ServiceRepository serviceRepository = mock(ServiceRepository.class);
+        when(productRepository.findAllCatalogDocuments()).thenReturn(List.of(document(1L, "Guitarra española", "Música")));
+        when(serviceRepository.findAllCatalogDocuments()).thenReturn(List.of());
+        catalogVersion = new CatalogVersion(event -> {
+            if (event instanceof CatalogVersionChangedEvent) {
+                seenAtAdvance.add(probe.get());
+            }
+        });
+        CatalogSearchIndex searchIndex = new CatalogSearchIndex();
+        FuzzySearchIndex fuzzyIndex = new FuzzySearchIndex(0.5);
+        indexService = new CatalogIndexService(productRepository, serviceRepository, searchIndex, fuzzyIndex,
+                List.of(searchIndex, fuzzyIndex), SearchBackend.INDEX, catalogVersion, snapshotDir.toString());
+        indexService.bootstrap();
+        seenAtAdvance.clear();
+    }
+
+    @Test
+    void versionAdvancesOnlyAfterTheIndexHasTheChange() {
+        probe = () -> ids("violin");
+        long before = catalogVersion.current();
+
+        indexService.onCatalogChanged(CatalogChangeEvent.upserted(document(2L, "Violín de estudio", "Música")));
+
+        assertEquals(before + 1, catalogVersion.current());
+        assertEquals(List.of(List.of(2L)), seenAtAdvance);
+    }
+
+    @Test
+    void deletionsAreAppliedBeforeTheVersionAdvances() {
+        probe = () -> ids("guitarra");
+
+        indexService.onCatalogChanged(CatalogChangeEvent.deleted(CatalogKind.PRODUCT, 1L));
+
+        assertEquals(List.of(List.of()), seenAtAdvance);
+    }
+
+    @Test
+    void categoryRenamesAreIndexedBeforeTheVersionAdvances() {
+        probe = () -> ids("instrumentos");
+
+        indexService.onCategoryChanged(new CategoryChangeEvent(7L, "Música", "Instrumentos"));
+        // Las altas y bajas de categorías también cambian la versión, aunque no toquen el índice.
+        indexService.onCategoryChanged(new CategoryChangeEvent(8L, null, "Libros"));
+
+        assertEquals(List.of(List.of(1L), List.of(1L)), seenAtAdvance);
+    }
+
+    @Test
+    void reloadingFromTheDatabaseAdvancesTheVersion() {
+        long before = catalogVersion.current();
+
+        indexService.bootstrap();
+
+        // Primero desde la instantánea y después desde base de datos.
+        assertEquals(before + 2, catalogVersion.current());
+    }
+
+    private List<Long> ids(String query) {
+        return indexService.search(CatalogKind.PRODUCT, query).map(SearchHit::ids).orElse(List.of());
+    }
+
+    private static CatalogDocument document(Long id, String name, String category) {
+        return new CatalogDocument(CatalogKind.PRODUCT, id, name, null, category, EstadoOferta.ACTIVO, 100.0, "ana");
+    }
+}
@@ -0,0 +1,132 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.repository.ProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia (p50/p99 en la salida de {@code SampleTime}) de la primera página de una búsqueda de
+ * productos en PostgreSQL con el backend {@code postgres} (tsvector + GIN, la consulta de
+ * {@link ProductRepository#searchFullTextIds}) frente al backend {@code like} (la misma condición
+ * que {@code CatalogSpecifications.containsText}). Cada operación es lo que hace una petición: la
+ * página y, si está llena, el COUNT exacto. Antes de medir se imprimen los planes de ambas.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=FullTextSearchBenchmark
+ * -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/bench -Dbenchmark.rows=1000000}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class FullTextSearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final String LIKE_CONDITION = "FROM products p LEFT JOIN categories c ON c.id_categoria = p.categoria_id "
+            + "WHERE lower(p.name) LIKE ? ESCAPE '\\' OR lower(p.description) LIKE ? ESCAPE '\\' "
+            + "OR lower(c.nombre) LIKE ? ESCAPE '\\'";
+
+    /**
+     * Un término frecuente, dos términos, uno intermedio, uno raro y una categoría.
+     */
+    @Param({"cocina", "caldera radiador", "roble", "voz4711", "fontanería"})
+    public String query;
+
+    private Connection connection;
+    private String fullTextPage;
+    private String fullTextCount;
+    private String likePage;
+    private String likeCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        connection = CatalogBenchmarkDatabase.open();
+        CatalogBenchmarkDatabase.ensureSeeded(connection, CatalogBenchmarkDatabase.rows());
+        Query repositoryQuery = ProductRepository.class.getMethod("searchFullTextIds", String.class, Pageable.class)
+                .getAnnotation(Query.class);
+        fullTextPage = repositoryQuery.value().replace(":query", "?") + " LIMIT " + (PAGE_SIZE + 1);
+        fullTextCount = repositoryQuery.countQuery().replace(":query", "?");
+        likePage = "SELECT p.id " + LIKE_CONDITION + " LIMIT " + (PAGE_SIZE + 1);
+        likeCount = "SELECT count(*) " + LIKE_CONDITION;
+
+        CatalogBenchmarkDatabase.printPlan(connection, "tsvector, página: " + query, fullTextPage, fullTextParameters(fullTextPage));
+        CatalogBenchmarkDatabase.printPlan(connection, "tsvector, COUNT: " + query, fullTextCount, fullTextParameters(fullTextCount));
+        CatalogBenchmarkDatabase.printPlan(connection, "LIKE, página: " + query, likePage, likeParameters());
+        CatalogBenchmarkDatabase.printPlan(connection, "LIKE, COUNT: " + query, likeCount, likeParameters());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long fullText() throws SQLException {
+        return firstPage(fullTextPage, fullTextCount, fullTextParameters(fullTextPage), fullTextParameters(fullTextCount));
+    }
+
+    @Benchmark
+    public long like() throws SQLException {
+        return firstPage(likePage, likeCount, likeParameters(), likeParameters());
+    }
+
+    /**
+     * Como {@code CatalogPager}: una fila de más dice si hay siguiente página y el COUNT solo se
+     * lanza cuando la página está llena.
+     */
+    private long firstPage(String pageSql, String countSql, Object[] pageParameters, Object[] countParameters) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(pageSql)) {
+            CatalogBenchmarkDatabase.bind(statement, pageParameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+        }
+        if (rows <= PAGE_SIZE) {
+            return rows;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(countSql)) {
+            CatalogBenchmarkDatabase.bind(statement, countParameters);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private Object[] fullTextParameters(String sql) {
+        Object[] parameters = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+        Arrays.fill(parameters, query);
+        return parameters;
+    }
+
+    private Object[] likeParameters() {
+        String pattern = "%" + query.trim().toLowerCase(Locale.ROOT) + "%";
+        return new Object[]{pattern, pattern, pattern};
+    }
+}
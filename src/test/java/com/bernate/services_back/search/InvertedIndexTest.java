@@ -0,0 +1,72 @@
+package com.bernate.services_back.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.rebuild(List.of(
+                document(1L, "Reparación de fontanería", "Arreglo de tuberías y grifos", "Hogar"),
+                document(2L, "Clases de guitarra", "Guitarra española para principiantes", "Música"),
+                document(3L, "Grifo monomando", "Grifo de cocina cromado", "Hogar"),
+                document(4L, "Pintura de interiores", "Fontanería no incluida", "Hogar")));
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        assertEquals(List.of(3L), ids(index.search("grifo cocina")));
+        assertTrue(index.search("guitarra cocina").isEmpty());
+    }
+
+    @Test
+    void lastTermIsAlsoAPrefixAndAccentsAreFolded() {
+        assertEquals(List.of(1L, 4L), ids(index.search("fonta")));
+        assertEquals(List.of(2L), ids(index.search("MUSICA")));
+    }
+
+    @Test
+    void nameOutweighsDescription() {
+        // "fontanería" está en el nombre de 1 y solo en la descripción de 4.
+        List<SearchHit> hits = index.search("fontaneria");
+        assertEquals(List.of(1L, 4L), ids(hits));
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void tiesAreOrderedByNewestFirst() {
+        assertEquals(List.of(4L, 3L, 1L), ids(index.search("hogar")));
+    }
+
+    @Test
+    void upsertReplacesTheOldTermsAndRemoveDropsTheDocument() {
+        index.upsert(document(3L, "Lámpara de pie", "Luz cálida", "Hogar"));
+        assertTrue(index.search("grifo monomando").isEmpty());
+        assertEquals(List.of(3L), ids(index.search("lampara")));
+
+        index.remove(2L);
+        assertTrue(index.search("guitarra").isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void stopwordsOnlyQueryFindsNothing() {
+        assertTrue(index.search("de la").isEmpty());
+    }
+
+    private static CatalogDocument document(Long id, String name, String description, String category) {
+        return new CatalogDocument(CatalogKind.SERVICE, id, name, description, category, null, null, "vendedor");
+    }
+
+    private static List<Long> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::id).toList();
+    }
+}
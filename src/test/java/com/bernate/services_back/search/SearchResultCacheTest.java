@@ -0,0 +1,95 @@
+package com.bernate.services_back.search;
+
+import com.bernate.services_back.dto.CountedPage;
+import com.bernate.services_back.dto.ProductDTO;
+import com.bernate.services_back.event.CatalogVersionChangedEvent;
+import com.bernate.services_back.pagination.CountStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class SearchResultCacheTest {
+
+    private CatalogVersion catalogVersion;
+    private SearchResultCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        catalogVersion = new CatalogVersion(event -> {
+            if (event instanceof CatalogVersionChangedEvent changed) {
+                cache.onCatalogVersionChanged(changed);
+            }
+        });
+        cache = new SearchResultCache(catalogVersion, true, 100, 600, 2, 2);
+    }
+
+    @Test
+    void onlyRepeatedQueriesAreCached() {
+        get("guitarra");
+        get("Guitarra ");
+        get("guitarra");
+
+        // La primera no se admite; la segunda se guarda y la tercera ya sale de la caché.
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void cachedPagesDoNotShareMutableDtos() {
+        get("guitarra");
+        Page<ProductDTO> stored = get("guitarra");
+        stored.getContent().get(0).setName("Cambiado por quien la sirvió");
+
+        Page<ProductDTO> first = get("guitarra");
+        first.getContent().get(0).setPrice(1.0);
+        Page<ProductDTO> second = get("guitarra");
+
+        assertEquals(2, loads.get());
+        assertNotSame(first.getContent().get(0), second.getContent().get(0));
+        assertEquals("Guitarra española", second.getContent().get(0).getName());
+        assertEquals(120.0, second.getContent().get(0).getPrice());
+        assertEquals("https://cdn/thumb.jpg", second.getContent().get(0).getImageVariants().get("thumb"));
+    }
+
+    @Test
+    void hitsKeepTheTotalAndCountStrategy() {
+        get("guitarra");
+        get("guitarra");
+
+        Page<ProductDTO> hit = get("guitarra");
+
+        assertEquals(42, hit.getTotalElements());
+        assertEquals(CountStrategy.ESTIMATED, CountStrategy.of(hit));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void advancingTheCatalogVersionDropsEveryEntry() {
+        get("guitarra");
+        get("guitarra");
+
+        catalogVersion.advance();
+        get("guitarra");
+
+        assertEquals(3, loads.get());
+        assertEquals(1L, cache.getStats().get("catalogVersion"));
+    }
+
+    private Page<ProductDTO> get(String term) {
+        return cache.get(CatalogKind.PRODUCT, term, 0, 10, CountStrategy.ESTIMATED, ProductDTO::copy, () -> {
+            loads.incrementAndGet();
+            ProductDTO product = new ProductDTO(1L, "Guitarra española", null, 120.0, 1, null, null, "Música", "ana");
+            product.setImageVariants(new HashMap<>(Map.of("thumb", "https://cdn/thumb.jpg")));
+            return new CountedPage<>(List.of(product), PageRequest.of(0, 10), 42, CountStrategy.ESTIMATED);
+        });
+    }
+}
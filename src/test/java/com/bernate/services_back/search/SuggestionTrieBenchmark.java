@@ -0,0 +1,93 @@
+package com.bernate.services_back.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia (p50/p99) del autocompletado sobre {@code entries} nombres de catálogo: {@code complete}
+ * con prefijos de 1 a 6 caracteres tal como los va escribiendo el usuario, y {@code reweigh}, la
+ * actualización incremental que hace {@link SuggestionIndex} al llegar una calificación (quitar la
+ * entrada y volver a insertarla con otro peso). Los nombres combinan palabras de un vocabulario de
+ * catálogo con un sufijo numérico y los pesos siguen una cola larga, como las puntuaciones reales.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SuggestionTrieBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SuggestionTrieBenchmark {
+
+    /** La capacidad por nodo que usa {@link SuggestionIndex}. */
+    private static final int NODE_CAPACITY = 16;
+    private static final int PREFIXES = 4096;
+
+    private static final String[] VOCABULARY = {
+            "Reparación", "urgente", "grifo", "tubería", "cocina", "baño", "guitarra", "española", "clases",
+            "principiantes", "ordenador", "portátil", "pantalla", "jardín", "césped", "poda", "pintura", "interior",
+            "exterior", "mueble", "madera", "roble", "lámpara", "enchufe", "instalación", "revisión", "caldera",
+            "radiador", "bicicleta", "montaña", "perro", "paseo", "mudanza", "armario", "puerta", "ventana",
+            "cristal", "usado", "nuevo", "garantía", "domicilio", "profesional", "fontanería", "electricista",
+            "sofá", "mesa", "silla", "cámara", "fotografía", "idiomas", "inglés", "francés", "teclado", "piano"};
+
+    @Param({"100000", "1000000"})
+    public int entries;
+
+    private SuggestionTrie trie;
+    private SuggestionTrie.Entry[] catalog;
+    private String[] prefixes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        trie = new SuggestionTrie(NODE_CAPACITY);
+        catalog = new SuggestionTrie.Entry[entries];
+        for (int i = 0; i < entries; i++) {
+            String text = VOCABULARY[random.nextInt(VOCABULARY.length)] + " "
+                    + VOCABULARY[random.nextInt(VOCABULARY.length)] + " " + random.nextInt(entries);
+            long weight = 1 + (long) (1000 * Math.pow(random.nextDouble(), 6));
+            catalog[i] = new SuggestionTrie.Entry(SuggestionType.PRODUCT, (long) i, text,
+                    TextNormalizer.normalizePhrase(text), weight);
+            trie.insert(catalog[i]);
+        }
+        prefixes = new String[PREFIXES];
+        for (int i = 0; i < PREFIXES; i++) {
+            String word = TextNormalizer.normalizePhrase(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+            prefixes[i] = word.substring(0, Math.min(word.length(), 1 + random.nextInt(6)));
+        }
+    }
+
+    @Benchmark
+    public List<SuggestionTrie.Entry> complete() {
+        return trie.complete(prefixes[next++ & (PREFIXES - 1)], SuggestionIndex.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public SuggestionTrie.Entry reweigh() {
+        int index = next++ % entries;
+        SuggestionTrie.Entry current = catalog[index];
+        SuggestionTrie.Entry updated = new SuggestionTrie.Entry(current.type(), current.id(), current.text(),
+                current.key(), current.weight() % 1000 + 1);
+        trie.remove(current);
+        trie.insert(updated);
+        catalog[index] = updated;
+        return updated;
+    }
+}
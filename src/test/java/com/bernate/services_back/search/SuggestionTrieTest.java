@@ -0,0 +1,122 @@
+package com.bernate.services_back.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionTrieTest {
+
+    private final SuggestionTrie trie = new SuggestionTrie(3);
+
+    @Test
+    void completesByTheStartOfAnyWord() {
+        SuggestionTrie.Entry mesa = entry(1L, "Mesa de madera", 5);
+        trie.insert(mesa);
+
+        assertEquals(List.of(mesa), trie.complete("mes", 10));
+        assertEquals(List.of(mesa), trie.complete("mad", 10));
+        assertEquals(List.of(mesa), trie.complete("mesa de m", 10));
+        // Solo comienzos de palabra: "ade" está dentro de "madera".
+        assertTrue(trie.complete("ade", 10).isEmpty());
+        assertTrue(trie.complete("", 10).isEmpty());
+    }
+
+    @Test
+    void keysAreAccentFolded() {
+        SuggestionTrie.Entry cancion = entry(1L, "Canción de cuna", 1);
+        trie.insert(cancion);
+
+        assertEquals(List.of(cancion), trie.complete(TextNormalizer.normalizePhrase("CANCIÓ"), 10));
+        assertEquals(List.of(cancion), trie.complete("cancio", 10));
+    }
+
+    @Test
+    void heaviestEntriesComeFirstAndEachNodeKeepsOnlyK() {
+        SuggestionTrie.Entry light = entry(1L, "Guitarra acústica", 1);
+        SuggestionTrie.Entry heavy = entry(2L, "Guitarra eléctrica", 40);
+        SuggestionTrie.Entry medium = entry(3L, "Guitarrista para bodas", 12);
+        SuggestionTrie.Entry lightest = entry(4L, "Guía de viaje", 0);
+        trie.insert(light);
+        trie.insert(heavy);
+        trie.insert(medium);
+        trie.insert(lightest);
+
+        assertEquals(List.of(heavy, medium, light), trie.complete("gu", 10));
+        assertEquals(List.of(heavy, medium), trie.complete("gu", 2));
+        assertEquals(List.of(lightest), trie.complete("guia", 10));
+    }
+
+    @Test
+    void equalWeightsPreferTheShorterText() {
+        SuggestionTrie.Entry longer = entry(1L, "Sofá cama grande", 3);
+        SuggestionTrie.Entry shorter = entry(2L, "Sofá", 3);
+        trie.insert(longer);
+        trie.insert(shorter);
+
+        assertEquals(List.of(shorter, longer), trie.complete("so", 10));
+    }
+
+    @Test
+    void removalLetsHiddenEntriesBackIntoTheTop() {
+        SuggestionTrie.Entry[] entries = {
+                entry(1L, "Lámpara de pie", 50),
+                entry(2L, "Lámpara de mesa", 40),
+                entry(3L, "Lavadora", 30),
+                entry(4L, "Lavavajillas", 20)};
+        for (SuggestionTrie.Entry entry : entries) {
+            trie.insert(entry);
+        }
+        assertEquals(List.of(entries[0], entries[1], entries[2]), trie.complete("la", 10));
+
+        trie.remove(entries[0]);
+
+        assertEquals(List.of(entries[1], entries[2], entries[3]), trie.complete("la", 10));
+        // También desaparece por el resto de sus palabras.
+        assertTrue(trie.complete("pie", 10).isEmpty());
+        assertEquals(List.of(entries[1]), trie.complete("mesa", 10));
+    }
+
+    @Test
+    void removingTheLastEntryPrunesItsBranch() {
+        SuggestionTrie.Entry only = entry(1L, "Trompeta", 1);
+        trie.insert(only);
+        trie.remove(only);
+        // Quitar algo que ya no está no debe fallar.
+        trie.remove(only);
+
+        assertTrue(trie.complete("t", 10).isEmpty());
+    }
+
+    @Test
+    void updatingAWeightIsARemoveAndInsert() {
+        SuggestionTrie.Entry bici = entry(1L, "Bicicleta de montaña", 1);
+        SuggestionTrie.Entry bicho = entry(2L, "Bicho de peluche", 5);
+        trie.insert(bici);
+        trie.insert(bicho);
+
+        trie.remove(bici);
+        SuggestionTrie.Entry rated = entry(1L, "Bicicleta de montaña", 9);
+        trie.insert(rated);
+
+        assertEquals(List.of(rated, bicho), trie.complete("bic", 10));
+    }
+
+    @Test
+    void prefixesLongerThanTheIndexedDepthAreFilteredOnTheCandidates() {
+        String stem = "a".repeat(SuggestionTrie.MAX_DEPTH);
+        SuggestionTrie.Entry first = entry(1L, stem + "bcd", 2);
+        SuggestionTrie.Entry second = entry(2L, stem + "xyz", 1);
+        trie.insert(first);
+        trie.insert(second);
+
+        assertEquals(List.of(first, second), trie.complete(stem, 10));
+        assertEquals(List.of(second), trie.complete(stem + "xy", 10));
+    }
+
+    private static SuggestionTrie.Entry entry(Long id, String text, long weight) {
+        return new SuggestionTrie.Entry(SuggestionType.PRODUCT, id, text, TextNormalizer.normalizePhrase(text), weight);
+    }
+}
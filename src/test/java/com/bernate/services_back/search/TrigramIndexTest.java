@@ -0,0 +1,119 @@
+package com.bernate.services_back.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTest {
+
+    private final TrigramIndex index = new TrigramIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.rebuild(List.of(
+                document(1L, "Bicicleta de montaña"),
+                document(2L, "Bicicleta"),
+                document(3L, "Guitarra española"),
+                document(4L, "Casa de muñecas"),
+                document(5L, "Casa rural"),
+                document(6L, "Cosa rara")));
+    }
+
+    @Test
+    void wordsArePaddedLikePgTrgm() {
+        assertArrayEquals(new String[]{"  b", " bi", "bic", "ici", "ci "}, TrigramIndex.trigrams("bici"));
+        assertArrayEquals(new String[]{"  a", " a ", "  b", " b "}, TrigramIndex.trigrams("a b"));
+        assertEquals(0, TrigramIndex.trigrams("").length);
+    }
+
+    @Test
+    void typosStillFindTheDocument() {
+        List<TrigramIndex.Match> matches = index.search("bisicleta", 0.5);
+
+        assertEquals(List.of(2L, 1L), matches.stream().map(TrigramIndex.Match::id).toList());
+        // 7 de los 10 trigramas de "bisicleta" están en "bicicleta".
+        assertEquals(0.7, matches.get(0).score(), 1e-9);
+        // A igual fracción, el nombre más corto se parece más (Jaccard).
+        assertTrue(matches.get(0).similarity() > matches.get(1).similarity());
+    }
+
+    @Test
+    void matchesBelowTheThresholdAreLeftOut() {
+        assertTrue(index.search("bisicleta", 0.8).isEmpty());
+        assertTrue(index.search("zzzz", 0.1).isEmpty());
+        assertTrue(index.search("  ", 0.1).isEmpty());
+    }
+
+    @Test
+    void queriesAreAccentFolded() {
+        List<TrigramIndex.Match> matches = index.search("GUITARRA ESPAÑOLA", 0.9);
+
+        assertEquals(1, matches.size());
+        assertEquals(3L, matches.get(0).id());
+        assertEquals(1.0, matches.get(0).score(), 1e-9);
+    }
+
+    @Test
+    void upsertReplacesTheIndexedName() {
+        index.upsert(document(3L, "Violín de estudio"));
+
+        assertTrue(index.search("guitarra", 0.5).isEmpty());
+        assertEquals(3L, index.search("violin", 0.5).get(0).id());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void removedDocumentsAndTheirWordsDisappear() {
+        index.remove(3L);
+
+        assertTrue(index.search("guitarra", 0.3).isEmpty());
+        assertNull(index.closestWord("guitara", 2));
+        assertEquals(5, index.size());
+        index.remove(99L);
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void closestWordPrefersFewerEditsThenTheMoreFrequentWord() {
+        assertEquals(new TrigramIndex.Correction("bicicleta", 1, 2), index.closestWord("bisicleta", 2));
+        // "casa" aparece en dos nombres y "cosa" en uno; ambas a una edición.
+        assertEquals("casa", index.closestWord("cusa", 1).word());
+        assertEquals(new TrigramIndex.Correction("rural", 0, 1), index.closestWord("rural", 1));
+        assertNull(index.closestWord("xilofono", 2));
+    }
+
+    @Test
+    void vocabularySlotsAreReusedAfterRemoval() {
+        index.remove(3L);
+        index.upsert(document(7L, "Piano de cola"));
+
+        assertEquals("piano", index.closestWord("pianno", 1).word());
+        assertEquals("montaña", index.closestWord("montana", 1).word());
+        assertNull(index.closestWord("espanola", 1));
+    }
+
+    @Test
+    void idsBeyondIntRangeAreNotIndexed() {
+        index.upsert(document((long) Integer.MAX_VALUE + 1, "Bicicleta estática"));
+
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void editDistanceStopsOnceItExceedsTheLimit() {
+        assertEquals(0, TrigramIndex.editDistance("mesa", "mesa", 2));
+        assertEquals(1, TrigramIndex.editDistance("mesa", "misa", 2));
+        assertEquals(2, TrigramIndex.editDistance("mesa", "masas", 2));
+        assertEquals(3, TrigramIndex.editDistance("mesa", "guitarra", 2));
+    }
+
+    private static CatalogDocument document(Long id, String name) {
+        return new CatalogDocument(CatalogKind.PRODUCT, id, name, null, "Hogar", null, 10.0, "ana");
+    }
+}
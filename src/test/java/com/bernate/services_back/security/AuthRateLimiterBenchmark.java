@@ -0,0 +1,71 @@
+package com.bernate.services_back.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia que añade el limitador a un login legítimo con 8 hilos concurrentes: comprobación por IP
+ * y por usuario, y el registro del éxito, repartidos entre {@code keys} claves distintas (con una
+ * sola clave todos los hilos compiten por la misma cubeta). {@code baseline} solo elige las claves.
+ * Las cubetas admiten de sobra la tasa del benchmark, de modo que se mide el camino de admisión.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=AuthRateLimiterBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class AuthRateLimiterBenchmark {
+
+    @Param({"1", "10000"})
+    private int keys;
+
+    private AuthRateLimiter limiter;
+    private String[] ips;
+    private String[] usernames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new AuthRateLimiter(true,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                5, 20, 30, 900, 100_000, 900);
+        ips = new String[keys];
+        usernames = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            ips[i] = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+            usernames[i] = "usuario" + i;
+        }
+    }
+
+    @Benchmark
+    public int baseline() {
+        int index = ThreadLocalRandom.current().nextInt(keys);
+        return ips[index].length() + usernames[index].length();
+    }
+
+    @Benchmark
+    public long legitimateLogin() {
+        int index = ThreadLocalRandom.current().nextInt(keys);
+        long wait = limiter.checkLogin(ips[index], usernames[index]);
+        limiter.recordLoginSuccess(ips[index], usernames[index]);
+        return wait;
+    }
+}
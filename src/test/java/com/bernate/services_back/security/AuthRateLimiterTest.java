@@ -0,0 +1,61 @@
+package com.bernate.services_back.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthRateLimiterTest {
+
+    private final AuthRateLimiter limiter = new AuthRateLimiter(true,
+            100, 100, 100, 100, 5, 5, 3, 3,
+            3, 5, 30, 900, 1000, 900);
+
+    @Test
+    void usernameLockoutIsClearedBySuccess() {
+        for (int i = 0; i < 3; i++) {
+            limiter.recordLoginFailure("10.0.0.1", "ana");
+        }
+        assertTrue(limiter.checkLogin("10.0.0.2", "ana") > 0);
+
+        limiter.recordLoginSuccess("10.0.0.2", "ana");
+
+        assertEquals(0, limiter.checkLogin("10.0.0.2", "ana"));
+    }
+
+    @Test
+    void successWithOneAccountDoesNotResetTheIpLockout() {
+        // Prueba contraseñas de cinco cuentas ajenas desde la misma IP...
+        for (int i = 0; i < 5; i++) {
+            limiter.recordLoginFailure("10.0.0.1", "victima" + i);
+        }
+        assertTrue(limiter.checkLogin("10.0.0.1", "atacante") > 0);
+
+        // ...y entra con la suya: la IP sigue bloqueada.
+        limiter.recordLoginSuccess("10.0.0.1", "atacante");
+
+        assertTrue(limiter.checkLogin("10.0.0.1", "victima5") > 0);
+    }
+
+    @Test
+    void registrationIsLimitedPerIp() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.checkRegistration("10.0.0.1"));
+        }
+        assertTrue(limiter.checkRegistration("10.0.0.1") > 0);
+        assertEquals(0, limiter.checkRegistration("10.0.0.2"));
+    }
+
+    @Test
+    void refreshIsLimitedPerIpAndLockedOutAfterRepeatedFailures() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.checkRefresh("10.0.0.1"));
+        }
+        assertTrue(limiter.checkRefresh("10.0.0.1") > 0);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.recordRefreshFailure("10.0.0.2");
+        }
+        assertTrue(limiter.checkRefresh("10.0.0.2") >= 29);
+    }
+}
@@ -0,0 +1,144 @@
+package com.bernate.services_back.security;
+
+import com.bernate.services_back.exception.ServiceBusyException;
+import com.bernate.services_back.model.User;
+import com.bernate.services_back.repository.UserRepository;
+import com.bernate.services_back.service.UserDetailsServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BoundedPasswordEncoderTest {
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    @Test
+    void aSaturatedPoolAndQueueRejectAtOnce() throws Exception {
+        encoder = new BoundedPasswordEncoder(5, 1, 1, 7);
+        String olderCost = new BCryptPasswordEncoder(4).encode("clave");
+        assertTrue(encoder.upgradeEncoding(olderCost));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Una contraseña que retiene al hilo de BCrypt hasta que el test la suelta.
+        CharSequence blocking = new BlockingPassword(started, release);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode(blocking));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("en-cola"));
+        waitUntilQueued(olderCost);
+
+        ServiceBusyException busy = assertThrows(ServiceBusyException.class, () -> encoder.matches("otra", "$2a$04$x"));
+
+        assertEquals(7, busy.getRetryAfterSeconds());
+        // Con cola no se pide la migración del hash, aunque el coste sea menor.
+        assertFalse(encoder.upgradeEncoding(olderCost));
+        release.countDown();
+        String runningHash = running.get(5, TimeUnit.SECONDS);
+        String queuedHash = queued.get(5, TimeUnit.SECONDS);
+        // Las dos admitidas terminan con normalidad.
+        assertTrue(encoder.matches("retenida", runningHash));
+        assertTrue(encoder.matches("en-cola", queuedHash));
+    }
+
+    @Test
+    void aLoginWithAnOlderCostRehashesThroughUpdatePassword() {
+        encoder = new BoundedPasswordEncoder(5, 1, 4, 2);
+        User user = new User("ana", "Ana", "Pérez", "ana@correo.com", null,
+                new BCryptPasswordEncoder(4).encode("secreto"), "ROLE_USER", null);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("ana")).thenAnswer(invocation -> Optional.of(user));
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(userRepository, 100, 300);
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(encoder);
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsService);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("ana", "secreto"));
+
+        verify(userRepository).save(user);
+        assertTrue(user.getPassword().startsWith("$2a$05$"));
+        assertTrue(encoder.matches("secreto", user.getPassword()));
+        assertFalse(encoder.upgradeEncoding(user.getPassword()));
+    }
+
+    @Test
+    void aHashAtTheCurrentCostIsNotRehashed() {
+        encoder = new BoundedPasswordEncoder(4, 1, 4, 2);
+        User user = new User("ana", "Ana", "Pérez", "ana@correo.com", null,
+                new BCryptPasswordEncoder(4).encode("secreto"), "ROLE_USER", null);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("ana")).thenAnswer(invocation -> Optional.of(user));
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(userRepository, 100, 300);
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(encoder);
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsService);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("ana", "secreto"));
+
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void medianIgnoresASingleOutlier() {
+        assertEquals(12, BoundedPasswordEncoder.median(new long[]{11, 400, 12, 13, 10}));
+        assertEquals(5, BoundedPasswordEncoder.median(new long[]{5}));
+    }
+
+    private void waitUntilQueued(String olderCost) throws InterruptedException {
+        // La cola solo tiene sitio para una tarea; se espera a que la ocupe la segunda llamada.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (encoder.upgradeEncoding(olderCost) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private record BlockingPassword(CountDownLatch started, CountDownLatch release) implements CharSequence {
+        @Override
+        public String toString() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "retenida";
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.bernate.services_back.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    @Test
+    void burstUpToCapacityThenWaitsForOneEmissionInterval() {
+        // 60 por minuto: un token por segundo, ráfaga de 3.
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 60, 100, 30, 900, 1000, 900);
+
+        assertEquals(0, limiter.tryAcquire("ip"));
+        assertEquals(0, limiter.tryAcquire("ip"));
+        assertEquals(0, limiter.tryAcquire("ip"));
+        long wait = limiter.tryAcquire("ip");
+
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(900) && wait <= TimeUnit.SECONDS.toNanos(1), "espera " + wait);
+        // Las claves no comparten cubeta.
+        assertEquals(0, limiter.tryAcquire("otra-ip"));
+    }
+
+    @Test
+    void tokensRefillOverTime() throws InterruptedException {
+        // 6000 por minuto: un token cada 10 ms.
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 6000, 100, 30, 900, 1000, 900);
+
+        assertEquals(0, limiter.tryAcquire("ip"));
+        assertTrue(limiter.tryAcquire("ip") > 0);
+        Thread.sleep(25);
+        assertEquals(0, limiter.tryAcquire("ip"));
+    }
+
+    @Test
+    void concurrentRequestsNeverExceedTheBurst() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, 1, 100, 30, 900, 1000, 900);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 800; i++) {
+            pool.execute(() -> {
+                if (limiter.tryAcquire("ip") == 0) {
+                    admitted.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(50, admitted.get());
+    }
+
+    @Test
+    void repeatedFailuresLockOutProgressively() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 100, 3, 30, 900, 1000, 900);
+
+        limiter.recordFailure("ana");
+        limiter.recordFailure("ana");
+        assertEquals(0, limiter.tryAcquire("ana"));
+
+        limiter.recordFailure("ana");
+        long first = limiter.tryAcquire("ana");
+        assertTrue(first > TimeUnit.SECONDS.toNanos(29) && first <= TimeUnit.SECONDS.toNanos(30), "bloqueo " + first);
+
+        limiter.recordFailure("ana");
+        long second = limiter.tryAcquire("ana");
+        assertTrue(second > TimeUnit.SECONDS.toNanos(59) && second <= TimeUnit.SECONDS.toNanos(60), "bloqueo " + second);
+
+        limiter.recordSuccess("ana");
+        assertEquals(0, limiter.tryAcquire("ana"));
+    }
+
+    @Test
+    void lockoutIsCappedAtTheMaximum() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 100, 1, 30, 120, 1000, 900);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.recordFailure("ana");
+        }
+
+        assertTrue(limiter.tryAcquire("ana") <= TimeUnit.SECONDS.toNanos(120));
+    }
+
+    @Test
+    void keysBeyondTheLimitShareAnOverflowBucketInsteadOfBypassingIt() {
+        // Dos claves como máximo, ninguna inactiva todavía: el resto cae en la cubeta compartida.
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 1, 100, 30, 900, 2, 900);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+
+        assertEquals(0, limiter.tryAcquire("c"));
+        assertEquals(0, limiter.tryAcquire("d"));
+        assertTrue(limiter.tryAcquire("e") > 0);
+        assertTrue(limiter.tryAcquire("f") > 0);
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    void idleKeysAreEvictedToMakeRoom() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 100, 30, 900, 2, 0);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        // El barrido de inactivas se hace como mucho una vez por segundo.
+        Thread.sleep(1100);
+
+        assertEquals(0, limiter.tryAcquire("c"));
+        assertEquals(1, limiter.size());
+    }
+}
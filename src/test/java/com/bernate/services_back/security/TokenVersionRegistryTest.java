@@ -0,0 +1,38 @@
+package com.bernate.services_back.security;
+
+import com.bernate.services_back.event.UserChangedEvent;
+import com.bernate.services_back.model.User;
+import com.bernate.services_back.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenVersionRegistryTest {
+
+    @Test
+    void versionIsLoadedOnceAndMovesOnlyWithCommittedChanges() {
+        UserRepository userRepository = mock(UserRepository.class);
+        User user = new User();
+        user.setUsername("ana");
+        user.setTokenVersion(3);
+        when(userRepository.findByUsername("ana")).thenReturn(Optional.of(user));
+        TokenVersionRegistry registry = new TokenVersionRegistry(userRepository);
+
+        assertEquals(3, registry.currentVersion("ana"));
+        assertEquals(3, registry.currentVersion("ana"));
+        verify(userRepository, times(1)).findByUsername("ana");
+
+        // Alta o cambio de contraseña: sin versión nueva, no cambia nada.
+        registry.onUserChanged(new UserChangedEvent("ana"));
+        assertEquals(3, registry.currentVersion("ana"));
+
+        registry.onUserChanged(new UserChangedEvent("ana", 4));
+        assertEquals(4, registry.currentVersion("ana"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.bernate.services_back.security.jwt;
+
+import com.bernate.services_back.model.RevokedToken;
+import com.bernate.services_back.repository.RevokedTokenRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La tabla {@code revoked_tokens} en memoria, para probar la revocación sin base de datos.
+ * Sobrevive a varias instancias de {@link TokenRevocationList}, como la tabla a un reinicio.
+ */
+final class InMemoryRevokedTokens {
+
+    final Map<String, Instant> rows = new ConcurrentHashMap<>();
+
+    RevokedTokenRepository repository() {
+        return (RevokedTokenRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RevokedTokenRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "insertIfAbsent" -> rows.putIfAbsent((String) args[0], (Instant) args[1]) == null ? 1 : 0;
+                    case "findAllByExpiresAtAfter" -> rows.entrySet().stream()
+                            .filter(row -> row.getValue().isAfter((Instant) args[0]))
+                            .map(row -> new RevokedToken(row.getKey(), row.getValue()))
+                            .toList();
+                    case "deleteExpired" -> {
+                        int before = rows.size();
+                        rows.values().removeIf(expiresAt -> !expiresAt.isAfter((Instant) args[0]));
+                        yield before - rows.size();
+                    }
+                    case "toString" -> "InMemoryRevokedTokens";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    TokenRevocationList newList() {
+        TokenRevocationList list = new TokenRevocationList(repository(), 1000, 0.01);
+        list.load();
+        return list;
+    }
+}
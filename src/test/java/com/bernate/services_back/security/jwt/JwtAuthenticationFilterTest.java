@@ -0,0 +1,150 @@
+package com.bernate.services_back.security.jwt;
+
+import com.bernate.services_back.config.SecurityConfig;
+import com.bernate.services_back.security.CustomUserDetails;
+import com.bernate.services_back.security.TokenVersionRegistry;
+import com.bernate.services_back.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * La cadena de seguridad real con un controlador mínimo: un endpoint público no debe verificar el
+ * token ni cargar el usuario aunque la petición lleve uno; uno protegido lo resuelve una sola vez.
+ */
+@SpringJUnitWebConfig(JwtAuthenticationFilterTest.Config.class)
+class JwtAuthenticationFilterTest {
+
+    private static final String TOKEN = "cabecera.cuerpo.firma";
+
+    @Configuration
+    @EnableWebMvc
+    @Import(SecurityConfig.class)
+    static class Config {
+
+        @Bean
+        JwtAuthEntryPoint jwtAuthEntryPoint() {
+            return new JwtAuthEntryPoint();
+        }
+
+        @Bean
+        CatalogStubController catalogStubController() {
+            return new CatalogStubController();
+        }
+    }
+
+    @RestController
+    static class CatalogStubController {
+
+        @GetMapping("/api/v1/products")
+        String products() {
+            return "catalogo";
+        }
+
+        @GetMapping("/api/v1/ratings/user/7")
+        String ownRatings(@AuthenticationPrincipal UserDetails user) {
+            return user.getUsername();
+        }
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @MockitoBean
+    private JwtTokenProvider tokenProvider;
+
+    @MockitoBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @MockitoBean
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        // Como spring.mvc.publish-request-handled-events=false en la aplicación.
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .apply(springSecurity())
+                .addDispatcherServletCustomizer(dispatcherServlet -> dispatcherServlet.setPublishEvents(false))
+                .build();
+        Claims claims = Jwts.claims().setSubject("ana");
+        when(tokenProvider.verifyAccessToken(TOKEN)).thenReturn(claims);
+        when(userDetailsService.loadUserByUsername("ana"))
+                .thenReturn(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER"));
+    }
+
+    @Test
+    void publicGetWithABearerTokenDoesNoTokenWork() throws Exception {
+        mockMvc.perform(get("/api/v1/products").header("Authorization", "Bearer " + TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(content().string("catalogo"));
+
+        verify(tokenProvider, never()).verifyAccessToken(anyString());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void noSessionIsCreated() throws Exception {
+        mockMvc.perform(get("/api/v1/ratings/user/7").header("Authorization", "Bearer " + TOKEN))
+                .andExpect(request().sessionAttributeDoesNotExist("SPRING_SECURITY_CONTEXT"));
+        MvcResult unauthorized = mockMvc.perform(get("/api/v1/ratings/user/7")).andReturn();
+
+        assertNull(unauthorized.getRequest().getSession(false));
+    }
+
+    @Test
+    void protectedEndpointResolvesThePrincipalOnce() throws Exception {
+        mockMvc.perform(get("/api/v1/ratings/user/7").header("Authorization", "Bearer " + TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(content().string("ana"));
+
+        // La regla de autorización y el controlador comparten el mismo contexto resuelto.
+        verify(tokenProvider, times(1)).verifyAccessToken(TOKEN);
+        verify(userDetailsService, times(1)).loadUserByUsername("ana");
+    }
+
+    @Test
+    void invalidTokenOnAProtectedEndpointIs401() throws Exception {
+        mockMvc.perform(get("/api/v1/ratings/user/7").header("Authorization", "Bearer manipulado"))
+                .andExpect(status().isUnauthorized());
+
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void protectedEndpointWithoutTokenIs401() throws Exception {
+        mockMvc.perform(get("/api/v1/ratings/user/7"))
+                .andExpect(status().isUnauthorized());
+
+        verify(tokenProvider, never()).verifyAccessToken(anyString());
+    }
+}
@@ -0,0 +1,80 @@
+package com.bernate.services_back.security.jwt;
+
+import com.bernate.services_back.security.CustomUserDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtTokenProviderTest {
+
+    private final JwtTokenProvider provider = JwtVerifyBenchmark.provider(100);
+
+    @Test
+    void accessTokenCarriesItsClaims() {
+        String token = provider.generateToken(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER,ROLE_ADMIN"));
+
+        Claims claims = provider.verifyAccessToken(token);
+
+        assertNotNull(claims);
+        assertEquals("ana", claims.getSubject());
+        assertNotNull(claims.getId());
+        assertEquals(7, claims.get(JwtTokenProvider.CLAIM_USER_ID, Number.class).intValue());
+        assertEquals("ROLE_USER,ROLE_ADMIN", claims.get(JwtTokenProvider.CLAIM_ROLES, String.class));
+        // El segundo acceso sale de la caché y devuelve los mismos claims.
+        assertEquals(claims, provider.verifyAccessToken(token));
+    }
+
+    @Test
+    void refreshTokenIsNotAnAccessToken() {
+        String refresh = provider.generateRefreshToken("ana");
+
+        assertNull(provider.verifyAccessToken(refresh));
+        assertNotNull(provider.verifyRefreshToken(refresh));
+    }
+
+    @Test
+    void untypedTokenIsRejected() {
+        // Firmado con la clave correcta, pero sin typ ni jti: no se podría revocar.
+        String untyped = Jwts.builder()
+                .setSubject("ana")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(secret()), SignatureAlgorithm.HS512)
+                .compact();
+
+        assertNull(provider.verifyAccessToken(untyped));
+    }
+
+    @Test
+    void revokedTokenIsRejectedEvenWhenCached() {
+        String token = provider.generateToken(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER"));
+        Claims claims = provider.verifyAccessToken(token);
+
+        assertTrue(provider.revoke(claims));
+        assertFalse(provider.revoke(claims));
+        assertNull(provider.verifyAccessToken(token));
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = provider.generateToken(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER"));
+        String tampered = token.substring(0, token.length() - 4) + (token.endsWith("AAAA") ? "BBBB" : "AAAA");
+
+        assertNull(provider.verifyAccessToken(tampered));
+    }
+
+    private static byte[] secret() {
+        return "MiClaveSecretaSuperLargaYComplicadaParaQueNadieLaAdivineFacilmente12345".getBytes(StandardCharsets.UTF_8);
+    }
+}
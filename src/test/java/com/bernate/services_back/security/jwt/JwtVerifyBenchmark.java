@@ -0,0 +1,97 @@
+package com.bernate.services_back.security.jwt;
+
+import com.bernate.services_back.security.CustomUserDetails;
+import com.bernate.services_back.security.TokenVersionRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de autenticar una petición: la ruta anterior (validateToken + getUsernameFromJWT, cada uno
+ * derivando la clave, construyendo un parser y verificando el HMAC) frente a verifyAccessToken con
+ * el parser compartido, sin caché (tokens siempre distintos) y con acierto en la caché de claims.
+ * <p>
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtVerifyBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "MiClaveSecretaSuperLargaYComplicadaParaQueNadieLaAdivineFacilmente12345";
+    private static final int DISTINCT_TOKENS = 4096;
+
+    private JwtTokenProvider cachedProvider;
+    private JwtTokenProvider uncachedProvider;
+    private String token;
+    private String[] distinctTokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        cachedProvider = provider(10_000);
+        uncachedProvider = provider(16);
+        CustomUserDetails user = CustomUserDetails.fromClaims(1L, "usuario", "ROLE_USER");
+        token = cachedProvider.generateToken(user);
+        distinctTokens = new String[DISTINCT_TOKENS];
+        for (int i = 0; i < DISTINCT_TOKENS; i++) {
+            distinctTokens[i] = uncachedProvider.generateToken(CustomUserDetails.fromClaims((long) i, "usuario" + i, "ROLE_USER"));
+        }
+    }
+
+    @Benchmark
+    public String previousPath() {
+        // Como antes: validateToken y getUsernameFromJWT, cada uno con su clave y su parser.
+        Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes())).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes())).build()
+                .parseClaimsJws(token).getBody();
+        return claims.getSubject();
+    }
+
+    @Benchmark
+    public Claims sharedParserCacheMiss() {
+        next = (next + 1) % DISTINCT_TOKENS;
+        return uncachedProvider.verifyAccessToken(distinctTokens[next]);
+    }
+
+    @Benchmark
+    public Claims sharedParserCacheHit() {
+        return cachedProvider.verifyAccessToken(token);
+    }
+
+    static JwtTokenProvider provider(long claimsCacheMaxSize) {
+        return provider(claimsCacheMaxSize, new InMemoryRevokedTokens().newList());
+    }
+
+    static JwtTokenProvider provider(long claimsCacheMaxSize, TokenRevocationList revocationList) {
+        TokenVersionRegistry versions = new TokenVersionRegistry(null) {
+            @Override
+            public int currentVersion(String username) {
+                return 0;
+            }
+        };
+        JwtTokenProvider provider = new JwtTokenProvider(versions, revocationList);
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpirationInMs", 900_000);
+        ReflectionTestUtils.setField(provider, "jwtRefreshExpirationInMs", 1_209_600_000L);
+        ReflectionTestUtils.setField(provider, "claimsCacheMaxSize", claimsCacheMaxSize);
+        provider.init();
+        return provider;
+    }
+}
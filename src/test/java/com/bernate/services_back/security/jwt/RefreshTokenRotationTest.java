@@ -0,0 +1,90 @@
+package com.bernate.services_back.security.jwt;
+
+import com.bernate.services_back.dto.AuthResponse;
+import com.bernate.services_back.security.CustomUserDetails;
+import com.bernate.services_back.service.AuthService;
+import com.bernate.services_back.service.UserDetailsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RefreshTokenRotationTest {
+
+    private final InMemoryRevokedTokens table = new InMemoryRevokedTokens();
+    private UserDetailsServiceImpl userDetailsService;
+    private JwtTokenProvider tokenProvider;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        when(userDetailsService.loadUserByUsername("ana"))
+                .thenReturn(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER"));
+        start();
+    }
+
+    /**
+     * Arranca (o reinicia) la aplicación: memoria nueva, misma tabla de revocados.
+     */
+    private void start() {
+        tokenProvider = JwtVerifyBenchmark.provider(100, table.newList());
+        authService = new AuthService(null, null, null, tokenProvider, null, event -> { }, userDetailsService);
+    }
+
+    @Test
+    void refreshRotatesThePair() {
+        String refresh = tokenProvider.generateRefreshToken("ana");
+
+        AuthResponse rotated = authService.refreshTokens(refresh);
+
+        assertNotNull(tokenProvider.verifyAccessToken(rotated.getAccessToken()));
+        assertNotNull(tokenProvider.verifyRefreshToken(rotated.getRefreshToken()));
+        assertNotEquals(refresh, rotated.getRefreshToken());
+    }
+
+    @Test
+    void reusedRefreshTokenIsRejected() {
+        String refresh = tokenProvider.generateRefreshToken("ana");
+        authService.refreshTokens(refresh);
+
+        assertThrows(BadCredentialsException.class, () -> authService.refreshTokens(refresh));
+    }
+
+    @Test
+    void reuseIsStillDetectedAfterARestart() {
+        String refresh = tokenProvider.generateRefreshToken("ana");
+        AuthResponse rotated = authService.refreshTokens(refresh);
+
+        start();
+
+        assertThrows(BadCredentialsException.class, () -> authService.refreshTokens(refresh));
+        // El token que sustituyó al usado sigue siendo válido.
+        assertNotNull(authService.refreshTokens(rotated.getRefreshToken()).getAccessToken());
+    }
+
+    @Test
+    void accessTokenCannotBeUsedToRefresh() {
+        String access = tokenProvider.generateToken(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER"));
+
+        assertThrows(BadCredentialsException.class, () -> authService.refreshTokens(access));
+    }
+
+    @Test
+    void logoutSurvivesARestart() {
+        String access = tokenProvider.generateToken(CustomUserDetails.fromClaims(7L, "ana", "ROLE_USER"));
+        String refresh = tokenProvider.generateRefreshToken("ana");
+        authService.logout(access, refresh);
+
+        start();
+
+        assertNull(tokenProvider.verifyAccessToken(access));
+        assertThrows(BadCredentialsException.class, () -> authService.refreshTokens(refresh));
+    }
+}
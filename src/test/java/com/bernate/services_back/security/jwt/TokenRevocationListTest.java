@@ -0,0 +1,92 @@
+package com.bernate.services_back.security.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenRevocationListTest {
+
+    private static final long IN_ONE_HOUR = System.currentTimeMillis() + 3_600_000;
+
+    private final InMemoryRevokedTokens table = new InMemoryRevokedTokens();
+
+    @Test
+    void revokedTokenIsRejectedAndSecondRevocationIsDetected() {
+        TokenRevocationList list = table.newList();
+
+        assertFalse(list.isRevoked("a"));
+        assertTrue(list.revoke("a", IN_ONE_HOUR));
+        assertTrue(list.isRevoked("a"));
+        assertFalse(list.revoke("a", IN_ONE_HOUR));
+        assertFalse(list.revoke(null, IN_ONE_HOUR));
+        assertFalse(list.isRevoked(null));
+    }
+
+    @Test
+    void revocationsSurviveARestart() {
+        table.newList().revoke("a", IN_ONE_HOUR);
+
+        TokenRevocationList restarted = table.newList();
+
+        assertTrue(restarted.isRevoked("a"));
+        // La reutilización tras el reinicio se sigue detectando.
+        assertFalse(restarted.revoke("a", IN_ONE_HOUR));
+    }
+
+    @Test
+    void revocationFromAnotherInstanceIsNotReportedAsNew() {
+        TokenRevocationList first = table.newList();
+        TokenRevocationList second = table.newList();
+
+        assertTrue(first.revoke("a", IN_ONE_HOUR));
+        assertFalse(second.revoke("a", IN_ONE_HOUR));
+        assertTrue(second.isRevoked("a"));
+    }
+
+    @Test
+    void expiredRevocationsAreNeitherLoadedNorReported() {
+        table.rows.put("caducado", Instant.now().minusSeconds(1));
+        TokenRevocationList list = table.newList();
+
+        assertFalse(list.isRevoked("caducado"));
+        assertEquals(0, list.size());
+
+        list.revoke("pasado", System.currentTimeMillis() - 1);
+        assertFalse(list.isRevoked("pasado"));
+    }
+
+    @Test
+    void pruneDropsExpiredEntriesFromMemoryAndTable() {
+        TokenRevocationList list = table.newList();
+        list.revoke("vigente", IN_ONE_HOUR);
+        list.revoke("pasado", System.currentTimeMillis() - 1);
+
+        list.prune();
+
+        assertEquals(1, list.size());
+        assertEquals(1, table.rows.size());
+        assertTrue(list.isRevoked("vigente"));
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        TokenRevocationList list = table.newList();
+        String[] revoked = new String[1000];
+        for (int i = 0; i < revoked.length; i++) {
+            revoked[i] = UUID.randomUUID().toString();
+            list.revoke(revoked[i], IN_ONE_HOUR);
+        }
+        for (String jti : revoked) {
+            assertTrue(list.isRevoked(jti));
+        }
+        // Un falso positivo del filtro se confirma contra el mapa: nunca revoca un token ajeno.
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(list.isRevoked(UUID.randomUUID().toString()));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.bernate.services_back.service;
+
+import com.bernate.services_back.dto.EntityRevision;
+import com.bernate.services_back.dto.ProductDTO;
+import com.bernate.services_back.dto.Revised;
+import com.bernate.services_back.dto.ServiceDTO;
+import com.bernate.services_back.event.CatalogChangeEvent;
+import com.bernate.services_back.event.CategoryChangeEvent;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.service.CatalogResponseCache.CachedJson;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * La caché con los escuchadores de transacción reales: las invalidaciones se aplican al confirmar,
+ * no al publicar el evento.
+ */
+@SpringJUnitConfig(CatalogResponseCacheTest.Config.class)
+class CatalogResponseCacheTest {
+
+    @Configuration
+    @EnableTransactionManagement
+    @Import(CatalogResponseCache.class)
+    static class Config {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new NoOpTransactionManager();
+        }
+    }
+
+    /** Solo sincroniza los escuchadores de transacción; no hay recurso detrás. */
+    static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @Autowired
+    private CatalogResponseCache responseCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @MockitoBean
+    private ServiceService serviceService;
+
+    @MockitoBean
+    private CategoryService categoryService;
+
+    @BeforeEach
+    void setUp() {
+        when(productService.getProductById(anyLong())).thenAnswer(invocation -> product(invocation.getArgument(0), 1L, ""));
+        when(serviceService.getServiceById(anyLong())).thenAnswer(invocation -> service(invocation.getArgument(0)));
+        // El contexto se comparte entre tests: se parte de una caché vacía.
+        eventPublisher.publishEvent(new CategoryChangeEvent(0L, null, null));
+        clearInvocations(productService, serviceService);
+    }
+
+    @Test
+    void aHitDoesNotCallTheService() {
+        CachedJson first = responseCache.product(1L);
+        CachedJson second = responseCache.product(1L);
+
+        assertEquals(first, second);
+        verify(productService, times(1)).getProductById(1L);
+    }
+
+    @Test
+    void theBodyAndTheETagComeFromTheSameRevision() throws Exception {
+        when(productService.getProductById(2L)).thenReturn(product(2L, 7L, ""));
+
+        CachedJson json = responseCache.product(2L);
+
+        assertEquals("\"2-7-" + Integer.toHexString(Objects.hash("Hogar", "ana", true)) + "\"", json.etag());
+        assertEquals(2L, new ObjectMapper().readTree(json.body()).get("id").asLong());
+    }
+
+    @Test
+    void aCatalogChangeEvictsOnlyAfterCommit() {
+        responseCache.product(1L);
+        responseCache.service(1L);
+
+        inTransaction(() -> {
+            eventPublisher.publishEvent(CatalogChangeEvent.deleted(CatalogKind.PRODUCT, 1L));
+            // Hasta confirmar, las lecturas siguen viendo la versión anterior.
+            responseCache.product(1L);
+            verify(productService, times(1)).getProductById(1L);
+        });
+
+        responseCache.product(1L);
+        responseCache.service(1L);
+        verify(productService, times(2)).getProductById(1L);
+        verify(serviceService, times(1)).getServiceById(1L);
+    }
+
+    @Test
+    void aRolledBackChangeKeepsTheEntry() {
+        responseCache.product(1L);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventPublisher.publishEvent(CatalogChangeEvent.deleted(CatalogKind.PRODUCT, 1L));
+            status.setRollbackOnly();
+        });
+
+        responseCache.product(1L);
+        verify(productService, times(1)).getProductById(1L);
+    }
+
+    @Test
+    void renamingACategoryDropsProductsAndServices() {
+        responseCache.product(1L);
+        responseCache.service(2L);
+
+        inTransaction(() -> eventPublisher.publishEvent(new CategoryChangeEvent(5L, "Hogar", "Casa")));
+
+        responseCache.product(1L);
+        responseCache.service(2L);
+        verify(productService, times(2)).getProductById(1L);
+        verify(serviceService, times(2)).getServiceById(2L);
+    }
+
+    @Test
+    void creatingACategoryKeepsProductsAndServices() {
+        responseCache.product(1L);
+        responseCache.service(2L);
+
+        inTransaction(() -> eventPublisher.publishEvent(new CategoryChangeEvent(6L, null, "Jardín")));
+
+        responseCache.product(1L);
+        responseCache.service(2L);
+        verify(productService, times(1)).getProductById(1L);
+        verify(serviceService, times(1)).getServiceById(2L);
+    }
+
+    @Test
+    void theByteBudgetBoundsTheCache() throws InterruptedException {
+        long maxBytes = 16 * 1024;
+        ProductService products = mock(ProductService.class);
+        // Cada cuerpo ronda los 2 KB: caben unos pocos.
+        when(products.getProductById(anyLong())).thenAnswer(invocation ->
+                product(invocation.getArgument(0), 1L, "x".repeat(2000)));
+        CatalogResponseCache small = new CatalogResponseCache(products, mock(ServiceService.class),
+                mock(CategoryService.class), new ObjectMapper(), maxBytes);
+
+        for (long id = 1; id <= 40; id++) {
+            small.product(id);
+        }
+
+        // Caffeine desaloja en segundo plano; se espera a que termine.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (weightedSize(small) > maxBytes && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(weightedSize(small) <= maxBytes);
+        assertTrue((long) small.getStats().get("size") < 40);
+        assertNotEquals(0L, small.getStats().get("evictionCount"));
+    }
+
+    private void inTransaction(Runnable action) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> action.run());
+    }
+
+    private static long weightedSize(CatalogResponseCache cache) {
+        return (long) cache.getStats().get("weightedSizeBytes");
+    }
+
+    private static Revised<ProductDTO> product(Long id, Long version, String description) {
+        ProductDTO dto = new ProductDTO();
+        dto.setId(id);
+        dto.setName("Producto " + id);
+        dto.setDescription(description);
+        return new Revised<>(dto, new EntityRevision(id, version, null, "Hogar", "ana", true));
+    }
+
+    private static Revised<ServiceDTO> service(Long id) {
+        ServiceDTO dto = new ServiceDTO();
+        dto.setId(id);
+        dto.setName("Servicio " + id);
+        return new Revised<>(dto, new EntityRevision(id, 1L, null, "Fontanería", "ana", true));
+    }
+}
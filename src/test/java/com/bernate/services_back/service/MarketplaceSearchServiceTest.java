@@ -0,0 +1,155 @@
+package com.bernate.services_back.service;
+
+import com.bernate.services_back.dto.ProductDTO;
+import com.bernate.services_back.dto.ServiceDTO;
+import com.bernate.services_back.dto.UnifiedSearchItem;
+import com.bernate.services_back.dto.UnifiedSearchResponse;
+import com.bernate.services_back.exception.BadRequestException;
+import com.bernate.services_back.search.CatalogIndexService;
+import com.bernate.services_back.search.CatalogKind;
+import com.bernate.services_back.search.RankedResults;
+import com.bernate.services_back.search.ScoredItem;
+import com.bernate.services_back.search.StatementTimeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MarketplaceSearchServiceTest {
+
+    private ProductService productService;
+    private ServiceService serviceService;
+    private StatementTimeout statementTimeout;
+    private MarketplaceSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        serviceService = mock(ServiceService.class);
+        statementTimeout = mock(StatementTimeout.class);
+        CatalogIndexService catalogIndexService = mock(CatalogIndexService.class);
+        when(catalogIndexService.didYouMean(anyString())).thenReturn(Optional.empty());
+        searchService = new MarketplaceSearchService(productService, serviceService, catalogIndexService,
+                statementTimeout, mock(PlatformTransactionManager.class), 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchService.shutdown();
+    }
+
+    @Test
+    void scoresAreNormalizedPerSourceBeforeMerging() {
+        // Productos por idf (escala abierta), servicios por similitud aproximada (0..1): sin
+        // normalizar, el mejor servicio quedaría detrás del peor producto.
+        when(productService.searchRanked(eq("guitarra"), anyInt())).thenReturn(new RankedResults<>(List.of(
+                new ScoredItem<>(product(1L), 12.0), new ScoredItem<>(product(2L), 3.0)), 2));
+        when(serviceService.searchRanked(eq("guitarra"), anyInt())).thenReturn(new RankedResults<>(List.of(
+                new ScoredItem<>(service(10L), 0.9), new ScoredItem<>(service(11L), 0.45)), 2));
+
+        UnifiedSearchResponse response = searchService.search("guitarra", 0, 10);
+
+        List<UnifiedSearchItem> content = response.getContent();
+        assertEquals(List.of(CatalogKind.PRODUCT, CatalogKind.SERVICE, CatalogKind.SERVICE, CatalogKind.PRODUCT),
+                content.stream().map(UnifiedSearchItem::getType).toList());
+        assertEquals(1.0, content.get(0).getScore());
+        assertEquals(1.0, content.get(1).getScore());
+        assertEquals(0.5, content.get(2).getScore());
+        assertEquals(0.25, content.get(3).getScore());
+        assertFalse(response.isPartial());
+        // Cada lado en su transacción, con el plazo aplicado a sus sentencias.
+        verify(statementTimeout, times(2)).applyToCurrentTransaction(300);
+    }
+
+    @Test
+    void totalIsClampedToThePageableWindow() {
+        when(productService.searchRanked(anyString(), anyInt())).thenReturn(
+                new RankedResults<>(List.of(new ScoredItem<>(product(1L), 1.0)), 4_000));
+        when(serviceService.searchRanked(anyString(), anyInt())).thenReturn(
+                new RankedResults<>(List.of(new ScoredItem<>(service(1L), 1.0)), 900));
+
+        UnifiedSearchResponse response = searchService.search("cocina", 0, 20);
+
+        assertEquals(MarketplaceSearchService.MAX_WINDOW, response.getTotalElements());
+        assertEquals(4_000, response.getTotalProducts());
+        assertEquals(900, response.getTotalServices());
+    }
+
+    @Test
+    void pagesBeyondTheWindowAreRejected() {
+        assertThrows(BadRequestException.class, () -> searchService.search("cocina", 25, 20));
+        verify(productService, times(0)).searchRanked(anyString(), anyInt());
+    }
+
+    @Test
+    void slowSourceIsLeftOutWithoutInterruptingIt() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        when(productService.searchRanked(anyString(), anyInt())).thenReturn(
+                new RankedResults<>(List.of(new ScoredItem<>(product(1L), 2.0)), 1));
+        when(serviceService.searchRanked(anyString(), anyInt())).thenAnswer(invocation -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return new RankedResults<>(List.of(), 0);
+        });
+
+        UnifiedSearchResponse response = searchService.search("cocina", 0, 20);
+
+        assertTrue(response.isPartial());
+        assertEquals(List.of(CatalogKind.SERVICE), response.getMissing());
+        assertEquals(1, response.getContent().size());
+        // La consulta la corta el statement_timeout, no un interrupt sobre el hilo que espera al JDBC.
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    void statementTimeoutCountsAsMissingSource() {
+        when(productService.searchRanked(anyString(), anyInt())).thenThrow(new QueryTimeoutException("canceling statement"));
+        when(serviceService.searchRanked(anyString(), anyInt())).thenReturn(
+                new RankedResults<>(List.of(new ScoredItem<>(service(1L), 0.8)), 1));
+
+        UnifiedSearchResponse response = searchService.search("cocina", 0, 20);
+
+        assertTrue(response.isPartial());
+        assertEquals(List.of(CatalogKind.PRODUCT), response.getMissing());
+        assertEquals(1.0, response.getContent().get(0).getScore());
+    }
+
+    private static ProductDTO product(Long id) {
+        ProductDTO product = new ProductDTO();
+        product.setId(id);
+        return product;
+    }
+
+    private static ServiceDTO service(Long id) {
+        ServiceDTO service = new ServiceDTO();
+        service.setId(id);
+        return service;
+    }
+}
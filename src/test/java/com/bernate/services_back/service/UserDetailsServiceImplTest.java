@@ -0,0 +1,78 @@
+package com.bernate.services_back.service;
+
+import com.bernate.services_back.event.UserChangedEvent;
+import com.bernate.services_back.model.User;
+import com.bernate.services_back.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserDetailsServiceImplTest {
+
+    private UserRepository userRepository;
+    private UserDetailsServiceImpl service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        service = new UserDetailsServiceImpl(userRepository, 100, 300);
+        user = new User("ana", "Ana", "Pérez", "ana@correo.com", null, "hash", "ROLE_USER", null);
+        when(userRepository.findByUsername("ana")).thenAnswer(invocation -> Optional.of(user));
+    }
+
+    @Test
+    void repeatedLoadsAreServedFromTheCache() {
+        UserDetails first = service.loadUserByUsername("ana");
+        UserDetails second = service.loadUserByUsername("ana");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByUsername("ana");
+        assertEquals(1L, service.getCacheStats().get("hitCount"));
+    }
+
+    @Test
+    void userChangedEventReloadsTheSnapshot() {
+        service.loadUserByUsername("ana");
+        user.setRoles("ROLE_USER,ROLE_ADMIN");
+
+        service.onUserChanged(new UserChangedEvent("ana"));
+        UserDetails reloaded = service.loadUserByUsername("ana");
+
+        verify(userRepository, times(2)).findByUsername("ana");
+        assertEquals("ROLE_ADMIN,ROLE_USER", reloaded.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).sorted().collect(Collectors.joining(",")));
+        assertEquals(1L, service.getCacheStats().get("invalidationCount"));
+    }
+
+    @Test
+    void passwordUpgradeEvictsTheOldHash() {
+        UserDetails before = service.loadUserByUsername("ana");
+
+        service.updatePassword(before, "hash-nuevo");
+
+        assertEquals("hash-nuevo", service.loadUserByUsername("ana").getPassword());
+    }
+
+    @Test
+    void missingUserIsNotCached() {
+        when(userRepository.findByUsername("nadie")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("nadie"));
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("nadie"));
+        verify(userRepository, times(2)).findByUsername("nadie");
+    }
+}